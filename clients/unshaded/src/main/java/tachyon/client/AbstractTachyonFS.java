@@ -39,7 +39,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return The unique file id. It returns -1 if the creation failed.
    * @throws IOException If file already exists, or path is invalid.
    */
-  public synchronized int createFile(TachyonURI path) throws IOException {
+  public int createFile(TachyonURI path) throws IOException {
     long defaultBlockSize = mTachyonConf.getBytes(Constants.USER_DEFAULT_BLOCK_SIZE_BYTE,
         Constants.DEFAULT_BLOCK_SIZE_BYTE);
     return createFile(path, defaultBlockSize);
@@ -54,7 +54,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return The unique file id. It returns -1 if the creation failed.
    * @throws IOException If file already exists, or path is invalid.
    */
-  public synchronized int createFile(TachyonURI path, long blockSizeByte) throws IOException {
+  public int createFile(TachyonURI path, long blockSizeByte) throws IOException {
     if (blockSizeByte > (long) Constants.GB * 2) {
       throw new IOException("Block size must be less than 2GB: " + blockSizeByte);
     }
@@ -71,7 +71,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return The unique file id. It returns -1 if the creation failed.
    * @throws IOException If file already exists, or path is invalid.
    */
-  public synchronized int createFile(TachyonURI path, TachyonURI ufsPath) throws IOException {
+  public int createFile(TachyonURI path, TachyonURI ufsPath) throws IOException {
     return createFile(path, ufsPath, -1, true);
   }
 
@@ -84,7 +84,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    *         place), false otherwise.
    * @throws IOException
    */
-  public synchronized boolean delete(int fid, boolean recursive) throws IOException {
+  public boolean delete(int fid, boolean recursive) throws IOException {
     return delete(fid, TachyonURI.EMPTY_URI, recursive);
   }
 
@@ -97,7 +97,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    *         first place), false otherwise.
    * @throws IOException
    */
-  public synchronized boolean delete(TachyonURI path, boolean recursive) throws IOException {
+  public boolean delete(TachyonURI path, boolean recursive) throws IOException {
     return delete(-1, path, recursive);
   }
 
@@ -109,7 +109,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return true if the folder is created successfully or already existing. false otherwise.
    * @throws IOException
    */
-  public synchronized boolean mkdir(TachyonURI path) throws IOException {
+  public boolean mkdir(TachyonURI path) throws IOException {
     return mkdirs(path, true);
   }
 
@@ -121,7 +121,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return true if succeed, false otherwise
    * @throws IOException
    */
-  public synchronized boolean rename(int fileId, TachyonURI dstPath) throws IOException {
+  public boolean rename(int fileId, TachyonURI dstPath) throws IOException {
     return rename(fileId, TachyonURI.EMPTY_URI, dstPath);
   }
 
@@ -133,7 +133,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
    * @return true if succeed, false otherwise.
    * @throws IOException
    */
-  public synchronized boolean rename(TachyonURI srcPath, TachyonURI dstPath) throws IOException {
+  public boolean rename(TachyonURI srcPath, TachyonURI dstPath) throws IOException {
     return rename(-1, srcPath, dstPath);
   }
 
@@ -146,7 +146,7 @@ abstract class AbstractTachyonFS implements TachyonFSCore {
   *         first place), false otherwise.
   * @throws IOException
   */
-  public synchronized boolean freepath(TachyonURI path, boolean recursive) throws IOException {
+  public boolean freepath(TachyonURI path, boolean recursive) throws IOException {
     return freepath(-1, path, recursive);
   }
 }
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.io.Closer;
+
+/**
+ * A bounded cache of the memory mappings of local block files, keyed by block id. Each mapping
+ * counts the buffers handed out on it, so that mappings in use are never evicted. The cache never
+ * unmaps a mapping itself: touching an unmapped buffer crashes the JVM, and a buffer handed out may
+ * still be reachable from a caller after it was released. A mapping dropped from the cache is
+ * unmapped by the garbage collector once no buffer on it is reachable.
+ *
+ * The cache does not lock blocks itself: callers must hold a worker lock on the block while they
+ * acquire a buffer, and pass the path the worker returned for it. Idle mappings are kept after the
+ * block is unlocked, so that reads of a hot block do not map it again, up to a maximum number of
+ * mapped bytes, least recently used first. They are revalidated by the next lock of their block: a
+ * block whose path changed (e.g. it moved to another tier) is mapped again, and callers
+ * {@link #invalidate(long) invalidate} a block the worker no longer has. Block files are never
+ * rewritten, so a mapping whose path is unchanged always has the bytes of the block.
+ */
+final class BlockMmapCache {
+  /** A mapping of a block file and the number of buffers handed out on it. */
+  static final class Mapping {
+    private final String mPath;
+    private final MappedByteBuffer mBuffer;
+    private int mRefCount = 0;
+    /** Whether the mapping is no longer in the cache, so it is not counted as idle once released */
+    private boolean mDropped = false;
+
+    private Mapping(String path, MappedByteBuffer buffer) {
+      mPath = path;
+      mBuffer = buffer;
+    }
+
+    private long getLength() {
+      return mBuffer.capacity();
+    }
+  }
+
+  private final long mMaxIdleBytes;
+  /** The mappings, in access order. */
+  private final LinkedHashMap<Long, Mapping> mMappings = new LinkedHashMap<Long, Mapping>(16,
+      0.75f, true);
+  /** The bytes mapped by the idle mappings in the cache. */
+  private long mIdleBytes = 0;
+
+  /**
+   * @param maxIdleBytes the maximum number of bytes the idle mappings in the cache may map
+   */
+  BlockMmapCache(long maxIdleBytes) {
+    mMaxIdleBytes = maxIdleBytes;
+  }
+
+  /**
+   * Acquire the mapping of a block file, mapping the file if it is not mapped yet. The mapping must
+   * be given back by {@link #release(Mapping)}, and its buffers must not be used afterwards.
+   *
+   * @param blockId the id of the block
+   * @param path the path of the block file, as returned by the worker which locked it
+   * @return the mapping of the block file
+   * @throws IOException if the file cannot be mapped
+   */
+  synchronized Mapping acquire(long blockId, String path) throws IOException {
+    Mapping mapping = mMappings.get(blockId);
+    if (mapping == null || !mapping.mPath.equals(path)) {
+      if (mapping != null) {
+        drop(mMappings.remove(blockId));
+      }
+      mapping = new Mapping(path, map(path));
+      mMappings.put(blockId, mapping);
+    } else if (mapping.mRefCount == 0) {
+      mIdleBytes -= mapping.getLength();
+    }
+    mapping.mRefCount ++;
+    return mapping;
+  }
+
+  /**
+   * Get a read-only buffer on the given range of an acquired mapping.
+   *
+   * @param mapping the mapping, acquired and not released yet
+   * @param offset the start position of the range in the block
+   * @param length the length of the range, or -1 for the rest of the block
+   * @return the buffer on the range, positioned at 0
+   * @throws IOException if the range is not within the block
+   */
+  static ByteBuffer slice(Mapping mapping, long offset, long length) throws IOException {
+    long blockLength = mapping.getLength();
+    if (offset > blockLength) {
+      throw new IOException(String.format("Offset(%d) is larger than file length(%d)", offset,
+          blockLength));
+    }
+    if (length != -1 && offset + length > blockLength) {
+      throw new IOException(String.format(
+          "Offset(%d) plus length(%d) is larger than file length(%d)", offset, length,
+          blockLength));
+    }
+    if (length == -1) {
+      length = blockLength - offset;
+    }
+
+    ByteBuffer buf = mapping.mBuffer.duplicate();
+    buf.position((int) offset);
+    buf.limit((int) (offset + length));
+    return buf.slice();
+  }
+
+  /**
+   * Drop all the mappings. They are unmapped by the garbage collector once no buffer on them is
+   * reachable.
+   */
+  synchronized void clear() {
+    for (Mapping mapping : mMappings.values()) {
+      drop(mapping);
+    }
+    mMappings.clear();
+    mIdleBytes = 0;
+  }
+
+  /**
+   * Drop the mapping of a block, e.g. because the worker no longer has it. The mapping is unmapped
+   * by the garbage collector once no buffer on it is reachable.
+   *
+   * @param blockId the id of the block
+   */
+  synchronized void invalidate(long blockId) {
+    Mapping mapping = mMappings.remove(blockId);
+    if (mapping != null) {
+      drop(mapping);
+    }
+  }
+
+  /**
+   * Give back a mapping got by {@link #acquire(long, String)}.
+   *
+   * @param mapping the mapping
+   */
+  synchronized void release(Mapping mapping) {
+    if (mapping.mRefCount == 0) {
+      return;
+    }
+    mapping.mRefCount --;
+    if (mapping.mRefCount > 0) {
+      return;
+    }
+    if (mapping.mDropped) {
+      return;
+    }
+    mIdleBytes += mapping.getLength();
+    evictIdleMappings();
+  }
+
+  /**
+   * @return the number of blocks currently mapped in the cache
+   */
+  synchronized int size() {
+    return mMappings.size();
+  }
+
+  /**
+   * Marks a mapping removed from the cache as dropped, and no longer counts it as idle.
+   */
+  private void drop(Mapping mapping) {
+    mapping.mDropped = true;
+    if (mapping.mRefCount == 0) {
+      mIdleBytes -= mapping.getLength();
+    }
+  }
+
+  private void evictIdleMappings() {
+    Iterator<Map.Entry<Long, Mapping>> it = mMappings.entrySet().iterator();
+    while (mIdleBytes > mMaxIdleBytes && it.hasNext()) {
+      Mapping mapping = it.next().getValue();
+      if (mapping.mRefCount == 0) {
+        it.remove();
+        drop(mapping);
+      }
+    }
+  }
+
+  private static MappedByteBuffer map(String path) throws IOException {
+    Closer closer = Closer.create();
+    try {
+      RandomAccessFile file = closer.register(new RandomAccessFile(path, "r"));
+      FileChannel channel = closer.register(file.getChannel());
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+    } catch (Throwable e) {
+      throw closer.rethrow(e);
+    } finally {
+      closer.close();
+    }
+  }
+}
@@ -50,6 +50,12 @@ public class EmptyBlockInStream extends InStream {
     return b.length == 0 ? 0 : -1;
   }
 
+  @Override
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    checkPositionedRead(pos, b, off, len);
+    return len == 0 ? 0 : -1;
+  }
+
   @Override
   public void seek(long pos) throws IOException {
     if (pos < 0) {
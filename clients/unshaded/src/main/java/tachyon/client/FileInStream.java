@@ -15,9 +15,25 @@
 
 package tachyon.client;
 
+import java.io.EOFException;
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.io.Closer;
+
+import tachyon.Constants;
 import tachyon.conf.TachyonConf;
+import tachyon.thrift.ClientBlockInfo;
+import tachyon.thrift.NetAddress;
+import tachyon.util.network.NetworkAddressUtils;
 
 /**
  * FileInStream implementation of TachyonFile.
@@ -31,7 +47,14 @@ public class FileInStream extends InStream {
   private BlockInStream mCurrentBlockInStream;
   private long mCurrentBlockLeft;
 
-  private boolean mClosed = false;
+  /**
+   * The block streams of positioned reads by block index, kept until the stream is closed so that
+   * positioned reads of a block do not open a stream, and lock the block, each time.
+   */
+  private final ConcurrentMap<Integer, BlockInStream> mPositionedBlockInStreams =
+      new ConcurrentHashMap<Integer, BlockInStream>();
+
+  private volatile boolean mClosed = false;
 
   private Object mUFSConf = null;
 
@@ -83,11 +106,23 @@ public class FileInStream extends InStream {
 
   @Override
   public void close() throws IOException {
-    if (!mClosed && mCurrentBlockInStream != null) {
-      mCurrentBlockInStream.close();
+    if (mClosed) {
+      return;
     }
-
     mClosed = true;
+    Closer closer = Closer.create();
+    if (mCurrentBlockInStream != null) {
+      closer.register(mCurrentBlockInStream);
+    }
+    // Removed one by one, so that a block stream opened meanwhile is closed either here or by the
+    // read which opened it
+    for (Integer blockIndex : mPositionedBlockInStreams.keySet()) {
+      BlockInStream blockInStream = mPositionedBlockInStreams.remove(blockIndex);
+      if (blockInStream != null) {
+        closer.register(blockInStream);
+      }
+    }
+    closer.close();
   }
 
   private int getCurrentBlockIndex() {
@@ -145,6 +180,270 @@ public class FileInStream extends InStream {
     return len - tLen;
   }
 
+  @Override
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    checkPositionedRead(pos, b, off, len);
+    if (mClosed) {
+      throw new IOException("Cannot read from a closed stream.");
+    } else if (len == 0) {
+      return 0;
+    } else if (pos >= mFileLength) {
+      return -1;
+    }
+
+    // Each block is read through a block stream of its own, so this neither uses nor moves the
+    // block stream of the sequential reads.
+    int bytesRead = 0;
+    while (bytesRead < len && pos < mFileLength) {
+      int blockIndex = (int) (pos / mBlockCapacity);
+      long blockPos = pos % mBlockCapacity;
+      int toRead = (int) Math.min(len - bytesRead, mBlockCapacity - blockPos);
+      int tRead = getPositionedBlockInStream(blockIndex).read(blockPos, b, off + bytesRead,
+          toRead);
+      if (tRead <= 0) {
+        break;
+      }
+      bytesRead += tRead;
+      pos += tRead;
+    }
+
+    return bytesRead == 0 ? -1 : bytesRead;
+  }
+
+  /**
+   * Get the block stream of positioned reads of a block, opening it if it is not open yet.
+   *
+   * @param blockIndex the index of the block
+   * @return the block stream
+   * @throws IOException if the block stream cannot be opened, or this stream is closed
+   */
+  private BlockInStream getPositionedBlockInStream(int blockIndex) throws IOException {
+    BlockInStream blockInStream = mPositionedBlockInStreams.get(blockIndex);
+    if (blockInStream != null) {
+      return blockInStream;
+    }
+    blockInStream = BlockInStream.get(mFile, mReadType, blockIndex, mUFSConf, mTachyonConf);
+    BlockInStream existing = mPositionedBlockInStreams.putIfAbsent(blockIndex, blockInStream);
+    if (existing != null) {
+      // Another read opened the block meanwhile
+      blockInStream.close();
+      return existing;
+    }
+    if (mClosed && mPositionedBlockInStreams.remove(blockIndex, blockInStream)) {
+      // The stream was closed meanwhile, and did not close this block stream
+      blockInStream.close();
+      throw new IOException("Cannot read from a closed stream.");
+    }
+    return blockInStream;
+  }
+
+  /**
+   * Reads the ranges concurrently. Ranges which start in the same block and lie at most
+   * {@link Constants#USER_VECTORED_READ_MAX_GAP_BYTES} apart are coalesced and read by a single
+   * positioned read, so each read goes to one block. The reads of the blocks on the same worker
+   * are split into at most {@link Constants#USER_VECTORED_READ_WORKER_PARALLELISM} tasks, so that
+   * a worker serves a bounded number of reads of this call at a time.
+   */
+  @Override
+  public void readVectored(List<FileRange> ranges) throws IOException {
+    if (mClosed) {
+      throw new IOException("Cannot read from a closed stream.");
+    }
+    int parallelism =
+        Math.max(1, mTachyonConf.getInt(Constants.USER_VECTORED_READ_WORKER_PARALLELISM, 2));
+    List<List<List<FileRange>>> tasks = new ArrayList<List<List<FileRange>>>();
+    for (List<List<FileRange>> batch : batchByWorker(coalesceRanges(ranges))) {
+      // Deal the groups of the worker round robin, so that each task reads in offset order
+      int taskCount = Math.min(parallelism, batch.size());
+      for (int k = 0; k < taskCount; k ++) {
+        List<List<FileRange>> task = new ArrayList<List<FileRange>>();
+        for (int g = k; g < batch.size(); g += taskCount) {
+          task.add(batch.get(g));
+        }
+        tasks.add(task);
+      }
+    }
+    for (int k = 0; k < tasks.size(); k ++) {
+      final List<List<FileRange>> task = tasks.get(k);
+      try {
+        mTachyonFS.getVectoredReadExecutor().submit(new Runnable() {
+          @Override
+          public void run() {
+            for (List<FileRange> group : task) {
+              readRangeGroup(group);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The client is closing: no range of this task or the following ones will be read
+        for (List<List<FileRange>> rejected : tasks.subList(k, tasks.size())) {
+          for (List<FileRange> group : rejected) {
+            for (FileRange range : group) {
+              range.fail(new IOException("Cannot read " + range + ", the client is closed", e));
+            }
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Group the ranges which start in the same block, and are apart by at most the maximum gap.
+   *
+   * @param ranges the ranges to group
+   * @return the groups, each sorted by offset
+   */
+  private List<List<FileRange>> coalesceRanges(List<FileRange> ranges) {
+    List<FileRange> sorted = new ArrayList<FileRange>(ranges);
+    Collections.sort(sorted, new Comparator<FileRange>() {
+      @Override
+      public int compare(FileRange r1, FileRange r2) {
+        return Long.valueOf(r1.getOffset()).compareTo(r2.getOffset());
+      }
+    });
+
+    long maxGap = mTachyonConf.getBytes(Constants.USER_VECTORED_READ_MAX_GAP_BYTES,
+        64 * Constants.KB);
+    List<List<FileRange>> groups = new ArrayList<List<FileRange>>();
+    List<FileRange> group = null;
+    long groupBlockIndex = -1;
+    long groupEnd = -1;
+    for (FileRange range : sorted) {
+      long blockIndex = range.getOffset() / mBlockCapacity;
+      if (group == null || blockIndex != groupBlockIndex
+          || range.getOffset() - groupEnd > maxGap) {
+        group = new ArrayList<FileRange>();
+        groups.add(group);
+        groupBlockIndex = blockIndex;
+      }
+      group.add(range);
+      groupEnd = Math.max(groupEnd, range.getEnd());
+    }
+    return groups;
+  }
+
+  /**
+   * Batch the groups of ranges by the worker which serves the block they start in: the local
+   * worker if it has the block, else the first worker the master lists for it. The locations of
+   * all the blocks are fetched in one call to the master. The groups of blocks whose location is
+   * unknown are batched together.
+   *
+   * @param groups the groups of ranges, each sorted by offset
+   * @return the batches, in the order of their first group
+   */
+  private List<List<List<FileRange>>> batchByWorker(List<List<FileRange>> groups) {
+    List<ClientBlockInfo> blockInfos;
+    try {
+      blockInfos = mTachyonFS.getFileBlocks(mFile.mFileId);
+    } catch (IOException e) {
+      // The reads of the blocks report the error
+      blockInfos = Collections.emptyList();
+    }
+    String localHost = NetworkAddressUtils.getLocalHostName(mTachyonConf);
+    Map<String, List<List<FileRange>>> batches = new LinkedHashMap<String, List<List<FileRange>>>();
+    for (List<FileRange> group : groups) {
+      int blockIndex = (int) (group.get(0).getOffset() / mBlockCapacity);
+      String worker = "";
+      if (blockIndex < blockInfos.size()) {
+        worker = getBlockWorker(blockInfos.get(blockIndex).getLocations(), localHost);
+      }
+      List<List<FileRange>> batch = batches.get(worker);
+      if (batch == null) {
+        batch = new ArrayList<List<FileRange>>();
+        batches.put(worker, batch);
+      }
+      batch.add(group);
+    }
+    return new ArrayList<List<List<FileRange>>>(batches.values());
+  }
+
+  /**
+   * @param locations the locations of a block
+   * @param localHost the host name of the local worker
+   * @return the address of the worker which serves the block, or the empty string if it is not
+   *         known
+   */
+  private String getBlockWorker(List<NetAddress> locations, String localHost) {
+    if (locations == null || locations.isEmpty()) {
+      return "";
+    }
+    for (NetAddress location : locations) {
+      if (location.mHost.equals(localHost)) {
+        return location.mHost + ":" + location.mSecondaryPort;
+      }
+    }
+    return locations.get(0).mHost + ":" + locations.get(0).mSecondaryPort;
+  }
+
+  /**
+   * Read the span of a group of ranges, and complete each range from it. A range alone in its
+   * group whose buffer has an array is read directly into its buffer.
+   *
+   * @param group the ranges, sorted by offset
+   */
+  private void readRangeGroup(List<FileRange> group) {
+    if (group.size() == 1 && group.get(0).getArray() != null) {
+      FileRange range = group.get(0);
+      try {
+        int bytesRead = readFully(range.getOffset(), range.getArray(), range.getArrayOffset(),
+            range.getLength());
+        if (bytesRead == range.getLength()) {
+          range.complete();
+        } else {
+          range.fail(new EOFException("Reached the end of the file at "
+              + (range.getOffset() + bytesRead) + " before reading " + range));
+        }
+      } catch (Exception e) {
+        range.fail(e);
+      }
+      return;
+    }
+
+    long start = group.get(0).getOffset();
+    long end = start;
+    for (FileRange range : group) {
+      end = Math.max(end, range.getEnd());
+    }
+
+    byte[] data = new byte[(int) (end - start)];
+    int bytesRead;
+    try {
+      bytesRead = readFully(start, data, 0, data.length);
+    } catch (Exception e) {
+      for (FileRange range : group) {
+        range.fail(e);
+      }
+      return;
+    }
+
+    for (FileRange range : group) {
+      if (range.getEnd() - start <= bytesRead) {
+        range.complete(data, (int) (range.getOffset() - start));
+      } else {
+        range.fail(new EOFException("Reached the end of the file at " + (start + bytesRead)
+            + " before reading " + range));
+      }
+    }
+  }
+
+  /**
+   * Positioned read of len bytes, or of fewer bytes if the end of the file comes first.
+   *
+   * @return the number of bytes read
+   */
+  private int readFully(long pos, byte[] b, int off, int len) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead < len) {
+      int ret = read(pos + bytesRead, b, off + bytesRead, len - bytesRead);
+      if (ret < 0) {
+        break;
+      }
+      bytesRead += ret;
+    }
+    return bytesRead;
+  }
+
   @Override
   public void seek(long pos) throws IOException {
     if (mCurrentPosition == pos) {
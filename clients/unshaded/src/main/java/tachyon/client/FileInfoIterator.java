@@ -0,0 +1,81 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import tachyon.thrift.ClientFileInfo;
+
+/**
+ * An iterator over the entries of a directory, returned by
+ * {@link TachyonFS#listStatusIterator(tachyon.TachyonURI, boolean)}. It gets the entries from the
+ * master a page at a time, each page starting after the last entry of the previous one, so it only
+ * holds one page in memory. Entries created or deleted while iterating may or may not be listed.
+ */
+public final class FileInfoIterator {
+  private final TachyonFS mTachyonFS;
+  private final String mPath;
+  private final boolean mRecursive;
+  private final int mPageSize;
+  /** The current page, null before the first one is got. */
+  private List<ClientFileInfo> mPage = null;
+  /** The index of the next entry in the current page. */
+  private int mIndex = 0;
+
+  /**
+   * @param tachyonFS the client to get the pages with
+   * @param path the path of the directory
+   * @param recursive if true, list the sub-directories too
+   * @param pageSize the number of entries to get in one call to the master
+   */
+  FileInfoIterator(TachyonFS tachyonFS, String path, boolean recursive, int pageSize) {
+    mTachyonFS = tachyonFS;
+    mPath = path;
+    mRecursive = recursive;
+    mPageSize = Math.max(1, pageSize);
+  }
+
+  /**
+   * @return true if there are more entries
+   * @throws IOException if the next page cannot be got from the master
+   */
+  public boolean hasNext() throws IOException {
+    if (mPage == null) {
+      mPage = mTachyonFS.listStatusPage(mPath, "", mPageSize, mRecursive);
+      mIndex = 0;
+    } else if (mIndex == mPage.size() && mPage.size() == mPageSize) {
+      // A full page may not be the last one.
+      String startAfter = mPage.get(mPage.size() - 1).getPath();
+      mPage = mTachyonFS.listStatusPage(mPath, startAfter, mPageSize, mRecursive);
+      mIndex = 0;
+    }
+    return mIndex < mPage.size();
+  }
+
+  /**
+   * @return the next entry
+   * @throws IOException if the next page cannot be got from the master
+   * @throws NoSuchElementException if there are no more entries
+   */
+  public ClientFileInfo next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return mPage.get(mIndex ++);
+  }
+}
@@ -131,10 +131,11 @@ public class FileOutStream extends OutStream {
     }
 
     if (canComplete) {
-      if (mWriteType.isAsync()) {
-        mTachyonFS.asyncCheckpoint(mFile.mFileId);
-      }
       mTachyonFS.completeFile(mFile.mFileId);
+      // The worker checkpoints the file once it is complete
+      if (mWriteType.isAsync() && !mTachyonFS.asyncCheckpoint(mFile.mFileId)) {
+        LOG.warn("The worker did not accept to checkpoint file " + mFile.mFileId);
+      }
     }
     mClosed = true;
   }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A range of a file to read by {@link InStream#readVectored(java.util.List)}, and the buffer its
+ * bytes are read into. The bytes are written to the buffer from its position on, without moving
+ * the position, and {@link #getData()} completes with a view of them once they are all read.
+ */
+public final class FileRange {
+  private final long mOffset;
+  private final int mLength;
+  private final ByteBuffer mBuffer;
+  private final SettableFuture<ByteBuffer> mData = SettableFuture.create();
+
+  /**
+   * @param offset the offset of the range in the file
+   * @param length the length of the range
+   * @param buffer the buffer to read the range into, with at least length bytes remaining
+   */
+  public FileRange(long offset, int length, ByteBuffer buffer) {
+    Preconditions.checkArgument(offset >= 0, "Offset can not be negative: " + offset);
+    Preconditions.checkArgument(length >= 0, "Length can not be negative: " + length);
+    Preconditions.checkArgument(buffer.remaining() >= length, "The buffer has "
+        + buffer.remaining() + " bytes remaining, fewer than the length " + length);
+    mOffset = offset;
+    mLength = length;
+    mBuffer = buffer;
+  }
+
+  /**
+   * @return the offset of the range in the file
+   */
+  public long getOffset() {
+    return mOffset;
+  }
+
+  /**
+   * @return the length of the range
+   */
+  public int getLength() {
+    return mLength;
+  }
+
+  /**
+   * @return the offset in the file right after the range
+   */
+  public long getEnd() {
+    return mOffset + mLength;
+  }
+
+  /**
+   * @return a future of the bytes of the range, a view of the buffer which fails if they cannot
+   *         all be read
+   */
+  public ListenableFuture<ByteBuffer> getData() {
+    return mData;
+  }
+
+  /**
+   * @return the array backing the buffer, or null if the buffer has no accessible array
+   */
+  byte[] getArray() {
+    return mBuffer.hasArray() ? mBuffer.array() : null;
+  }
+
+  /**
+   * @return the offset in {@link #getArray()} the bytes of the range are read into
+   */
+  int getArrayOffset() {
+    return mBuffer.arrayOffset() + mBuffer.position();
+  }
+
+  /**
+   * Complete {@link #getData()} once the bytes of the range are read into the array of the
+   * buffer.
+   */
+  void complete() {
+    mData.set(view());
+  }
+
+  /**
+   * Copy the bytes of the range into the buffer and complete {@link #getData()}.
+   *
+   * @param src an array which holds the bytes of the range
+   * @param srcOff the offset of the range in src
+   */
+  void complete(byte[] src, int srcOff) {
+    ByteBuffer data = view();
+    data.put(src, srcOff, mLength);
+    data.flip();
+    mData.set(data);
+  }
+
+  /**
+   * @return a view of the bytes of the range in the buffer
+   */
+  private ByteBuffer view() {
+    ByteBuffer data = mBuffer.duplicate();
+    data.limit(data.position() + mLength);
+    return data.slice();
+  }
+
+  /**
+   * Fail {@link #getData()}.
+   *
+   * @param cause the reason the range could not be read
+   */
+  void fail(Throwable cause) {
+    mData.setException(cause);
+  }
+
+  @Override
+  public String toString() {
+    return "FileRange(" + mOffset + ", " + mLength + ")";
+  }
+}
@@ -15,8 +15,11 @@
 
 package tachyon.client;
 
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import tachyon.conf.TachyonConf;
 
@@ -56,6 +59,109 @@ public abstract class InStream extends InputStream {
   @Override
   public abstract int read(byte[] b, int off, int len) throws IOException;
 
+  /**
+   * Reads up to len bytes at the given position of the stream. Unlike a seek followed by a read,
+   * this does not use nor change the position of the stream, so positioned reads of one stream can
+   * be issued concurrently by several threads, alongside its sequential reads.
+   *
+   * @param pos the position, measured in bytes from the beginning of the InStream, to read at
+   * @param b the buffer into which the data is read
+   * @param off the start offset in the buffer
+   * @param len the maximum number of bytes to read
+   * @return the number of bytes read, or -1 if pos is at or past the end of the stream
+   * @throws IOException if pos is negative or if an I/O error occurs
+   */
+  public abstract int read(long pos, byte[] b, int off, int len) throws IOException;
+
+  /**
+   * Reads up to buf.remaining() bytes at the given position of the stream into buf, see
+   * {@link #read(long, byte[], int, int)}. The position of buf is advanced by the number of bytes
+   * read.
+   *
+   * @param pos the position, measured in bytes from the beginning of the InStream, to read at
+   * @param buf the buffer into which the data is read
+   * @return the number of bytes read, or -1 if pos is at or past the end of the stream
+   * @throws IOException if pos is negative or if an I/O error occurs
+   */
+  public int read(long pos, ByteBuffer buf) throws IOException {
+    int ret;
+    if (buf.hasArray()) {
+      ret = read(pos, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      if (ret > 0) {
+        buf.position(buf.position() + ret);
+      }
+    } else {
+      byte[] b = new byte[buf.remaining()];
+      ret = read(pos, b, 0, b.length);
+      if (ret > 0) {
+        buf.put(b, 0, ret);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads a batch of ranges of the stream into their buffers, see {@link FileRange}. The ranges may
+   * be read asynchronously, so callers wait on {@link FileRange#getData()} for their bytes, and
+   * must not close the stream before. Like positioned reads, this neither uses nor changes the
+   * position of the stream. This implementation reads the ranges one by one.
+   *
+   * @param ranges the ranges to read
+   * @throws IOException if the ranges cannot be submitted for reading
+   */
+  public void readVectored(List<FileRange> ranges) throws IOException {
+    for (FileRange range : ranges) {
+      byte[] data = new byte[range.getLength()];
+      try {
+        readFully(range.getOffset(), data, 0, data.length);
+        range.complete(data, 0);
+      } catch (IOException e) {
+        range.fail(e);
+      }
+    }
+  }
+
+  /**
+   * Reads exactly len bytes at the given position of the stream by positioned reads.
+   *
+   * @param pos the position, measured in bytes from the beginning of the InStream, to read at
+   * @param b the buffer into which the data is read
+   * @param off the start offset in the buffer
+   * @param len the number of bytes to read
+   * @throws IOException if the stream ends before len bytes are read or if an I/O error occurs
+   */
+  protected void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead < len) {
+      int ret = read(pos + bytesRead, b, off + bytesRead, len - bytesRead);
+      if (ret < 0) {
+        throw new EOFException("Reached the end of the stream at " + (pos + bytesRead)
+            + " before reading " + len + " bytes at " + pos);
+      }
+      bytesRead += ret;
+    }
+  }
+
+  /**
+   * Checks the arguments of a positioned read.
+   *
+   * @param pos the position to read at
+   * @param b the buffer into which the data is read
+   * @param off the start offset in the buffer
+   * @param len the maximum number of bytes to read
+   * @throws IOException if pos is negative
+   */
+  protected static void checkPositionedRead(long pos, byte[] b, int off, int len)
+      throws IOException {
+    if (b == null) {
+      throw new NullPointerException();
+    } else if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    } else if (pos < 0) {
+      throw new IOException("Read position is negative: " + pos);
+    }
+  }
+
   /**
    * Sets the stream pointer offset, measured from the beginning of this stream, at which the next
    * read or write occurs. The offset may be set beyond the end of the stream.
@@ -26,6 +26,8 @@ import tachyon.conf.TachyonConf;
 public class LocalBlockInStream extends BlockInStream {
   private TachyonByteBuffer mTachyonBuffer = null;
   private ByteBuffer mBuffer = null;
+  /** The length of the block, which mBuffer holds entirely. */
+  private final int mBlockLength;
   private long mBytesReadLocal = 0;
 
   /**
@@ -42,6 +44,7 @@ public class LocalBlockInStream extends BlockInStream {
 
     mTachyonBuffer = buf;
     mBuffer = mTachyonBuffer.mData;
+    mBlockLength = mBuffer.limit();
   }
 
   @Override
@@ -61,6 +64,7 @@ public class LocalBlockInStream extends BlockInStream {
       close();
       return -1;
     }
+    checkNotClosed();
     mBytesReadLocal ++;
     mTachyonFS.getClientMetrics().incBytesReadLocal(1);
     return mBuffer.get() & 0xFF;
@@ -86,12 +90,73 @@ public class LocalBlockInStream extends BlockInStream {
       close();
       return -1;
     }
+    checkNotClosed();
     mBuffer.get(b, off, ret);
     mBytesReadLocal += ret;
     mTachyonFS.getClientMetrics().incBytesReadLocal(ret);
     return ret;
   }
 
+  @Override
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    checkPositionedRead(pos, b, off, len);
+    ByteBuffer buf = positionedBuffer(pos, len);
+    if (buf == null) {
+      return len == 0 ? 0 : -1;
+    }
+    int ret = buf.remaining();
+    buf.get(b, off, ret);
+    mTachyonFS.getClientMetrics().incBytesReadLocal(ret);
+    return ret;
+  }
+
+  @Override
+  public int read(long pos, ByteBuffer buf) throws IOException {
+    if (pos < 0) {
+      throw new IOException("Read position is negative: " + pos);
+    }
+    ByteBuffer src = positionedBuffer(pos, buf.remaining());
+    if (src == null) {
+      return buf.remaining() == 0 ? 0 : -1;
+    }
+    int ret = src.remaining();
+    buf.put(src);
+    mTachyonFS.getClientMetrics().incBytesReadLocal(ret);
+    return ret;
+  }
+
+  /**
+   * Get a view of the block which holds the bytes of a positioned read, so that the read does not
+   * touch the position of mBuffer.
+   *
+   * @param pos the position in the block to read at
+   * @param len the maximum number of bytes to read
+   * @return the view, or null if pos is at or past the end of the block
+   * @throws IOException if the stream is closed
+   */
+  private ByteBuffer positionedBuffer(long pos, int len) throws IOException {
+    checkNotClosed();
+    if (pos >= mBlockLength) {
+      return null;
+    }
+    ByteBuffer buf = mBuffer.duplicate();
+    buf.limit((int) Math.min(mBlockLength, pos + len));
+    buf.position((int) pos);
+    return buf;
+  }
+
+  /**
+   * Once closed, the block may be unlocked and removed by the worker, so it must not be read any
+   * more.
+   *
+   * @throws IOException if the stream is closed
+   */
+  private void checkNotClosed() throws IOException {
+    if (mClosed) {
+      throw new IOException("Cannot read from a closed stream.");
+    }
+  }
+
   @Override
   public void seek(long pos) throws IOException {
     if (pos < 0) {
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tachyon.conf.TachyonConf;
+import tachyon.master.MasterClient;
+import tachyon.util.ThreadFactoryUtils;
+
+/**
+ * A pool of connections to the master. Since a {@link MasterClient} serves one call at a time,
+ * metadata calls of concurrent threads each take a client of the pool, so that they do not wait
+ * for each other. Clients are created as needed, up to the capacity of the pool; beyond it, callers
+ * wait for a client to be released.
+ */
+final class MasterClientPool implements Closeable {
+  private final InetSocketAddress mMasterAddress;
+  private final TachyonConf mTachyonConf;
+  private final int mCapacity;
+  /** Runs the heartbeats of the clients of the pool. */
+  private final ExecutorService mExecutorService;
+  /** The clients not taken, guarded by this. */
+  private final Deque<MasterClient> mIdleClients = new ArrayDeque<MasterClient>();
+  /** All the clients created by the pool, guarded by this. */
+  private final List<MasterClient> mClients = new ArrayList<MasterClient>();
+  private boolean mClosed = false;
+
+  /**
+   * @param masterAddress the address of the master
+   * @param capacity the maximum number of clients of the pool, at least 1
+   * @param tachyonConf the TachyonConf instance of the clients
+   */
+  MasterClientPool(InetSocketAddress masterAddress, int capacity, TachyonConf tachyonConf) {
+    mMasterAddress = masterAddress;
+    mCapacity = Math.max(1, capacity);
+    mTachyonConf = tachyonConf;
+    mExecutorService =
+        Executors.newCachedThreadPool(ThreadFactoryUtils.build("client-master-pool-%d", true));
+  }
+
+  /**
+   * Take a client of the pool, creating it if no client is idle and the pool is not full. It must
+   * be given back by {@link #release(MasterClient)}.
+   *
+   * @return the client
+   * @throws IOException if the pool is closed, or the thread is interrupted while waiting
+   */
+  synchronized MasterClient acquire() throws IOException {
+    while (true) {
+      if (mClosed) {
+        throw new IOException("The master client pool is closed");
+      }
+      MasterClient client = mIdleClients.poll();
+      if (client != null) {
+        return client;
+      }
+      if (mClients.size() < mCapacity) {
+        client = new MasterClient(mMasterAddress, mExecutorService, mTachyonConf);
+        mClients.add(client);
+        return client;
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+  }
+
+  /**
+   * Give back a client taken by {@link #acquire()}.
+   *
+   * @param client the client
+   */
+  synchronized void release(MasterClient client) {
+    mIdleClients.offer(client);
+    notify();
+  }
+
+  /**
+   * Close the clients of the pool. Threads waiting in {@link #acquire()} fail with an
+   * IOException.
+   */
+  @Override
+  public synchronized void close() {
+    mClosed = true;
+    for (MasterClient client : mClients) {
+      client.close();
+    }
+    mIdleClients.clear();
+    mExecutorService.shutdown();
+    notifyAll();
+  }
+}
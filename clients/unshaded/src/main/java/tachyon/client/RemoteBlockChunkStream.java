@@ -0,0 +1,35 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A range of a remote block, streamed from a data server as a sequence of chunks. The chunks after
+ * the one being read are requested ahead of time, so the data server keeps sending while the
+ * client consumes the data.
+ */
+public interface RemoteBlockChunkStream extends Closeable {
+  /**
+   * Get the next chunk of the range. The buffer of the previous chunk must not be used anymore.
+   *
+   * @return the data of the chunk, or null at the end of the range
+   * @throws IOException if the chunk cannot be read, after which the stream should be closed
+   */
+  ByteBuffer nextChunk() throws IOException;
+}
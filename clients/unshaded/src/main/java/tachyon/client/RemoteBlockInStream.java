@@ -106,6 +106,19 @@ public class RemoteBlockInStream extends BlockInStream {
   /** A reference to the current reader so we can clear it after reading is finished. */
   private RemoteBlockReader mCurrentReader = null;
 
+  /**
+   * True if the block is streamed from the workers by chunks, see
+   * {@link #updateCurrentBufferFromStream()}. Streaming is disabled by a window of 0 chunks, or
+   * after it fails once, and then the block is read by buffer-sized ranges.
+   */
+  private boolean mStreamChunks = false;
+
+  /** The stream of the chunks of the block, or null if none is open. */
+  private RemoteBlockChunkStream mChunkStream = null;
+
+  /** The position relative to the block of the next chunk of mChunkStream. */
+  private long mChunkStreamPos;
+
   /**
    * @param file the file the block belongs to
    * @param readType the InStream's read type
@@ -138,6 +151,8 @@ public class RemoteBlockInStream extends BlockInStream {
     mRecache = readType.isCache();
 
     mUFSConf = ufsConf;
+
+    mStreamChunks = mTachyonConf.getInt(Constants.USER_REMOTE_READ_WINDOW, 8) > 0;
   }
 
   /**
@@ -204,6 +219,7 @@ public class RemoteBlockInStream extends BlockInStream {
     if (mBytesReadRemote > 0) {
       mTachyonFS.getClientMetrics().incBlocksReadRemote(1);
     }
+    closeChunkStream();
     closeReader();
     mClosed = true;
   }
@@ -294,6 +310,99 @@ public class RemoteBlockInStream extends BlockInStream {
     return len;
   }
 
+  @Override
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    checkPositionedRead(pos, b, off, len);
+    // The block info may be refreshed by a sequential read meanwhile, so we work on a snapshot.
+    ClientBlockInfo blockInfo = mBlockInfo;
+    if (len == 0) {
+      return 0;
+    } else if (pos >= blockInfo.length) {
+      return -1;
+    }
+    len = (int) Math.min(len, blockInfo.length - pos);
+
+    if (mAttemptReadFromWorkers) {
+      for (int i = 0; i < MAX_REMOTE_READ_ATTEMPTS; i ++) {
+        if (readRemoteRange(blockInfo, pos, b, off, len)) {
+          mTachyonFS.getClientMetrics().incBytesReadRemote(len);
+          return len;
+        }
+        // The read failed, refresh the block info and try again
+        blockInfo = mFile.getClientBlockInfo(mBlockIndex);
+      }
+    }
+
+    String checkpointPath = mFile.getUfsPath();
+    if (checkpointPath.equals("")) {
+      throw new IOException("Failed to read at position " + pos + " in block "
+          + blockInfo.getBlockId() + " from workers or underfs");
+    }
+    UnderFileSystem underfsClient = UnderFileSystem.get(checkpointPath, mUFSConf, mTachyonConf);
+    InputStream checkpointInputStream = underfsClient.open(checkpointPath);
+    try {
+      long toSkip = blockInfo.offset + pos;
+      while (toSkip > 0) {
+        long skipped = checkpointInputStream.skip(toSkip);
+        if (skipped <= 0) {
+          throw new IOException("Failed to skip to the position " + pos + " for block "
+              + blockInfo);
+        }
+        toSkip -= skipped;
+      }
+      int bytesLeft = len;
+      while (bytesLeft > 0) {
+        int readBytes = checkpointInputStream.read(b, off + len - bytesLeft, bytesLeft);
+        if (readBytes <= 0) {
+          break;
+        }
+        bytesLeft -= readBytes;
+      }
+      mTachyonFS.getClientMetrics().incBytesReadUfs(len - bytesLeft);
+      return len - bytesLeft == 0 ? -1 : len - bytesLeft;
+    } finally {
+      checkpointInputStream.close();
+    }
+  }
+
+  /**
+   * Reads a range of the block from the first worker which has it in memory, with a reader of its
+   * own so that concurrent positioned reads do not share mCurrentReader.
+   *
+   * @param blockInfo the block info of the block
+   * @param pos the position in the block to read at
+   * @param b the buffer into which the data is read
+   * @param off the start offset in the buffer
+   * @param len the number of bytes to read, which must all be in the block
+   * @return true if the range was read, false if no worker could serve it
+   */
+  private boolean readRemoteRange(ClientBlockInfo blockInfo, long pos, byte[] b, int off,
+      int len) {
+    for (NetAddress blockLocation : blockInfo.getLocations()) {
+      // Same as readRemoteByteBuffer, the data is not in memory if the primary port is -1.
+      if (blockLocation.mPort == -1) {
+        continue;
+      }
+      RemoteBlockReader reader = RemoteBlockReader.Factory.createRemoteBlockReader(mTachyonConf);
+      try {
+        try {
+          ByteBuffer buf = reader.readRemoteBlock(blockLocation.mHost,
+              blockLocation.mSecondaryPort, blockInfo.blockId, pos, len);
+          if (buf != null && buf.remaining() >= len) {
+            buf.get(b, off, len);
+            return true;
+          }
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to read block " + blockInfo.blockId + " from "
+            + blockLocation.mHost + ":" + blockLocation.mSecondaryPort + " at " + pos, e);
+      }
+    }
+    return false;
+  }
+
   public ByteBuffer readRemoteByteBuffer(TachyonFS tachyonFS, ClientBlockInfo blockInfo,
       long offset, long len, TachyonConf conf) {
     ByteBuffer buf = null;
@@ -417,8 +526,9 @@ public class RemoteBlockInStream extends BlockInStream {
 
   /**
    * Makes sure mCurrentBuffer is set to read at mBlockPos. If it is already, we do nothing.
-   * Otherwise, we set mBufferStartPos accordingly and try to read the correct range of bytes
-   * remotely. If we fail to read remotely, mCurrentBuffer will be null at the end of the function
+   * Otherwise, we set mBufferStartPos accordingly and try to stream the next chunk or read the
+   * correct range of bytes remotely. If we fail to read remotely, mCurrentBuffer will be null at
+   * the end of the function
    *
    * @return true if mCurrentBuffer was successfully set to read at mBlockPos, or false if the
    *         remote read failed.
@@ -428,12 +538,16 @@ public class RemoteBlockInStream extends BlockInStream {
     long bufferSize =
         mTachyonConf.getBytes(Constants.USER_REMOTE_READ_BUFFER_SIZE_BYTE, 8 * Constants.MB);
     if (mCurrentBuffer != null && mBufferStartPos <= mBlockPos
-        && mBlockPos < Math.min(mBufferStartPos + bufferSize, mBlockInfo.length)) {
+        && mBlockPos < mBufferStartPos + mCurrentBuffer.limit()) {
       // We move the buffer to read at mBlockPos
       mCurrentBuffer.position((int) (mBlockPos - mBufferStartPos));
       return true;
     }
 
+    if (mStreamChunks && updateCurrentBufferFromStream()) {
+      return true;
+    }
+
     // We must read in a new block. By starting at mBlockPos, we ensure that the next byte read will
     // be the one at mBlockPos
     mBufferStartPos = mBlockPos;
@@ -453,6 +567,91 @@ public class RemoteBlockInStream extends BlockInStream {
     return false;
   }
 
+  /**
+   * Sets mCurrentBuffer to the next chunk streamed from the workers, which starts at mBlockPos
+   * during a sequential read. Otherwise, e.g. after a seek, the stream is reopened at mBlockPos
+   * first. If streaming fails, it is disabled for the rest of this stream.
+   *
+   * @return true if mCurrentBuffer was set to read at mBlockPos, false if streaming failed or is
+   *         not supported by the configured reader
+   * @throws IOException
+   */
+  private boolean updateCurrentBufferFromStream() throws IOException {
+    try {
+      if (mChunkStream == null || mChunkStreamPos != mBlockPos) {
+        closeChunkStream();
+        mChunkStream = openChunkStream();
+        if (mChunkStream == null) {
+          mStreamChunks = false;
+          return false;
+        }
+        mChunkStreamPos = mBlockPos;
+      }
+      ByteBuffer chunk = mChunkStream.nextChunk();
+      if (chunk == null) {
+        throw new IOException("The stream of block " + mBlockInfo.blockId + " ended at "
+            + mChunkStreamPos);
+      }
+      mCurrentBuffer = chunk;
+      mBufferStartPos = mChunkStreamPos;
+      mChunkStreamPos += chunk.limit();
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Failed to stream block " + mBlockInfo.blockId + " at " + mBlockPos
+          + ", reading it by ranges instead", e);
+      closeChunkStream();
+      mStreamChunks = false;
+      return false;
+    }
+  }
+
+  /**
+   * Opens a stream of the chunks of the block from mBlockPos to its end, from the first worker
+   * which has the block in memory and accepts the stream.
+   *
+   * @return the stream, or null if it could not be opened
+   */
+  private RemoteBlockChunkStream openChunkStream() {
+    long chunkSize =
+        mTachyonConf.getBytes(Constants.USER_REMOTE_READ_CHUNK_SIZE_BYTE, 256 * Constants.KB);
+    int window = mTachyonConf.getInt(Constants.USER_REMOTE_READ_WINDOW, 8);
+    for (NetAddress blockLocation : mBlockInfo.getLocations()) {
+      // Same as readRemoteByteBuffer, the data is not in memory if the primary port is -1.
+      if (blockLocation.mPort == -1) {
+        continue;
+      }
+      RemoteBlockReader reader = RemoteBlockReader.Factory.createRemoteBlockReader(mTachyonConf);
+      try {
+        RemoteBlockChunkStream stream = reader.readRemoteBlockChunks(blockLocation.mHost,
+            blockLocation.mSecondaryPort, mBlockInfo.blockId, mBlockPos,
+            mBlockInfo.length - mBlockPos, chunkSize, window);
+        if (stream == null) {
+          // The configured reader cannot stream, whatever the worker.
+          return null;
+        }
+        return stream;
+      } catch (IOException e) {
+        LOG.warn("Failed to stream block " + mBlockInfo.blockId + " from "
+            + blockLocation.mHost + ":" + blockLocation.mSecondaryPort, e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Close the stream of the chunks, which releases the chunk mCurrentBuffer may refer to.
+   */
+  private void closeChunkStream() throws IOException {
+    if (mChunkStream != null) {
+      try {
+        mChunkStream.close();
+      } finally {
+        mChunkStream = null;
+        mCurrentBuffer = null;
+      }
+    }
+  }
+
   /**
    * Clear the previous reader, release the resource it references.
    */
@@ -54,4 +54,21 @@ public interface RemoteBlockReader extends Closeable {
    */
   ByteBuffer readRemoteBlock(String host, int port, long blockId, long offset,
       long length) throws IOException;
+
+  /**
+   * Stream a range of a remote block as a sequence of chunks, keeping up to <code>window</code>
+   * chunks requested ahead of the chunk being read.
+   *
+   * @param host the remote data server hostname.
+   * @param port the remote data server port number.
+   * @param blockId the id of the block trying to read.
+   * @param offset the offset of the range in the block.
+   * @param length the length of the range.
+   * @param chunkSize the maximum length of each chunk.
+   * @param window the maximum number of chunks requested ahead.
+   * @return the stream of the chunks, or null if this reader cannot stream blocks.
+   * @throws IOException
+   */
+  RemoteBlockChunkStream readRemoteBlockChunks(String host, int port, long blockId, long offset,
+      long length, long chunkSize, int window) throws IOException;
 }
@@ -32,6 +32,12 @@ public class TachyonByteBuffer implements Closeable {
 
   private final TachyonFS mTachyonFS;
 
+  /** The cache whose mapping the data is on, null if the data is not on a cached mapping. */
+  private final BlockMmapCache mMmapCache;
+
+  /** The mapping of mMmapCache the data is on, null if the data is not on a cached mapping. */
+  final BlockMmapCache.Mapping mMapping;
+
   private boolean mClosed = false;
 
   /**
@@ -41,15 +47,31 @@ public class TachyonByteBuffer implements Closeable {
    * @param blockLockId the id of the block's lock
    */
   TachyonByteBuffer(TachyonFS tfs, ByteBuffer buf, long blockId, int blockLockId) {
+    this(tfs, buf, blockId, blockLockId, null, null);
+  }
+
+  /**
+   * @param tfs the Tachyon file system
+   * @param buf the ByteBuffer wrapped on
+   * @param blockId the id of the block
+   * @param blockLockId the id of the block's lock
+   * @param mmapCache the cache to give the mapping back to on close, or null
+   * @param mapping the mapping of mmapCache the buffer is on, or null
+   */
+  TachyonByteBuffer(TachyonFS tfs, ByteBuffer buf, long blockId, int blockLockId,
+      BlockMmapCache mmapCache, BlockMmapCache.Mapping mapping) {
     mData = buf;
     mBlockId = blockId;
     mBlockLockId = blockLockId;
     mTachyonFS = tfs;
+    mMmapCache = mmapCache;
+    mMapping = mapping;
   }
 
   /**
-   * Close the TachyonByteBuffer, here it is synchronized
-   * 
+   * Close the TachyonByteBuffer, here it is synchronized. The data should not be used afterwards:
+   * once the block is unlocked, the worker may remove or move it.
+   *
    * @throws IOException
    */
   @Override
@@ -59,6 +81,9 @@ public class TachyonByteBuffer implements Closeable {
     }
 
     mClosed = true;
+    if (mMmapCache != null) {
+      mMmapCache.release(mMapping);
+    }
     if (mBlockLockId >= 0) {
       mTachyonFS.unlockBlock(mBlockId, mBlockLockId);
     }
@@ -18,20 +18,26 @@ package tachyon.client;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Striped;
 
 import tachyon.Constants;
 import tachyon.TachyonURI;
@@ -55,6 +61,9 @@ import tachyon.worker.WorkerClient;
  * while {@link tachyon.hadoop.AbstractTFS} provides another API that exposes Tachyon as HDFS file
  * system. Under the hood, this class maintains a MasterClient to talk to the master server and
  * WorkerClients to interact with different Tachyon workers.
+ *
+ * This class is thread safe, and one instance can be shared by many threads. Their metadata calls
+ * go through a pool of MasterClients, so that they do not wait for each other.
  */
 public class TachyonFS extends AbstractTachyonFS {
 
@@ -149,10 +158,17 @@ public class TachyonFS extends AbstractTachyonFS {
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The number of stripes of the locks of the blocks. */
+  private static final int BLOCK_LOCK_STRIPES = 64;
   private final int mUserFailedSpaceRequestLimits;
   private final ExecutorService mExecutorService;
+  /** The threads which read the ranges of vectored reads. */
+  private final ExecutorService mVectoredReadExecutor;
 
-  /** The RPC client talks to the system master. */
+  /**
+   * The connection whose user id identifies this client to the master and the worker. The calls to
+   * the master go through mMasterClientPool, see {@link #callMaster(MasterCall)}.
+   */
   private final MasterClient mMasterClient;
   /** The Master address. */
   private final InetSocketAddress mMasterAddress;
@@ -161,24 +177,34 @@ public class TachyonFS extends AbstractTachyonFS {
   private final Closer mCloser = Closer.create();
   /** Whether to use ZooKeeper or not */
   private final boolean mZookeeperMode;
-  // Cached ClientFileInfo
-  private final Map<String, ClientFileInfo> mPathToClientFileInfo =
-      new HashMap<String, ClientFileInfo>();
-  private final Map<Integer, ClientFileInfo> mIdToClientFileInfo =
-      new HashMap<Integer, ClientFileInfo>();
+  /** Serves the metadata calls of concurrent threads, see {@link MasterClientPool}. */
+  private final MasterClientPool mMasterClientPool;
+  // Cached ClientFileInfo, bounded in size and expiring after a while
+  private final Cache<String, ClientFileInfo> mPathToClientFileInfo;
+  private final Cache<Integer, ClientFileInfo> mIdToClientFileInfo;
 
   private UnderFileSystem mUnderFileSystem;
 
-  /** All Blocks that have been locked. */
-  private final Map<Long, Set<Integer>> mLockedBlockIds = new HashMap<Long, Set<Integer>>();
+  /** All Blocks that have been locked. The lock ids of a block are guarded by its stripe. */
+  private final Map<Long, Set<Integer>> mLockedBlockIds =
+      new ConcurrentHashMap<Long, Set<Integer>>();
   /** Mapping from block id to path of the block locked */
-  private final Map<Long, String> mLockedBlockIdToPath = new HashMap<Long, String>();
+  private final Map<Long, String> mLockedBlockIdToPath = new ConcurrentHashMap<Long, String>();
+  /** Locks the blocks, so that blocks in different stripes are locked and unlocked concurrently. */
+  private final Striped<Lock> mBlockLockStripes;
   /** Each user facing block has a unique block lock id. */
   private final AtomicInteger mBlockLockId = new AtomicInteger(0);
+  /** The memory mappings of the local blocks read recently. */
+  private final BlockMmapCache mBlockMmapCache;
 
   private TachyonURI mRootUri = null;
   private ClientMetrics mClientMetrics = new ClientMetrics();
 
+  /** A call to the master, run by {@link #callMaster(MasterCall)} with a client of the pool. */
+  private interface MasterCall<T> {
+    T call(MasterClient masterClient) throws IOException;
+  }
+
   private TachyonFS(TachyonConf tachyonConf) throws IOException {
     super(tachyonConf);
 
@@ -191,6 +217,9 @@ public class TachyonFS extends AbstractTachyonFS {
     mZookeeperMode = mTachyonConf.getBoolean(Constants.USE_ZOOKEEPER, false);
     mExecutorService =
         Executors.newFixedThreadPool(2, ThreadFactoryUtils.build("client-heartbeat-%d", true));
+    mVectoredReadExecutor =
+        Executors.newFixedThreadPool(mTachyonConf.getInt(Constants.USER_VECTORED_READ_THREADS, 8),
+            ThreadFactoryUtils.build("client-vectored-read-%d", true));
     mMasterClient =
         mCloser.register(new MasterClient(mMasterAddress, mExecutorService, mTachyonConf));
     mWorkerClient =
@@ -199,6 +228,20 @@ public class TachyonFS extends AbstractTachyonFS {
     mUserFailedSpaceRequestLimits =
         mTachyonConf.getInt(Constants.USER_FAILED_SPACE_REQUEST_LIMITS,
             Constants.DEFAULT_USER_FAILED_SPACE_REQUEST_LIMITS);
+    mBlockMmapCache = new BlockMmapCache(
+        mTachyonConf.getBytes(Constants.USER_MMAP_CACHE_MAX_IDLE_BYTES, 64 * Constants.MB));
+    mBlockLockStripes = Striped.lock(BLOCK_LOCK_STRIPES);
+    mMasterClientPool =
+        mCloser.register(new MasterClientPool(mMasterAddress,
+            mTachyonConf.getInt(Constants.USER_MASTER_CLIENT_POOL_SIZE, 8), mTachyonConf));
+    long fileInfoCacheSize = mTachyonConf.getLong(Constants.USER_FILE_INFO_CACHE_SIZE, 10000);
+    long fileInfoCacheTtlMs = mTachyonConf.getLong(Constants.USER_FILE_INFO_CACHE_TTL_MS, 60000);
+    mPathToClientFileInfo =
+        CacheBuilder.newBuilder().maximumSize(fileInfoCacheSize)
+            .expireAfterWrite(fileInfoCacheTtlMs, TimeUnit.MILLISECONDS).build();
+    mIdToClientFileInfo =
+        CacheBuilder.newBuilder().maximumSize(fileInfoCacheSize)
+            .expireAfterWrite(fileInfoCacheTtlMs, TimeUnit.MILLISECONDS).build();
 
     String scheme = mZookeeperMode ? Constants.SCHEME_FT : Constants.SCHEME;
     String authority = mMasterAddress.getHostName() + ":" + mMasterAddress.getPort();
@@ -211,7 +254,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param blockId the local block's id
    * @throws IOException
    */
-  synchronized void accessLocalBlock(long blockId) throws IOException {
+  void accessLocalBlock(long blockId) throws IOException {
     if (mWorkerClient.isLocal()) {
       mWorkerClient.accessBlock(blockId);
     }
@@ -223,7 +266,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param fid the file id
    * @throws IOException
    */
-  synchronized void addCheckpoint(int fid) throws IOException {
+  void addCheckpoint(int fid) throws IOException {
     mWorkerClient.addCheckpoint(fid);
   }
 
@@ -234,7 +277,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return true if succeed, false otherwise
    * @throws IOException
    */
-  synchronized boolean asyncCheckpoint(int fid) throws IOException {
+  boolean asyncCheckpoint(int fid) throws IOException {
     return mWorkerClient.asyncCheckpoint(fid);
   }
 
@@ -244,7 +287,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param blockId the block id
    * @throws IOException
    */
-  public synchronized void cacheBlock(long blockId) throws IOException {
+  public void cacheBlock(long blockId) throws IOException {
     mWorkerClient.cacheBlock(blockId);
   }
 
@@ -254,10 +297,27 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param blockId the block id
    * @throws IOException
    */
-  public synchronized void cancelBlock(long blockId) throws IOException {
+  public void cancelBlock(long blockId) throws IOException {
     mWorkerClient.cancelBlock(blockId);
   }
 
+  /**
+   * Run a call to the master with a client taken from mMasterClientPool, and give the client back
+   * once the call is done.
+   *
+   * @param call the call to run
+   * @return the result of the call
+   * @throws IOException if no client can be taken, or the call fails
+   */
+  private <T> T callMaster(MasterCall<T> call) throws IOException {
+    MasterClient masterClient = mMasterClientPool.acquire();
+    try {
+      return call.call(masterClient);
+    } finally {
+      mMasterClientPool.release(masterClient);
+    }
+  }
+
   /**
    * Close the client. Close the connections to both the master and worker
    *
@@ -266,9 +326,11 @@ public class TachyonFS extends AbstractTachyonFS {
   @Override
   public synchronized void close() throws IOException {
     try {
+      mBlockMmapCache.clear();
       mCloser.close();
     } finally {
       mExecutorService.shutdown();
+      mVectoredReadExecutor.shutdown();
     }
   }
 
@@ -278,8 +340,31 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param fid the file id
    * @throws IOException
    */
-  synchronized void completeFile(int fid) throws IOException {
-    mMasterClient.user_completeFile(fid);
+  void completeFile(final int fid) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_completeFile(fid);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Complete many files in one call to the master. The files before one which cannot be completed
+   * are completed.
+   *
+   * @param fids the ids of the files
+   * @throws IOException
+   */
+  public void completeFiles(final List<Integer> fids) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_completeFiles(fids);
+        return null;
+      }
+    });
   }
 
   /**
@@ -319,11 +404,17 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the dependency's id
    * @throws IOException
    */
-  public synchronized int createDependency(List<String> parents, List<String> children,
-      String commandPrefix, List<ByteBuffer> data, String comment, String framework,
-      String frameworkVersion, int dependencyType, long childrenBlockSizeByte) throws IOException {
-    return mMasterClient.user_createDependency(parents, children, commandPrefix, data, comment,
-        framework, frameworkVersion, dependencyType, childrenBlockSizeByte);
+  public int createDependency(final List<String> parents, final List<String> children,
+      final String commandPrefix, final List<ByteBuffer> data, final String comment,
+      final String framework, final String frameworkVersion, final int dependencyType,
+      final long childrenBlockSizeByte) throws IOException {
+    return callMaster(new MasterCall<Integer>() {
+      @Override
+      public Integer call(MasterClient masterClient) throws IOException {
+        return masterClient.user_createDependency(parents, children, commandPrefix, data, comment,
+            framework, frameworkVersion, dependencyType, childrenBlockSizeByte);
+      }
+    });
   }
 
   /**
@@ -337,11 +428,36 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return The file id, which is globally unique.
    */
   @Override
-  public synchronized int createFile(TachyonURI path, TachyonURI ufsPath, long blockSizeByte,
-      boolean recursive) throws IOException {
+  public int createFile(final TachyonURI path, final TachyonURI ufsPath, final long blockSizeByte,
+      final boolean recursive) throws IOException {
     validateUri(path);
-    return mMasterClient.user_createFile(path.getPath(), ufsPath.toString(), blockSizeByte,
-        recursive);
+    return callMaster(new MasterCall<Integer>() {
+      @Override
+      public Integer call(MasterClient masterClient) throws IOException {
+        return masterClient.user_createFile(path.getPath(), ufsPath.toString(), blockSizeByte,
+            recursive);
+      }
+    });
+  }
+
+  /**
+   * Creates many new files in one call to the master. The files created before one which cannot
+   * be created are kept.
+   *
+   * @param paths The paths of the files
+   * @param blockSizeByte The size of the blocks of the files in bytes
+   * @param recursive Creates necessary parent folders if true, not otherwise.
+   * @return The file ids, in the order of the paths
+   * @throws IOException
+   */
+  public List<Integer> createFiles(final List<TachyonURI> paths, final long blockSizeByte,
+      final boolean recursive) throws IOException {
+    return callMaster(new MasterCall<List<Integer>>() {
+      @Override
+      public List<Integer> call(MasterClient masterClient) throws IOException {
+        return masterClient.user_createFiles(toPathList(paths), blockSizeByte, recursive);
+      }
+    });
   }
 
   /**
@@ -352,7 +468,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the id if succeed, -1 otherwise
    * @throws IOException
    */
-  public synchronized int createRawTable(TachyonURI path, int columns) throws IOException {
+  public int createRawTable(TachyonURI path, int columns) throws IOException {
     return createRawTable(path, columns, ByteBuffer.allocate(0));
   }
 
@@ -365,7 +481,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the id if succeed, -1 otherwise
    * @throws IOException
    */
-  public synchronized int createRawTable(TachyonURI path, int columns, ByteBuffer metadata)
+  public int createRawTable(final TachyonURI path, final int columns, final ByteBuffer metadata)
       throws IOException {
     validateUri(path);
     int maxColumns = mTachyonConf.getInt(Constants.MAX_COLUMNS, 1000);
@@ -374,7 +490,12 @@ public class TachyonFS extends AbstractTachyonFS {
           + maxColumns);
     }
 
-    return mMasterClient.user_createRawTable(path.getPath(), columns, metadata);
+    return callMaster(new MasterCall<Integer>() {
+      @Override
+      public Integer call(MasterClient masterClient) throws IOException {
+        return masterClient.user_createRawTable(path.getPath(), columns, metadata);
+      }
+    });
   }
 
   /**
@@ -389,10 +510,15 @@ public class TachyonFS extends AbstractTachyonFS {
    * @throws IOException
    */
   @Override
-  public synchronized boolean delete(int fileId, TachyonURI path, boolean recursive)
+  public boolean delete(final int fileId, final TachyonURI path, final boolean recursive)
       throws IOException {
     validateUri(path);
-    return mMasterClient.user_delete(fileId, path.getPath(), recursive);
+    return callMaster(new MasterCall<Boolean>() {
+      @Override
+      public Boolean call(MasterClient masterClient) throws IOException {
+        return masterClient.user_delete(fileId, path.getPath(), recursive);
+      }
+    });
   }
 
   /**
@@ -402,7 +528,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return true if it exists, false otherwise
    * @throws IOException
    */
-  public synchronized boolean exist(TachyonURI path) throws IOException {
+  public boolean exist(TachyonURI path) throws IOException {
     return getFileStatus(-1, path, false) != null;
   }
 
@@ -415,7 +541,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the block id if exists
    * @throws IOException if the file does not exist, or connection issue.
    */
-  public synchronized long getBlockId(int fileId, int blockIndex) throws IOException {
+  public long getBlockId(final int fileId, final int blockIndex) throws IOException {
     ClientFileInfo info = getFileStatus(fileId, true);
 
     if (info == null) {
@@ -426,16 +552,28 @@ public class TachyonFS extends AbstractTachyonFS {
       return info.blockIds.get(blockIndex);
     }
 
-    return mMasterClient.user_getBlockId(fileId, blockIndex);
+    return callMaster(new MasterCall<Long>() {
+      @Override
+      public Long call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getBlockId(fileId, blockIndex);
+      }
+    });
   }
 
   /**
    * @return a new block lock id
    */
-  synchronized int getBlockLockId() {
+  int getBlockLockId() {
     return mBlockLockId.getAndIncrement();
   }
 
+  /**
+   * @return the cache of the memory mappings of local blocks
+   */
+  BlockMmapCache getBlockMmapCache() {
+    return mBlockMmapCache;
+  }
+
   /**
    * Get a ClientBlockInfo by blockId
    *
@@ -443,8 +581,13 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the ClientBlockInfo of the specified block
    * @throws IOException
    */
-  synchronized ClientBlockInfo getClientBlockInfo(long blockId) throws IOException {
-    return mMasterClient.user_getClientBlockInfo(blockId);
+  ClientBlockInfo getClientBlockInfo(final long blockId) throws IOException {
+    return callMaster(new MasterCall<ClientBlockInfo>() {
+      @Override
+      public ClientBlockInfo call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getClientBlockInfo(blockId);
+      }
+    });
   }
 
   /**
@@ -454,8 +597,13 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the ClientDependencyInfo of the specified dependency
    * @throws IOException
    */
-  public synchronized ClientDependencyInfo getClientDependencyInfo(int depId) throws IOException {
-    return mMasterClient.getClientDependencyInfo(depId);
+  public ClientDependencyInfo getClientDependencyInfo(final int depId) throws IOException {
+    return callMaster(new MasterCall<ClientDependencyInfo>() {
+      @Override
+      public ClientDependencyInfo call(MasterClient masterClient) throws IOException {
+        return masterClient.getClientDependencyInfo(depId);
+      }
+    });
   }
 
   /**
@@ -477,7 +625,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param fid file id.
    * @return TachyonFile of the file id, or null if the file does not exist.
    */
-  public synchronized TachyonFile getFile(int fid) throws IOException {
+  public TachyonFile getFile(int fid) throws IOException {
     return getFile(fid, true);
   }
 
@@ -487,7 +635,7 @@ public class TachyonFS extends AbstractTachyonFS {
    *
    * @return TachyonFile of the file id, or null if the file does not exist.
    */
-  public synchronized TachyonFile getFile(int fid, boolean useCachedMetadata) throws IOException {
+  public TachyonFile getFile(int fid, boolean useCachedMetadata) throws IOException {
     ClientFileInfo clientFileInfo = getFileStatus(fid, TachyonURI.EMPTY_URI, useCachedMetadata);
     if (clientFileInfo == null) {
       return null;
@@ -502,7 +650,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return TachyonFile of the path, or null if the file does not exist.
    * @throws IOException
    */
-  public synchronized TachyonFile getFile(TachyonURI path) throws IOException {
+  public TachyonFile getFile(TachyonURI path) throws IOException {
     validateUri(path);
     return getFile(path, false);
   }
@@ -516,7 +664,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return TachyonFile of the path, or null if the file does not exist.
    * @throws IOException
    */
-  public synchronized TachyonFile getFile(TachyonURI path, boolean useCachedMetadata)
+  public TachyonFile getFile(TachyonURI path, boolean useCachedMetadata)
       throws IOException {
     validateUri(path);
     ClientFileInfo clientFileInfo = getFileStatus(-1, path, useCachedMetadata);
@@ -533,9 +681,30 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the list of the blocks' info
    * @throws IOException
    */
-  public synchronized List<ClientBlockInfo> getFileBlocks(int fid) throws IOException {
+  public List<ClientBlockInfo> getFileBlocks(final int fid) throws IOException {
     // TODO Should read from mClientFileInfos if possible. Should add timeout to improve this.
-    return mMasterClient.user_getFileBlocks(fid, "");
+    return callMaster(new MasterCall<List<ClientBlockInfo>>() {
+      @Override
+      public List<ClientBlockInfo> call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getFileBlocks(fid, "");
+      }
+    });
+  }
+
+  /**
+   * Get the block infos of many files in one call to the master.
+   *
+   * @param fids the file ids
+   * @return the lists of the blocks' info, in the order of the file ids
+   * @throws IOException
+   */
+  public List<List<ClientBlockInfo>> getFileBlocks(final List<Integer> fids) throws IOException {
+    return callMaster(new MasterCall<List<List<ClientBlockInfo>>>() {
+      @Override
+      public List<List<ClientBlockInfo>> call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getFilesBlocks(fids);
+      }
+    });
   }
 
   /**
@@ -544,7 +713,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param path the path in Tachyon file system
    * @return the file id if exists, -1 otherwise
    */
-  public synchronized int getFileId(TachyonURI path) {
+  public int getFileId(TachyonURI path) {
     try {
       ClientFileInfo fileInfo = getFileStatus(-1, path, false);
       return fileInfo == null ? -1 : fileInfo.getId();
@@ -564,28 +733,30 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the clientFileInfo.
    * @throws IOException
    */
-  private synchronized <K> ClientFileInfo getFileStatus(Map<K, ClientFileInfo> cache, K key,
-      int fileId, String path, boolean useCachedMetaData) throws IOException {
+  private <K> ClientFileInfo getFileStatus(Cache<K, ClientFileInfo> cache, K key, final int fileId,
+      final String path, boolean useCachedMetaData) throws IOException {
     ClientFileInfo info = null;
     if (useCachedMetaData) {
-      info = cache.get(key);
+      info = cache.getIfPresent(key);
       if (info != null) {
         return info;
       }
     }
 
-    info = mMasterClient.getFileStatus(fileId, path);
+    info = callMaster(new MasterCall<ClientFileInfo>() {
+      @Override
+      public ClientFileInfo call(MasterClient masterClient) throws IOException {
+        return masterClient.getFileStatus(fileId, path);
+      }
+    });
 
-    fileId = info.getId();
-    if (fileId == -1) {
-      cache.remove(key);
+    if (info.getId() == -1) {
+      cache.invalidate(key);
       return null;
     }
-    path = info.getPath();
 
-    // TODO: LRU
-    mIdToClientFileInfo.put(fileId, info);
-    mPathToClientFileInfo.put(path, info);
+    mIdToClientFileInfo.put(info.getId(), info);
+    mPathToClientFileInfo.put(info.getPath(), info);
 
     return info;
   }
@@ -601,7 +772,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the ClientFileInfo of the file. null if the file does not exist.
    * @throws IOException
    */
-  public synchronized ClientFileInfo getFileStatus(int fileId, TachyonURI path,
+  public ClientFileInfo getFileStatus(int fileId, TachyonURI path,
       boolean useCachedMetadata) throws IOException {
     if (fileId != -1) {
       return getFileStatus(mIdToClientFileInfo, Integer.valueOf(fileId), fileId,
@@ -625,11 +796,43 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the ClientFileInfo of the file. null if the file does not exist.
    * @throws IOException
    */
-  public synchronized ClientFileInfo getFileStatus(int fileId, boolean useCachedMetadata)
+  public ClientFileInfo getFileStatus(int fileId, boolean useCachedMetadata)
       throws IOException {
     return getFileStatus(fileId, TachyonURI.EMPTY_URI, useCachedMetadata);
   }
 
+  /**
+   * Get the ClientFileInfo objects of many paths in one call to the master, and cache them.
+   *
+   * @param paths the paths of the files or folders
+   * @return the ClientFileInfos, in the order of the paths. The ClientFileInfo of a path which
+   *         does not exist is null.
+   * @throws IOException
+   */
+  public List<ClientFileInfo> getFileStatuses(List<TachyonURI> paths) throws IOException {
+    final List<String> pathList = toPathList(paths);
+    List<ClientFileInfo> infos = callMaster(new MasterCall<List<ClientFileInfo>>() {
+      @Override
+      public List<ClientFileInfo> call(MasterClient masterClient) throws IOException {
+        return masterClient.getFileStatuses(pathList);
+      }
+    });
+
+    List<ClientFileInfo> ret = new ArrayList<ClientFileInfo>(infos.size());
+    for (int k = 0; k < infos.size(); k ++) {
+      ClientFileInfo info = infos.get(k);
+      if (info.getId() == -1) {
+        mPathToClientFileInfo.invalidate(pathList.get(k));
+        ret.add(null);
+      } else {
+        mIdToClientFileInfo.put(info.getId(), info);
+        mPathToClientFileInfo.put(info.getPath(), info);
+        ret.add(info);
+      }
+    }
+    return ret;
+  }
+
   /**
    * Get block's temporary path from worker with initial space allocated.
    *
@@ -638,7 +841,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the temporary path of the block file
    * @throws IOException
    */
-  public synchronized String getLocalBlockTemporaryPath(long blockId, long initialBytes)
+  public String getLocalBlockTemporaryPath(long blockId, long initialBytes)
       throws IOException {
     String blockPath = mWorkerClient.requestBlockLocation(blockId, initialBytes);
     // TODO: Handle this in the worker?
@@ -653,8 +856,13 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the RawTable
    * @throws IOException
    */
-  public synchronized RawTable getRawTable(int id) throws IOException {
-    ClientRawTableInfo clientRawTableInfo = mMasterClient.user_getClientRawTableInfo(id, "");
+  public RawTable getRawTable(final int id) throws IOException {
+    ClientRawTableInfo clientRawTableInfo = callMaster(new MasterCall<ClientRawTableInfo>() {
+      @Override
+      public ClientRawTableInfo call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getClientRawTableInfo(id, "");
+      }
+    });
     return new RawTable(this, clientRawTableInfo);
   }
 
@@ -665,10 +873,14 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the RawTable
    * @throws IOException
    */
-  public synchronized RawTable getRawTable(TachyonURI path) throws IOException {
+  public RawTable getRawTable(final TachyonURI path) throws IOException {
     validateUri(path);
-    ClientRawTableInfo clientRawTableInfo =
-        mMasterClient.user_getClientRawTableInfo(-1, path.getPath());
+    ClientRawTableInfo clientRawTableInfo = callMaster(new MasterCall<ClientRawTableInfo>() {
+      @Override
+      public ClientRawTableInfo call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getClientRawTableInfo(-1, path.getPath());
+      }
+    });
     return new RawTable(this, clientRawTableInfo);
   }
 
@@ -676,15 +888,20 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the address of the UnderFileSystem
    * @throws IOException
    */
-  public synchronized String getUfsAddress() throws IOException {
-    return mMasterClient.user_getUfsAddress();
+  public String getUfsAddress() throws IOException {
+    return callMaster(new MasterCall<String>() {
+      @Override
+      public String call(MasterClient masterClient) throws IOException {
+        return masterClient.user_getUfsAddress();
+      }
+    });
   }
 
   /**
    * @return URI of the root of the filesystem
    */
   @Override
-  public synchronized TachyonURI getUri() {
+  public TachyonURI getUri() {
     return mRootUri;
   }
 
@@ -702,22 +919,39 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return get the total number of bytes used in Tachyon cluster
    * @throws IOException
    */
-  public synchronized long getUsedBytes() throws IOException {
-    return mMasterClient.getUsedBytes();
+  public long getUsedBytes() throws IOException {
+    return callMaster(new MasterCall<Long>() {
+      @Override
+      public Long call(MasterClient masterClient) throws IOException {
+        return masterClient.getUsedBytes();
+      }
+    });
   }
 
   /**
    * @return get the capacity of Tachyon cluster
    * @throws IOException
    */
-  public synchronized long getCapacityBytes() throws IOException {
-    return mMasterClient.getCapacityBytes();
+  public long getCapacityBytes() throws IOException {
+    return callMaster(new MasterCall<Long>() {
+      @Override
+      public Long call(MasterClient masterClient) throws IOException {
+        return masterClient.getCapacityBytes();
+      }
+    });
+  }
+
+  /**
+   * @return the executor which reads the ranges of vectored reads
+   */
+  ExecutorService getVectoredReadExecutor() {
+    return mVectoredReadExecutor;
   }
 
   /**
    * @return The address of the data server on the worker.
    */
-  public synchronized InetSocketAddress getWorkerDataServerAddress() {
+  public InetSocketAddress getWorkerDataServerAddress() {
     return mWorkerClient.getDataServerAddress();
   }
 
@@ -725,15 +959,20 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return all the works' info
    * @throws IOException
    */
-  public synchronized List<ClientWorkerInfo> getWorkersInfo() throws IOException {
-    return mMasterClient.getWorkersInfo();
+  public List<ClientWorkerInfo> getWorkersInfo() throws IOException {
+    return callMaster(new MasterCall<List<ClientWorkerInfo>>() {
+      @Override
+      public List<ClientWorkerInfo> call(MasterClient masterClient) throws IOException {
+        return masterClient.getWorkersInfo();
+      }
+    });
   }
 
   /**
    * @return true if there is a local worker, false otherwise
    * @throws IOException
    */
-  public synchronized boolean hasLocalWorker() throws IOException {
+  public boolean hasLocalWorker() throws IOException {
     return mWorkerClient.isLocal();
   }
 
@@ -742,7 +981,7 @@ public class TachyonFS extends AbstractTachyonFS {
    *
    * @return true if this client is connected to master, false otherwise
    */
-  public synchronized boolean isConnected() {
+  public boolean isConnected() {
     return mMasterClient.isConnected();
   }
 
@@ -752,8 +991,8 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param fid the file id
    * @return true if the file is a directory, false otherwise
    */
-  synchronized boolean isDirectory(int fid) {
-    return mIdToClientFileInfo.get(fid).isFolder;
+  boolean isDirectory(int fid) throws IOException {
+    return getFileStatus(fid, true).isFolder;
   }
 
   /**
@@ -765,9 +1004,53 @@ public class TachyonFS extends AbstractTachyonFS {
    * @throws IOException
    */
   @Override
-  public synchronized List<ClientFileInfo> listStatus(TachyonURI path) throws IOException {
+  public List<ClientFileInfo> listStatus(final TachyonURI path) throws IOException {
     validateUri(path);
-    return mMasterClient.listStatus(path.getPath());
+    return callMaster(new MasterCall<List<ClientFileInfo>>() {
+      @Override
+      public List<ClientFileInfo> call(MasterClient masterClient) throws IOException {
+        return masterClient.listStatus(path.getPath());
+      }
+    });
+  }
+
+  /**
+   * Iterate over the entries of a directory, getting them from the master a page at a time, so
+   * that the entries of a large directory are not all held in memory at once. The entries are
+   * listed in depth-first order, with the children of each directory sorted by name. If the
+   * <code>path</code> is a file, its ClientFileInfo is the only entry.
+   *
+   * @param path the target directory/file path
+   * @param recursive if true, the entries of each sub-directory are listed right after it
+   * @return the iterator over the entries
+   * @throws IOException
+   */
+  public FileInfoIterator listStatusIterator(TachyonURI path, boolean recursive)
+      throws IOException {
+    validateUri(path);
+    return new FileInfoIterator(this, path.getPath(), recursive,
+        mTachyonConf.getInt(Constants.USER_LIST_STATUS_PAGE_SIZE, 1000));
+  }
+
+  /**
+   * Get a page of the entries of a directory, see {@link #listStatusIterator(TachyonURI, boolean)}.
+   *
+   * @param path the path of the directory
+   * @param startAfter the path of the entry to start after, or the empty string to start from
+   *        the first entry
+   * @param limit the maximum number of entries to return
+   * @param recursive if true, list the sub-directories too
+   * @return the entries, at most limit of them
+   * @throws IOException
+   */
+  List<ClientFileInfo> listStatusPage(final String path, final String startAfter, final int limit,
+      final boolean recursive) throws IOException {
+    return callMaster(new MasterCall<List<ClientFileInfo>>() {
+      @Override
+      public List<ClientFileInfo> call(MasterClient masterClient) throws IOException {
+        return masterClient.listStatusPage(path, startAfter, limit, recursive);
+      }
+    });
   }
 
   /**
@@ -779,29 +1062,37 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the path of the block file locked
    * @throws IOException
    */
-  synchronized String lockBlock(long blockId, int blockLockId) throws IOException {
+  String lockBlock(long blockId, int blockLockId) throws IOException {
     if (blockId <= 0 || blockLockId < 0) {
       return null;
     }
 
-    if (mLockedBlockIds.containsKey(blockId)) {
-      mLockedBlockIds.get(blockId).add(blockLockId);
-      return mLockedBlockIdToPath.get(blockId);
-    }
+    Lock stripe = mBlockLockStripes.get(blockId);
+    stripe.lock();
+    try {
+      if (mLockedBlockIds.containsKey(blockId)) {
+        mLockedBlockIds.get(blockId).add(blockLockId);
+        return mLockedBlockIdToPath.get(blockId);
+      }
 
-    if (!mWorkerClient.isLocal()) {
+      if (!mWorkerClient.isLocal()) {
+        return null;
+      }
+      String blockPath = mWorkerClient.lockBlock(blockId);
+
+      if (blockPath != null) {
+        Set<Integer> lockIds = new HashSet<Integer>(4);
+        lockIds.add(blockLockId);
+        mLockedBlockIdToPath.put(blockId, blockPath);
+        mLockedBlockIds.put(blockId, lockIds);
+        return blockPath;
+      }
+      // The worker no longer has the block, an idle mapping of it must not keep its memory
+      mBlockMmapCache.invalidate(blockId);
       return null;
+    } finally {
+      stripe.unlock();
     }
-    String blockPath = mWorkerClient.lockBlock(blockId);
-
-    if (blockPath != null) {
-      Set<Integer> lockIds = new HashSet<Integer>(4);
-      lockIds.add(blockLockId);
-      mLockedBlockIds.put(blockId, lockIds);
-      mLockedBlockIdToPath.put(blockId, blockPath);
-      return blockPath;
-    }
-    return null;
   }
 
   /**
@@ -813,13 +1104,18 @@ public class TachyonFS extends AbstractTachyonFS {
    * @throws IOException
    */
   @Override
-  public synchronized boolean mkdirs(TachyonURI path, boolean recursive) throws IOException {
+  public boolean mkdirs(final TachyonURI path, final boolean recursive) throws IOException {
     validateUri(path);
-    return mMasterClient.user_mkdirs(path.getPath(), recursive);
+    return callMaster(new MasterCall<Boolean>() {
+      @Override
+      public Boolean call(MasterClient masterClient) throws IOException {
+        return masterClient.user_mkdirs(path.getPath(), recursive);
+      }
+    });
   }
 
   /** Alias for setPinned(fid, true). */
-  public synchronized void pinFile(int fid) throws IOException {
+  public void pinFile(int fid) throws IOException {
     setPinned(fid, true);
   }
 
@@ -835,10 +1131,15 @@ public class TachyonFS extends AbstractTachyonFS {
    * @throws IOException
    */
   @Override
-  public synchronized boolean freepath(int fileId, TachyonURI path, boolean recursive)
+  public boolean freepath(final int fileId, final TachyonURI path, final boolean recursive)
       throws IOException {
     validateUri(path);
-    return mMasterClient.user_freepath(fileId, path.getPath(), recursive);
+    return callMaster(new MasterCall<Boolean>() {
+      @Override
+      public Boolean call(MasterClient masterClient) throws IOException {
+        return masterClient.user_freepath(fileId, path.getPath(), recursive);
+      }
+    });
   }
 
   /**
@@ -848,7 +1149,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return true if success, false otherwise
    * @throws IOException
    */
-  public synchronized boolean promoteBlock(long blockId) throws IOException {
+  public boolean promoteBlock(long blockId) throws IOException {
     if (mWorkerClient.isLocal()) {
       return mWorkerClient.promoteBlock(blockId);
     }
@@ -866,11 +1167,16 @@ public class TachyonFS extends AbstractTachyonFS {
    * @throws IOException
    */
   @Override
-  public synchronized boolean rename(int fileId, TachyonURI srcPath, TachyonURI dstPath)
+  public boolean rename(final int fileId, final TachyonURI srcPath, final TachyonURI dstPath)
       throws IOException {
     validateUri(srcPath);
     validateUri(dstPath);
-    return mMasterClient.user_rename(fileId, srcPath.getPath(), dstPath.getPath());
+    return callMaster(new MasterCall<Boolean>() {
+      @Override
+      public Boolean call(MasterClient masterClient) throws IOException {
+        return masterClient.user_rename(fileId, srcPath.getPath(), dstPath.getPath());
+      }
+    });
   }
 
   /**
@@ -879,8 +1185,14 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param fileId the lost file id
    * @throws IOException
    */
-  public synchronized void reportLostFile(int fileId) throws IOException {
-    mMasterClient.user_reportLostFile(fileId);
+  public void reportLostFile(final int fileId) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_reportLostFile(fileId);
+        return null;
+      }
+    });
   }
 
   /**
@@ -889,8 +1201,14 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param depId the dependency id
    * @throws IOException
    */
-  public synchronized void requestFilesInDependency(int depId) throws IOException {
-    mMasterClient.user_requestFilesInDependency(depId);
+  public void requestFilesInDependency(final int depId) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_requestFilesInDependency(depId);
+        return null;
+      }
+    });
   }
 
   /**
@@ -901,7 +1219,7 @@ public class TachyonFS extends AbstractTachyonFS {
    * @return the size bytes that allocated to the block, -1 if no local worker exists
    * @throws IOException
    */
-  public synchronized long requestSpace(long blockId, long requestSpaceBytes) throws IOException {
+  public long requestSpace(long blockId, long requestSpaceBytes) throws IOException {
     if (!hasLocalWorker()) {
       return -1;
     }
@@ -925,8 +1243,14 @@ public class TachyonFS extends AbstractTachyonFS {
    * Calling setPinned() on a folder will recursively set the "pinned" flag on all of that folder's
    * children. This may be an expensive operation for folders with many files/subfolders.
    */
-  public synchronized void setPinned(int fid, boolean pinned) throws IOException {
-    mMasterClient.user_setPinned(fid, pinned);
+  public void setPinned(final int fid, final boolean pinned) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_setPinned(fid, pinned);
+        return null;
+      }
+    });
   }
 
   /**
@@ -946,31 +1270,38 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param blockLockId The block lock id of the block of unlock. <code>blockLockId</code> must be
    *        non-negative.
    */
-  synchronized boolean unlockBlock(long blockId, int blockLockId) throws IOException {
+  boolean unlockBlock(long blockId, int blockLockId) throws IOException {
     if (blockId <= 0 || blockLockId < 0) {
       return false;
     }
 
-    if (!mLockedBlockIds.containsKey(blockId)) {
-      return true;
-    }
-    Set<Integer> lockIds = mLockedBlockIds.get(blockId);
-    lockIds.remove(blockLockId);
-    if (!lockIds.isEmpty()) {
-      return true;
-    }
+    Lock stripe = mBlockLockStripes.get(blockId);
+    stripe.lock();
+    try {
+      if (!mLockedBlockIds.containsKey(blockId)) {
+        return true;
+      }
+      Set<Integer> lockIds = mLockedBlockIds.get(blockId);
+      lockIds.remove(blockLockId);
+      if (!lockIds.isEmpty()) {
+        return true;
+      }
 
-    if (!mWorkerClient.isLocal()) {
-      return false;
-    }
+      if (!mWorkerClient.isLocal()) {
+        return false;
+      }
 
-    mLockedBlockIdToPath.remove(blockId);
-    mLockedBlockIds.remove(blockId);
-    return mWorkerClient.unlockBlock(blockId);
+      mLockedBlockIds.remove(blockId);
+      mLockedBlockIdToPath.remove(blockId);
+      // The mapping of the block stays cached while idle, the next lock of the block revalidates it
+      return mWorkerClient.unlockBlock(blockId);
+    } finally {
+      stripe.unlock();
+    }
   }
 
   /** Alias for setPinned(fid, false). */
-  public synchronized void unpinFile(int fid) throws IOException {
+  public void unpinFile(int fid) throws IOException {
     setPinned(fid, false);
   }
 
@@ -981,8 +1312,29 @@ public class TachyonFS extends AbstractTachyonFS {
    * @param metadata the new meta data
    * @throws IOException
    */
-  public synchronized void updateRawTableMetadata(int id, ByteBuffer metadata) throws IOException {
-    mMasterClient.user_updateRawTableMetadata(id, metadata);
+  public void updateRawTableMetadata(final int id, final ByteBuffer metadata) throws IOException {
+    callMaster(new MasterCall<Void>() {
+      @Override
+      public Void call(MasterClient masterClient) throws IOException {
+        masterClient.user_updateRawTableMetadata(id, metadata);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Validates the given uris and returns their paths.
+   *
+   * @param uris The uris to validate
+   * @return the paths of the uris, in the same order
+   */
+  private List<String> toPathList(List<TachyonURI> uris) throws IOException {
+    List<String> ret = new ArrayList<String>(uris.size());
+    for (TachyonURI uri : uris) {
+      validateUri(uri);
+      ret.add(uri.getPath());
+    }
+    return ret;
   }
 
   /**
@@ -18,17 +18,13 @@ package tachyon.client;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.io.Closer;
-
 import tachyon.Constants;
 import tachyon.TachyonURI;
 import tachyon.conf.TachyonConf;
@@ -407,38 +403,22 @@ public class TachyonFile implements Comparable<TachyonFile> {
     String localFileName = mTachyonFS.lockBlock(blockId, blockLockId);
 
     if (localFileName != null) {
-      Closer closer = Closer.create();
+      BlockMmapCache mmapCache = mTachyonFS.getBlockMmapCache();
       try {
-        RandomAccessFile localFile = closer.register(new RandomAccessFile(localFileName, "r"));
-
-        long fileLength = localFile.length();
-        String error = null;
-        if (offset > fileLength) {
-          error = String.format("Offset(%d) is larger than file length(%d)", offset, fileLength);
-        }
-        if (error == null && len != -1 && offset + len > fileLength) {
-          error =
-              String.format("Offset(%d) plus length(%d) is larger than file length(%d)", offset,
-                  len, fileLength);
-        }
-        if (error != null) {
-          throw new IOException(error);
+        BlockMmapCache.Mapping mapping = mmapCache.acquire(blockId, localFileName);
+        ByteBuffer buf;
+        try {
+          buf = BlockMmapCache.slice(mapping, offset, len);
+          mTachyonFS.accessLocalBlock(blockId);
+        } catch (IOException e) {
+          mmapCache.release(mapping);
+          throw e;
         }
-
-        if (len == -1) {
-          len = fileLength - offset;
-        }
-
-        FileChannel localFileChannel = closer.register(localFile.getChannel());
-        final ByteBuffer buf = localFileChannel.map(FileChannel.MapMode.READ_ONLY, offset, len);
-        mTachyonFS.accessLocalBlock(blockId);
-        return new TachyonByteBuffer(mTachyonFS, buf, blockId, blockLockId);
+        return new TachyonByteBuffer(mTachyonFS, buf, blockId, blockLockId, mmapCache, mapping);
       } catch (FileNotFoundException e) {
         LOG.info(localFileName + " is not on local disk.");
       } catch (IOException e) {
         LOG.warn("Failed to read local file " + localFileName + " because:", e);
-      } finally {
-        closer.close();
       }
     }
 
@@ -16,7 +16,10 @@
 package tachyon.client.netty;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,11 +29,15 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
 import tachyon.Constants;
+import tachyon.network.protocol.RPCBlockReadResponse;
 import tachyon.network.protocol.RPCMessage;
 import tachyon.network.protocol.RPCResponse;
 
 /**
- * This handles all the messages received by the client channel.
+ * This handles all the messages received by the client channel. Each channel has its own handler,
+ * since the channels are kept open and reused across requests. A block read response is received
+ * by the listener of its request id if there is one, so several reads can be in flight on the
+ * channel, and by the other listeners otherwise.
  */
 @ChannelHandler.Sharable
 public final class ClientHandler extends SimpleChannelInboundHandler<RPCMessage> {
@@ -42,12 +49,17 @@ public final class ClientHandler extends SimpleChannelInboundHandler<RPCMessage>
   public interface ResponseListener {
     /** This method will be called when a message is received on the client. */
     void onResponseReceived(RPCResponse response);
+
+    /** This method will be called when the channel is closed. */
+    void onChannelClosed();
   }
 
-  private final HashSet<ResponseListener> mListeners;
+  private final Set<ResponseListener> mListeners;
+  private final ConcurrentMap<Long, ResponseListener> mRequestListeners;
 
   public ClientHandler() {
-    mListeners = new HashSet<ResponseListener>(4);
+    mListeners = new CopyOnWriteArraySet<ResponseListener>();
+    mRequestListeners = new ConcurrentHashMap<Long, ResponseListener>();
   }
 
   public void addListener(ResponseListener listener) {
@@ -58,6 +70,20 @@ public final class ClientHandler extends SimpleChannelInboundHandler<RPCMessage>
     mListeners.remove(listener);
   }
 
+  /**
+   * Add a listener for the response of a block read request only.
+   *
+   * @param requestId the id of the request
+   * @param listener the listener
+   */
+  public void addRequestListener(long requestId, ResponseListener listener) {
+    mRequestListeners.put(requestId, listener);
+  }
+
+  public void removeRequestListener(long requestId) {
+    mRequestListeners.remove(requestId);
+  }
+
   @Override
   public void channelRead0(final ChannelHandlerContext ctx, final RPCMessage msg)
       throws IOException {
@@ -70,6 +96,17 @@ public final class ClientHandler extends SimpleChannelInboundHandler<RPCMessage>
     }
   }
 
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    for (ResponseListener listener : mListeners) {
+      listener.onChannelClosed();
+    }
+    for (ResponseListener listener : mRequestListeners.values()) {
+      listener.onChannelClosed();
+    }
+    super.channelInactive(ctx);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
     LOG.warn("Exception thrown while processing request", cause);
@@ -78,6 +115,22 @@ public final class ClientHandler extends SimpleChannelInboundHandler<RPCMessage>
 
   private void handleResponse(final ChannelHandlerContext ctx, final RPCResponse resp)
       throws IOException {
+    if (resp instanceof RPCBlockReadResponse) {
+      RPCBlockReadResponse readResponse = (RPCBlockReadResponse) resp;
+      ResponseListener listener = mRequestListeners.get(readResponse.getRequestId());
+      if (listener != null) {
+        listener.onResponseReceived(resp);
+        return;
+      }
+      if (mListeners.isEmpty()) {
+        // The request was abandoned, so nobody will release the payload.
+        LOG.warn("Dropping response without a listener: " + resp);
+        if (readResponse.getPayloadDataBuffer() != null) {
+          readResponse.getPayloadDataBuffer().release();
+        }
+        return;
+      }
+    }
     for (ResponseListener listener : mListeners) {
       listener.onResponseReceived(resp);
     }
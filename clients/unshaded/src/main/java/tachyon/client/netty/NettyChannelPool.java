@@ -0,0 +1,109 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client.netty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import tachyon.Constants;
+
+/**
+ * A pool of the connections of the Netty client, keyed by the address of the data server. A
+ * channel is used by one request at a time: it is acquired before sending the request, and
+ * released once the response is received so that later requests to the same server skip the TCP
+ * handshake. Channels closed by the server are dropped when they are acquired.
+ */
+public final class NettyChannelPool {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+
+  private final Bootstrap mBootstrap;
+  private final int mMaxIdlePerAddress;
+  /** The idle channels of each address, each queue bounded by mMaxIdlePerAddress. */
+  private final ConcurrentMap<InetSocketAddress, BlockingQueue<Channel>> mIdleChannels =
+      new ConcurrentHashMap<InetSocketAddress, BlockingQueue<Channel>>();
+
+  /**
+   * @param bootstrap the bootstrap to connect new channels with
+   * @param maxIdlePerAddress the maximum number of idle channels kept open to each address
+   */
+  public NettyChannelPool(Bootstrap bootstrap, int maxIdlePerAddress) {
+    mBootstrap = bootstrap;
+    mMaxIdlePerAddress = maxIdlePerAddress;
+  }
+
+  /**
+   * Get an idle channel connected to the address, or connect a new one if there is none.
+   *
+   * @param address the address of the data server
+   * @return the channel, to pass to {@link #release(InetSocketAddress, Channel)} after use
+   * @throws IOException if the connection fails
+   */
+  public Channel acquire(InetSocketAddress address) throws IOException {
+    BlockingQueue<Channel> idleChannels = mIdleChannels.get(address);
+    if (idleChannels != null) {
+      Channel channel;
+      while ((channel = idleChannels.poll()) != null) {
+        if (channel.isActive()) {
+          return channel;
+        }
+        channel.close();
+      }
+    }
+
+    ChannelFuture f = mBootstrap.connect(address).awaitUninterruptibly();
+    if (!f.isSuccess()) {
+      throw new IOException("Failed to connect to remote machine " + address, f.cause());
+    }
+    LOG.info("Connected to remote machine " + address);
+    return f.channel();
+  }
+
+  /**
+   * Return a channel to the pool. The channel is closed if it is not active anymore or if the pool
+   * of the address is full.
+   *
+   * @param address the address the channel was acquired for
+   * @param channel the channel, which must not be used by the caller anymore
+   */
+  public void release(InetSocketAddress address, Channel channel) {
+    if (!channel.isActive() || mMaxIdlePerAddress <= 0) {
+      channel.close();
+      return;
+    }
+    BlockingQueue<Channel> idleChannels = mIdleChannels.get(address);
+    if (idleChannels == null) {
+      BlockingQueue<Channel> newChannels = new LinkedBlockingQueue<Channel>(mMaxIdlePerAddress);
+      idleChannels = mIdleChannels.putIfAbsent(address, newChannels);
+      if (idleChannels == null) {
+        idleChannels = newChannels;
+      }
+    }
+    if (!idleChannels.offer(channel)) {
+      channel.close();
+    }
+  }
+}
@@ -15,11 +15,21 @@
 
 package tachyon.client.netty;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
@@ -33,6 +43,8 @@ import tachyon.util.network.NettyUtils;
 import tachyon.network.protocol.RPCMessage;
 import tachyon.network.protocol.RPCMessageDecoder;
 import tachyon.network.protocol.RPCMessageEncoder;
+import tachyon.network.protocol.RPCRequest;
+import tachyon.network.protocol.RPCResponse;
 
 /**
  * Shared configuration and methods for the Netty client.
@@ -59,13 +71,33 @@ public final class NettyClient {
   public static final long TIMEOUT_MS =
       TACHYON_CONF.getInt(Constants.USER_NETTY_TIMEOUT_MS, 3000);
 
+  // Reuse the connections to the data servers for all clients.
+  private static final NettyChannelPool CHANNEL_POOL = new NettyChannelPool(
+      createClientBootstrap(), TACHYON_CONF.getInt(Constants.USER_NETTY_CHANNEL_POOL_MAX_IDLE, 8));
+
+  private static final AtomicLong NEXT_REQUEST_ID = new AtomicLong(0);
+
+  /**
+   * @return the pool of the connections to the data servers
+   */
+  static NettyChannelPool getChannelPool() {
+    return CHANNEL_POOL;
+  }
+
   /**
-   * Creates and returns a new Netty client bootstrap for clients to connect to remote servers.
+   * @return a new id for a block read request, unique in this client
+   */
+  static long nextRequestId() {
+    return NEXT_REQUEST_ID.incrementAndGet();
+  }
+
+  /**
+   * Creates and returns a new Netty client bootstrap for clients to connect to remote servers. Each
+   * new channel gets its own {@link ClientHandler}.
    *
-   * @param handler the handler that should be added to new channel pipelines
    * @return the new client {@link Bootstrap}
    */
-  public static Bootstrap createClientBootstrap(final ClientHandler handler) {
+  public static Bootstrap createClientBootstrap() {
     final Bootstrap boot = new Bootstrap();
 
     boot.group(WORKER_GROUP).channel(CLIENT_CHANNEL_CLASS);
@@ -81,10 +113,59 @@ public final class NettyClient {
         pipeline.addLast(RPCMessage.createFrameDecoder());
         pipeline.addLast(ENCODER);
         pipeline.addLast(DECODER);
-        pipeline.addLast(handler);
+        pipeline.addLast(new ClientHandler());
       }
     });
 
     return boot;
   }
+
+  /**
+   * Sends a request to a data server on a pooled connection, and waits for its response. The
+   * connection is returned to the pool if the response is received, and closed otherwise.
+   *
+   * @param address the address of the data server
+   * @param request the request to send
+   * @return the response of the server
+   * @throws ClosedChannelException if the connection is closed before the response is received,
+   *         for instance because the server closed it while it was idle in the pool
+   * @throws IOException if the connection fails, or no response is received in time
+   */
+  public static RPCResponse call(InetSocketAddress address, RPCRequest request)
+      throws IOException {
+    Channel channel = CHANNEL_POOL.acquire(address);
+    ClientHandler handler = channel.pipeline().get(ClientHandler.class);
+    SingleResponseListener listener = new SingleResponseListener();
+    handler.addListener(listener);
+    boolean received = false;
+    try {
+      if (!channel.isActive()) {
+        // Closed before the listener was added, so it would not be notified.
+        throw new ClosedChannelException();
+      }
+      channel.writeAndFlush(request).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+      RPCResponse response = listener.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      received = true;
+      return response;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (TimeoutException e) {
+      throw new IOException("No response to " + request + " from " + address + " in "
+          + TIMEOUT_MS + " ms", e);
+    } finally {
+      handler.removeListener(listener);
+      if (received) {
+        CHANNEL_POOL.release(address, channel);
+      } else {
+        // A late response must not be received by the next request on the channel.
+        channel.close();
+      }
+    }
+  }
 }
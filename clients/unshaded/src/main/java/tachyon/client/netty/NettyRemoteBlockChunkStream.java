@@ -0,0 +1,186 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client.netty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+
+import tachyon.client.RemoteBlockChunkStream;
+import tachyon.network.protocol.RPCBlockReadRequest;
+import tachyon.network.protocol.RPCBlockReadResponse;
+import tachyon.network.protocol.RPCErrorResponse;
+import tachyon.network.protocol.RPCMessage;
+import tachyon.network.protocol.RPCResponse;
+
+/**
+ * Streams a range of a block from a data server with Netty. Each chunk is read by its own block
+ * read request, and up to a window of requests are sent ahead on one pooled connection. The data
+ * server answers them in order, so it keeps sending chunks while the client reads the previous
+ * ones, and the window bounds the data buffered by the client.
+ */
+final class NettyRemoteBlockChunkStream implements RemoteBlockChunkStream {
+  /** A request in flight, and the listener of its response. */
+  private static final class PendingChunk {
+    private final long mRequestId;
+    private final SingleResponseListener mListener = new SingleResponseListener();
+
+    PendingChunk(long requestId) {
+      mRequestId = requestId;
+    }
+  }
+
+  private final InetSocketAddress mAddress;
+  private final long mBlockId;
+  private final long mEndPos;
+  private final long mChunkSize;
+  private final int mWindow;
+  private final Channel mChannel;
+  private final ClientHandler mHandler;
+  /** The requests in flight, in the order of their chunks. */
+  private final Queue<PendingChunk> mPendingChunks = new ArrayDeque<PendingChunk>();
+  /** The position in the block of the next chunk to request. */
+  private long mNextRequestPos;
+  /** The response of the chunk being read, released when the next chunk is read. */
+  private RPCBlockReadResponse mCurrentResponse = null;
+  /** True once a chunk failed, so the channel may still receive responses and cannot be reused. */
+  private boolean mFailed = false;
+
+  NettyRemoteBlockChunkStream(InetSocketAddress address, long blockId, long offset, long length,
+      long chunkSize, int window) throws IOException {
+    if (chunkSize <= 0 || window <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or window "
+          + window);
+    }
+    mAddress = address;
+    mBlockId = blockId;
+    mEndPos = offset + length;
+    mChunkSize = chunkSize;
+    mWindow = window;
+    mNextRequestPos = offset;
+    mChannel = NettyClient.getChannelPool().acquire(address);
+    mHandler = mChannel.pipeline().get(ClientHandler.class);
+    requestChunks();
+  }
+
+  @Override
+  public ByteBuffer nextChunk() throws IOException {
+    releaseCurrentResponse();
+    PendingChunk chunk = mPendingChunks.poll();
+    if (chunk == null) {
+      return null;
+    }
+
+    RPCResponse response;
+    try {
+      response = chunk.mListener.get(NettyClient.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      mFailed = true;
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      mFailed = true;
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (TimeoutException e) {
+      mFailed = true;
+      throw new IOException("No response to request " + chunk.mRequestId + " for block "
+          + mBlockId + " from " + mAddress + " in " + NettyClient.TIMEOUT_MS + " ms", e);
+    } finally {
+      mHandler.removeRequestListener(chunk.mRequestId);
+    }
+
+    switch (response.getType()) {
+      case RPC_BLOCK_READ_RESPONSE:
+        RPCBlockReadResponse blockResponse = (RPCBlockReadResponse) response;
+        if (blockResponse.getStatus() != RPCResponse.Status.SUCCESS) {
+          mFailed = true;
+          throw new IOException(blockResponse.getStatus().getMessage() + " response: "
+              + blockResponse);
+        }
+        mCurrentResponse = blockResponse;
+        requestChunks();
+        return blockResponse.getPayloadDataBuffer().getReadOnlyByteBuffer();
+      case RPC_ERROR_RESPONSE:
+        mFailed = true;
+        RPCErrorResponse error = (RPCErrorResponse) response;
+        throw new IOException(error.getStatus().getMessage());
+      default:
+        mFailed = true;
+        throw new IOException("Unexpected response message type: " + response.getType()
+            + " (expected: " + RPCMessage.Type.RPC_BLOCK_READ_RESPONSE + ")");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    releaseCurrentResponse();
+    if (mFailed || !mPendingChunks.isEmpty()) {
+      // Responses may still arrive, and must not be received by the next user of the channel.
+      for (PendingChunk chunk : mPendingChunks) {
+        mHandler.removeRequestListener(chunk.mRequestId);
+      }
+      mPendingChunks.clear();
+      mChannel.close();
+    } else {
+      NettyClient.getChannelPool().release(mAddress, mChannel);
+    }
+  }
+
+  /**
+   * Send the requests of the next chunks, until the window is full or the range is requested.
+   */
+  private void requestChunks() {
+    boolean sent = false;
+    while (mPendingChunks.size() < mWindow && mNextRequestPos < mEndPos) {
+      long length = Math.min(mChunkSize, mEndPos - mNextRequestPos);
+      PendingChunk chunk = new PendingChunk(NettyClient.nextRequestId());
+      mHandler.addRequestListener(chunk.mRequestId, chunk.mListener);
+      mPendingChunks.add(chunk);
+      mChannel.write(new RPCBlockReadRequest(mBlockId, mNextRequestPos, length, chunk.mRequestId))
+          .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+      mNextRequestPos += length;
+      sent = true;
+    }
+    if (sent) {
+      mChannel.flush();
+      if (!mChannel.isActive()) {
+        // The channel may have closed before the new listeners were added, so they would not be
+        // notified. Failing a request whose response was already received has no effect.
+        for (PendingChunk chunk : mPendingChunks) {
+          chunk.mListener.onChannelClosed();
+        }
+      }
+    }
+  }
+
+  private void releaseCurrentResponse() {
+    if (mCurrentResponse != null) {
+      mCurrentResponse.getPayloadDataBuffer().release();
+      mCurrentResponse = null;
+    }
+  }
+}
@@ -18,16 +18,13 @@ package tachyon.client.netty;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.concurrent.TimeUnit;
+import java.nio.channels.ClosedChannelException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-
 import tachyon.Constants;
+import tachyon.client.RemoteBlockChunkStream;
 import tachyon.client.RemoteBlockReader;
 import tachyon.network.protocol.RPCBlockReadRequest;
 import tachyon.network.protocol.RPCBlockReadResponse;
@@ -36,43 +33,46 @@ import tachyon.network.protocol.RPCMessage;
 import tachyon.network.protocol.RPCResponse;
 
 /**
- * Read data from remote data server using Netty.
+ * Read data from remote data server using Netty. The connections to the data servers are pooled by
+ * {@link NettyClient}, so reading a block does not connect to the server each time.
  */
 public final class NettyRemoteBlockReader implements RemoteBlockReader {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
 
-  private final Bootstrap mClientBootstrap;
-  private final ClientHandler mHandler;
   /** A reference to read response so we can explicitly release the resource after reading.*/
   private RPCBlockReadResponse mReadResponse = null;
 
-  // TODO: Creating a new remote block reader may be expensive, so consider a connection pool.
-  public NettyRemoteBlockReader() {
-    mHandler = new ClientHandler();
-    mClientBootstrap = NettyClient.createClientBootstrap(mHandler);
-  }
+  public NettyRemoteBlockReader() {}
 
   @Override
   public ByteBuffer readRemoteBlock(String host, int port, long blockId, long offset, long length)
       throws IOException {
     InetSocketAddress address = new InetSocketAddress(host, port);
+    long requestId = NettyClient.nextRequestId();
+    RPCBlockReadRequest request = new RPCBlockReadRequest(blockId, offset, length, requestId);
 
     try {
-      ChannelFuture f = mClientBootstrap.connect(address).sync();
-
-      LOG.info("Connected to remote machine " + address);
-      Channel channel = f.channel();
-      SingleResponseListener listener = new SingleResponseListener();
-      mHandler.addListener(listener);
-      channel.writeAndFlush(new RPCBlockReadRequest(blockId, offset, length));
-
-      RPCResponse response = listener.get(NettyClient.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-      channel.close().sync();
+      RPCResponse response;
+      try {
+        response = NettyClient.call(address, request);
+      } catch (ClosedChannelException e) {
+        // The server may close a pooled connection at any time. Reads are idempotent, so retry
+        // once.
+        LOG.info("Connection to remote machine " + address + " closed, retrying " + request);
+        response = NettyClient.call(address, request);
+      }
 
       switch (response.getType()) {
         case RPC_BLOCK_READ_RESPONSE:
           RPCBlockReadResponse blockResponse = (RPCBlockReadResponse) response;
           LOG.info("Data " + blockId + " from remote machine " + address + " received");
+          if (blockResponse.getRequestId() != requestId) {
+            if (blockResponse.getPayloadDataBuffer() != null) {
+              blockResponse.getPayloadDataBuffer().release();
+            }
+            throw new IOException("Received the response of request " + blockResponse.getRequestId()
+                + " instead of " + requestId + ": " + blockResponse);
+          }
 
           RPCResponse.Status status = blockResponse.getStatus();
           if (status == RPCResponse.Status.SUCCESS) {
@@ -94,6 +94,13 @@ public final class NettyRemoteBlockReader implements RemoteBlockReader {
     }
   }
 
+  @Override
+  public RemoteBlockChunkStream readRemoteBlockChunks(String host, int port, long blockId,
+      long offset, long length, long chunkSize, int window) throws IOException {
+    return new NettyRemoteBlockChunkStream(new InetSocketAddress(host, port), blockId, offset,
+        length, chunkSize, window);
+  }
+
   /**
    * Release the underlying buffer of previous/current read response.
    */
@@ -17,15 +17,10 @@ package tachyon.client.netty;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-
 import tachyon.Constants;
 import tachyon.client.RemoteBlockWriter;
 import tachyon.network.protocol.RPCBlockWriteRequest;
@@ -36,14 +31,12 @@ import tachyon.network.protocol.RPCResponse;
 import tachyon.network.protocol.databuffer.DataByteArrayChannel;
 
 /**
- * Write data to a remote data server using Netty.
+ * Write data to a remote data server using Netty, on the connections pooled by
+ * {@link NettyClient}.
  */
 public final class NettyRemoteBlockWriter implements RemoteBlockWriter {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
 
-  private final Bootstrap mClientBootstrap;
-  private final ClientHandler mHandler;
-
   private boolean mOpen;
   private InetSocketAddress mAddress;
   private long mBlockId;
@@ -53,8 +46,6 @@ public final class NettyRemoteBlockWriter implements RemoteBlockWriter {
   private long mWrittenBytes;
 
   public NettyRemoteBlockWriter() {
-    mHandler = new ClientHandler();
-    mClientBootstrap = NettyClient.createClientBootstrap(mHandler);
     mOpen = false;
   }
 
@@ -80,19 +71,10 @@ public final class NettyRemoteBlockWriter implements RemoteBlockWriter {
 
   @Override
   public void write(byte[] bytes, int offset, int length) throws IOException {
-    SingleResponseListener listener = new SingleResponseListener();
     try {
-      // TODO: keep connection open across multiple write calls.
-      ChannelFuture f = mClientBootstrap.connect(mAddress).sync();
-
-      LOG.info("Connected to remote machine " + mAddress);
-      Channel channel = f.channel();
-      mHandler.addListener(listener);
-      channel.writeAndFlush(new RPCBlockWriteRequest(mUserId, mBlockId, mWrittenBytes, length,
-          new DataByteArrayChannel(bytes, offset, length)));
-
-      RPCResponse response = listener.get(NettyClient.TIMEOUT_MS, TimeUnit.MILLISECONDS);
-      channel.close().sync();
+      // Not retried if the connection closes, since the server may have appended the data.
+      RPCResponse response = NettyClient.call(mAddress, new RPCBlockWriteRequest(mUserId,
+          mBlockId, mWrittenBytes, length, new DataByteArrayChannel(bytes, offset, length)));
 
       switch (response.getType()) {
         case RPC_BLOCK_WRITE_RESPONSE:
@@ -115,8 +97,6 @@ public final class NettyRemoteBlockWriter implements RemoteBlockWriter {
       }
     } catch (Exception e) {
       throw new IOException(e);
-    } finally {
-      mHandler.removeListener(listener);
     }
   }
 }
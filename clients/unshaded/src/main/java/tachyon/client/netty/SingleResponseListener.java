@@ -15,17 +15,19 @@
 
 package tachyon.client.netty;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-
 import com.google.common.util.concurrent.SettableFuture;
 
 import tachyon.network.protocol.RPCResponse;
 
 /**
- * A simple listener that waits for a single {@link RPCResponse} message from the remote server.
+ * A simple listener that waits for a single {@link RPCResponse} message from the remote server. If
+ * the channel is closed before the response is received, waiting fails with a
+ * {@link ClosedChannelException}.
  */
 public final class SingleResponseListener implements ClientHandler.ResponseListener {
 
@@ -36,6 +38,12 @@ public final class SingleResponseListener implements ClientHandler.ResponseListe
     mResponse.set(response);
   }
 
+  @Override
+  public void onChannelClosed() {
+    // No effect if the response was already received.
+    mResponse.setException(new ClosedChannelException());
+  }
+
   /**
    * Waits to receive the response and returns the response message.
    *
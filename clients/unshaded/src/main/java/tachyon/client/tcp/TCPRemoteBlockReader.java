@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import tachyon.Constants;
+import tachyon.client.RemoteBlockChunkStream;
 import tachyon.client.RemoteBlockReader;
 import tachyon.network.protocol.RPCResponse;
 import tachyon.worker.DataServerMessage;
@@ -79,6 +80,13 @@ public final class TCPRemoteBlockReader implements RemoteBlockReader {
     }
   }
 
+  @Override
+  public RemoteBlockChunkStream readRemoteBlockChunks(String host, int port, long blockId,
+      long offset, long length, long chunkSize, int window) {
+    // Each request has its own connection, so no request can be sent ahead of a response.
+    return null;
+  }
+
   @Override
   public void close() throws IOException {
     // nothing to do for TCPRemoteBlockReader
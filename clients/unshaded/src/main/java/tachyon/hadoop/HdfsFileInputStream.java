@@ -15,6 +15,7 @@
 
 package tachyon.hadoop;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.IOException;
@@ -48,6 +49,7 @@ public class HdfsFileInputStream extends InputStream implements Seekable, Positi
   private TachyonFile mTachyonFile;
 
   private FSDataInputStream mHdfsInputStream = null;
+  private FSDataInputStream mPositionedHdfsInputStream = null;
 
   private InStream mTachyonFileInputStream = null;
 
@@ -101,6 +103,11 @@ public class HdfsFileInputStream extends InputStream implements Seekable, Positi
     if (mHdfsInputStream != null) {
       mHdfsInputStream.close();
     }
+    synchronized (this) {
+      if (mPositionedHdfsInputStream != null) {
+        mPositionedHdfsInputStream.close();
+      }
+    }
     mClosed = true;
   }
 
@@ -120,6 +127,18 @@ public class HdfsFileInputStream extends InputStream implements Seekable, Positi
     mHdfsInputStream.seek(position);
   }
 
+  /**
+   * Get the stream used for positioned reads from the under file system. It is separate from the
+   * one used for sequential reads, since that one is positioned by seeks.
+   */
+  private synchronized FSDataInputStream getPositionedHdfsInputStream() throws IOException {
+    if (mPositionedHdfsInputStream == null) {
+      FileSystem fs = mHdfsPath.getFileSystem(mHadoopConf);
+      mPositionedHdfsInputStream = fs.open(mHdfsPath, mHadoopBufferSize);
+    }
+    return mPositionedHdfsInputStream;
+  }
+
   /**
    * Return the current offset from the start of the file
    */
@@ -183,36 +202,24 @@ public class HdfsFileInputStream extends InputStream implements Seekable, Positi
    * number of bytes read. This does not change the current offset of a file, and is thread-safe.
    */
   @Override
-  public synchronized int read(long position, byte[] buffer, int offset, int length)
-      throws IOException {
+  public int read(long position, byte[] buffer, int offset, int length) throws IOException {
     if (mClosed) {
       throw new IOException("Cannot read from a closed stream.");
     }
-    int ret = -1;
-    long oldPos = getPos();
     if ((position < 0) || (position >= mTachyonFile.length())) {
-      return ret;
+      return -1;
     }
 
-    if (mTachyonFileInputStream != null) {
+    InStream tachyonFileInputStream = mTachyonFileInputStream;
+    if (tachyonFileInputStream != null) {
       try {
-        mTachyonFileInputStream.seek(position);
-        ret = mTachyonFileInputStream.read(buffer, offset, length);
-        return ret;
-      } finally {
-        mTachyonFileInputStream.seek(oldPos);
+        return tachyonFileInputStream.read(position, buffer, offset, length);
+      } catch (IOException e) {
+        LOG.error(e.getMessage(), e);
       }
     }
 
-    try {
-      getHdfsInputStream(position);
-      ret = mHdfsInputStream.read(buffer, offset, length);
-      return ret;
-    } finally {
-      if (mHdfsInputStream != null) {
-        mHdfsInputStream.seek(oldPos);
-      }
-    }
+    return getPositionedHdfsInputStream().read(position, buffer, offset, length);
   }
 
   private int readFromHdfsBuffer() throws IOException {
@@ -233,25 +240,27 @@ public class HdfsFileInputStream extends InputStream implements Seekable, Positi
   /**
    * Read a number of bytes equal to the length of the buffer, from a given position within a file.
    * This does not change the current offset of a file, and is thread-safe.
-   * <p>
-   * This method is not supported in HdfsFileInputStream and an IOException will be thrown.
-   * </p>
    */
   @Override
   public void readFully(long position, byte[] buffer) throws IOException {
-    throw new IOException("Not supported");
+    readFully(position, buffer, 0, buffer.length);
   }
 
   /**
    * Read the specified number of bytes, from a given position within a file. This does not change
    * the current offset of a file, and is thread-safe.
-   * <p>
-   * This method is not supported in HdfsFileInputStream and an IOException will be thrown.
-   * </p>
    */
   @Override
   public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
-    throw new IOException("Not supported");
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      int ret = read(position + bytesRead, buffer, offset + bytesRead, length - bytesRead);
+      if (ret < 0) {
+        throw new EOFException("Reached the end of " + mHdfsPath + " at "
+            + (position + bytesRead) + " before reading " + length + " bytes");
+      }
+      bytesRead += ret;
+    }
   }
 
   /**
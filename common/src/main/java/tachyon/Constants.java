@@ -125,6 +125,8 @@ public class Constants {
   public static final String MASTER_HOSTNAME_LISTENING = "tachyon.master.hostname.listening";
   public static final String MASTER_HOSTNAME_LISTENING_WILDCARD = "*";
   public static final String MASTER_JOURNAL_FOLDER = "tachyon.master.journal.folder";
+  public static final String MASTER_JOURNAL_LOADER_THREADS =
+      "tachyon.master.journal.loader.threads";
   public static final String MASTER_PORT = "tachyon.master.port";
   public static final String MASTER_ADDRESS = "tachyon.master.address";
   public static final String MASTER_WEB_PORT = "tachyon.master.web.port";
@@ -132,6 +134,8 @@ public class Constants {
   public static final String MASTER_HEARTBEAT_INTERVAL_MS = "tachyon.master.heartbeat.interval.ms";
   public static final String MASTER_MAX_WORKER_THREADS = "tachyon.master.max.worker.threads";
   public static final String MASTER_MIN_WORKER_THREADS = "tachyon.master.min.worker.threads";
+  public static final String MASTER_SERVER_TYPE = "tachyon.master.server.type";
+  public static final String MASTER_SELECTOR_THREADS = "tachyon.master.selector.threads";
   public static final String MASTER_WORKER_TIMEOUT_MS = "tachyon.master.worker.timeout.ms";
   public static final String MASTER_WHITELIST = "tachyon.master.whitelist";
   public static final String MASTER_KEYTAB_KEY = "tachyon.master.keytab.file";
@@ -152,6 +156,16 @@ public class Constants {
   public static final String WORKER_CHECKPOINT_THREADS = "tachyon.worker.checkpoint.threads";
   public static final String WORKER_PER_THREAD_CHECKPOINT_CAP_MB_SEC =
       "tachyon.worker.per.thread.checkpoint.cap.mb.sec";
+  public static final String WORKER_CHECKPOINT_QUEUE_SIZE =
+      "tachyon.worker.checkpoint.queue.size";
+  public static final String WORKER_CHECKPOINT_QUEUE_TIMEOUT_MS =
+      "tachyon.worker.checkpoint.queue.timeout.ms";
+  public static final String WORKER_CHECKPOINT_MAX_ATTEMPTS =
+      "tachyon.worker.checkpoint.max.attempts";
+  public static final String WORKER_CHECKPOINT_RETRY_INTERVAL_MS =
+      "tachyon.worker.checkpoint.retry.interval.ms";
+  public static final String WORKER_CHECKPOINT_MAX_RETRY_INTERVAL_MS =
+      "tachyon.worker.checkpoint.max.retry.interval.ms";
   public static final String WORKER_NETTY_BOSS_THREADS =
       "tachyon.worker.network.netty.boss.threads";
   public static final String WORKER_NETTY_WORKER_THREADS =
@@ -174,6 +188,13 @@ public class Constants {
   public static final String WORKER_ALLOCATE_STRATEGY_CLASS =
       "tachyon.worker.allocate.strategy.class";
   public static final String WORKER_EVICT_STRATEGY_CLASS = "tachyon.worker.evict.strategy.class";
+  public static final String WORKER_EVICT_STRATEGY_LRFU_STEP_FACTOR =
+      "tachyon.worker.evict.strategy.lrfu.step.factor";
+  public static final String WORKER_EVICT_STRATEGY_LRFU_ATTENUATION_FACTOR =
+      "tachyon.worker.evict.strategy.lrfu.attenuation.factor";
+  public static final String WORKER_BLOCK_LOCKS = "tachyon.worker.block.locks";
+  public static final String WORKER_BLOCK_LOCK_USER_STRIPES =
+      "tachyon.worker.block.lock.user.stripes";
   public static final String WORKER_MAX_TIERED_STORAGE_LEVEL =
       "tachyon.worker.tieredstore.level.max";
   /**
@@ -194,6 +215,22 @@ public class Constants {
    */
   public static final String WORKER_TIERED_STORAGE_LEVEL_DIRS_QUOTA_FORMAT =
       "tachyon.worker.tieredstore.level%d.dirs.quota";
+  /**
+   * This format is used as a template to generate the property name for a given level.
+   * e.g., {@code String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_HIGH_WATERMARK_FORMAT, level)}
+   */
+  public static final String WORKER_TIERED_STORAGE_LEVEL_HIGH_WATERMARK_FORMAT =
+      "tachyon.worker.tieredstore.level%d.watermark.high.ratio";
+  /**
+   * This format is used as a template to generate the property name for a given level.
+   * e.g., {@code String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_LOW_WATERMARK_FORMAT, level)}
+   */
+  public static final String WORKER_TIERED_STORAGE_LEVEL_LOW_WATERMARK_FORMAT =
+      "tachyon.worker.tieredstore.level%d.watermark.low.ratio";
+  public static final String WORKER_TIERED_STORE_MANAGER_INTERVAL_MS =
+      "tachyon.worker.tieredstore.manager.interval.ms";
+  public static final String WORKER_TIERED_STORE_PROMOTE_ACCESSES =
+      "tachyon.worker.tieredstore.promote.accesses";
   public static final String WORKER_KEYTAB_KEY = "tachyon.worker.keytab.file";
   public static final String WORKER_PRINCIPAL_KEY = "tachyon.worker.principal";
   public static final String WORKER_USER_TEMP_RELATIVE_FOLDER = "users";
@@ -209,12 +246,29 @@ public class Constants {
       "tachyon.user.network.netty.worker.threads";
   public static final String USER_NETTY_CHANNEL = "tachyon.user.network.netty.channel";
   public static final String USER_NETTY_TIMEOUT_MS = "tachyon.user.network.netty.timeout.ms";
+  public static final String USER_NETTY_CHANNEL_POOL_MAX_IDLE =
+      "tachyon.user.network.netty.channel.pool.max.idle";
   public static final String USER_REMOTE_READ_BUFFER_SIZE_BYTE =
       "tachyon.user.remote.read.buffer.size.byte";
+  public static final String USER_REMOTE_READ_CHUNK_SIZE_BYTE =
+      "tachyon.user.remote.read.chunk.size.byte";
+  public static final String USER_REMOTE_READ_WINDOW = "tachyon.user.remote.read.window";
+  public static final String USER_VECTORED_READ_THREADS = "tachyon.user.vectored.read.threads";
+  public static final String USER_VECTORED_READ_MAX_GAP_BYTES =
+      "tachyon.user.vectored.read.max.gap.bytes";
+  public static final String USER_VECTORED_READ_WORKER_PARALLELISM =
+      "tachyon.user.vectored.read.worker.parallelism";
   public static final String USER_DEFAULT_WRITE_TYPE = "tachyon.user.file.writetype.default";
   public static final String USER_REMOTE_BLOCK_READER = "tachyon.user.remote.block.reader.class";
   public static final String USER_REMOTE_BLOCK_WRITER = "tachyon.user.remote.block.writer.class";
   public static final String USER_ENABLE_LOCAL_READ = "tachyon.user.localread.enable";
+  public static final String USER_MMAP_CACHE_MAX_IDLE_BYTES =
+      "tachyon.user.mmap.cache.max.idle.bytes";
+  public static final String USER_MASTER_CLIENT_POOL_SIZE =
+      "tachyon.user.master.client.pool.size";
+  public static final String USER_LIST_STATUS_PAGE_SIZE = "tachyon.user.list.status.page.size";
+  public static final String USER_FILE_INFO_CACHE_SIZE = "tachyon.user.file.info.cache.size";
+  public static final String USER_FILE_INFO_CACHE_TTL_MS = "tachyon.user.file.info.cache.ttl.ms";
   public static final String USER_ENABLE_LOCAL_WRITE = "tachyon.user.localwrite.enable";
 
   public static final String S3_ACCESS_KEY = "fs.s3n.awsAccessKeyId";
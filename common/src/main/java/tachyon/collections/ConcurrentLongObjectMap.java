@@ -0,0 +1,236 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A thread safe map from primitive {@code long} keys to objects, made of segments of open
+ * addressing tables. Reads take no lock: they probe the current table of their segment, which is
+ * published through a volatile reference. Writes hold the monitor of their segment, so writes to
+ * keys of different segments do not wait for each other. Values can not be null.
+ * <p>
+ * A slot of a table keeps its key until the table is replaced, and its value is set after the key,
+ * so a reader which sees a value also sees the key of the value. Removed entries are marked rather
+ * than moved; the marks are dropped when the segment copies its entries to a new table, which it
+ * publishes once filled.
+ *
+ * @param <V> the type of the values
+ */
+public final class ConcurrentLongObjectMap<V> {
+  private static final int SEGMENT_BITS = 6;
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+  /** The value of a slot whose entry was removed. */
+  private static final Object REMOVED = new Object();
+
+  private final Segment<V>[] mSegments;
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentLongObjectMap() {
+    mSegments = new Segment[1 << SEGMENT_BITS];
+    for (int k = 0; k < mSegments.length; k ++) {
+      mSegments[k] = new Segment<V>();
+    }
+  }
+
+  /**
+   * @param key the key to look for
+   * @return true if the map contains the key
+   */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @param key the key to look for
+   * @return the value of the key, or null if the map does not contain the key
+   */
+  public V get(long key) {
+    return segmentFor(key).get(key);
+  }
+
+  /**
+   * @param key the key
+   * @param value the value of the key, not null
+   * @return the previous value of the key, or null if the map did not contain the key
+   */
+  public V put(long key, V value) {
+    Preconditions.checkNotNull(value);
+    return segmentFor(key).put(key, value);
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the value of the key, or null if the map did not contain the key
+   */
+  public V remove(long key) {
+    return segmentFor(key).remove(key);
+  }
+
+  /**
+   * @return the number of entries in the map. The segments are counted one at a time, so the
+   *         count may miss concurrent updates.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : mSegments) {
+      size += segment.mSize;
+    }
+    return size;
+  }
+
+  /**
+   * @return a new list of the values of the map. The segments are copied one at a time, so the
+   *         list may miss concurrent updates.
+   */
+  public List<V> values() {
+    List<V> ret = new ArrayList<V>();
+    for (Segment<V> segment : mSegments) {
+      segment.mTable.addValuesTo(ret);
+    }
+    return ret;
+  }
+
+  private Segment<V> segmentFor(long key) {
+    // The top bits of the hash pick the segment, the bottom bits the slot within the segment.
+    return mSegments[HashUtils.hash(key) >>> (32 - SEGMENT_BITS)];
+  }
+
+  /**
+   * An open addressing table. Once set, the key of a slot does not change, and a slot with a key
+   * always has a value, which is {@link #REMOVED} if the entry was removed.
+   */
+  private static final class Table {
+    private final long[] mKeys;
+    /** The values, null marking an empty slot, set after the key of their slot. */
+    private final AtomicReferenceArray<Object> mValues;
+    private final int mMask;
+    /** The number of slots with a key, guarded by the monitor of the segment. */
+    private int mUsedSlots = 0;
+
+    private Table(int capacity) {
+      mKeys = new long[capacity];
+      mValues = new AtomicReferenceArray<Object>(capacity);
+      mMask = capacity - 1;
+    }
+
+    /**
+     * @return the slot of the key, or the empty slot ending its probe sequence if it has none
+     */
+    private int find(long key) {
+      int slot = HashUtils.hash(key) & mMask;
+      // Reading the value first makes the key of the slot visible
+      while (mValues.get(slot) != null && mKeys[slot] != key) {
+        slot = (slot + 1) & mMask;
+      }
+      return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> void addValuesTo(List<V> list) {
+      for (int slot = 0; slot < mValues.length(); slot ++) {
+        Object value = mValues.get(slot);
+        if (value != null && value != REMOVED) {
+          list.add((V) value);
+        }
+      }
+    }
+  }
+
+  /**
+   * A segment of the map. Writes are made under its monitor, reads are not.
+   */
+  private static final class Segment<V> {
+    private volatile Table mTable = new Table(MIN_CAPACITY);
+    private volatile int mSize = 0;
+
+    @SuppressWarnings("unchecked")
+    private V get(long key) {
+      Table table = mTable;
+      while (true) {
+        Object value = table.mValues.get(table.find(key));
+        if (value != null && value != REMOVED) {
+          return (V) value;
+        }
+        // Look again if the entry may have been copied to a new table meanwhile
+        Table current = mTable;
+        if (current == table) {
+          return null;
+        }
+        table = current;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized V put(long key, V value) {
+      Table table = mTable;
+      int slot = table.find(key);
+      Object previous = table.mValues.get(slot);
+      if (previous == null) {
+        table.mKeys[slot] = key;
+        table.mValues.set(slot, value);
+        mSize ++;
+        if (++ table.mUsedSlots > table.mValues.length() * LOAD_FACTOR) {
+          rehash(table);
+        }
+        return null;
+      }
+      table.mValues.set(slot, value);
+      if (previous == REMOVED) {
+        mSize ++;
+        return null;
+      }
+      return (V) previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized V remove(long key) {
+      Table table = mTable;
+      int slot = table.find(key);
+      Object previous = table.mValues.get(slot);
+      if (previous == null || previous == REMOVED) {
+        return null;
+      }
+      table.mValues.set(slot, REMOVED);
+      mSize --;
+      return (V) previous;
+    }
+
+    /**
+     * Copies the entries of a full table to a new table, which has room for as many entries again,
+     * and publishes it. The old table is not written anymore, so readers still probing it see the
+     * entries as they were when it was replaced.
+     */
+    private void rehash(Table table) {
+      Table newTable = new Table(HashUtils.tableSizeFor(mSize * 2, LOAD_FACTOR, MIN_CAPACITY));
+      for (int slot = 0; slot < table.mValues.length(); slot ++) {
+        Object value = table.mValues.get(slot);
+        if (value != null && value != REMOVED) {
+          int newSlot = newTable.find(table.mKeys[slot]);
+          newTable.mKeys[newSlot] = table.mKeys[slot];
+          newTable.mValues.set(newSlot, value);
+          newTable.mUsedSlots ++;
+        }
+      }
+      mTable = newTable;
+    }
+  }
+}
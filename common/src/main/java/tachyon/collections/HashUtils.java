@@ -0,0 +1,62 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+/**
+ * Hashing helpers of the primitive collections.
+ */
+final class HashUtils {
+  private HashUtils() {}
+
+  /**
+   * Spread the bits of a key over the whole hash, so that both its top bits and its bottom bits
+   * are well mixed even for sequential keys such as ids.
+   *
+   * @param key the key
+   * @return the hash of the key
+   */
+  static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @param key the key
+   * @return the hash of the key, see {@link #hash(int)}
+   */
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * @param expectedSize the number of elements the table must hold
+   * @param loadFactor the maximum ratio of the number of elements to the size of the table
+   * @param minSize the minimum size of the table, a power of 2
+   * @return the smallest power of 2 size of a table which holds the elements
+   */
+  static int tableSizeFor(int expectedSize, float loadFactor, int minSize) {
+    long needed = (long) Math.ceil(Math.max(expectedSize, 0) / (double) loadFactor) + 1;
+    long size = minSize;
+    while (size < needed) {
+      size <<= 1;
+    }
+    if (size > (1 << 30)) {
+      throw new IllegalArgumentException("Too many elements: " + expectedSize);
+    }
+    return (int) size;
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive {@code int} values, which stores them in a single open addressing array
+ * instead of boxing each of them into an entry of a {@link java.util.HashSet}. Depending on how
+ * full its array is, it takes 5 to 11 bytes per value, where a {@code HashSet<Integer>} takes
+ * about 55.
+ *
+ * This class is not thread safe.
+ */
+public final class IntHashSet {
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  /** The values, 0 marking an empty slot. The value 0 itself is tracked by mHasZero. */
+  private int[] mValues;
+  private boolean mHasZero = false;
+  /** The number of values in mValues, excluding 0. */
+  private int mSize = 0;
+  private int mResizeThreshold;
+
+  public IntHashSet() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize the number of values the set can hold without growing
+   */
+  public IntHashSet(int expectedSize) {
+    allocate(HashUtils.tableSizeFor(expectedSize, LOAD_FACTOR, MIN_CAPACITY));
+  }
+
+  /**
+   * @param value the value to add
+   * @return true if the set did not contain the value
+   */
+  public boolean add(int value) {
+    if (value == 0) {
+      boolean added = !mHasZero;
+      mHasZero = true;
+      return added;
+    }
+    int mask = mValues.length - 1;
+    int slot = HashUtils.hash(value) & mask;
+    while (mValues[slot] != 0) {
+      if (mValues[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    mValues[slot] = value;
+    if (++ mSize > mResizeThreshold) {
+      rehash(mValues.length * 2);
+    }
+    return true;
+  }
+
+  /**
+   * Remove all the values.
+   */
+  public void clear() {
+    Arrays.fill(mValues, (int) 0);
+    mHasZero = false;
+    mSize = 0;
+  }
+
+  /**
+   * @param value the value to look for
+   * @return true if the set contains the value
+   */
+  public boolean contains(int value) {
+    if (value == 0) {
+      return mHasZero;
+    }
+    int mask = mValues.length - 1;
+    int slot = HashUtils.hash(value) & mask;
+    while (mValues[slot] != 0) {
+      if (mValues[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the set contains no value
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @param value the value to remove
+   * @return true if the set contained the value
+   */
+  public boolean remove(int value) {
+    if (value == 0) {
+      boolean removed = mHasZero;
+      mHasZero = false;
+      return removed;
+    }
+    int mask = mValues.length - 1;
+    int slot = HashUtils.hash(value) & mask;
+    while (mValues[slot] != 0) {
+      if (mValues[slot] == value) {
+        shiftBack(slot);
+        mSize --;
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of values in the set
+   */
+  public int size() {
+    return mHasZero ? mSize + 1 : mSize;
+  }
+
+  /**
+   * @return a new array of the values of the set, in no particular order
+   */
+  public int[] toArray() {
+    int[] ret = new int[size()];
+    int k = 0;
+    if (mHasZero) {
+      ret[k ++] = 0;
+    }
+    for (int value : mValues) {
+      if (value != 0) {
+        ret[k ++] = value;
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    int[] values = toArray();
+    Arrays.sort(values);
+    return Arrays.toString(values);
+  }
+
+  private void allocate(int capacity) {
+    mValues = new int[capacity];
+    mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private void rehash(int capacity) {
+    int[] values = mValues;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int value : values) {
+      if (value != 0) {
+        int slot = HashUtils.hash(value) & mask;
+        while (mValues[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        mValues[slot] = value;
+      }
+    }
+  }
+
+  /**
+   * Empty a slot, moving back the values of the probe sequences going through it so that no
+   * sequence is broken by the empty slot.
+   */
+  private void shiftBack(int slot) {
+    int mask = mValues.length - 1;
+    int next = (slot + 1) & mask;
+    while (mValues[next] != 0) {
+      int ideal = HashUtils.hash(mValues[next]) & mask;
+      // The value can move to the empty slot if the slot is between its ideal slot and it.
+      if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+        mValues[slot] = mValues[next];
+        slot = next;
+      }
+      next = (next + 1) & mask;
+    }
+    mValues[slot] = 0;
+  }
+}
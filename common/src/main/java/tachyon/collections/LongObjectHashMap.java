@@ -0,0 +1,221 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A map from primitive {@code long} keys to objects, which stores them in open addressing arrays
+ * instead of boxing each key into an entry of a {@link java.util.HashMap}. Depending on how full
+ * its arrays are, it takes 16 to 32 bytes per entry besides the values themselves, where a
+ * {@code HashMap<Long, V>} takes about 60. Values can not be null.
+ *
+ * This class is not thread safe, see {@link ConcurrentLongObjectMap} for a thread safe version.
+ *
+ * @param <V> the type of the values
+ */
+public final class LongObjectHashMap<V> {
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private long[] mKeys;
+  /** The values, null marking an empty slot. */
+  private Object[] mValues;
+  private int mSize = 0;
+  private int mResizeThreshold;
+
+  public LongObjectHashMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize the number of entries the map can hold without growing
+   */
+  public LongObjectHashMap(int expectedSize) {
+    allocate(HashUtils.tableSizeFor(expectedSize, LOAD_FACTOR, MIN_CAPACITY));
+  }
+
+  /**
+   * Remove all the entries.
+   */
+  public void clear() {
+    Arrays.fill(mKeys, (long) 0);
+    Arrays.fill(mValues, null);
+    mSize = 0;
+  }
+
+  /**
+   * @param key the key to look for
+   * @return true if the map contains the key
+   */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @param key the key to look for
+   * @return the value of the key, or null if the map does not contain the key
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int slot = find(key);
+    return slot < 0 ? null : (V) mValues[slot];
+  }
+
+  /**
+   * @return true if the map contains no entry
+   */
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  /**
+   * @return a new array of the keys of the map, in no particular order
+   */
+  public long[] keys() {
+    long[] ret = new long[mSize];
+    int k = 0;
+    for (int slot = 0; slot < mValues.length; slot ++) {
+      if (mValues[slot] != null) {
+        ret[k ++] = mKeys[slot];
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @param key the key
+   * @param value the value of the key, not null
+   * @return the previous value of the key, or null if the map did not contain the key
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Preconditions.checkNotNull(value);
+    int mask = mValues.length - 1;
+    int slot = HashUtils.hash(key) & mask;
+    while (mValues[slot] != null) {
+      if (mKeys[slot] == key) {
+        V previous = (V) mValues[slot];
+        mValues[slot] = value;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+    mKeys[slot] = key;
+    mValues[slot] = value;
+    if (++ mSize > mResizeThreshold) {
+      rehash(mValues.length * 2);
+    }
+    return null;
+  }
+
+  /**
+   * @param key the key to remove
+   * @return the value of the key, or null if the map did not contain the key
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    V previous = (V) mValues[slot];
+    shiftBack(slot);
+    mSize --;
+    return previous;
+  }
+
+  /**
+   * @return the number of entries in the map
+   */
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * @return a new list of the values of the map, in no particular order
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> values() {
+    List<V> ret = new ArrayList<V>(mSize);
+    for (Object value : mValues) {
+      if (value != null) {
+        ret.add((V) value);
+      }
+    }
+    return ret;
+  }
+
+  private void allocate(int capacity) {
+    mKeys = new long[capacity];
+    mValues = new Object[capacity];
+    mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private int find(long key) {
+    int mask = mValues.length - 1;
+    int slot = HashUtils.hash(key) & mask;
+    while (mValues[slot] != null) {
+      if (mKeys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void rehash(int capacity) {
+    long[] keys = mKeys;
+    Object[] values = mValues;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int k = 0; k < values.length; k ++) {
+      if (values[k] != null) {
+        int slot = HashUtils.hash(keys[k]) & mask;
+        while (mValues[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        mKeys[slot] = keys[k];
+        mValues[slot] = values[k];
+      }
+    }
+  }
+
+  /**
+   * Empty a slot, moving back the entries of the probe sequences going through it so that no
+   * sequence is broken by the empty slot.
+   */
+  private void shiftBack(int slot) {
+    int mask = mValues.length - 1;
+    int next = (slot + 1) & mask;
+    while (mValues[next] != null) {
+      int ideal = HashUtils.hash(mKeys[next]) & mask;
+      // The entry can move to the empty slot if the slot is between its ideal slot and it.
+      if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+        mKeys[slot] = mKeys[next];
+        mValues[slot] = mValues[next];
+        slot = next;
+      }
+      next = (next + 1) & mask;
+    }
+    mKeys[slot] = 0;
+    mValues[slot] = null;
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.async.TAsyncMethodCall;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import tachyon.Constants;
+import tachyon.LeaderInquireClient;
+import tachyon.TachyonURI;
+import tachyon.conf.TachyonConf;
+import tachyon.thrift.ClientBlockInfo;
+import tachyon.thrift.ClientFileInfo;
+import tachyon.thrift.MasterService;
+import tachyon.util.network.NetworkAddressUtils;
+
+/**
+ * The asynchronous client side of master server. Each call returns a future at once instead of
+ * blocking the calling thread until the master replies.
+ *
+ * The calls are sent on a bounded set of non-blocking connections, all driven by the single
+ * selector thread of the client. A connection carries one call at a time, so calls beyond the
+ * number of connections are queued and sent as soon as a connection is free. This lets a few
+ * threads keep many metadata calls in flight without a thread or a connection each.
+ *
+ * Unlike {@link MasterClient}, a call which fails because its connection broke is not retried,
+ * since the master may have already applied it: its future fails with an IOException, and the
+ * next calls use a new connection. Exceptions thrown by the master fail the future with an
+ * IOException as well.
+ */
+public final class AsyncMasterClient implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+
+  /** A call to the master and the future of its result. */
+  private abstract static class Call<T> {
+    private final SettableFuture<T> mFuture = SettableFuture.create();
+
+    /**
+     * Send the call on the given client.
+     *
+     * @param client the client of an idle connection
+     * @param callback the callback to complete the call with
+     */
+    abstract void send(MasterService.AsyncClient client,
+        AsyncMethodCallback<TAsyncMethodCall> callback) throws TException;
+
+    /**
+     * @param call the completed method call returned by the client
+     * @return the result of the call
+     */
+    abstract T getResult(TAsyncMethodCall call) throws TException;
+  }
+
+  /** A non-blocking connection to the master. */
+  private static final class Connection {
+    private final TNonblockingSocket mSocket;
+    private final MasterService.AsyncClient mClient;
+
+    Connection(TNonblockingSocket socket, MasterService.AsyncClient client) {
+      mSocket = socket;
+      mClient = client;
+    }
+  }
+
+  private final boolean mUseZookeeper;
+  private final InetSocketAddress mMasterAddress;
+  private final TachyonConf mTachyonConf;
+  private final int mMaxConnections;
+  /** Drives the non-blocking connections on its selector thread. */
+  private final TAsyncClientManager mClientManager;
+  /** The idle connections, guarded by this. */
+  private final Deque<Connection> mIdleConnections = new ArrayDeque<Connection>();
+  /** The calls waiting for a connection, guarded by this. */
+  private final Queue<Call<?>> mPendingCalls = new ArrayDeque<Call<?>>();
+  /** The connections carrying a call and their calls, guarded by this. */
+  private final Map<Connection, Call<?>> mBusyConnections =
+      new IdentityHashMap<Connection, Call<?>>();
+  /** The number of open connections, guarded by this. */
+  private int mOpenConnections = 0;
+  private boolean mIsClosed = false;
+
+  /**
+   * @param masterAddress the address of the master, unused with zookeeper
+   * @param tachyonConf the TachyonConf instance of the client. The number of connections is
+   *        bounded by tachyon.user.master.client.pool.size
+   * @throws IOException if the selector of the client cannot be opened
+   */
+  public AsyncMasterClient(InetSocketAddress masterAddress, TachyonConf tachyonConf)
+      throws IOException {
+    mTachyonConf = tachyonConf;
+    mUseZookeeper = mTachyonConf.getBoolean(Constants.USE_ZOOKEEPER, false);
+    mMasterAddress = masterAddress;
+    mMaxConnections = Math.max(1, mTachyonConf.getInt(Constants.USER_MASTER_CLIENT_POOL_SIZE, 8));
+    mClientManager = new TAsyncClientManager();
+  }
+
+  /**
+   * Close the connections to the master. The calls not completed yet fail.
+   */
+  @Override
+  public void close() {
+    List<Call<?>> failedCalls;
+    synchronized (this) {
+      if (mIsClosed) {
+        return;
+      }
+      mIsClosed = true;
+      mClientManager.stop();
+      for (Connection connection : mIdleConnections) {
+        connection.mSocket.close();
+      }
+      mIdleConnections.clear();
+      for (Connection connection : mBusyConnections.keySet()) {
+        connection.mSocket.close();
+      }
+      failedCalls = new ArrayList<Call<?>>(mBusyConnections.values());
+      mBusyConnections.clear();
+      failedCalls.addAll(mPendingCalls);
+      mPendingCalls.clear();
+      mOpenConnections = 0;
+    }
+    for (Call<?> call : failedCalls) {
+      call.mFuture.setException(new IOException("The master client is closed"));
+    }
+  }
+
+  /**
+   * Get the file status from master server. If fileId is not -1, check the file status by its
+   * fileId, otherwise check the file status by path.
+   *
+   * @param fileId The id of the file
+   * @param path The path of the file
+   * @return a future of the ClientFileInfo returned from master
+   */
+  public ListenableFuture<ClientFileInfo> getFileStatus(final int fileId, String path) {
+    final String filePath = path == null ? "" : path;
+    if (fileId == -1 && !filePath.startsWith(TachyonURI.SEPARATOR)) {
+      return failed(new IOException("Illegal path parameter: " + path));
+    }
+    return submit(new Call<ClientFileInfo>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.getFileStatus(fileId, filePath, callback);
+      }
+
+      @Override
+      ClientFileInfo getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.getFileStatus_call) call).getResult();
+      }
+    });
+  }
+
+  /**
+   * Get the file status of many paths from master server in one call.
+   *
+   * @param paths The paths of the files
+   * @return a future of the ClientFileInfos returned from master, in the order of the paths. The
+   *         info of a file which does not exist has id -1.
+   */
+  public ListenableFuture<List<ClientFileInfo>> getFileStatuses(final List<String> paths) {
+    for (String path : paths) {
+      if (path == null || !path.startsWith(TachyonURI.SEPARATOR)) {
+        return failed(new IOException("Illegal path parameter: " + path));
+      }
+    }
+    return submit(new Call<List<ClientFileInfo>>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_getFileStatuses(paths, callback);
+      }
+
+      @Override
+      List<ClientFileInfo> getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_getFileStatuses_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<List<ClientFileInfo>> listStatus(final String path) {
+    return submit(new Call<List<ClientFileInfo>>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.liststatus(path, callback);
+      }
+
+      @Override
+      List<ClientFileInfo> getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.liststatus_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<Void> user_completeFile(final int fileId) {
+    return submit(new Call<Void>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_completeFile(fileId, callback);
+      }
+
+      @Override
+      Void getResult(TAsyncMethodCall call) throws TException {
+        ((MasterService.AsyncClient.user_completeFile_call) call).getResult();
+        return null;
+      }
+    });
+  }
+
+  public ListenableFuture<Integer> user_createFile(final String path, String ufsPath,
+      final long blockSizeByte, final boolean recursive) {
+    if (path == null || !path.startsWith(TachyonURI.SEPARATOR)) {
+      return failed(new IOException("Illegal path parameter: " + path));
+    }
+    final String filePath = ufsPath == null ? "" : ufsPath;
+    return submit(new Call<Integer>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_createFile(path, filePath, blockSizeByte, recursive, callback);
+      }
+
+      @Override
+      Integer getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_createFile_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<Boolean> user_delete(final int fileId, final String path,
+      final boolean recursive) {
+    IOException error = checkParameters(fileId, path);
+    if (error != null) {
+      return failed(error);
+    }
+    return submit(new Call<Boolean>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_delete(fileId, path, recursive, callback);
+      }
+
+      @Override
+      Boolean getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_delete_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<List<ClientBlockInfo>> user_getFileBlocks(final int fileId,
+      final String path) {
+    IOException error = checkParameters(fileId, path);
+    if (error != null) {
+      return failed(error);
+    }
+    return submit(new Call<List<ClientBlockInfo>>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_getFileBlocks(fileId, path, callback);
+      }
+
+      @Override
+      List<ClientBlockInfo> getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_getFileBlocks_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<Boolean> user_mkdirs(final String path, final boolean recursive) {
+    return submit(new Call<Boolean>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_mkdirs(path, recursive, callback);
+      }
+
+      @Override
+      Boolean getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_mkdirs_call) call).getResult();
+      }
+    });
+  }
+
+  public ListenableFuture<Boolean> user_rename(final int fileId, final String srcPath,
+      final String dstPath) {
+    IOException error = checkParameters(fileId, srcPath);
+    if (error != null) {
+      return failed(error);
+    }
+    return submit(new Call<Boolean>() {
+      @Override
+      void send(MasterService.AsyncClient client, AsyncMethodCallback<TAsyncMethodCall> callback)
+          throws TException {
+        client.user_rename(fileId, srcPath, dstPath, callback);
+      }
+
+      @Override
+      Boolean getResult(TAsyncMethodCall call) throws TException {
+        return ((MasterService.AsyncClient.user_rename_call) call).getResult();
+      }
+    });
+  }
+
+  private static IOException checkParameters(int id, String path) {
+    if (path == null) {
+      throw new NullPointerException("Paths may not be null; empty is the null state");
+    }
+    if (id == -1 && !path.startsWith(TachyonURI.SEPARATOR)) {
+      return new IOException("Illegal path parameter: " + path);
+    }
+    return null;
+  }
+
+  private static <T> ListenableFuture<T> failed(IOException e) {
+    SettableFuture<T> future = SettableFuture.create();
+    future.setException(e);
+    return future;
+  }
+
+  private <T> ListenableFuture<T> submit(Call<T> call) {
+    synchronized (this) {
+      if (mIsClosed) {
+        return failed(new IOException("The master client is closed"));
+      }
+      mPendingCalls.add(call);
+    }
+    dispatch();
+    return call.mFuture;
+  }
+
+  /**
+   * Send the pending calls on the idle connections, opening new connections up to the maximum.
+   */
+  private void dispatch() {
+    while (true) {
+      Connection connection;
+      Call<?> call;
+      synchronized (this) {
+        if (mPendingCalls.isEmpty()) {
+          return;
+        }
+        connection = mIdleConnections.poll();
+        if (connection == null) {
+          if (mOpenConnections >= mMaxConnections) {
+            return;
+          }
+          mOpenConnections ++;
+        }
+        call = mPendingCalls.poll();
+      }
+      if (connection == null) {
+        try {
+          connection = open();
+        } catch (IOException e) {
+          synchronized (this) {
+            mOpenConnections --;
+          }
+          call.mFuture.setException(e);
+          continue;
+        }
+      }
+      synchronized (this) {
+        if (mIsClosed) {
+          connection.mSocket.close();
+          call.mFuture.setException(new IOException("The master client is closed"));
+          return;
+        }
+        mBusyConnections.put(connection, call);
+      }
+      send(connection, call);
+    }
+  }
+
+  private <T> void send(final Connection connection, final Call<T> call) {
+    AsyncMethodCallback<TAsyncMethodCall> callback = new AsyncMethodCallback<TAsyncMethodCall>() {
+      @Override
+      public void onComplete(TAsyncMethodCall response) {
+        // The whole reply was read, so the connection can take the next call even if the master
+        // threw an exception.
+        try {
+          call.mFuture.set(call.getResult(response));
+        } catch (TException e) {
+          call.mFuture.setException(new IOException(e));
+        } catch (RuntimeException e) {
+          call.mFuture.setException(e);
+        }
+        release(connection);
+      }
+
+      @Override
+      public void onError(Exception e) {
+        LOG.error("Call to the master failed: " + e.getMessage(), e);
+        discard(connection);
+        call.mFuture.setException(new IOException(e));
+      }
+    };
+    try {
+      call.send(connection.mClient, callback);
+    } catch (TException e) {
+      discard(connection);
+      call.mFuture.setException(new IOException(e));
+    }
+  }
+
+  private void release(Connection connection) {
+    synchronized (this) {
+      if (mBusyConnections.remove(connection) == null) {
+        // Closed by close.
+        return;
+      }
+      mIdleConnections.push(connection);
+    }
+    dispatch();
+  }
+
+  private void discard(Connection connection) {
+    connection.mSocket.close();
+    synchronized (this) {
+      if (mBusyConnections.remove(connection) == null) {
+        return;
+      }
+      mOpenConnections --;
+    }
+    // A pending call may wait for the connection slot this one freed.
+    dispatch();
+  }
+
+  private Connection open() throws IOException {
+    InetSocketAddress address = getMasterAddress();
+    LOG.debug("Opening an asynchronous connection to the master @ {}", address);
+    TNonblockingSocket socket =
+        new TNonblockingSocket(NetworkAddressUtils.getFqdnHost(address), address.getPort());
+    MasterService.AsyncClient client =
+        new MasterService.AsyncClient(new TBinaryProtocol.Factory(), mClientManager, socket);
+    return new Connection(socket, client);
+  }
+
+  private InetSocketAddress getMasterAddress() throws IOException {
+    if (!mUseZookeeper) {
+      return mMasterAddress;
+    }
+
+    LeaderInquireClient leaderInquireClient =
+        LeaderInquireClient.getClient(mTachyonConf.get(Constants.ZOOKEEPER_ADDRESS, null),
+            mTachyonConf.get(Constants.ZOOKEEPER_LEADER_PATH, null));
+    return NetworkAddressUtils.parseInetSocketAddress(leaderInquireClient.getMasterAddress());
+  }
+}
@@ -279,6 +279,37 @@ public final class MasterClient implements Closeable {
     return null;
   }
 
+  /**
+   * Get the file status of many paths from master server in one call.
+   *
+   * @param paths The paths of the files
+   * @return the ClientFileInfos returned from master, in the order of the paths. The info of a
+   *         file which does not exist has id -1.
+   * @throws IOException
+   */
+  public synchronized List<ClientFileInfo> getFileStatuses(List<String> paths)
+      throws IOException {
+    for (String path : paths) {
+      if (path == null || !path.startsWith(TachyonURI.SEPARATOR)) {
+        throw new IOException("Illegal path parameter: " + path);
+      }
+    }
+
+    while (!mIsClosed) {
+      connect();
+
+      try {
+        return mClient.user_getFileStatuses(paths);
+      } catch (InvalidPathException e) {
+        throw new IOException(e);
+      } catch (TException e) {
+        LOG.error(e.getMessage(), e);
+        mConnected = false;
+      }
+    }
+    return null;
+  }
+
   private synchronized InetSocketAddress getMasterAddress() {
     if (!mUseZookeeper) {
       return mMasterAddress;
@@ -390,6 +421,40 @@ public final class MasterClient implements Closeable {
     return null;
   }
 
+  /**
+   * Get a page of the entries of a directory from master server, in depth-first order with the
+   * children of each directory sorted by name.
+   *
+   * @param path The path of the directory
+   * @param startAfter The path of the entry to start after, or the empty string to start from
+   *        the first entry
+   * @param limit The maximum number of entries to return
+   * @param recursive If true, the entries of each sub-directory are listed right after it
+   * @return the entries, at most limit of them. A page shorter than limit is the last one.
+   * @throws IOException
+   */
+  public synchronized List<ClientFileInfo> listStatusPage(String path, String startAfter,
+      int limit, boolean recursive) throws IOException {
+    if (limit <= 0) {
+      throw new IOException("The limit of a page must be positive: " + limit);
+    }
+
+    while (!mIsClosed) {
+      connect();
+      try {
+        return mClient.user_listStatusPage(path, startAfter, limit, recursive);
+      } catch (InvalidPathException e) {
+        throw new IOException(e);
+      } catch (FileDoesNotExistException e) {
+        throw new IOException(e);
+      } catch (TException e) {
+        LOG.error(e.getMessage(), e);
+        mConnected = false;
+      }
+    }
+    return null;
+  }
+
   private synchronized void parameterCheck(int id, String path) throws IOException {
     if (path == null) {
       throw new NullPointerException("Paths may not be null; empty is the null state");
@@ -425,6 +490,22 @@ public final class MasterClient implements Closeable {
     }
   }
 
+  public synchronized void user_completeFiles(List<Integer> fileIds) throws IOException {
+    while (!mIsClosed) {
+      connect();
+
+      try {
+        mClient.user_completeFiles(fileIds);
+        return;
+      } catch (FileDoesNotExistException e) {
+        throw new IOException(e);
+      } catch (TException e) {
+        LOG.error(e.getMessage(), e);
+        mConnected = false;
+      }
+    }
+  }
+
   public synchronized int user_createDependency(List<String> parents, List<String> children,
       String commandPrefix, List<ByteBuffer> data, String comment, String framework,
       String frameworkVersion, int dependencyType, long childrenBlockSizeByte) throws IOException {
@@ -484,6 +565,35 @@ public final class MasterClient implements Closeable {
     return -1;
   }
 
+  public synchronized List<Integer> user_createFiles(List<String> paths, long blockSizeByte,
+      boolean recursive) throws IOException {
+    for (String path : paths) {
+      if (path == null || !path.startsWith(TachyonURI.SEPARATOR)) {
+        throw new IOException("Illegal path parameter: " + path);
+      }
+    }
+
+    while (!mIsClosed) {
+      connect();
+
+      try {
+        return mClient.user_createFiles(paths, blockSizeByte, recursive);
+      } catch (FileAlreadyExistException e) {
+        throw new IOException(e);
+      } catch (InvalidPathException e) {
+        throw new IOException(e);
+      } catch (BlockInfoException e) {
+        throw new IOException(e);
+      } catch (TachyonException e) {
+        throw new IOException(e);
+      } catch (TException e) {
+        LOG.error(e.getMessage(), e);
+        mConnected = false;
+      }
+    }
+    return null;
+  }
+
   public synchronized long user_createNewBlock(int fId) throws IOException {
     while (!mIsClosed) {
       connect();
@@ -621,6 +731,23 @@ public final class MasterClient implements Closeable {
     return null;
   }
 
+  public synchronized List<List<ClientBlockInfo>> user_getFilesBlocks(List<Integer> fileIds)
+      throws IOException {
+    while (!mIsClosed) {
+      connect();
+
+      try {
+        return mClient.user_getFilesBlocks(fileIds);
+      } catch (FileDoesNotExistException e) {
+        throw new IOException(e);
+      } catch (TException e) {
+        LOG.error(e.getMessage(), e);
+        mConnected = false;
+      }
+    }
+    return null;
+  }
+
   public synchronized int user_getRawTableId(String path) throws IOException {
     while (!mIsClosed) {
       connect();
@@ -20,17 +20,21 @@ import com.google.common.primitives.Longs;
 import io.netty.buffer.ByteBuf;
 
 /**
- * This represents an RPC request to read a block from a DataServer.
+ * This represents an RPC request to read a block from a DataServer. The request id is returned in
+ * the {@link RPCBlockReadResponse}, so a client can match the responses of the requests it sends on
+ * a connection kept open across reads.
  */
 public class RPCBlockReadRequest extends RPCRequest {
   private final long mBlockId;
   private final long mOffset;
   private final long mLength;
+  private final long mRequestId;
 
-  public RPCBlockReadRequest(long blockId, long offset, long length) {
+  public RPCBlockReadRequest(long blockId, long offset, long length, long requestId) {
     mBlockId = blockId;
     mOffset = offset;
     mLength = length;
+    mRequestId = requestId;
   }
 
   public Type getType() {
@@ -47,13 +51,14 @@ public class RPCBlockReadRequest extends RPCRequest {
     long blockId = in.readLong();
     long offset = in.readLong();
     long length = in.readLong();
-    return new RPCBlockReadRequest(blockId, offset, length);
+    long requestId = in.readLong();
+    return new RPCBlockReadRequest(blockId, offset, length, requestId);
   }
 
   @Override
   public int getEncodedLength() {
-    // 3 longs (mBLockId, mOffset, mLength)
-    return Longs.BYTES * 3;
+    // 4 longs (mBLockId, mOffset, mLength, mRequestId)
+    return Longs.BYTES * 4;
   }
 
   @Override
@@ -61,6 +66,7 @@ public class RPCBlockReadRequest extends RPCRequest {
     out.writeLong(mBlockId);
     out.writeLong(mOffset);
     out.writeLong(mLength);
+    out.writeLong(mRequestId);
   }
 
   @Override
@@ -72,7 +78,8 @@ public class RPCBlockReadRequest extends RPCRequest {
 
   @Override
   public String toString() {
-    return "RPCBlockReadRequest(" + mBlockId + ", " + mOffset + ", " + mLength + ")";
+    return "RPCBlockReadRequest(" + mBlockId + ", " + mOffset + ", " + mLength + ", " + mRequestId
+        + ")";
   }
 
   public long getBlockId() {
@@ -86,4 +93,8 @@ public class RPCBlockReadRequest extends RPCRequest {
   public long getOffset() {
     return mOffset;
   }
+
+  public long getRequestId() {
+    return mRequestId;
+  }
 }
@@ -31,14 +31,16 @@ public class RPCBlockReadResponse extends RPCResponse {
   private final long mBlockId;
   private final long mOffset;
   private final long mLength;
+  private final long mRequestId;
   private final DataBuffer mData;
   private final Status mStatus;
 
-  public RPCBlockReadResponse(long blockId, long offset, long length, DataBuffer data,
-      Status status) {
+  public RPCBlockReadResponse(long blockId, long offset, long length, long requestId,
+      DataBuffer data, Status status) {
     mBlockId = blockId;
     mOffset = offset;
     mLength = length;
+    mRequestId = requestId;
     mData = data;
     mStatus = status;
   }
@@ -60,7 +62,8 @@ public class RPCBlockReadResponse extends RPCResponse {
       final Status status) {
     Preconditions.checkArgument(status != Status.SUCCESS);
     // The response has no payload, so length must be 0.
-    return new RPCBlockReadResponse(request.getBlockId(), request.getOffset(), 0, null, status);
+    return new RPCBlockReadResponse(request.getBlockId(), request.getOffset(), 0,
+        request.getRequestId(), null, status);
   }
 
   /**
@@ -73,6 +76,7 @@ public class RPCBlockReadResponse extends RPCResponse {
     long blockId = in.readLong();
     long offset = in.readLong();
     long length = in.readLong();
+    long requestId = in.readLong();
     short status = in.readShort();
 
     DataBuffer data = null;
@@ -80,13 +84,14 @@ public class RPCBlockReadResponse extends RPCResponse {
       // use DataNettyBuffer instead of DataByteBuffer to avoid copying
       data = new DataNettyBuffer(in, (int) length);
     }
-    return new RPCBlockReadResponse(blockId, offset, length, data, Status.fromShort(status));
+    return new RPCBlockReadResponse(blockId, offset, length, requestId, data,
+        Status.fromShort(status));
   }
 
   @Override
   public int getEncodedLength() {
-    // 3 longs (mBLockId, mOffset, mLength) + 1 short (mStatus)
-    return Longs.BYTES * 3 + Shorts.BYTES;
+    // 4 longs (mBLockId, mOffset, mLength, mRequestId) + 1 short (mStatus)
+    return Longs.BYTES * 4 + Shorts.BYTES;
   }
 
   @Override
@@ -94,6 +99,7 @@ public class RPCBlockReadResponse extends RPCResponse {
     out.writeLong(mBlockId);
     out.writeLong(mOffset);
     out.writeLong(mLength);
+    out.writeLong(mRequestId);
     out.writeShort(mStatus.getId());
     // The actual payload is not encoded here, since the RPCMessageEncoder will transfer it in a
     // more efficient way.
@@ -107,7 +113,7 @@ public class RPCBlockReadResponse extends RPCResponse {
   @Override
   public String toString() {
     return "RPCBlockReadResponse(" + mBlockId + ", " + mOffset
-        + ", " + mLength + ", " + mStatus + ")";
+        + ", " + mLength + ", " + mRequestId + ", " + mStatus + ")";
   }
 
   public long getBlockId() {
@@ -122,6 +128,10 @@ public class RPCBlockReadResponse extends RPCResponse {
     return mOffset;
   }
 
+  public long getRequestId() {
+    return mRequestId;
+  }
+
   public Status getStatus() {
     return mStatus;
   }
@@ -25,6 +25,7 @@ import java.net.ServerSocket;
 import java.net.UnknownHostException;
 import java.util.Enumeration;
 
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -216,6 +217,17 @@ public final class NetworkAddressUtils {
     return getSocket(thriftSocket).getLocalPort();
   }
 
+  /**
+   * Gets the port for the underline socket of a non-blocking thrift socket. This function calls
+   * {@link #getSocket(org.apache.thrift.transport.TNonblockingServerSocket)}, so reflection will
+   * be used to get the port.
+   *
+   * @see #getSocket(org.apache.thrift.transport.TNonblockingServerSocket)
+   */
+  public static int getPort(TNonblockingServerSocket thriftSocket) {
+    return getSocket(thriftSocket).getLocalPort();
+  }
+
   /**
    * Extracts the port from the thrift socket. As of thrift 0.9, the internal socket used is not
    * exposed in the API, so this function will use reflection to get access to it.
@@ -234,6 +246,24 @@ public final class NetworkAddressUtils {
     }
   }
 
+  /**
+   * Extracts the socket from the non-blocking thrift socket. As of thrift 0.9, the internal socket
+   * used is not exposed in the API, so this function will use reflection to get access to it.
+   *
+   * @throws java.lang.RuntimeException if reflection calls fail
+   */
+  public static ServerSocket getSocket(final TNonblockingServerSocket thriftSocket) {
+    try {
+      Field field = TNonblockingServerSocket.class.getDeclaredField("serverSocket_");
+      field.setAccessible(true);
+      return (ServerSocket) field.get(thriftSocket);
+    } catch (NoSuchFieldException e) {
+      throw Throwables.propagate(e);
+    } catch (IllegalAccessException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   /**
    * Gets the Tachyon master address from the configuration
    *
@@ -36,11 +36,12 @@ public class DataServerMessage {
 
   // The size of the prefix of the header: frame length (long), messageType (int)
   private static final int HEADER_PREFIX_LENGTH = 12;
-  // The request header is: HEADER_PREFIX, blockId (long), offset (long), length (long)
-  private static final int REQUEST_HEADER_LENGTH = HEADER_PREFIX_LENGTH + 24;
+  // The request header is: HEADER_PREFIX, blockId (long), offset (long), length (long),
+  // requestId (long)
+  private static final int REQUEST_HEADER_LENGTH = HEADER_PREFIX_LENGTH + 32;
   // The response header is: HEADER_PREFIX, blockId (long), offset (long), length (long),
-  // status (short)
-  private static final int RESPONSE_HEADER_LENGTH = HEADER_PREFIX_LENGTH + 26;
+  // requestId (long), status (short)
+  private static final int RESPONSE_HEADER_LENGTH = HEADER_PREFIX_LENGTH + 34;
   // The error response header is: HEADER_PREFIX, status (short)
   private static final int ERROR_RESPONSE_HEADER_LENGTH = HEADER_PREFIX_LENGTH + 2;
 
@@ -103,7 +104,7 @@ public class DataServerMessage {
    */
   public static DataServerMessage createBlockResponseMessage(boolean toSend, long blockId,
       ByteBuffer data) {
-    return createBlockResponseMessage(toSend, blockId, 0, -1, data);
+    return createBlockResponseMessage(toSend, blockId, 0, -1, 0, data);
   }
 
   /**
@@ -117,11 +118,12 @@ public class DataServerMessage {
    * @param offset The responded data's offset in the block
    * @param len The length of the responded data. If it's -1, it means respond the data from offset
    *        to the block's end.
+   * @param requestId The id of the request this message responds to
    * @param data The data of the message
    * @return The created block response message
    */
   public static DataServerMessage createBlockResponseMessage(boolean toSend, long blockId,
-      long offset, long len, ByteBuffer data) {
+      long offset, long len, long requestId, ByteBuffer data) {
     DataServerMessage ret = new DataServerMessage(toSend, RPCMessage.Type.RPC_BLOCK_READ_RESPONSE);
 
     if (toSend) {
@@ -130,6 +132,7 @@ public class DataServerMessage {
         ret.mBlockId = blockId;
         ret.mOffset = offset;
         ret.mLength = len;
+        ret.mRequestId = requestId;
         ret.mStatus = RPCResponse.Status.SUCCESS;
         ret.mData = data;
         ret.mIsMessageReady = true;
@@ -137,6 +140,7 @@ public class DataServerMessage {
       } else {
         ret.mBlockId = blockId;
         ret.mLength = 0;
+        ret.mRequestId = requestId;
         ret.mHeader = ByteBuffer.allocate(RESPONSE_HEADER_LENGTH);
         ret.mData = ByteBuffer.allocate(0);
         ret.mIsMessageReady = true;
@@ -164,6 +168,8 @@ public class DataServerMessage {
 
   private long mLength;
 
+  private long mRequestId;
+
   private RPCResponse.Status mStatus;
 
   // TODO: Investigate how to remove this since it is not transferred over the wire.
@@ -223,6 +229,7 @@ public class DataServerMessage {
     mHeader.putLong(mBlockId);
     mHeader.putLong(mOffset);
     mHeader.putLong(mLength);
+    mHeader.putLong(mRequestId);
 
     if (mMessageType == RPCMessage.Type.RPC_BLOCK_READ_RESPONSE) {
       // The response message has a status.
@@ -272,6 +279,17 @@ public class DataServerMessage {
     return mOffset;
   }
 
+  /**
+   * Get the id of the request, which a response message copies from its request. Make sure the
+   * message is ready before calling this method.
+   *
+   * @return The id of the request
+   */
+  public long getRequestId() {
+    checkReady();
+    return mRequestId;
+  }
+
   /**
    * Get the status of the response. Make sure the message is ready before calling this method.
    *
@@ -354,6 +372,7 @@ public class DataServerMessage {
         mBlockId = mHeader.getLong();
         mOffset = mHeader.getLong();
         mLength = mHeader.getLong();
+        mRequestId = mHeader.getLong();
         // TODO make this better to truncate the file.
         Preconditions.checkState(mLength < Integer.MAX_VALUE,
             "received length is too large: " + mLength);
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConcurrentLongObjectMap}.
+ */
+public class ConcurrentLongObjectMapTest {
+  private static final int THREADS = 8;
+  private static final int KEYS_PER_THREAD = 10000;
+
+  @Test
+  public void basicTest() {
+    ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<String>();
+    Assert.assertNull(map.put(0L, "zero"));
+    Assert.assertNull(map.put(Long.MIN_VALUE, "min"));
+    Assert.assertEquals("zero", map.put(0L, "nil"));
+    Assert.assertEquals(2, map.size());
+    Assert.assertEquals("nil", map.get(0L));
+    Assert.assertTrue(map.containsKey(Long.MIN_VALUE));
+    Assert.assertEquals("min", map.remove(Long.MIN_VALUE));
+    Assert.assertFalse(map.containsKey(Long.MIN_VALUE));
+    Assert.assertEquals(1, map.values().size());
+  }
+
+  /**
+   * Threads put and remove disjoint ranges of keys at the same time, and the map must end up with
+   * exactly the keys which were not removed.
+   */
+  @Test
+  public void concurrentUpdateTest() throws Exception {
+    final ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<Long>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < THREADS; t ++) {
+      final long base = (long) t * KEYS_PER_THREAD;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (long key = base; key < base + KEYS_PER_THREAD; key ++) {
+            map.put(key, key);
+          }
+          for (long key = base; key < base + KEYS_PER_THREAD; key += 2) {
+            map.remove(key);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(THREADS * KEYS_PER_THREAD / 2, map.size());
+    for (long key = 0; key < THREADS * KEYS_PER_THREAD; key ++) {
+      Assert.assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key));
+    }
+  }
+
+  /**
+   * Readers look up keys which are never removed while writers put and remove other keys, growing
+   * and replacing the tables the readers probe without locking. Readers must always find the keys.
+   */
+  @Test
+  public void concurrentReadTest() throws Exception {
+    final ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<Long>();
+    for (long key = 0; key < KEYS_PER_THREAD; key ++) {
+      map.put(key, key);
+    }
+    final AtomicBoolean done = new AtomicBoolean(false);
+    final List<Throwable> errors = new ArrayList<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < THREADS; t ++) {
+      final boolean reader = t % 2 == 0;
+      final long base = (long) (t + 1) * KEYS_PER_THREAD;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (reader) {
+              while (!done.get()) {
+                for (long key = 0; key < KEYS_PER_THREAD; key ++) {
+                  Assert.assertEquals(Long.valueOf(key), map.get(key));
+                }
+              }
+              return;
+            }
+            for (int round = 0; round < 10; round ++) {
+              for (long key = base; key < base + KEYS_PER_THREAD; key ++) {
+                map.put(key, key);
+              }
+              for (long key = base; key < base + KEYS_PER_THREAD; key ++) {
+                Assert.assertEquals(Long.valueOf(key), map.remove(key));
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (int t = 1; t < THREADS; t += 2) {
+      threads.get(t).join();
+    }
+    done.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue(errors.toString(), errors.isEmpty());
+    Assert.assertEquals(KEYS_PER_THREAD, map.size());
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tachyon.Constants;
+
+/**
+ * Measures the heap used by the primitive collections against the boxed JDK collections they
+ * replace in the master, for a million entries. The footprints are logged only: they are taken
+ * from the used heap around garbage collections, which the JVM does not have to complete.
+ *
+ * It allocates millions of objects and forces garbage collections, so it does not run with the
+ * unit tests; remove the {@link Ignore} annotation to run it.
+ */
+@Ignore("Benchmark, run by hand")
+public class HeapFootprintBenchmarkTest {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  private static final int ENTRIES = 1000000;
+
+  /** Something to do while measuring the heap used by a collection. */
+  private interface Allocation {
+    Object allocate();
+  }
+
+  @Test
+  public void intObjectMapTest() {
+    final Object value = new Object();
+    long boxed = footprint(new Allocation() {
+      @Override
+      public Object allocate() {
+        Map<Integer, Object> map = new HashMap<Integer, Object>();
+        for (int k = 0; k < ENTRIES; k ++) {
+          map.put(k, value);
+        }
+        return map;
+      }
+    });
+    long primitive = footprint(new Allocation() {
+      @Override
+      public Object allocate() {
+        IntObjectHashMap<Object> map = new IntObjectHashMap<Object>();
+        for (int k = 0; k < ENTRIES; k ++) {
+          map.put(k, value);
+        }
+        return map;
+      }
+    });
+    report("HashMap<Integer, V>", boxed, "IntObjectHashMap<V>", primitive);
+  }
+
+  @Test
+  public void longHashSetTest() {
+    long boxed = footprint(new Allocation() {
+      @Override
+      public Object allocate() {
+        Set<Long> set = new HashSet<Long>();
+        for (long k = 0; k < ENTRIES; k ++) {
+          set.add(k << 20);
+        }
+        return set;
+      }
+    });
+    long primitive = footprint(new Allocation() {
+      @Override
+      public Object allocate() {
+        LongHashSet set = new LongHashSet();
+        for (long k = 0; k < ENTRIES; k ++) {
+          set.add(k << 20);
+        }
+        return set;
+      }
+    });
+    report("HashSet<Long>", boxed, "LongHashSet", primitive);
+  }
+
+  private static void report(String boxedName, long boxed, String primitiveName, long primitive) {
+    LOG.info(String.format("%d entries: %s uses %d bytes, %s uses %d bytes (%.1f%%)", ENTRIES,
+        boxedName, boxed, primitiveName, primitive, 100.0 * primitive / boxed));
+  }
+
+  /**
+   * @return the growth of the used heap while the result of the allocation is reachable
+   */
+  private static long footprint(Allocation allocation) {
+    long before = usedHeap();
+    Object result = allocation.allocate();
+    long after = usedHeap();
+    // Keeps the result reachable until the heap is measured.
+    Assert.assertNotNull(result);
+    return after - before;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int k = 0; k < 4; k ++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
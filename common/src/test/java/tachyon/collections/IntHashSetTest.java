@@ -0,0 +1,84 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link IntHashSet}.
+ */
+public class IntHashSetTest {
+  @Test
+  public void basicTest() {
+    IntHashSet set = new IntHashSet();
+    Assert.assertTrue(set.isEmpty());
+    Assert.assertTrue(set.add(1));
+    Assert.assertFalse(set.add(1));
+    Assert.assertTrue(set.add(0));
+    Assert.assertTrue(set.add(-1));
+    Assert.assertEquals(3, set.size());
+    Assert.assertTrue(set.contains(0));
+    Assert.assertTrue(set.contains(-1));
+    Assert.assertFalse(set.contains(2));
+    Assert.assertEquals("[-1, 0, 1]", set.toString());
+
+    Assert.assertTrue(set.remove(0));
+    Assert.assertFalse(set.remove(0));
+    Assert.assertFalse(set.contains(0));
+    Assert.assertEquals(2, set.size());
+    set.clear();
+    Assert.assertTrue(set.isEmpty());
+    Assert.assertFalse(set.contains(1));
+  }
+
+  /**
+   * Adds and removes random values, many of them colliding, and checks the set against a
+   * {@link HashSet}.
+   */
+  @Test
+  public void randomTest() {
+    Random random = new Random(0);
+    IntHashSet set = new IntHashSet();
+    Set<Integer> expected = new HashSet<Integer>();
+    for (int k = 0; k < 100000; k ++) {
+      int value = random.nextInt(2000) - 1000;
+      if (random.nextBoolean()) {
+        Assert.assertEquals(expected.add(value), set.add(value));
+      } else {
+        Assert.assertEquals(expected.remove(value), set.remove(value));
+      }
+      Assert.assertEquals(expected.size(), set.size());
+    }
+    for (int value = -1000; value < 1000; value ++) {
+      Assert.assertEquals(expected.contains(value), set.contains(value));
+    }
+    int[] values = set.toArray();
+    Arrays.sort(values);
+    int[] expectedValues = new int[expected.size()];
+    int k = 0;
+    for (int value : expected) {
+      expectedValues[k ++] = value;
+    }
+    Arrays.sort(expectedValues);
+    Assert.assertArrayEquals(expectedValues, values);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LongObjectHashMap}.
+ */
+public class LongObjectHashMapTest {
+  @Test
+  public void basicTest() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertNull(map.put(0, "zero"));
+    Assert.assertNull(map.put(1, "one"));
+    Assert.assertEquals("one", map.put(1, "uno"));
+    Assert.assertEquals(2, map.size());
+    Assert.assertEquals("zero", map.get(0));
+    Assert.assertEquals("uno", map.get(1));
+    Assert.assertNull(map.get(2));
+    Assert.assertTrue(map.containsKey(0));
+    Assert.assertFalse(map.containsKey(2));
+
+    Assert.assertEquals("zero", map.remove(0));
+    Assert.assertNull(map.remove(0));
+    Assert.assertEquals(1, map.size());
+    Assert.assertEquals(1, map.keys().length);
+    Assert.assertEquals("uno", map.values().get(0));
+    map.clear();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertNull(map.get(1));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullValueTest() {
+    new LongObjectHashMap<String>().put(1, null);
+  }
+
+  /**
+   * Puts and removes random keys, many of them colliding, and checks the map against a
+   * {@link HashMap}.
+   */
+  @Test
+  public void randomTest() {
+    Random random = new Random(0);
+    LongObjectHashMap<Integer> map = new LongObjectHashMap<Integer>();
+    Map<Long, Integer> expected = new HashMap<Long, Integer>();
+    for (int k = 0; k < 100000; k ++) {
+      long key = random.nextInt(2000) - 1000;
+      if (random.nextBoolean()) {
+        Assert.assertEquals(expected.put(key, k), map.put(key, k));
+      } else {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      }
+      Assert.assertEquals(expected.size(), map.size());
+    }
+    for (long key = -1000; key < 1000; key ++) {
+      Assert.assertEquals(expected.get(key), map.get(key));
+    }
+    Assert.assertEquals(expected.size(), map.keys().length);
+    for (long key : map.keys()) {
+      Assert.assertTrue(expected.containsKey(key));
+    }
+    List<Integer> values = map.values();
+    List<Integer> expectedValues = new ArrayList<Integer>(expected.values());
+    Collections.sort(values);
+    Collections.sort(expectedValues);
+    Assert.assertEquals(expectedValues, values);
+  }
+}
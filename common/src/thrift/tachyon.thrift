@@ -221,6 +221,42 @@ service MasterService {
   list<ClientBlockInfo> user_getFileBlocks(1: i32 fileId, 2: string path)
     throws (1: FileDoesNotExistException eF, 2: InvalidPathException eI)
 
+  /**
+   * Get the file infos of many paths at once, in the order of the paths. A path which does
+   * not exist gets an info with id -1.
+   */
+  list<ClientFileInfo> user_getFileStatuses(1: list<string> paths)
+    throws (1: InvalidPathException eI)
+
+  /**
+   * Get the block infos of many files at once, in the order of the file ids.
+   */
+  list<list<ClientBlockInfo>> user_getFilesBlocks(1: list<i32> fileIds)
+    throws (1: FileDoesNotExistException eF)
+
+  /**
+   * Create many files at once, and return their ids in the order of the paths. The files
+   * created before a failure are kept.
+   */
+  list<i32> user_createFiles(1: list<string> paths, 2: i64 blockSizeByte, 3: bool recursive)
+    throws (1: FileAlreadyExistException eR, 2: InvalidPathException eI, 3: BlockInfoException eB,
+      4: TachyonException eT)
+
+  /**
+   * Complete many files at once.
+   */
+  void user_completeFiles(1: list<i32> fileIds)
+    throws (1: FileDoesNotExistException e)
+
+  /**
+   * Get a page of the entries of a directory, in depth-first order with the children of each
+   * directory sorted by name: at most limit entries after the entry startAfter, or from the
+   * first entry if startAfter is empty. A page shorter than limit is the last one.
+   */
+  list<ClientFileInfo> user_listStatusPage(1: string path, 2: string startAfter, 3: i32 limit,
+      4: bool recursive)
+    throws (1: InvalidPathException eI, 2: FileDoesNotExistException eF)
+
   /**
    * Delete file
    */
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tachyon.util.io.BufferUtils;
+
+/**
+ * Tests for tachyon.client.BlockMmapCache, on local files.
+ */
+public class BlockMmapCacheIntegrationTest {
+  private static final int BLOCK_BYTES = 100;
+
+  private String mPath1;
+  private String mPath2;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public final void before() throws IOException {
+    mPath1 = createBlockFile("block1");
+    mPath2 = createBlockFile("block2");
+  }
+
+  private String createBlockFile(String name) throws IOException {
+    File file = mFolder.newFile(name);
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(BufferUtils.getIncreasingByteArray(BLOCK_BYTES));
+    } finally {
+      out.close();
+    }
+    return file.getAbsolutePath();
+  }
+
+  @Test
+  public void reuseMappingTest() throws IOException {
+    BlockMmapCache cache = new BlockMmapCache(BLOCK_BYTES);
+    BlockMmapCache.Mapping first = cache.acquire(1, mPath1);
+    BlockMmapCache.Mapping second = cache.acquire(1, mPath1);
+    Assert.assertSame(first, second);
+    ByteBuffer buf = BlockMmapCache.slice(first, 10, 20);
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(10, 20, buf));
+    cache.release(first);
+    cache.release(second);
+
+    // An idle mapping within the bound is kept
+    Assert.assertEquals(1, cache.size());
+    Assert.assertSame(first, cache.acquire(1, mPath1));
+    cache.release(first);
+  }
+
+  @Test
+  public void releaseAcquiredMappingTest() throws IOException {
+    BlockMmapCache cache = new BlockMmapCache(BLOCK_BYTES);
+    BlockMmapCache.Mapping oldMapping = cache.acquire(1, mPath1);
+    // The block is mapped again at its new path, while a buffer of the old mapping is out
+    BlockMmapCache.Mapping newMapping = cache.acquire(1, mPath2);
+    Assert.assertNotSame(oldMapping, newMapping);
+
+    // Releasing the old mapping leaves the new one in use, so it is not evicted
+    cache.release(oldMapping);
+    BlockMmapCache.Mapping other = cache.acquire(2, mPath1);
+    cache.release(other);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertSame(newMapping, cache.acquire(1, mPath2));
+  }
+
+  @Test
+  public void boundIdleBytesTest() throws IOException {
+    BlockMmapCache cache = new BlockMmapCache(BLOCK_BYTES);
+    BlockMmapCache.Mapping mapping1 = cache.acquire(1, mPath1);
+    BlockMmapCache.Mapping mapping2 = cache.acquire(2, mPath2);
+    cache.release(mapping1);
+    Assert.assertEquals(2, cache.size());
+    // Both idle mappings would exceed the bound, the least recently used is dropped
+    cache.release(mapping2);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertSame(mapping2, cache.acquire(2, mPath2));
+    Assert.assertNotSame(mapping1, cache.acquire(1, mPath1));
+  }
+
+  @Test
+  public void invalidateTest() throws IOException {
+    BlockMmapCache cache = new BlockMmapCache(BLOCK_BYTES);
+    BlockMmapCache.Mapping mapping = cache.acquire(1, mPath1);
+    ByteBuffer buf = BlockMmapCache.slice(mapping, 0, -1);
+    cache.invalidate(1);
+    Assert.assertEquals(0, cache.size());
+    // The mapping stays readable until it is released
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(0, BLOCK_BYTES, buf));
+    cache.release(mapping);
+    Assert.assertNotSame(mapping, cache.acquire(1, mPath1));
+  }
+}
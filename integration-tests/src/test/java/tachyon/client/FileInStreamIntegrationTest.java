@@ -15,7 +15,14 @@
 
 package tachyon.client;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -196,6 +203,193 @@ public class FileInStreamIntegrationTest {
     }
   }
 
+  /**
+   * Test <code>int read(long pos, byte[] b, int off, int len)</code> and
+   * <code>int read(long pos, ByteBuffer buf)</code>.
+   */
+  @Test
+  public void positionedReadTest() throws IOException {
+    String uniqPath = PathUtils.uniqPath();
+    for (int k = MIN_LEN; k <= MAX_LEN; k += DELTA) {
+      for (WriteType op : WriteType.values()) {
+        int fileId =
+            TachyonFSTestUtils.createByteFile(sTfs, uniqPath + "/file_" + k + "_" + op, op, k);
+
+        TachyonFile file = sTfs.getFile(fileId);
+        InStream is =
+            (k < MEAN ? file.getInStream(ReadType.CACHE) : file.getInStream(ReadType.NO_CACHE));
+        Assert.assertTrue(is instanceof FileInStream);
+        Assert.assertEquals(0, is.read());
+
+        // A read across the boundaries of blocks
+        int pos = k / 3;
+        byte[] ret = new byte[k - pos];
+        Assert.assertEquals(k - pos, is.read(pos, ret, 0, ret.length));
+        Assert.assertTrue(BufferUtils.equalIncreasingByteArray(pos, ret.length, ret));
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        Assert.assertEquals(BLOCK_SIZE, is.read(1, buf));
+        Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(1, BLOCK_SIZE, buf));
+
+        Assert.assertEquals(-1, is.read(k, ret, 0, ret.length));
+        // The positioned reads did not move the stream
+        Assert.assertEquals(1, is.read());
+        is.close();
+      }
+    }
+  }
+
+  /**
+   * Test <code>int read(long pos, byte[] b, int off, int len)</code> reuses the block stream of a
+   * block, and that it is closed with the stream.
+   */
+  @Test
+  public void positionedReadReuseTest() throws IOException {
+    int fileId = TachyonFSTestUtils.createByteFile(sTfs, PathUtils.uniqPath(),
+        WriteType.MUST_CACHE, MAX_LEN);
+    InStream is = sTfs.getFile(fileId).getInStream(ReadType.NO_CACHE);
+    byte[] ret = new byte[BLOCK_SIZE / 2];
+    int firstLockId = sTfs.getBlockLockId();
+    for (int pos = 0; pos < BLOCK_SIZE / 2; pos ++) {
+      Assert.assertEquals(ret.length, is.read(pos, ret, 0, ret.length));
+      Assert.assertTrue(BufferUtils.equalIncreasingByteArray(pos, ret.length, ret));
+    }
+    // The block was locked at most once, when its block stream was opened
+    Assert.assertTrue(sTfs.getBlockLockId() - firstLockId <= 2);
+    is.close();
+
+    mThrown.expect(IOException.class);
+    is.read(0, ret, 0, ret.length);
+  }
+
+  /**
+   * Test concurrent <code>int read(long pos, byte[] b, int off, int len)</code> of one stream.
+   */
+  @Test
+  public void concurrentPositionedReadTest() throws Exception {
+    final int len = MAX_LEN;
+    int fileId = TachyonFSTestUtils.createByteFile(sTfs, PathUtils.uniqPath(),
+        WriteType.MUST_CACHE, len);
+    final InStream is = sTfs.getFile(fileId).getInStream(ReadType.NO_CACHE);
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i ++) {
+      final int start = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int pos = start; pos < len; pos += DELTA) {
+              byte[] ret = new byte[len - pos];
+              if (is.read(pos, ret, 0, ret.length) != ret.length
+                  || !BufferUtils.equalIncreasingByteArray(pos, ret.length, ret)) {
+                failed.set(true);
+              }
+            }
+          } catch (IOException e) {
+            failed.set(true);
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    is.close();
+    Assert.assertFalse(failed.get());
+  }
+
+  /**
+   * Test <code>void readVectored(List&lt;FileRange&gt; ranges)</code>.
+   */
+  @Test
+  public void readVectoredTest() throws Exception {
+    String uniqPath = PathUtils.uniqPath();
+    for (int k = MIN_LEN; k <= MAX_LEN; k += DELTA) {
+      for (WriteType op : WriteType.values()) {
+        int fileId =
+            TachyonFSTestUtils.createByteFile(sTfs, uniqPath + "/file_" + k + "_" + op, op, k);
+
+        TachyonFile file = sTfs.getFile(fileId);
+        InStream is = file.getInStream(ReadType.NO_CACHE);
+        Assert.assertTrue(is instanceof FileInStream);
+        // Adjacent, overlapping, across blocks, and into a buffer of its own
+        ByteBuffer buf = ByteBuffer.allocate(k);
+        List<FileRange> ranges = new ArrayList<FileRange>();
+        ranges.add(new FileRange(k / 2, k - k / 2, ByteBuffer.allocateDirect(k)));
+        ranges.add(new FileRange(0, 10, buf));
+        ranges.add(new FileRange(10, 5, ByteBuffer.allocate(5)));
+        ranges.add(new FileRange(12, k - 12, ByteBuffer.allocate(k)));
+        is.readVectored(ranges);
+
+        for (FileRange range : ranges) {
+          ByteBuffer data = range.getData().get();
+          Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer((int) range.getOffset(),
+              range.getLength(), data));
+        }
+        Assert.assertEquals(0, buf.position());
+
+        FileRange pastEnd = new FileRange(k - 1, 2, ByteBuffer.allocate(2));
+        is.readVectored(Collections.singletonList(pastEnd));
+        try {
+          pastEnd.getData().get();
+          Assert.fail("Reading past the end of the file should fail");
+        } catch (ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof EOFException);
+        }
+        is.close();
+      }
+    }
+  }
+
+  /**
+   * Test <code>void readVectored(List&lt;FileRange&gt; ranges)</code> of a range alone in its
+   * block, which is read into its buffer from the position of the buffer on.
+   */
+  @Test
+  public void readVectoredIntoBufferTest() throws Exception {
+    int fileId = TachyonFSTestUtils.createByteFile(sTfs, PathUtils.uniqPath(),
+        WriteType.MUST_CACHE, MAX_LEN);
+    InStream is = sTfs.getFile(fileId).getInStream(ReadType.NO_CACHE);
+    ByteBuffer buf = ByteBuffer.allocate(20);
+    buf.position(10);
+    FileRange range = new FileRange(5, 10, buf);
+    is.readVectored(Collections.singletonList(range));
+
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(5, 10, range.getData().get()));
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(5, 10,
+        ByteBuffer.wrap(buf.array(), 10, 10).slice()));
+    Assert.assertEquals(10, buf.position());
+    is.close();
+  }
+
+  /**
+   * Test <code>void readVectored(List&lt;FileRange&gt; ranges)</code> once the client is closed.
+   */
+  @Test
+  public void readVectoredClosedClientTest() throws Exception {
+    TachyonFS tfs = sLocalTachyonCluster.getClient();
+    int fileId = TachyonFSTestUtils.createByteFile(tfs, PathUtils.uniqPath(),
+        WriteType.MUST_CACHE, MAX_LEN);
+    InStream is = tfs.getFile(fileId).getInStream(ReadType.NO_CACHE);
+    tfs.close();
+
+    // Ranges in different blocks, so that they are not read together
+    List<FileRange> ranges = new ArrayList<FileRange>();
+    ranges.add(new FileRange(0, 10, ByteBuffer.allocate(10)));
+    ranges.add(new FileRange(BLOCK_SIZE * 2, 10, ByteBuffer.allocate(10)));
+    is.readVectored(ranges);
+    for (FileRange range : ranges) {
+      try {
+        range.getData().get();
+        Assert.fail("Reading with a closed client should fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+  }
+
   /**
    * Test <code>void seek(long pos)</code>. Validate the expected exception for seeking a negative
    * position.
@@ -30,6 +30,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import com.google.common.io.ByteStreams;
+
 import tachyon.Constants;
 import tachyon.IntegrationTestConstants;
 import tachyon.TachyonURI;
@@ -37,6 +39,7 @@ import tachyon.conf.TachyonConf;
 import tachyon.master.LocalTachyonCluster;
 import tachyon.underfs.UnderFileSystem;
 import tachyon.underfs.UnderFileSystemCluster;
+import tachyon.util.CommonUtils;
 import tachyon.util.io.BufferUtils;
 import tachyon.util.io.PathUtils;
 
@@ -239,6 +242,38 @@ public class FileOutStreamIntegrationTest {
     checkWrite(filePath, op, len, len);
   }
 
+  /**
+   * Tests that a file written with ASYNC_THROUGH is checkpointed by the worker in the background.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void asyncThroughTest() throws IOException {
+    TachyonURI filePath = new TachyonURI(PathUtils.uniqPath());
+    int len = BLOCK_SIZE_BYTES * 2 + 1;
+    int fileId = mTfs.createFile(filePath);
+    TachyonFile file = mTfs.getFile(fileId);
+    OutStream os = file.getOutStream(WriteType.ASYNC_THROUGH);
+    os.write(BufferUtils.getIncreasingByteArray(len));
+    os.close();
+    checkWrite(filePath, WriteType.ASYNC_THROUGH, len, len);
+
+    long startMs = System.currentTimeMillis();
+    while (mTfs.getFile(filePath).getUfsPath().isEmpty()) {
+      Assert.assertTrue("The file was not checkpointed in time",
+          System.currentTimeMillis() - startMs < 10 * Constants.SECOND_MS);
+      CommonUtils.sleepMs(null, 10);
+    }
+    String checkpointPath = mTfs.getFile(filePath).getUfsPath();
+    UnderFileSystem ufs = UnderFileSystem.get(checkpointPath, mMasterTachyonConf);
+    Assert.assertEquals(len, ufs.getFileSize(checkpointPath));
+    InputStream is = ufs.open(checkpointPath);
+    byte[] res = new byte[len];
+    Assert.assertEquals(len, ByteStreams.read(is, res, 0, len));
+    Assert.assertTrue(BufferUtils.equalIncreasingByteArray(len, res));
+    is.close();
+  }
+
   /**
    * Tests if out-of-order writes are possible. Writes could be out-of-order when the following are
    * both true:
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tachyon.conf.TachyonConf;
+import tachyon.master.MasterClient;
+
+/**
+ * Tests for tachyon.client.MasterClientPool. The clients of the pool connect lazily, so no master
+ * is needed.
+ */
+public class MasterClientPoolIntegrationTest {
+  private static final InetSocketAddress MASTER_ADDRESS = new InetSocketAddress("localhost", 1);
+
+  @Test
+  public void reuseClientTest() throws IOException {
+    MasterClientPool pool = new MasterClientPool(MASTER_ADDRESS, 2, new TachyonConf());
+    MasterClient client1 = pool.acquire();
+    MasterClient client2 = pool.acquire();
+    Assert.assertNotSame(client1, client2);
+    pool.release(client1);
+    Assert.assertSame(client1, pool.acquire());
+    pool.close();
+  }
+
+  @Test(expected = IOException.class)
+  public void acquireAfterCloseTest() throws IOException {
+    MasterClientPool pool = new MasterClientPool(MASTER_ADDRESS, 1, new TachyonConf());
+    pool.release(pool.acquire());
+    pool.close();
+    pool.acquire();
+  }
+
+  @Test
+  public void closeWakesWaitersTest() throws Exception {
+    final MasterClientPool pool = new MasterClientPool(MASTER_ADDRESS, 1, new TachyonConf());
+    pool.acquire();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pool.acquire();
+        } catch (Throwable e) {
+          error.set(e);
+        }
+      }
+    });
+    waiter.start();
+    // Wait for the waiter to block on the full pool
+    while (waiter.getState() != Thread.State.WAITING && waiter.isAlive()) {
+      Thread.sleep(10);
+    }
+    pool.close();
+    waiter.join(10000);
+    Assert.assertFalse(waiter.isAlive());
+    Assert.assertTrue(error.get() instanceof IOException);
+  }
+}
@@ -81,6 +81,8 @@ public class RemoteBlockInStreamIntegrationTest {
     System.clearProperty("fs.hdfs.impl.disable.cache");
     System.clearProperty(Constants.WORKER_DATA_SERVER);
     System.clearProperty(Constants.USER_REMOTE_BLOCK_READER);
+    System.clearProperty(Constants.USER_REMOTE_READ_CHUNK_SIZE_BYTE);
+    System.clearProperty(Constants.USER_REMOTE_READ_WINDOW);
   }
 
   @Before
@@ -91,6 +93,9 @@ public class RemoteBlockInStreamIntegrationTest {
     mLocalTachyonCluster = new LocalTachyonCluster(10000, 1000, Constants.GB);
     System.setProperty(Constants.WORKER_DATA_SERVER, mDataServerClass);
     System.setProperty(Constants.USER_REMOTE_BLOCK_READER, mRemoteReaderClass);
+    // Stream blocks by several chunks, with fewer chunks in flight than in most blocks.
+    System.setProperty(Constants.USER_REMOTE_READ_CHUNK_SIZE_BYTE, "30");
+    System.setProperty(Constants.USER_REMOTE_READ_WINDOW, "3");
     mLocalTachyonCluster.start();
     mLocalTachyonCluster.getWorkerTachyonConf().set(Constants.USER_REMOTE_READ_BUFFER_SIZE_BYTE,
         "100");
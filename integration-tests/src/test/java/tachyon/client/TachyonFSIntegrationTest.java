@@ -17,7 +17,10 @@ package tachyon.client;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -245,6 +248,100 @@ public class TachyonFSIntegrationTest {
     Assert.assertFalse(fileInfo == fileInfoNotCached);
   }
 
+  @Test
+  public void batchMetadataTest() throws IOException {
+    String uniqPath = PathUtils.uniqPath();
+    List<TachyonURI> uris = new ArrayList<TachyonURI>();
+    for (int k = 0; k < 10; k ++) {
+      uris.add(new TachyonURI(uniqPath + "/file_" + k));
+    }
+    List<Integer> fileIds = sTfs.createFiles(uris, Constants.KB, true);
+    Assert.assertEquals(uris.size(), fileIds.size());
+    sTfs.completeFiles(fileIds);
+
+    uris.add(new TachyonURI(uniqPath + "/missing"));
+    List<ClientFileInfo> infos = sTfs.getFileStatuses(uris);
+    Assert.assertEquals(uris.size(), infos.size());
+    for (int k = 0; k < fileIds.size(); k ++) {
+      Assert.assertEquals((int) fileIds.get(k), infos.get(k).getId());
+      Assert.assertEquals(uris.get(k).getPath(), infos.get(k).getPath());
+      Assert.assertTrue(infos.get(k).isComplete);
+    }
+    Assert.assertNull(infos.get(fileIds.size()));
+    // The infos are cached.
+    Assert.assertTrue(infos.get(0) == sTfs.getFileStatus(fileIds.get(0), true));
+
+    Assert.assertEquals(fileIds.size(), sTfs.getFileBlocks(fileIds).size());
+  }
+
+  @Test
+  public void listStatusIteratorTest() throws IOException {
+    String uniqPath = PathUtils.uniqPath();
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 3; i ++) {
+      expected.add(uniqPath + "/dir_" + i);
+      for (int k = 0; k < 3; k ++) {
+        String path = uniqPath + "/dir_" + i + "/file_" + k;
+        sTfs.createFile(new TachyonURI(path));
+        expected.add(path);
+      }
+    }
+
+    // A page size which does not divide the number of entries
+    FileInfoIterator iterator = new FileInfoIterator(sTfs, uniqPath, true, 5);
+    List<String> paths = new ArrayList<String>();
+    while (iterator.hasNext()) {
+      paths.add(iterator.next().getPath());
+    }
+    Assert.assertEquals(expected, paths);
+
+    iterator = sTfs.listStatusIterator(new TachyonURI(uniqPath), false);
+    paths.clear();
+    while (iterator.hasNext()) {
+      paths.add(iterator.next().getPath());
+    }
+    Assert.assertEquals(Arrays.asList(uniqPath + "/dir_0", uniqPath + "/dir_1", uniqPath
+        + "/dir_2"), paths);
+  }
+
+  @Test
+  public void concurrentGetFileStatusTest() throws Exception {
+    final String uniqPath = PathUtils.uniqPath();
+    final int files = 10;
+    for (int k = 0; k < files; k ++) {
+      TachyonFSTestUtils.createByteFile(sTfs, uniqPath + "/file_" + k, WriteType.MUST_CACHE, k);
+    }
+
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i ++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int k = 0; k < files; k ++) {
+              TachyonURI uri = new TachyonURI(uniqPath + "/file_" + k);
+              TachyonFile file = sTfs.getFile(uri, k % 2 == 0);
+              if (file == null || file.length() != k) {
+                failed.set(true);
+              }
+              if (sTfs.listStatus(new TachyonURI(uniqPath)).size() != files) {
+                failed.set(true);
+              }
+            }
+          } catch (IOException e) {
+            failed.set(true);
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertFalse(failed.get());
+  }
+
   @Test(expected = IOException.class)
   public void getTestAbnormal1() throws IOException {
     TachyonFS.get(new TachyonURI("/" + sHost + ":" + sPort), mMasterTachyonConf);
@@ -220,6 +220,36 @@ public class TachyonFileIntegrationTest {
     }
   }
 
+  /**
+   * Test that repeated local reads of a block share the block's memory mapping.
+   */
+  @Test
+  public void readLocalByteBufferTest() throws IOException {
+    int fileId =
+        TachyonFSTestUtils.createByteFile(mTfs, "/root/testFile", WriteType.MUST_CACHE,
+            USER_QUOTA_UNIT_BYTES);
+
+    TachyonFile file = mTfs.getFile(fileId);
+    TachyonByteBuffer first = file.readLocalByteBuffer(0);
+    TachyonByteBuffer second = file.readLocalByteBuffer(0);
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(0, USER_QUOTA_UNIT_BYTES, first.mData));
+    Assert.assertTrue(
+        BufferUtils.equalIncreasingByteBuffer(0, USER_QUOTA_UNIT_BYTES, second.mData));
+    Assert.assertSame(first.mMapping, second.mMapping);
+    Assert.assertEquals(1, mTfs.getBlockMmapCache().size());
+    first.close();
+    second.close();
+    // The mapping stays cached once the block is unlocked
+    Assert.assertEquals(1, mTfs.getBlockMmapCache().size());
+
+    // The next read of the block locks it again and reuses its mapping
+    TachyonByteBuffer third = file.readLocalByteBuffer(0);
+    Assert.assertTrue(BufferUtils.equalIncreasingByteBuffer(0, USER_QUOTA_UNIT_BYTES, third.mData));
+    Assert.assertSame(first.mMapping, third.mMapping);
+    Assert.assertEquals(1, mTfs.getBlockMmapCache().size());
+    third.close();
+  }
+
   @Test
   public void readRemoteTest() throws IOException {
     int fileId =
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import tachyon.Constants;
+import tachyon.conf.TachyonConf;
+import tachyon.thrift.ClientFileInfo;
+
+/**
+ * Tests {@link AsyncMasterClient} and the non-blocking master server.
+ */
+public class AsyncMasterClientIntegrationTest {
+  private LocalTachyonCluster mLocalTachyonCluster = null;
+  private MasterInfo mMasterInfo = null;
+  private TachyonConf mClientTachyonConf = null;
+
+  @After
+  public final void after() throws Exception {
+    mLocalTachyonCluster.stop();
+  }
+
+  @Before
+  public final void before() throws Exception {
+    mLocalTachyonCluster = new LocalTachyonCluster(1000, 1000, Constants.GB);
+    mLocalTachyonCluster.start();
+    mMasterInfo = mLocalTachyonCluster.getMasterInfo();
+    mClientTachyonConf = new TachyonConf(mLocalTachyonCluster.getMasterTachyonConf());
+    mClientTachyonConf.set(Constants.USER_MASTER_CLIENT_POOL_SIZE, "4");
+  }
+
+  @Test
+  public void callsTest() throws Exception {
+    AsyncMasterClient client =
+        new AsyncMasterClient(mMasterInfo.getMasterAddress(), mClientTachyonConf);
+    try {
+      Assert.assertTrue(client.user_mkdirs("/dir", true).get());
+      int fileId = client.user_createFile("/dir/file", "", Constants.KB, true).get();
+      client.user_completeFile(fileId).get();
+
+      ClientFileInfo info = client.getFileStatus(-1, "/dir/file").get();
+      Assert.assertEquals(fileId, info.getId());
+      Assert.assertTrue(info.isIsComplete());
+      Assert.assertEquals(1, client.listStatus("/dir").get().size());
+
+      Assert.assertTrue(client.user_rename(fileId, "", "/dir/file2").get());
+      Assert.assertEquals(-1, client.getFileStatus(-1, "/dir/file").get().getId());
+      Assert.assertEquals(fileId, client.getFileStatus(fileId, "").get().getId());
+      Assert.assertTrue(client.user_delete(-1, "/dir", true).get());
+      Assert.assertEquals(-1, client.getFileStatus(-1, "/dir").get().getId());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void exceptionTest() throws Exception {
+    AsyncMasterClient client =
+        new AsyncMasterClient(mMasterInfo.getMasterAddress(), mClientTachyonConf);
+    try {
+      client.user_createFile("/file", "", Constants.KB, true).get();
+      try {
+        client.user_createFile("/file", "", Constants.KB, true).get();
+        Assert.fail("Creating an existing file should fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+      // The connection is still usable after the master threw an exception.
+      Assert.assertTrue(client.getFileStatus(-1, "/file").get().getId() != -1);
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void manyConcurrentCallsTest() throws Exception {
+    AsyncMasterClient client =
+        new AsyncMasterClient(mMasterInfo.getMasterAddress(), mClientTachyonConf);
+    try {
+      int numFiles = 1000;
+      List<ListenableFuture<Integer>> creates = new ArrayList<ListenableFuture<Integer>>();
+      for (int k = 0; k < numFiles; k ++) {
+        creates.add(client.user_createFile("/file" + k, "", Constants.KB, true));
+      }
+      List<Integer> fileIds = Futures.allAsList(creates).get();
+
+      List<ListenableFuture<ClientFileInfo>> infos =
+          new ArrayList<ListenableFuture<ClientFileInfo>>();
+      for (int k = 0; k < numFiles; k ++) {
+        infos.add(client.getFileStatus(-1, "/file" + k));
+      }
+      for (int k = 0; k < numFiles; k ++) {
+        ClientFileInfo info = infos.get(k).get();
+        Assert.assertEquals((int) fileIds.get(k), info.getId());
+        Assert.assertEquals("/file" + k, info.getPath());
+      }
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void closeTest() throws Exception {
+    AsyncMasterClient client =
+        new AsyncMasterClient(mMasterInfo.getMasterAddress(), mClientTachyonConf);
+    client.close();
+    try {
+      client.getFileStatus(-1, "/").get();
+      Assert.fail("A call of a closed client should fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  /**
+   * Holds many more connections open than the master has worker threads, which a thread per
+   * connection server could not serve.
+   */
+  @Test(timeout = 60000)
+  public void moreConnectionsThanWorkerThreadsTest() throws Exception {
+    int maxWorkerThreads = mLocalTachyonCluster.getMasterTachyonConf().getInt(
+        Constants.MASTER_MAX_WORKER_THREADS, Constants.DEFAULT_MASTER_MAX_WORKER_THREADS);
+    int numClients = maxWorkerThreads * 2;
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    List<MasterClient> clients = new ArrayList<MasterClient>();
+    try {
+      for (int k = 0; k < numClients; k ++) {
+        MasterClient client = new MasterClient(mMasterInfo.getMasterAddress(), executorService,
+            mClientTachyonConf);
+        clients.add(client);
+        client.connect();
+      }
+      for (MasterClient client : clients) {
+        Assert.assertNotNull(client.getFileStatus(-1, "/"));
+      }
+    } finally {
+      for (MasterClient client : clients) {
+        client.close();
+      }
+      executorService.shutdownNow();
+    }
+  }
+}
@@ -15,6 +15,7 @@
 
 package tachyon.master;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -24,7 +25,6 @@ import java.util.Collection;
 import java.util.List;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.junit.After;
 import org.junit.Assert;
@@ -74,8 +74,7 @@ public class DependencyIntegrationTest {
     // create the dependency, output streams, and associated objects
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dos = new DataOutputStream(os);
-    ObjectMapper mapper = JsonObject.createObjectMapper();
-    ObjectWriter writer = mapper.writer();
+    ObjectWriter writer = JournalFormat.createObjectWriter();
 
     String cmd = "java test.jar $master:$port";
     List<Integer> parents = new ArrayList<Integer>();
@@ -87,10 +86,12 @@ public class DependencyIntegrationTest {
             DependencyType.Narrow, parentDependencies, 0L, mMasterTachyonConf);
 
     // write the image
+    JournalFormat.writeHeader(dos);
     dep.writeImage(writer, dos);
 
     // decode the written bytes
-    ImageElement decoded = mapper.readValue(os.toByteArray(), ImageElement.class);
+    ImageElement decoded =
+        JournalReader.open(new ByteArrayInputStream(os.toByteArray())).read(ImageElement.class);
     TypeReference<List<Integer>> intListRef = new TypeReference<List<Integer>>() {};
     TypeReference<DependencyType> depTypeRef = new TypeReference<DependencyType>() {};
     TypeReference<List<ByteBuffer>> byteListRef = new TypeReference<List<ByteBuffer>>() {};
@@ -15,6 +15,7 @@
 
 package tachyon.master;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
@@ -22,14 +23,16 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.junit.After;
 import org.junit.Assert;
@@ -37,13 +40,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import tachyon.Constants;
+import tachyon.StorageDirId;
+import tachyon.StorageLevelAlias;
 import tachyon.TachyonURI;
 import tachyon.conf.TachyonConf;
 import tachyon.thrift.BlockInfoException;
+import tachyon.thrift.ClientBlockInfo;
 import tachyon.thrift.ClientFileInfo;
+import tachyon.thrift.Command;
+import tachyon.thrift.CommandType;
 import tachyon.thrift.FileAlreadyExistException;
 import tachyon.thrift.FileDoesNotExistException;
 import tachyon.thrift.InvalidPathException;
+import tachyon.thrift.NetAddress;
 import tachyon.thrift.SuspectedFileSizeException;
 import tachyon.thrift.TableColumnException;
 import tachyon.thrift.TachyonException;
@@ -297,6 +306,24 @@ public class MasterInfoIntegrationTest {
     Assert.assertFalse(fileInfo.isComplete);
   }
 
+  @Test
+  public void clientFileInfosTest() throws InvalidPathException, FileDoesNotExistException,
+      FileAlreadyExistException, BlockInfoException, TachyonException {
+    int fileId1 = mMasterInfo.createFile(new TachyonURI("/b/file"), Constants.KB);
+    int fileId2 = mMasterInfo.createFile(new TachyonURI("/a/file"), Constants.KB);
+    int folderId = mMasterInfo.getFileId(new TachyonURI("/a"));
+    List<ClientFileInfo> infos =
+        mMasterInfo.getClientFileInfos(Arrays.asList(new TachyonURI("/b/file"), new TachyonURI(
+            "/a/file"), new TachyonURI("/a/missing"), new TachyonURI("/a")));
+    Assert.assertEquals(4, infos.size());
+    Assert.assertEquals(fileId1, infos.get(0).getId());
+    Assert.assertEquals("/b/file", infos.get(0).getPath());
+    Assert.assertEquals(fileId2, infos.get(1).getId());
+    Assert.assertEquals(-1, infos.get(2).getId());
+    Assert.assertEquals(folderId, infos.get(3).getId());
+    Assert.assertTrue(infos.get(3).isFolder);
+  }
+
   // TODO: This test currently relies on the fact the HDFS client is a cached instance to avoid
   // TODO: invalid lease exception. This should be fixed.
   @Test
@@ -417,6 +444,40 @@ public class MasterInfoIntegrationTest {
     Assert.assertFalse(mMasterInfo.getClientFileInfo(new TachyonURI("/testFile")).isFolder);
   }
 
+  @Test
+  public void createFilesTest() throws InvalidPathException, FileAlreadyExistException,
+      FileDoesNotExistException, BlockInfoException, TachyonException {
+    List<Integer> fileIds =
+        mMasterInfo.createFiles(Arrays.asList(new TachyonURI("/testFolder/file1"), new TachyonURI(
+            "/testFolder/file2")), Constants.KB, true);
+    Assert.assertEquals(2, fileIds.size());
+    Assert.assertEquals((int) fileIds.get(0),
+        mMasterInfo.getFileId(new TachyonURI("/testFolder/file1")));
+    Assert.assertEquals((int) fileIds.get(1),
+        mMasterInfo.getFileId(new TachyonURI("/testFolder/file2")));
+
+    mMasterInfo.completeFiles(fileIds);
+    for (int fileId : fileIds) {
+      Assert.assertTrue(mMasterInfo.getClientFileInfo(fileId).isComplete);
+    }
+    List<List<ClientBlockInfo>> blocks = mMasterInfo.getFileBlocks(fileIds);
+    Assert.assertEquals(2, blocks.size());
+    Assert.assertTrue(blocks.get(0).isEmpty());
+    Assert.assertTrue(blocks.get(1).isEmpty());
+  }
+
+  @Test(expected = FileAlreadyExistException.class)
+  public void createFilesAlreadyExistTest() throws InvalidPathException,
+      FileAlreadyExistException, BlockInfoException, TachyonException {
+    try {
+      mMasterInfo.createFiles(Arrays.asList(new TachyonURI("/file1"), new TachyonURI("/file1")),
+          Constants.KB, true);
+    } finally {
+      // The files created before the failure are kept.
+      Assert.assertTrue(mMasterInfo.getFileId(new TachyonURI("/file1")) != -1);
+    }
+  }
+
   @Test
   public void createRawTableTest() throws InvalidPathException, FileAlreadyExistException,
       TableColumnException, FileDoesNotExistException, TachyonException {
@@ -616,6 +677,72 @@ public class MasterInfoIntegrationTest {
     Assert.assertEquals(dirIds, listedDirIds);
   }
 
+  @Test
+  public void listStatusPageTest() throws FileAlreadyExistException, InvalidPathException,
+      TachyonException, BlockInfoException, FileDoesNotExistException {
+    for (int i = 0; i < 3; i ++) {
+      mMasterInfo.mkdirs(new TachyonURI("/i" + i + "/k"), true);
+      for (int j = 0; j < 3; j ++) {
+        mMasterInfo.createFile(new TachyonURI("/i" + i + "/j" + j), 64);
+      }
+    }
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 3; i ++) {
+      expected.add("/i" + i);
+      for (int j = 0; j < 3; j ++) {
+        expected.add("/i" + i + "/j" + j);
+      }
+      expected.add("/i" + i + "/k");
+    }
+
+    // Any page size lists the entries in the same order
+    for (int limit = 1; limit <= expected.size() + 1; limit ++) {
+      List<String> paths = new ArrayList<String>();
+      TachyonURI startAfter = null;
+      while (true) {
+        List<ClientFileInfo> page =
+            mMasterInfo.listStatusPage(new TachyonURI("/"), startAfter, limit, true);
+        Assert.assertTrue(page.size() <= limit);
+        for (ClientFileInfo info : page) {
+          paths.add(info.getPath());
+        }
+        if (page.size() < limit) {
+          break;
+        }
+        startAfter = new TachyonURI(page.get(page.size() - 1).getPath());
+      }
+      Assert.assertEquals(expected, paths);
+    }
+
+    List<ClientFileInfo> page =
+        mMasterInfo.listStatusPage(new TachyonURI("/"), null, 10, false);
+    Assert.assertEquals(3, page.size());
+    Assert.assertEquals("/i2", page.get(2).getPath());
+    page = mMasterInfo.listStatusPage(new TachyonURI("/i1"), new TachyonURI("/i1/j0"), 10, false);
+    Assert.assertEquals(3, page.size());
+    Assert.assertEquals("/i1/j1", page.get(0).getPath());
+
+    // The listing goes on after an entry which was deleted
+    mMasterInfo.delete(new TachyonURI("/i1"), true);
+    page = mMasterInfo.listStatusPage(new TachyonURI("/"), new TachyonURI("/i1/j1"), 10, true);
+    Assert.assertEquals(5, page.size());
+    Assert.assertEquals("/i2", page.get(0).getPath());
+
+    // The only entry of a file is itself
+    page = mMasterInfo.listStatusPage(new TachyonURI("/i0/j0"), null, 10, true);
+    Assert.assertEquals(1, page.size());
+    Assert.assertEquals("/i0/j0", page.get(0).getPath());
+    Assert.assertTrue(mMasterInfo.listStatusPage(new TachyonURI("/i0/j0"),
+        new TachyonURI("/i0/j0"), 10, true).isEmpty());
+  }
+
+  @Test(expected = InvalidPathException.class)
+  public void listStatusPageInvalidStartAfterTest() throws FileAlreadyExistException,
+      InvalidPathException, TachyonException, BlockInfoException, FileDoesNotExistException {
+    mMasterInfo.mkdirs(new TachyonURI("/a"), true);
+    mMasterInfo.listStatusPage(new TachyonURI("/a"), new TachyonURI("/b/c"), 10, true);
+  }
+
   @Test
   public void lsTest() throws FileAlreadyExistException, InvalidPathException, TachyonException,
       BlockInfoException, FileDoesNotExistException {
@@ -695,21 +822,18 @@ public class MasterInfoIntegrationTest {
     // create the output streams
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dos = new DataOutputStream(os);
-    ObjectMapper mapper = JsonObject.createObjectMapper();
-    ObjectWriter writer = mapper.writer();
+    ObjectWriter writer = JournalFormat.createObjectWriter();
     ImageElement version = null;
     ImageElement checkpoint = null;
 
     // write the image
+    JournalFormat.writeHeader(dos);
     info.writeImage(writer, dos);
 
     // parse the written bytes and look for the Checkpoint and Version ImageElements
-    String[] splits = new String(os.toByteArray()).split("\n");
-    for (String split : splits) {
-      byte[] bytes = split.getBytes();
-      JsonParser parser = mapper.getFactory().createParser(bytes);
-      ImageElement ele = parser.readValueAs(ImageElement.class);
-
+    JournalReader reader = JournalReader.open(new ByteArrayInputStream(os.toByteArray()));
+    ImageElement ele;
+    while ((ele = reader.read(ImageElement.class)) != null) {
       if (ele.mType.equals(ImageElementType.Checkpoint)) {
         checkpoint = ele;
       }
@@ -727,4 +851,58 @@ public class MasterInfoIntegrationTest {
     Assert.assertEquals(0, checkpoint.getInt("editTransactionCounter").intValue());
     Assert.assertEquals(0, checkpoint.getInt("dependencyCounter").intValue());
   }
+
+  @Test
+  public void loadImageTest() throws Exception {
+    for (int i = 0; i < 5; i ++) {
+      for (int j = 0; j < 5; j ++) {
+        mMasterInfo.createFile(new TachyonURI("/dir" + i + "/dir" + j + "/file"),
+            Constants.DEFAULT_BLOCK_SIZE_BYTE, true);
+      }
+    }
+    int pinnedId = mMasterInfo.getFileId(new TachyonURI("/dir3/dir4/file"));
+    mMasterInfo.setPinned(pinnedId, true);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    JournalFormat.writeHeader(dos);
+    mMasterInfo.writeImage(JournalFormat.createObjectWriter(), dos);
+
+    // With several loader threads, the tree is linked by sections concurrently
+    mMasterTachyonConf.set(Constants.MASTER_JOURNAL_LOADER_THREADS, "4");
+    Journal journal =
+        new Journal(mLocalTachyonCluster.getTachyonHome() + "journal/", "image.data", "log.data",
+            mMasterTachyonConf);
+    MasterInfo info =
+        new MasterInfo(new InetSocketAddress(9999), journal, mExecutorService, mMasterTachyonConf);
+    JournalReader reader = JournalReader.open(new ByteArrayInputStream(os.toByteArray()), 4);
+    try {
+      info.loadImage(reader, new TachyonURI("/image"));
+    } finally {
+      reader.close();
+    }
+
+    TachyonURI root = new TachyonURI(TachyonURI.SEPARATOR);
+    Assert.assertEquals(mMasterInfo.ls(root, true), info.ls(root, true));
+    Assert.assertEquals(pinnedId, info.getFileId(new TachyonURI("/dir3/dir4/file")));
+    Assert.assertEquals(Arrays.asList(pinnedId), info.getPinIdList());
+  }
+
+  @Test
+  public void workerHeartbeatFolderBlockTest() throws Exception {
+    long workerId = mMasterInfo.registerWorker(new NetAddress("localhost", 1, 2),
+        Arrays.asList((long) Constants.GB), Arrays.asList(0L), new HashMap<Long, List<Long>>());
+    Assert.assertTrue(mMasterInfo.mkdirs(new TachyonURI("/testFolder"), true));
+    long folderBlockId =
+        BlockInfo.computeBlockId(mMasterInfo.getFileId(new TachyonURI("/testFolder")), 0);
+    long deletedBlockId = BlockInfo.computeBlockId(1000, 0);
+    Map<Long, List<Long>> addedBlockIds = new HashMap<Long, List<Long>>();
+    addedBlockIds.put(StorageDirId.getStorageDirId(0, StorageLevelAlias.MEM.getValue(), 0),
+        Arrays.asList(folderBlockId, deletedBlockId));
+
+    // A stale block of a folder is skipped, the heartbeat still frees the block of a deleted file
+    Command command = mMasterInfo.workerHeartbeat(workerId, Arrays.asList(0L),
+        Arrays.asList(folderBlockId), addedBlockIds);
+    Assert.assertEquals(CommandType.Free, command.getMCommandType());
+    Assert.assertEquals(Arrays.asList(deletedBlockId), command.getMData());
+  }
 }
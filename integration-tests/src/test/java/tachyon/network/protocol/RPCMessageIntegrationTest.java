@@ -62,6 +62,7 @@ public class RPCMessageIntegrationTest {
   private static final long BLOCK_ID = 11;
   private static final long OFFSET = 22;
   private static final long LENGTH = 33;
+  private static final long REQUEST_ID = 44;
 
   // This channel initializer sets up a simple pipeline with the encoder and decoder.
   private static class PipelineInitializer extends ChannelInitializer<SocketChannel> {
@@ -147,6 +148,7 @@ public class RPCMessageIntegrationTest {
     Assert.assertEquals(expected.getBlockId(), actual.getBlockId());
     Assert.assertEquals(expected.getOffset(), actual.getOffset());
     Assert.assertEquals(expected.getLength(), actual.getLength());
+    Assert.assertEquals(expected.getRequestId(), actual.getRequestId());
   }
 
   private void assertValid(RPCBlockReadResponse expected, RPCBlockReadResponse actual) {
@@ -155,6 +157,7 @@ public class RPCMessageIntegrationTest {
     Assert.assertEquals(expected.getBlockId(), actual.getBlockId());
     Assert.assertEquals(expected.getOffset(), actual.getOffset());
     Assert.assertEquals(expected.getLength(), actual.getLength());
+    Assert.assertEquals(expected.getRequestId(), actual.getRequestId());
     Assert.assertEquals(expected.getStatus(), actual.getStatus());
     if (expected.getLength() == 0) {
       // Length is 0, so payloads should be null.
@@ -219,7 +222,7 @@ public class RPCMessageIntegrationTest {
 
   @Test
   public void RPCBlockReadRequestTest() {
-    RPCBlockReadRequest msg = new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH);
+    RPCBlockReadRequest msg = new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID);
     RPCBlockReadRequest decoded = (RPCBlockReadRequest) encodeThenDecode(msg);
     assertValid(msg, decoded);
   }
@@ -228,8 +231,8 @@ public class RPCMessageIntegrationTest {
   public void RPCBlockReadResponseTest() {
     ByteBuffer payload = BufferUtils.getIncreasingByteBuffer((int) OFFSET, (int) LENGTH);
     RPCBlockReadResponse msg =
-        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, new DataByteBuffer(payload, LENGTH),
-            RPCResponse.Status.SUCCESS);
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID,
+            new DataByteBuffer(payload, LENGTH), RPCResponse.Status.SUCCESS);
     RPCBlockReadResponse decoded = (RPCBlockReadResponse) encodeThenDecode(msg);
     assertValid(msg, decoded);
   }
@@ -237,7 +240,8 @@ public class RPCMessageIntegrationTest {
   @Test
   public void RPCBlockReadResponseEmptyPayloadTest() {
     RPCBlockReadResponse msg =
-        new RPCBlockReadResponse(BLOCK_ID, OFFSET, 0, null, RPCResponse.Status.SUCCESS);
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, 0, REQUEST_ID, null,
+            RPCResponse.Status.SUCCESS);
     RPCBlockReadResponse decoded = (RPCBlockReadResponse) encodeThenDecode(msg);
     assertValid(msg, decoded);
   }
@@ -245,7 +249,8 @@ public class RPCMessageIntegrationTest {
   @Test
   public void RPCBlockReadResponseErrorTest() {
     RPCBlockReadResponse msg =
-        RPCBlockReadResponse.createErrorResponse(new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH),
+        RPCBlockReadResponse.createErrorResponse(
+            new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID),
             RPCResponse.Status.FILE_DNE);
     RPCBlockReadResponse decoded = (RPCBlockReadResponse) encodeThenDecode(msg);
     assertValid(msg, decoded);
@@ -255,8 +260,8 @@ public class RPCMessageIntegrationTest {
   public void RPCBlockReadResponseFileChannelTest() throws IOException {
     FileChannel payload = getTempFileChannel();
     RPCBlockReadResponse msg =
-        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, new DataFileChannel(payload, OFFSET,
-            LENGTH), RPCResponse.Status.SUCCESS);
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID,
+            new DataFileChannel(payload, OFFSET, LENGTH), RPCResponse.Status.SUCCESS);
     RPCBlockReadResponse decoded = (RPCBlockReadResponse) encodeThenDecode(msg);
     assertValid(msg, decoded);
   }
@@ -243,6 +243,23 @@ public class DataServerIntegrationTest {
     Assert.assertEquals(BufferUtils.getIncreasingByteBuffer(length), result);
   }
 
+  @Test
+  public void readThroughClientRepeatedTest() throws IOException {
+    final int length = 10;
+    int fileId = TachyonFSTestUtils.createByteFile(mTFS, "/testFile", WriteType.MUST_CACHE, length);
+    ClientBlockInfo block = mTFS.getFileBlocks(fileId).get(0);
+
+    // The netty client reuses its connection to the server across these reads.
+    RemoteBlockReader client =
+        RemoteBlockReader.Factory.createRemoteBlockReader(mWorkerTachyonConf);
+    for (int offset = 0; offset < length; offset ++) {
+      ByteBuffer result = client.readRemoteBlock(block.getLocations().get(0).mHost,
+          block.getLocations().get(0).mSecondaryPort, block.getBlockId(), offset, length - offset);
+      Assert.assertEquals(BufferUtils.getIncreasingByteBuffer(offset, length - offset), result);
+    }
+    client.close();
+  }
+
   // TODO: Make this work with the new BlockReader
   //@Test
   public void readThroughClientNonExistentTest()
@@ -301,7 +318,8 @@ public class DataServerIntegrationTest {
         sendMsg.send(socketChannel);
       }
       DataServerMessage recvMsg =
-          DataServerMessage.createBlockResponseMessage(false, block.blockId, offset, length, null);
+          DataServerMessage.createBlockResponseMessage(false, block.blockId, offset, length, 0,
+              null);
       while (!recvMsg.isMessageReady()) {
         int numRead = recvMsg.recv(socketChannel);
         if (numRead == -1) {
@@ -15,7 +15,7 @@
 
 package tachyon.master;
 
-import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -26,7 +26,6 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Throwables;
@@ -103,100 +102,94 @@ public final class EditLog {
   public static void loadSingleLog(MasterInfo info, String path) throws IOException {
     UnderFileSystem ufs = UnderFileSystem.get(path, info.getTachyonConf());
 
-    DataInputStream is = new DataInputStream(ufs.open(path));
-    JsonParser parser = JsonObject.createObjectMapper().getFactory().createParser(is);
-
-    while (true) {
-      EditLogOperation op;
-      try {
-        op = parser.readValueAs(EditLogOperation.class);
-        LOG.debug("Read operation: {}", op);
-      } catch (IOException e) {
-        // Unfortunately brittle, but Jackson rethrows EOF with this message.
-        if (e.getMessage().contains("end-of-input")) {
+    JournalReader reader = JournalReader.open(ufs.open(path), Image.getLoaderThreads(info));
+    try {
+      while (true) {
+        EditLogOperation op = reader.read(EditLogOperation.class);
+        if (op == null) {
           break;
-        } else {
-          throw e;
         }
-      }
+        LOG.debug("Read operation: {}", op);
 
-      sCurrentTId = op.mTransId;
-      try {
-        switch (op.mType) {
-          case ADD_BLOCK: {
-            info.opAddBlock(op.getInt("fileId"), op.getInt("blockIndex"),
-                op.getLong("blockLength"), op.getLong("opTimeMs"));
-            break;
-          }
-          case ADD_CHECKPOINT: {
-            info.addCheckpointInternal(-1, op.getInt("fileId"), op.getLong("length"),
-                new TachyonURI(op.getString("path")), op.getLong("opTimeMs"));
-            break;
-          }
-          case CREATE_FILE: {
-            info.createFileInternal(op.getBoolean("recursive"),
-                new TachyonURI(op.getString("path")), op.getBoolean("directory"),
-                op.getLong("blockSizeByte"), op.getLong("creationTimeMs"));
-            break;
-          }
-          case COMPLETE_FILE: {
-            info.completeFileInternal(op.get("fileId", Integer.class), op.getLong("opTimeMs"));
-            break;
-          }
-          case SET_PINNED: {
-            info.setPinnedInternal(op.getInt("fileId"), op.getBoolean("pinned"),
-                op.getLong("opTimeMs"));
-            break;
-          }
-          case RENAME: {
-            info.renameInternal(op.getInt("fileId"), new TachyonURI(op.getString("dstPath")),
-                op.getLong("opTimeMs"));
-            break;
-          }
-          case DELETE: {
-            info.deleteInternal(op.getInt("fileId"), op.getBoolean("recursive"),
-                op.getLong("opTimeMs"));
-            break;
+        sCurrentTId = op.mTransId;
+        try {
+          switch (op.mType) {
+            case ADD_BLOCK: {
+              info.opAddBlock(op.getInt("fileId"), op.getInt("blockIndex"),
+                  op.getLong("blockLength"), op.getLong("opTimeMs"));
+              break;
+            }
+            case ADD_CHECKPOINT: {
+              info.addCheckpointInternal(-1, op.getInt("fileId"), op.getLong("length"),
+                  new TachyonURI(op.getString("path")), op.getLong("opTimeMs"));
+              break;
+            }
+            case CREATE_FILE: {
+              info.createFileInternal(op.getBoolean("recursive"),
+                  new TachyonURI(op.getString("path")), op.getBoolean("directory"),
+                  op.getLong("blockSizeByte"), op.getLong("creationTimeMs"));
+              break;
+            }
+            case COMPLETE_FILE: {
+              info.completeFileInternal(op.get("fileId", Integer.class), op.getLong("opTimeMs"));
+              break;
+            }
+            case SET_PINNED: {
+              info.setPinnedInternal(op.getInt("fileId"), op.getBoolean("pinned"),
+                  op.getLong("opTimeMs"));
+              break;
+            }
+            case RENAME: {
+              info.renameInternal(op.getInt("fileId"), new TachyonURI(op.getString("dstPath")),
+                  op.getLong("opTimeMs"));
+              break;
+            }
+            case DELETE: {
+              info.deleteInternal(op.getInt("fileId"), op.getBoolean("recursive"),
+                  op.getLong("opTimeMs"));
+              break;
+            }
+            case CREATE_RAW_TABLE: {
+              info.createRawTableInternal(op.getInt("tableId"), op.getInt("columns"),
+                  op.getByteBuffer("metadata"));
+              break;
+            }
+            case UPDATE_RAW_TABLE_METADATA: {
+              info.updateRawTableMetadata(op.getInt("tableId"), op.getByteBuffer("metadata"));
+              break;
+            }
+            case CREATE_DEPENDENCY: {
+              info.createDependencyInternal(
+                  op.get("parents", new TypeReference<List<Integer>>() {}),
+                  op.get("children", new TypeReference<List<Integer>>() {}),
+                  op.getString("commandPrefix"), op.getByteBufferList("data"),
+                  op.getString("comment"), op.getString("framework"),
+                  op.getString("frameworkVersion"), op.get("dependencyType", DependencyType.class),
+                  op.getInt("dependencyId"), op.getLong("creationTimeMs"));
+              break;
+            }
+            default:
+              throw new IOException("Invalid op type " + op);
           }
-          case CREATE_RAW_TABLE: {
-            info.createRawTableInternal(op.getInt("tableId"), op.getInt("columns"),
-                op.getByteBuffer("metadata"));
-            break;
-          }
-          case UPDATE_RAW_TABLE_METADATA: {
-            info.updateRawTableMetadata(op.getInt("tableId"), op.getByteBuffer("metadata"));
-            break;
-          }
-          case CREATE_DEPENDENCY: {
-            info.createDependencyInternal(op.get("parents", new TypeReference<List<Integer>>() {}),
-                op.get("children", new TypeReference<List<Integer>>() {}),
-                op.getString("commandPrefix"), op.getByteBufferList("data"),
-                op.getString("comment"), op.getString("framework"),
-                op.getString("frameworkVersion"), op.get("dependencyType", DependencyType.class),
-                op.getInt("dependencyId"), op.getLong("creationTimeMs"));
-            break;
-          }
-          default:
-            throw new IOException("Invalid op type " + op);
+        } catch (SuspectedFileSizeException e) {
+          throw new IOException(e);
+        } catch (BlockInfoException e) {
+          throw new IOException(e);
+        } catch (FileDoesNotExistException e) {
+          throw new IOException(e);
+        } catch (FileAlreadyExistException e) {
+          throw new IOException(e);
+        } catch (InvalidPathException e) {
+          throw new IOException(e);
+        } catch (TachyonException e) {
+          throw new IOException(e);
+        } catch (TableDoesNotExistException e) {
+          throw new IOException(e);
         }
-      } catch (SuspectedFileSizeException e) {
-        throw new IOException(e);
-      } catch (BlockInfoException e) {
-        throw new IOException(e);
-      } catch (FileDoesNotExistException e) {
-        throw new IOException(e);
-      } catch (FileAlreadyExistException e) {
-        throw new IOException(e);
-      } catch (InvalidPathException e) {
-        throw new IOException(e);
-      } catch (TachyonException e) {
-        throw new IOException(e);
-      } catch (TableDoesNotExistException e) {
-        throw new IOException(e);
       }
+    } finally {
+      reader.close();
     }
-
-    is.close();
     ufs.close();
   }
 
@@ -241,6 +234,24 @@ public final class EditLog {
   /** Wraps the raw output stream. */
   private DataOutputStream mDos;
 
+  /** Operations which are logged but not yet written to the output stream. */
+  private ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+
+  /** Wraps mBuffer. */
+  private DataOutputStream mBufferDos = new DataOutputStream(mBuffer);
+
+  /** Operations being written to the output stream by the flush in progress. */
+  private ByteArrayOutputStream mSyncBuffer = new ByteArrayOutputStream();
+
+  /** True while a flush writes and syncs the output stream, outside of the monitor. */
+  private boolean mIsSyncing = false;
+
+  /**
+   * The error of a failed flush. A failed flush may have written part of its batch, so the log can
+   * neither be retried nor appended to, and every later operation fails.
+   */
+  private IOException mFailure = null;
+
   // Starting from 1.
   private long mFlushedTransactionId = 0;
 
@@ -308,10 +319,11 @@ public final class EditLog {
     }
     mOs = mUfs.create(path);
     mDos = new DataOutputStream(mOs);
+    JournalFormat.writeHeader(mDos);
     LOG.info("Created file " + path);
     mFlushedTransactionId = transactionId;
     mTransactionId = transactionId;
-    mWriter = JsonObject.createObjectMapper().writer();
+    mWriter = JournalFormat.createObjectWriter();
   }
 
   /**
@@ -344,7 +356,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.ADD_BLOCK, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.ADD_BLOCK, nextTransactionId())
             .withParameter("fileId", fileId).withParameter("blockIndex", blockIndex)
             .withParameter("blockLength", blockLength).withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
@@ -365,7 +377,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.ADD_CHECKPOINT, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.ADD_CHECKPOINT, nextTransactionId())
             .withParameter("fileId", fileId).withParameter("length", length)
             .withParameter("path", checkpointPath.toString()).withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
@@ -380,10 +392,20 @@ public final class EditLog {
     }
 
     try {
+      while (mIsSyncing) {
+        wait();
+      }
+      if (mFailure == null) {
+        mBuffer.writeTo(mDos);
+      }
+      mBuffer.reset();
       closeActiveStream();
       mUfs.close();
     } catch (IOException e) {
       throw Throwables.propagate(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
     }
   }
 
@@ -399,7 +421,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.COMPLETE_FILE, ++mTransactionId).withParameter(
+        new EditLogOperation(EditLogOperationType.COMPLETE_FILE, nextTransactionId()).withParameter(
             "fileId", fileId).withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
   }
@@ -427,7 +449,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.CREATE_DEPENDENCY, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.CREATE_DEPENDENCY, nextTransactionId())
             .withParameter("parents", parents).withParameter("children", children)
             .withParameter("commandPrefix", commandPrefix)
             .withParameter("data", Utils.byteBufferListToBase64(data))
@@ -455,7 +477,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.CREATE_FILE, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.CREATE_FILE, nextTransactionId())
             .withParameter("recursive", recursive).withParameter("path", path.toString())
             .withParameter("directory", directory).withParameter("blockSizeByte", blockSizeByte)
             .withParameter("creationTimeMs", creationTimeMs);
@@ -475,7 +497,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.CREATE_RAW_TABLE, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.CREATE_RAW_TABLE, nextTransactionId())
             .withParameter("tableId", tableId).withParameter("columns", columns)
             .withParameter("metadata", Utils.byteBufferToBase64(metadata));
     writeOperation(operation);
@@ -494,7 +516,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.DELETE, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.DELETE, nextTransactionId())
             .withParameter("fileId", fileId).withParameter("recursive", recursive)
             .withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
@@ -522,14 +544,44 @@ public final class EditLog {
   }
 
   /**
-   * Flush the log onto the storage.
+   * Flush the log onto the storage. Returns once all the operations logged before the call are
+   * synced. Flushes are committed in groups: the operations logged by concurrent callers are
+   * written and synced at once by one of them, while the others wait for it. Operations can still
+   * be logged during the sync, since it happens outside of the monitor.
    */
-  public synchronized void flush() {
+  public void flush() {
     if (mInactive) {
       return;
     }
 
+    ByteArrayOutputStream toSync;
+    long syncTransactionId;
+    synchronized (this) {
+      long transactionId = mTransactionId;
+      try {
+        while (mIsSyncing && transactionId > mFlushedTransactionId) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
+      if (transactionId <= mFlushedTransactionId) {
+        // Another flush has synced our operations.
+        return;
+      }
+      checkNotFailed();
+      mIsSyncing = true;
+      toSync = mBuffer;
+      mBuffer = mSyncBuffer;
+      mBufferDos = new DataOutputStream(mBuffer);
+      mSyncBuffer = toSync;
+      syncTransactionId = mTransactionId;
+    }
+
+    IOException failure = null;
     try {
+      toSync.writeTo(mDos);
       mDos.flush();
       if (mOs instanceof FSDataOutputStream) {
         ((FSDataOutputStream) mOs).sync();
@@ -538,10 +590,48 @@ public final class EditLog {
         rotateEditLog(mPath);
       }
     } catch (IOException e) {
-      throw Throwables.propagate(e);
+      failure = e;
+    } catch (RuntimeException e) {
+      failure = new IOException(e);
+    } finally {
+      synchronized (this) {
+        if (failure == null) {
+          mFlushedTransactionId = syncTransactionId;
+          toSync.reset();
+        } else {
+          // The batch may be partly written, so it is kept out of the log rather than retried.
+          LOG.error("Failed to flush the edit log up to transaction " + syncTransactionId
+              + ", the edit log is no longer usable", failure);
+          mFailure = failure;
+        }
+        mIsSyncing = false;
+        notifyAll();
+      }
+    }
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+  }
+
+  /**
+   * Throws if a previous flush failed, since the operations it was syncing may be missing or torn
+   * in the log. Must be called while holding the monitor.
+   */
+  private void checkNotFailed() {
+    if (mFailure != null) {
+      throw new IllegalStateException("Edit log failed to flush transactions after "
+          + mFlushedTransactionId, mFailure);
     }
+  }
 
-    mFlushedTransactionId = mTransactionId;
+  /**
+   * Replaces the output stream, for testing purposes.
+   *
+   * @param os the stream to write the edit log to
+   */
+  synchronized void setOutputStream(OutputStream os) {
+    mOs = os;
+    mDos = new DataOutputStream(os);
   }
 
   /**
@@ -566,7 +656,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.RENAME, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.RENAME, nextTransactionId())
             .withParameter("fileId", fileId).withParameter("dstPath", dstPath.toString())
             .withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
@@ -574,6 +664,7 @@ public final class EditLog {
 
   /**
    * The edit log reaches the max log size and needs rotate. Do nothing if the edit log is inactive.
+   * It is called by the flush in progress, which is the only user of the output stream.
    *
    * @param path The path of the edit log
    */
@@ -595,6 +686,7 @@ public final class EditLog {
       LOG.info("Renamed " + path + " to " + newPath);
       mOs = mUfs.create(path);
       mDos = new DataOutputStream(mOs);
+      JournalFormat.writeHeader(mDos);
       LOG.info("Created new log file " + path);
     } catch (IOException e) {
       throw Throwables.propagate(e);
@@ -634,7 +726,7 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.SET_PINNED, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.SET_PINNED, nextTransactionId())
             .withParameter("fileId", fileId).withParameter("pinned", pinned)
             .withParameter("opTimeMs", opTimeMs);
     writeOperation(operation);
@@ -652,16 +744,26 @@ public final class EditLog {
     }
 
     EditLogOperation operation =
-        new EditLogOperation(EditLogOperationType.UPDATE_RAW_TABLE_METADATA, ++mTransactionId)
+        new EditLogOperation(EditLogOperationType.UPDATE_RAW_TABLE_METADATA, nextTransactionId())
             .withParameter("tableId", tableId).withParameter("metadata",
                 Utils.byteBufferToBase64(metadata));
     writeOperation(operation);
   }
 
+  /**
+   * Takes the id of a new operation. Must be called while holding the monitor.
+   *
+   * @return the transaction id of the operation
+   */
+  private long nextTransactionId() {
+    // A failed log takes no more operations, so they must not take ids either.
+    checkNotFailed();
+    return ++mTransactionId;
+  }
+
   private void writeOperation(EditLogOperation operation) {
     try {
-      mWriter.writeValue(mDos, operation);
-      mDos.writeByte('\n');
+      JournalFormat.writeRecord(mWriter, mBufferDos, operation);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
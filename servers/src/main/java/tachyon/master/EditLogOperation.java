@@ -24,8 +24,8 @@ import com.google.common.base.Objects;
 
 /**
  * Each entry in EditLog is represented as a single EditLogOperation, which is serialized as a JSON
- * object. An EditLogOperation has a type, a transaction id, and a set of parameters according to
- * the type.
+ * object (in its binary form, see {@link JournalFormat}). An EditLogOperation has a type, a
+ * transaction id, and a set of parameters according to the type.
  */
 class EditLogOperation extends JsonObject {
   // NB: These type names are used in the serialized JSON. They should be concise but readable.
@@ -15,7 +15,7 @@
 
 package tachyon.master;
 
-import java.io.DataInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -23,7 +23,6 @@ import java.io.OutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
 import tachyon.Constants;
@@ -53,9 +52,10 @@ public class Image {
       ufs.mkdirs(parentFolder, true);
     }
     OutputStream os = ufs.create(tPath);
-    DataOutputStream imageOs = new DataOutputStream(os);
-    ObjectWriter writer = JsonObject.createObjectMapper().writer();
+    DataOutputStream imageOs = new DataOutputStream(new BufferedOutputStream(os));
+    ObjectWriter writer = JournalFormat.createObjectWriter();
 
+    JournalFormat.writeHeader(imageOs);
     info.writeImage(writer, imageOs);
     imageOs.flush();
     imageOs.close();
@@ -83,14 +83,27 @@ public class Image {
       return;
     }
     LOG.info("Loading image " + path);
-    DataInputStream imageIs = new DataInputStream(ufs.open(path));
-    JsonParser parser = JsonObject.createObjectMapper().getFactory().createParser(imageIs);
-
-    info.loadImage(parser, new TachyonURI(path));
-    imageIs.close();
+    JournalReader reader = JournalReader.open(ufs.open(path), getLoaderThreads(info));
+    try {
+      info.loadImage(reader, new TachyonURI(path));
+    } finally {
+      reader.close();
+    }
     ufs.close();
   }
 
+  /**
+   * Get the number of threads decoding the records of the image and the edit logs when they are
+   * loaded.
+   *
+   * @param info The master info
+   * @return the number of threads
+   */
+  static int getLoaderThreads(MasterInfo info) {
+    return info.getTachyonConf().getInt(Constants.MASTER_JOURNAL_LOADER_THREADS,
+        Runtime.getRuntime().availableProcessors());
+  }
+
   /**
    * Rename the src to the dst. Only used to rename the Image.
    * 
@@ -23,8 +23,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Objects;
 
 /**
- * Each entry in the Image is represented as a single element, which is serialized as JSON. An
- * element has a type and a set of parameters determined by the type.
+ * Each entry in the Image is represented as a single element, which is serialized as JSON (in its
+ * binary form, see {@link JournalFormat}). An element has a type and a set of parameters
+ * determined by the type.
  */
 class ImageElement extends JsonObject {
   // NB: These type names are used in the serialized JSON. They should be concise but readable.
@@ -43,8 +43,7 @@ public abstract class ImageWriter {
    */
   protected void writeElement(ObjectWriter objWriter, DataOutputStream dos, ImageElement ele) {
     try {
-      objWriter.writeValue(dos, ele);
-      dos.writeByte('\n');
+      JournalFormat.writeRecord(objWriter, dos, ele);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
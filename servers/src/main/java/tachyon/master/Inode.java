@@ -15,6 +15,8 @@
 
 package tachyon.master;
 
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import tachyon.thrift.ClientFileInfo;
 
 /**
@@ -39,6 +41,12 @@ public abstract class Inode extends ImageWriter implements Comparable<Inode> {
    */
   private long mLastModificationTimeMs;
 
+  /**
+   * Guards the namespace state of the inode. For a folder, the write lock must be held to add or
+   * remove children. Locks are always acquired from ancestors to descendants.
+   */
+  private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
   /**
    * Create an inode.
    *
@@ -155,6 +163,34 @@ public abstract class Inode extends ImageWriter implements Comparable<Inode> {
     return !mIsFolder;
   }
 
+  /**
+   * Acquire the read lock of the inode.
+   */
+  public void lockRead() {
+    mLock.readLock().lock();
+  }
+
+  /**
+   * Acquire the write lock of the inode.
+   */
+  public void lockWrite() {
+    mLock.writeLock().lock();
+  }
+
+  /**
+   * Release the read lock of the inode.
+   */
+  public void unlockRead() {
+    mLock.readLock().unlock();
+  }
+
+  /**
+   * Release the write lock of the inode.
+   */
+  public void unlockWrite() {
+    mLock.writeLock().unlock();
+  }
+
   /**
    * Reverse the id of the inode. Only used for a delete operation.
    */
@@ -22,11 +22,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.ImmutableSet;
@@ -41,14 +42,14 @@ public class InodeFolder extends Inode {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
 
   /**
-   * Create a new InodeFile from a JsonParser and an image Json element.
+   * Create a new InodeFile from a JournalReader and an image Json element.
    *
-   * @param parser the JsonParser to get the next element
+   * @param reader the JournalReader to get the next element
    * @param ele the current InodeFolder's Json image element.
    * @return the constructed InodeFolder.
    * @throws IOException
    */
-  static InodeFolder loadImage(JsonParser parser, ImageElement ele) throws IOException {
+  static InodeFolder loadImage(JournalReader reader, ImageElement ele) throws IOException {
     final long creationTimeMs = ele.getLong("creationTimeMs");
     final int fileId = ele.getInt("id");
     final boolean isPinned = ele.getBoolean("pinned");
@@ -59,12 +60,11 @@ public class InodeFolder extends Inode {
     int numberOfChildren = childrenIds.size();
     Inode[] children = new Inode[numberOfChildren];
     for (int k = 0; k < numberOfChildren; k ++) {
-      try {
-        ele = parser.readValueAs(ImageElement.class);
-        LOG.debug("Read Element: {}", ele);
-      } catch (IOException e) {
-        throw e;
+      ele = reader.read(ImageElement.class);
+      if (ele == null) {
+        throw new IOException("The image ended before all the children of folder " + fileId);
       }
+      LOG.debug("Read Element: {}", ele);
 
       switch (ele.mType) {
         case InodeFile: {
@@ -72,7 +72,7 @@ public class InodeFolder extends Inode {
           break;
         }
         case InodeFolder: {
-          children[k] = InodeFolder.loadImage(parser, ele);
+          children[k] = InodeFolder.loadImage(reader, ele);
           break;
         }
         default:
@@ -88,7 +88,13 @@ public class InodeFolder extends Inode {
   }
 
   private Map<Integer, Inode> mChildrenIds = new HashMap<Integer, Inode>();
-  private Map<String, Inode> mChildrenNames = new HashMap<String, Inode>();
+  /**
+   * The children sorted by name, so that listings can be paged by name. A lookup or insertion by
+   * name is O(log n) instead of the O(1) of a hash map, and a tree entry takes a few more bytes
+   * than a hash entry and its table slot. Sorting the children of a hash map for each page instead
+   * would make listing a large folder page by page quadratic in its size.
+   */
+  private TreeMap<String, Inode> mChildrenNames = new TreeMap<String, Inode>();
 
   /**
    * Create a new InodeFolder.
@@ -180,6 +186,27 @@ public class InodeFolder extends Inode {
     return ImmutableSet.copyOf(mChildrenIds.values());
   }
 
+  /**
+   * Returns the children whose names come after the given name, in the order of their names. The
+   * name does not need to be the name of a child.
+   *
+   * @param startAfter The name to start after, or null to start from the first child
+   * @param limit The maximum number of children to return
+   * @return the children, at most limit of them
+   */
+  public synchronized List<Inode> getChildrenAfter(String startAfter, int limit) {
+    SortedMap<String, Inode> children =
+        startAfter == null ? mChildrenNames : mChildrenNames.tailMap(startAfter, false);
+    List<Inode> ret = new ArrayList<Inode>(Math.min(limit, mChildrenNames.size()));
+    for (Inode child : children.values()) {
+      if (ret.size() >= limit) {
+        break;
+      }
+      ret.add(child);
+    }
+    return ret;
+  }
+
   /**
    * Returns the ids of the children.
    *
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of inode locks held by one operation. Inodes are locked in the order they are added and
+ * all of them are released together by {@link #unlockAll()}, which callers should invoke in a
+ * finally block. Locking an inode which is already in the group is a no-op, so overlapping paths
+ * (e.g. the source and destination of a rename) can be locked through the same group. Callers must
+ * lock a shared inode with its strongest mode first, since a read lock cannot be upgraded: write
+ * locking an inode the group holds for read throws an IllegalStateException.
+ */
+final class InodeLockGroup {
+  private final List<Inode> mInodes = new ArrayList<Inode>();
+  private final List<Boolean> mIsWriteLocked = new ArrayList<Boolean>();
+  // Whether each inode of mInodes is write locked, so that a batch locking many paths checks
+  // membership in constant time.
+  private final Map<Inode, Boolean> mLocked = new IdentityHashMap<Inode, Boolean>();
+
+  /**
+   * @param inode the inode to check
+   * @return true if the inode is locked by this group, in either mode
+   */
+  boolean contains(Inode inode) {
+    return mLocked.containsKey(inode);
+  }
+
+  /**
+   * Read lock the inode, unless it is already locked by this group.
+   *
+   * @param inode the inode to lock
+   */
+  void lockRead(Inode inode) {
+    if (!contains(inode)) {
+      inode.lockRead();
+      mInodes.add(inode);
+      mLocked.put(inode, false);
+      mIsWriteLocked.add(false);
+    }
+  }
+
+  /**
+   * Write lock the inode, unless it is already write locked by this group.
+   *
+   * @param inode the inode to lock
+   * @throws IllegalStateException if the group holds the inode for read only
+   */
+  void lockWrite(Inode inode) {
+    Boolean isWriteLocked = mLocked.get(inode);
+    if (isWriteLocked == null) {
+      inode.lockWrite();
+      mInodes.add(inode);
+      mLocked.put(inode, true);
+      mIsWriteLocked.add(true);
+    } else if (!isWriteLocked) {
+      throw new IllegalStateException("Inode " + inode.getId() + " is read locked by this group and"
+          + " cannot be write locked");
+    }
+  }
+
+  /**
+   * Release all the locks of the group, in the reverse order of acquisition.
+   */
+  void unlockAll() {
+    for (int i = mInodes.size() - 1; i >= 0; i --) {
+      if (mIsWriteLocked.get(i)) {
+        mInodes.get(i).unlockWrite();
+      } else {
+        mInodes.get(i).unlockRead();
+      }
+    }
+    mInodes.clear();
+    mIsWriteLocked.clear();
+    mLocked.clear();
+  }
+}
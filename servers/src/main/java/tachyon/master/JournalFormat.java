@@ -0,0 +1,82 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import tachyon.Constants;
+
+/**
+ * The binary format of the image and edit log files. A file starts with a header made of
+ * {@link #MAGIC} and {@link #VERSION}, followed by one record per image element or edit log
+ * operation. A record is the length of its body as an int, followed by the body, which is the
+ * element or operation encoded in Smile, the binary form of JSON.
+ *
+ * Files written before this format contain one JSON value per line. {@link JournalReader} reads
+ * both, so the journal of an older master is converted when it is loaded and a new image is
+ * written.
+ */
+final class JournalFormat {
+  /** The first bytes of a binary journal file. An old JSON file starts with '{' instead. */
+  static final byte[] MAGIC = {'T', 'J', 'N', 'L'};
+  /** The version of the binary format, written after {@link #MAGIC}. */
+  static final int VERSION = 1;
+  /** The largest body of a record. A larger length can only come from a corrupt file. */
+  static final int MAX_RECORD_BYTES = 256 * Constants.MB;
+
+  /**
+   * @return the ObjectWriter to encode the records with
+   */
+  static ObjectWriter createObjectWriter() {
+    return JsonObject.createBinaryObjectMapper().writer();
+  }
+
+  /**
+   * Write the header of a journal file.
+   *
+   * @param dos The stream of the file, at its beginning
+   * @throws IOException
+   */
+  static void writeHeader(DataOutputStream dos) throws IOException {
+    dos.write(MAGIC);
+    dos.writeInt(VERSION);
+  }
+
+  /**
+   * Write a record to a journal file.
+   *
+   * @param objWriter The ObjectWriter to encode the record with
+   * @param dos The stream of the file
+   * @param value The image element or edit log operation to write
+   * @throws IOException if the record is larger than {@link #MAX_RECORD_BYTES}, or it fails to be
+   *         written
+   */
+  static void writeRecord(ObjectWriter objWriter, DataOutputStream dos, JsonObject value)
+      throws IOException {
+    byte[] body = objWriter.writeValueAsBytes(value);
+    if (body.length > MAX_RECORD_BYTES) {
+      throw new IOException("Journal record of " + body.length + " bytes is larger than the "
+          + "maximum of " + MAX_RECORD_BYTES + " bytes");
+    }
+    dos.writeInt(body.length);
+    dos.write(body);
+  }
+
+  private JournalFormat() {}
+}
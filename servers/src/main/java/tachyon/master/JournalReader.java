@@ -0,0 +1,284 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import tachyon.Constants;
+import tachyon.util.ThreadFactoryUtils;
+
+/**
+ * Reads the records of an image or edit log file, in the binary {@link JournalFormat} or in the
+ * older one JSON value per line format.
+ *
+ * Binary records can be decoded by a pool of threads: the reader reads ahead batches of raw
+ * records, decodes them concurrently, and still returns them in the order of the file. JSON files
+ * are always decoded by the calling thread.
+ */
+final class JournalReader implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The number of records decoded by one task of the decoding threads. */
+  static final int DECODE_BATCH_SIZE = 256;
+  /** The number of batches read ahead of the records returned by {@link #read(Class)}. */
+  static final int DECODE_BATCHES_AHEAD = 16;
+  /**
+   * The bytes of a record read at a time. The buffer of a record grows as its bytes are read, so a
+   * corrupt length does not allocate more than twice the bytes left in the file.
+   */
+  private static final int READ_CHUNK_BYTES = 64 * Constants.KB;
+
+  /**
+   * Open a journal file, detecting its format from its first bytes. The records are decoded by the
+   * thread calling {@link #read(Class)}.
+   *
+   * @param is The stream of the file, at its beginning
+   * @return the reader of the file
+   * @throws IOException if the file is in a binary format of an unknown version
+   */
+  static JournalReader open(InputStream is) throws IOException {
+    return open(is, 1);
+  }
+
+  /**
+   * Open a journal file, detecting its format from its first bytes.
+   *
+   * @param is The stream of the file, at its beginning
+   * @param decodeThreads The number of threads decoding binary records. With 1 or less, the records
+   *        are decoded by the thread calling {@link #read(Class)}. The threads are stopped by
+   *        {@link #close()}.
+   * @return the reader of the file
+   * @throws IOException if the file is in a binary format of an unknown version
+   */
+  static JournalReader open(InputStream is, int decodeThreads) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+    byte[] magic = new byte[JournalFormat.MAGIC.length];
+    dis.mark(magic.length);
+    boolean isBinary = false;
+    try {
+      dis.readFully(magic);
+      isBinary = Arrays.equals(magic, JournalFormat.MAGIC);
+    } catch (EOFException e) {
+      // Shorter than the header, so an empty file in either format.
+    }
+    if (!isBinary) {
+      dis.reset();
+      return new JournalReader(dis, JsonObject.createObjectMapper().getFactory().createParser(dis),
+          null);
+    }
+    int version = dis.readInt();
+    if (version != JournalFormat.VERSION) {
+      throw new IOException("Journal format version " + version + " is not supported. The system"
+          + " has version " + JournalFormat.VERSION);
+    }
+    ExecutorService decoders = null;
+    if (decodeThreads > 1) {
+      decoders = Executors.newFixedThreadPool(decodeThreads,
+          ThreadFactoryUtils.build("journal-decoder-%d", true));
+    }
+    return new JournalReader(dis, null, decoders);
+  }
+
+  private final DataInputStream mInputStream;
+  /** The parser of a file in the JSON format, or null for the binary format. */
+  private final JsonParser mJsonParser;
+  private final ObjectMapper mBinaryMapper = JsonObject.createBinaryObjectMapper();
+
+  /** The threads decoding binary records, or null to decode them in the calling thread. */
+  private final ExecutorService mDecoders;
+  /** The batches read ahead and submitted to mDecoders, in the order of the file. */
+  private final Queue<Future<List<Object>>> mPendingBatches =
+      new ArrayDeque<Future<List<Object>>>();
+  /** The decoded records of the batch being returned by {@link #read(Class)}. */
+  private Iterator<Object> mCurrentBatch = null;
+  /** The class of the records decoded ahead, fixed by the first call to {@link #read(Class)}. */
+  private Class<?> mDecodeClass = null;
+  private boolean mIsEndOfFile = false;
+
+  private JournalReader(DataInputStream dis, JsonParser jsonParser, ExecutorService decoders) {
+    mInputStream = dis;
+    mJsonParser = jsonParser;
+    mDecoders = decoders;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (mDecoders != null) {
+      mDecoders.shutdownNow();
+    }
+    mInputStream.close();
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @param clazz The class of the record
+   * @return the record, or null at the end of the file. A record cut short by a crash of the
+   *         writer also ends the file.
+   * @throws IOException if the record can not be read or decoded, or has a corrupt length
+   */
+  <T> T read(Class<T> clazz) throws IOException {
+    if (mJsonParser != null) {
+      try {
+        return mJsonParser.readValueAs(clazz);
+      } catch (IOException e) {
+        // Unfortunately brittle, but Jackson rethrows EOF with this message.
+        if (e.getMessage().contains("end-of-input")) {
+          return null;
+        }
+        throw e;
+      }
+    }
+    if (mDecoders != null) {
+      return readDecoded(clazz);
+    }
+
+    byte[] body = readRecordBody();
+    if (body == null) {
+      return null;
+    }
+    return mBinaryMapper.readValue(body, clazz);
+  }
+
+  /**
+   * Read the next record decoded by mDecoders, reading ahead and submitting more batches first.
+   */
+  private <T> T readDecoded(Class<T> clazz) throws IOException {
+    if (mDecodeClass == null) {
+      mDecodeClass = clazz;
+    } else if (mDecodeClass != clazz) {
+      throw new IllegalStateException("Records are decoded ahead as " + mDecodeClass.getName()
+          + ", not as " + clazz.getName());
+    }
+
+    while (mCurrentBatch == null || !mCurrentBatch.hasNext()) {
+      while (!mIsEndOfFile && mPendingBatches.size() < DECODE_BATCHES_AHEAD) {
+        submitBatch(clazz);
+      }
+      Future<List<Object>> batch = mPendingBatches.poll();
+      if (batch == null) {
+        return null;
+      }
+      mCurrentBatch = waitForBatch(batch).iterator();
+    }
+    return clazz.cast(mCurrentBatch.next());
+  }
+
+  /**
+   * Read up to {@link #DECODE_BATCH_SIZE} raw records and submit their decoding to mDecoders.
+   */
+  private void submitBatch(final Class<?> clazz) throws IOException {
+    final List<byte[]> bodies = new ArrayList<byte[]>(DECODE_BATCH_SIZE);
+    while (bodies.size() < DECODE_BATCH_SIZE) {
+      byte[] body = readRecordBody();
+      if (body == null) {
+        break;
+      }
+      bodies.add(body);
+    }
+    if (bodies.isEmpty()) {
+      return;
+    }
+    mPendingBatches.add(mDecoders.submit(new Callable<List<Object>>() {
+      @Override
+      public List<Object> call() throws IOException {
+        List<Object> records = new ArrayList<Object>(bodies.size());
+        for (byte[] body : bodies) {
+          records.add(mBinaryMapper.readValue(body, clazz));
+        }
+        return records;
+      }
+    }));
+  }
+
+  private List<Object> waitForBatch(Future<List<Object>> batch) throws IOException {
+    try {
+      return batch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Read the bytes of the next binary record.
+   *
+   * @return the bytes, or null at the end of the file or when the last record is incomplete
+   * @throws IOException if a record has a corrupt length and more bytes follow it
+   */
+  private byte[] readRecordBody() throws IOException {
+    if (mIsEndOfFile) {
+      return null;
+    }
+    int length;
+    try {
+      length = mInputStream.readInt();
+    } catch (EOFException e) {
+      mIsEndOfFile = true;
+      return null;
+    }
+    if (length < 0 || length > JournalFormat.MAX_RECORD_BYTES) {
+      // A crash of the writer cuts a record short, but never writes a whole length out of range.
+      // Only a length ending the file may be the torn tail of the last record.
+      if (mInputStream.read() != -1) {
+        throw new IOException("Journal record has a corrupt length of " + length);
+      }
+      LOG.warn("The last journal record has a corrupt length of " + length + ", ignoring it.");
+      mIsEndOfFile = true;
+      return null;
+    }
+    byte[] body = new byte[Math.min(length, READ_CHUNK_BYTES)];
+    try {
+      mInputStream.readFully(body);
+      while (body.length < length) {
+        int read = body.length;
+        body = Arrays.copyOf(body, (int) Math.min(length, 2L * read));
+        mInputStream.readFully(body, read, body.length - read);
+      }
+    } catch (EOFException e) {
+      LOG.warn("The last journal record is incomplete, ignoring it.");
+      mIsEndOfFile = true;
+      return null;
+    }
+    return body;
+  }
+}
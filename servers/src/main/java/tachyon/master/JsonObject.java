@@ -26,6 +26,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -41,6 +42,15 @@ abstract class JsonObject {
         SerializationFeature.CLOSE_CLOSEABLE, false);
   }
 
+  /**
+   * Creates an ObjectMapper for Smile, the binary form of JSON used by the journal, configured not
+   * to close the underlying stream.
+   */
+  public static ObjectMapper createBinaryObjectMapper() {
+    return new ObjectMapper(new SmileFactory()).configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET,
+        false).configure(SerializationFeature.CLOSE_CLOSEABLE, false);
+  }
+
   private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
 
   public Map<String, JsonNode> mParameters = Maps.newHashMap();
@@ -23,7 +23,9 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -35,17 +37,18 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Optional;
-import com.google.common.collect.Lists;
+import com.google.common.base.Preconditions;
 
 import tachyon.Constants;
 import tachyon.HeartbeatExecutor;
@@ -55,6 +58,9 @@ import tachyon.PrefixList;
 import tachyon.StorageDirId;
 import tachyon.StorageLevelAlias;
 import tachyon.TachyonURI;
+import tachyon.collections.ConcurrentIntObjectMap;
+import tachyon.collections.ConcurrentLongObjectMap;
+import tachyon.collections.IntHashSet;
 import tachyon.conf.TachyonConf;
 import tachyon.thrift.BlockInfoException;
 import tachyon.thrift.ClientBlockInfo;
@@ -77,6 +83,7 @@ import tachyon.underfs.UnderFileSystem;
 import tachyon.underfs.UnderFileSystem.SpaceType;
 import tachyon.util.CommonUtils;
 import tachyon.util.FormatUtils;
+import tachyon.util.ThreadFactoryUtils;
 import tachyon.util.io.PathUtils;
 
 /**
@@ -118,46 +125,50 @@ public class MasterInfo extends ImageWriter {
         hadFailedWorker = true;
         MasterWorkerInfo worker = mLostWorkers.poll();
 
-        // TODO these two locks are not efficient. Since node failure is rare, this is fine for now.
-        synchronized (mRootLock) {
-          synchronized (mFileIdToDependency) {
-            try {
-              for (long blockId : worker.getBlocks()) {
-                int fileId = BlockInfo.computeInodeId(blockId);
-                InodeFile tFile = (InodeFile) mFileIdToInodes.get(fileId);
-                if (tFile == null) {
-                  continue;
-                }
+        for (long blockId : worker.getBlocks()) {
+          int fileId = BlockInfo.computeInodeId(blockId);
+          InodeLockGroup lockGroup = new InodeLockGroup();
+          try {
+            Inode inode = lockInode(fileId, lockGroup, true);
+            if (inode == null || !inode.isFile()) {
+              continue;
+            }
+            InodeFile tFile = (InodeFile) inode;
 
-                int blockIndex = BlockInfo.computeBlockIndex(blockId);
-                tFile.removeLocation(blockIndex, worker.getId());
-                if (tFile.hasCheckpointed()
-                    || tFile.getBlockLocations(blockIndex, mTachyonConf).size() != 0) {
-                  LOG.info("Block " + blockId + " only lost an in memory copy from worker "
-                      + worker.getId());
-                  continue;
-                }
+            int blockIndex = BlockInfo.computeBlockIndex(blockId);
+            tFile.removeLocation(blockIndex, worker.getId());
+            if (tFile.hasCheckpointed()
+                || tFile.getBlockLocations(blockIndex, mTachyonConf).size() != 0) {
+              LOG.info("Block " + blockId + " only lost an in memory copy from worker "
+                  + worker.getId());
+              continue;
+            }
 
-                LOG.info("Block " + blockId + " got lost from worker " + worker.getId() + " .");
-                int depId = tFile.getDependencyId();
-                if (depId == -1) {
-                  LOG.error("Permanent Data loss: " + tFile);
-                  continue;
-                }
+            LOG.info("Block " + blockId + " got lost from worker " + worker.getId() + " .");
+            int depId = tFile.getDependencyId();
+            if (depId == -1) {
+              LOG.error("Permanent Data loss: " + tFile);
+              continue;
+            }
 
-                mLostFiles.add(tFile.getId());
-                Dependency dep = mFileIdToDependency.get(depId);
-                dep.addLostFile(tFile.getId());
-                LOG.info("File " + tFile.getId() + " got lost from worker " + worker.getId()
-                    + " . Trying to recompute it using dependency " + dep.mId);
-                String tmp = mTachyonConf.get(Constants.MASTER_TEMPORARY_FOLDER, "/tmp");
-                if (!getPath(tFile).toString().startsWith(tmp)) {
-                  mMustRecomputedDpendencies.add(depId);
-                }
+            String tmp = mTachyonConf.get(Constants.MASTER_TEMPORARY_FOLDER, "/tmp");
+            boolean isTemporary = getPath(tFile).toString().startsWith(tmp);
+            synchronized (mFileIdToDependency) {
+              mLostFiles.add(tFile.getId());
+              Dependency dep = mFileIdToDependency.get(depId);
+              dep.addLostFile(tFile.getId());
+              LOG.info("File " + tFile.getId() + " got lost from worker " + worker.getId()
+                  + " . Trying to recompute it using dependency " + dep.mId);
+              if (!isTemporary) {
+                mMustRecomputedDpendencies.add(depId);
               }
-            } catch (BlockInfoException e) {
-              LOG.error(e.getMessage(), e);
             }
+          } catch (BlockInfoException e) {
+            LOG.error(e.getMessage(), e);
+          } catch (FileDoesNotExistException e) {
+            LOG.info("File " + fileId + " was deleted while recovering lost blocks.");
+          } finally {
+            lockGroup.unlockAll();
           }
         }
       }
@@ -183,45 +194,47 @@ public class MasterInfo extends ImageWriter {
         boolean hasLostFiles = false;
         boolean launched = false;
         List<String> cmds = new ArrayList<String>();
-        synchronized (mRootLock) {
-          synchronized (mFileIdToDependency) {
-            if (!mMustRecomputedDpendencies.isEmpty()) {
-              List<Integer> recomputeList = new ArrayList<Integer>();
-              Queue<Integer> checkQueue = new LinkedList<Integer>();
-
-              checkQueue.addAll(mMustRecomputedDpendencies);
-              while (!checkQueue.isEmpty()) {
-                int depId = checkQueue.poll();
-                Dependency dep = mFileIdToDependency.get(depId);
-                boolean canLaunch = true;
-                for (int k = 0; k < dep.mParentFiles.size(); k ++) {
-                  int fildId = dep.mParentFiles.get(k);
-                  if (mLostFiles.contains(fildId)) {
-                    canLaunch = false;
-                    InodeFile iFile = (InodeFile) mFileIdToInodes.get(fildId);
-                    if (!mBeingRecomputedFiles.contains(fildId)) {
-                      int tDepId = iFile.getDependencyId();
-                      if (tDepId != -1 && !mMustRecomputedDpendencies.contains(tDepId)) {
-                        mMustRecomputedDpendencies.add(tDepId);
-                        checkQueue.add(tDepId);
-                      }
+        // Only the dependency id of the lost files is read here, which InodeFile guards itself, so
+        // no inode lock is needed.
+        synchronized (mFileIdToDependency) {
+          if (!mMustRecomputedDpendencies.isEmpty()) {
+            List<Integer> recomputeList = new ArrayList<Integer>();
+            Queue<Integer> checkQueue = new LinkedList<Integer>();
+
+            checkQueue.addAll(mMustRecomputedDpendencies);
+            while (!checkQueue.isEmpty()) {
+              int depId = checkQueue.poll();
+              Dependency dep = mFileIdToDependency.get(depId);
+              boolean canLaunch = true;
+              for (int k = 0; k < dep.mParentFiles.size(); k ++) {
+                int fildId = dep.mParentFiles.get(k);
+                if (mLostFiles.contains(fildId)) {
+                  canLaunch = false;
+                  InodeFile iFile = (InodeFile) mFileIdToInodes.get(fildId);
+                  if (iFile != null && !mBeingRecomputedFiles.contains(fildId)) {
+                    int tDepId = iFile.getDependencyId();
+                    if (tDepId != -1 && !mMustRecomputedDpendencies.contains(tDepId)) {
+                      mMustRecomputedDpendencies.add(tDepId);
+                      checkQueue.add(tDepId);
                     }
                   }
                 }
-                if (canLaunch) {
-                  recomputeList.add(depId);
-                }
               }
-              hasLostFiles = !mMustRecomputedDpendencies.isEmpty();
-              launched = (recomputeList.size() > 0);
-
-              for (int k = 0; k < recomputeList.size(); k ++) {
-                mMustRecomputedDpendencies.remove(recomputeList.get(k));
-                Dependency dep = mFileIdToDependency.get(recomputeList.get(k));
-                mBeingRecomputedFiles.addAll(dep.getLostFiles());
-                cmds.add(dep.getCommand());
+              if (canLaunch) {
+                recomputeList.add(depId);
               }
             }
+            hasLostFiles = !mMustRecomputedDpendencies.isEmpty();
+            launched = (recomputeList.size() > 0);
+
+            for (int k = 0; k < recomputeList.size(); k ++) {
+              mMustRecomputedDpendencies.remove(recomputeList.get(k));
+              Dependency dep = mFileIdToDependency.get(recomputeList.get(k));
+              for (int lostFileId : dep.getLostFiles()) {
+                mBeingRecomputedFiles.add(lostFileId);
+              }
+              cmds.add(dep.getCommand());
+            }
           }
         }
 
@@ -245,6 +258,10 @@ public class MasterInfo extends ImageWriter {
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The cursor of a listing which starts from the first entry. */
+  private static final String[] NO_CURSOR = new String[0];
+  /** The number of subtrees of a loaded image linked by each loader thread, to balance them. */
+  private static final int IMAGE_SECTIONS_PER_LOADER_THREAD = 4;
 
   private final InetSocketAddress mMasterAddress;
   private final long mStartTimeNSPrefix;
@@ -262,10 +279,28 @@ public class MasterInfo extends ImageWriter {
 
   // Root Inode's id must be 1.
   private InodeFolder mRoot;
-  private final Object mRootLock = new Object();
 
-  // A map from file ID's to Inodes. All operations on it are currently synchronized on mRootLock.
-  private final Map<Integer, Inode> mFileIdToInodes = new HashMap<Integer, Inode>();
+  // The inode tree is guarded by per inode read/write locks (see Inode#lockRead). Operations on a
+  // path read lock every inode from the root down, and write lock only the inodes they mutate,
+  // typically the parent folder. Operations on a file id lock that inode only. Inode locks are
+  // always taken before the mFileIdToDependency, mWorkers and edit log monitors, and an edit log
+  // entry is written while the locks of the operation are still held.
+  // A map from file ID's to Inodes.
+  private final ConcurrentIntObjectMap<Inode> mFileIdToInodes =
+      new ConcurrentIntObjectMap<Inode>();
+  // Replaying a CREATE_FILE entry allocates inode ids from mInodeCounter again, so ids must be
+  // handed out in the order the entries are logged. Creations hold this lock while allocating ids
+  // and writing their entry.
+  private final Object mInodeIdLock = new Object();
+  // A map from block ID's to the blocks of the files, so that worker heartbeats can update block
+  // locations without locking the inodes. A block is added once it belongs to its file, and removed
+  // before its file is deleted.
+  private final ConcurrentLongObjectMap<BlockInfo> mBlockIdToBlockInfo =
+      new ConcurrentLongObjectMap<BlockInfo>();
+  // Renames lock two paths, which could deadlock against each other. Only one runs at a time.
+  // Operations which lock several paths otherwise lock them in path order, see
+  // comparePathComponents.
+  private final Object mRenameLock = new Object();
   private final Map<Integer, Dependency> mFileIdToDependency = new HashMap<Integer, Dependency>();
   private final RawTables mRawTables;
 
@@ -273,9 +308,9 @@ public class MasterInfo extends ImageWriter {
   // are synchronized on mFileIdToDependency.
   private final Set<Integer> mUncheckpointedDependencies = new HashSet<Integer>();
   private final Set<Integer> mPriorityDependencies = new HashSet<Integer>();
-  private final Set<Integer> mLostFiles = new HashSet<Integer>();
+  private final IntHashSet mLostFiles = new IntHashSet();
 
-  private final Set<Integer> mBeingRecomputedFiles = new HashSet<Integer>();
+  private final IntHashSet mBeingRecomputedFiles = new IntHashSet();
   private final Set<Integer> mMustRecomputedDpendencies = new HashSet<Integer>();
   private final Map<Long, MasterWorkerInfo> mWorkers = new HashMap<Long, MasterWorkerInfo>();
 
@@ -286,8 +321,8 @@ public class MasterInfo extends ImageWriter {
 
   // TODO Check the logic related to this two lists.
   private final PrefixList mWhitelist;
-  // Synchronized set containing all InodeFile ids that are currently pinned.
-  private final Set<Integer> mPinnedInodeFileIds;
+  // All InodeFile ids that are currently pinned, guarded by itself.
+  private final IntHashSet mPinnedInodeFileIds = new IntHashSet();
 
   private final Journal mJournal;
 
@@ -318,7 +353,6 @@ public class MasterInfo extends ImageWriter {
     mWhitelist =
         new PrefixList(mTachyonConf.getList(Constants.MASTER_WHITELIST, ",",
             new LinkedList<String>()));
-    mPinnedInodeFileIds = Collections.synchronizedSet(new HashSet<Integer>());
 
     mJournal.loadImage(this);
     mMasterSource = new MasterSource(this);
@@ -347,8 +381,9 @@ public class MasterInfo extends ImageWriter {
       tWorkerInfo.updateLastUpdatedTimeMs();
     }
 
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, true);
 
       if (inode == null) {
         throw new FileNotFoundException("File " + fileId + " does not exist.");
@@ -367,6 +402,7 @@ public class MasterInfo extends ImageWriter {
         }
       } else {
         tFile.setLength(length);
+        addToBlockMap(tFile);
         needLog = true;
       }
 
@@ -394,6 +430,8 @@ public class MasterInfo extends ImageWriter {
       }
       mMasterSource.incFilesCheckpointed();
       return new Pair<Boolean, Boolean>(true, needLog);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -405,8 +443,9 @@ public class MasterInfo extends ImageWriter {
    * @throws FileDoesNotExistException
    */
   void completeFileInternal(int fileId, long opTimeMs) throws FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, true);
 
       if (inode == null) {
         throw new FileDoesNotExistException("File " + fileId + " does not exit.");
@@ -419,6 +458,8 @@ public class MasterInfo extends ImageWriter {
 
       ((InodeFile) inode).setComplete();
       inode.setLastModificationTimeMs(opTimeMs);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -426,12 +467,16 @@ public class MasterInfo extends ImageWriter {
       String commandPrefix, List<ByteBuffer> data, String comment, String framework,
       String frameworkVersion, DependencyType dependencyType, int dependencyId, long creationTimeMs)
       throws InvalidPathException, FileDoesNotExistException {
-    Dependency dep = null;
-    synchronized (mRootLock) {
-      Set<Integer> parentDependencyIds = new HashSet<Integer>();
-      for (int k = 0; k < parentsIds.size(); k ++) {
-        int parentId = parentsIds.get(k);
-        Inode inode = mFileIdToInodes.get(parentId);
+    // The files are locked one at a time, since they are not locked from their ancestors down.
+    Set<Integer> parentDependencyIds = new HashSet<Integer>();
+    for (int k = 0; k < parentsIds.size(); k ++) {
+      int parentId = parentsIds.get(k);
+      InodeLockGroup lockGroup = new InodeLockGroup();
+      try {
+        Inode inode = lockInode(parentId, lockGroup, false);
+        if (inode == null) {
+          throw new FileDoesNotExistException("Parent " + parentId + " does not exist.");
+        }
         if (inode.isFile()) {
           LOG.info("PARENT DEPENDENCY ID IS " + ((InodeFile) inode).getDependencyId() + " "
               + (inode));
@@ -441,22 +486,31 @@ public class MasterInfo extends ImageWriter {
         } else {
           throw new InvalidPathException("Parent " + parentId + " is not a file.");
         }
+      } finally {
+        lockGroup.unlockAll();
       }
+    }
 
-      dep =
-          new Dependency(dependencyId, parentsIds, childrenIds, commandPrefix, data, comment,
-              framework, frameworkVersion, dependencyType, parentDependencyIds, creationTimeMs,
-              mTachyonConf);
+    Dependency dep =
+        new Dependency(dependencyId, parentsIds, childrenIds, commandPrefix, data, comment,
+            framework, frameworkVersion, dependencyType, parentDependencyIds, creationTimeMs,
+            mTachyonConf);
 
-      List<Inode> childrenInodes = new ArrayList<Inode>();
-      for (int k = 0; k < childrenIds.size(); k ++) {
-        InodeFile inode = (InodeFile) mFileIdToInodes.get(childrenIds.get(k));
-        inode.setDependencyId(dep.mId);
-        inode.setLastModificationTimeMs(creationTimeMs);
-        childrenInodes.add(inode);
-        if (inode.hasCheckpointed()) {
-          dep.childCheckpointed(inode.getId());
+    for (int k = 0; k < childrenIds.size(); k ++) {
+      InodeLockGroup lockGroup = new InodeLockGroup();
+      try {
+        Inode inode = lockInode(childrenIds.get(k), lockGroup, true);
+        if (inode == null || !inode.isFile()) {
+          throw new FileDoesNotExistException("Child " + childrenIds.get(k) + " is not a file.");
+        }
+        InodeFile childFile = (InodeFile) inode;
+        childFile.setDependencyId(dep.mId);
+        childFile.setLastModificationTimeMs(creationTimeMs);
+        if (childFile.hasCheckpointed()) {
+          dep.childCheckpointed(childFile.getId());
         }
+      } finally {
+        lockGroup.unlockAll();
       }
     }
 
@@ -498,6 +552,17 @@ public class MasterInfo extends ImageWriter {
   int createFileInternal(boolean recursive, TachyonURI path, boolean directory, long blockSizeByte,
       long creationTimeMs) throws FileAlreadyExistException, InvalidPathException,
       BlockInfoException, TachyonException {
+    return createFileInternal(recursive, path, directory, blockSizeByte, creationTimeMs, false);
+  }
+
+  /**
+   * Same as {@link #createFileInternal(boolean, TachyonURI, boolean, long, long)}, and
+   * additionally writes the operation to the edit log if <code>needLog</code> is true. The entry is
+   * written before the locks of the path are released, but it is not flushed.
+   */
+  private int createFileInternal(boolean recursive, TachyonURI path, boolean directory,
+      long blockSizeByte, long creationTimeMs, boolean needLog) throws FileAlreadyExistException,
+      InvalidPathException, BlockInfoException, TachyonException {
     mMasterSource.incCreateFileOps();
     if (path.isRoot()) {
       LOG.info("FileAlreadyExistException: " + path);
@@ -516,8 +581,11 @@ public class MasterInfo extends ImageWriter {
     String[] parentPath = new String[pathNames.length - 1];
     System.arraycopy(pathNames, 0, parentPath, 0, parentPath.length);
 
-    synchronized (mRootLock) {
-      Pair<Inode, Integer> inodeTraversal = traverseToInode(parentPath);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      // Only the parent folder is write locked, its ancestors are read locked.
+      Pair<Inode, Integer> inodeTraversal =
+          traverseToInode(parentPath, lockGroup, parentPath.length - 1);
       // pathIndex is the index into pathNames where we start filling in the path from the inode.
       int pathIndex = parentPath.length;
       if (!traversalSucceeded(inodeTraversal)) {
@@ -531,8 +599,16 @@ public class MasterInfo extends ImageWriter {
           LOG.info("InvalidPathException: " + msg);
           throw new InvalidPathException(msg);
         } else {
-          // We will start filling in the path from inodeTraversal.getSecond()
-          pathIndex = inodeTraversal.getSecond();
+          // The deepest existing folder was only read locked. A read lock cannot be upgraded, so
+          // lock the path again, write locking from that folder down. Another thread may have
+          // created some of the missing components in the meantime.
+          lockGroup.unlockAll();
+          inodeTraversal =
+              traverseToInode(parentPath, lockGroup, inodeTraversal.getSecond() - 1);
+          if (!traversalSucceeded(inodeTraversal)) {
+            // We will start filling in the path from inodeTraversal.getSecond()
+            pathIndex = inodeTraversal.getSecond();
+          }
         }
       }
 
@@ -541,55 +617,70 @@ public class MasterInfo extends ImageWriter {
             + ". Component " + pathNames[pathIndex - 1] + " is not a directory.");
       }
       InodeFolder currentInodeFolder = (InodeFolder) inodeTraversal.getFirst();
-      // Fill in the directories that were missing.
-      for (int k = pathIndex; k < parentPath.length; k ++) {
-        Inode dir =
-            new InodeFolder(pathNames[k], mInodeCounter.incrementAndGet(),
-                currentInodeFolder.getId(), creationTimeMs);
-        dir.setPinned(currentInodeFolder.isPinned());
-        currentInodeFolder.addChild(dir);
-        currentInodeFolder.setLastModificationTimeMs(creationTimeMs);
-        mFileIdToInodes.put(dir.getId(), dir);
-        currentInodeFolder = (InodeFolder) dir;
-      }
-      mMasterSource.incFilesCreated(parentPath.length - pathIndex);
-
-      // Create the final path component. First we need to make sure that there isn't already a file
-      // here with that name. If there is an existing file that is a directory and we're creating a
-      // directory, we just return the existing directory's id.
-      Inode ret = currentInodeFolder.getChild(name);
-      if (ret != null) {
-        if (ret.isDirectory() && directory) {
-          return ret.getId();
-        }
-        LOG.info("FileAlreadyExistException: " + path);
-        throw new FileAlreadyExistException(path.toString());
-      }
-      if (directory) {
-        ret =
-            new InodeFolder(name, mInodeCounter.incrementAndGet(), currentInodeFolder.getId(),
-                creationTimeMs);
-        ret.setPinned(currentInodeFolder.isPinned());
-      } else {
-        ret =
-            new InodeFile(name, mInodeCounter.incrementAndGet(), currentInodeFolder.getId(),
-                blockSizeByte, creationTimeMs);
-        ret.setPinned(currentInodeFolder.isPinned());
-        if (ret.isPinned()) {
-          mPinnedInodeFileIds.add(ret.getId());
-        }
-        if (mWhitelist.inList(path.toString())) {
-          ((InodeFile) ret).setCache(true);
+      Inode ret = null;
+      if (pathIndex == parentPath.length) {
+        // Make sure that there isn't already a file here with that name. If there is an existing
+        // file that is a directory and we're creating a directory, we just return the existing
+        // directory's id.
+        ret = currentInodeFolder.getChild(name);
+        if (ret != null && !(ret.isDirectory() && directory)) {
+          LOG.info("FileAlreadyExistException: " + path);
+          throw new FileAlreadyExistException(path.toString());
         }
       }
 
-      mFileIdToInodes.put(ret.getId(), ret);
-      currentInodeFolder.addChild(ret);
-      currentInodeFolder.setLastModificationTimeMs(creationTimeMs);
-      mMasterSource.incFilesCreated();
+      synchronized (mInodeIdLock) {
+        if (ret == null) {
+          // Fill in the directories that were missing.
+          for (int k = pathIndex; k < parentPath.length; k ++) {
+            Inode dir =
+                new InodeFolder(pathNames[k], mInodeCounter.incrementAndGet(),
+                    currentInodeFolder.getId(), creationTimeMs);
+            dir.setPinned(currentInodeFolder.isPinned());
+            currentInodeFolder.addChild(dir);
+            currentInodeFolder.setLastModificationTimeMs(creationTimeMs);
+            mFileIdToInodes.put(dir.getId(), dir);
+            currentInodeFolder = (InodeFolder) dir;
+          }
+          mMasterSource.incFilesCreated(parentPath.length - pathIndex);
+
+          // Create the final path component.
+          if (directory) {
+            ret =
+                new InodeFolder(name, mInodeCounter.incrementAndGet(), currentInodeFolder.getId(),
+                    creationTimeMs);
+            ret.setPinned(currentInodeFolder.isPinned());
+          } else {
+            ret =
+                new InodeFile(name, mInodeCounter.incrementAndGet(), currentInodeFolder.getId(),
+                    blockSizeByte, creationTimeMs);
+            ret.setPinned(currentInodeFolder.isPinned());
+            if (ret.isPinned()) {
+              synchronized (mPinnedInodeFileIds) {
+                mPinnedInodeFileIds.add(ret.getId());
+              }
+            }
+            if (mWhitelist.inList(path.toString())) {
+              ((InodeFile) ret).setCache(true);
+            }
+          }
+
+          mFileIdToInodes.put(ret.getId(), ret);
+          currentInodeFolder.addChild(ret);
+          currentInodeFolder.setLastModificationTimeMs(creationTimeMs);
+          mMasterSource.incFilesCreated();
+
+          LOG.debug("createFile: File Created: {} parent: ", ret, currentInodeFolder);
+        }
 
-      LOG.debug("createFile: File Created: {} parent: ", ret, currentInodeFolder);
+        if (needLog) {
+          mJournal.getEditLog().createFile(recursive, path, directory, blockSizeByte,
+              creationTimeMs);
+        }
+      }
       return ret.getId();
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -613,34 +704,79 @@ public class MasterInfo extends ImageWriter {
    * @throws TachyonException
    */
   boolean deleteInternal(int fileId, boolean recursive, long opTimeMs) throws TachyonException {
+    return deleteInternal(fileId, recursive, opTimeMs, false);
+  }
+
+  /**
+   * Same as {@link #deleteInternal(int, boolean, long)}, and additionally writes the operation to
+   * the edit log before releasing the locks if <code>needLog</code> is true.
+   */
+  private boolean deleteInternal(int fileId, boolean recursive, long opTimeMs, boolean needLog)
+      throws TachyonException {
     mMasterSource.incDeleteFileOps();
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
-      if (inode == null) {
-        return true;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      boolean ret = true;
+      Inode inode = lockInodeAndParent(fileId, lockGroup);
+      if (inode != null) {
+        ret = deleteInode(inode, recursive, opTimeMs);
       }
-
-      if (inode.isDirectory() && !recursive && ((InodeFolder) inode).getNumberOfChildren() > 0) {
-        // inode is nonempty, and we don't want to delete a nonempty directory unless recursive is
-        // true
-        return false;
+      if (needLog) {
+        mJournal.getEditLog().delete(fileId, recursive, opTimeMs);
       }
+      return ret;
+    } finally {
+      lockGroup.unlockAll();
+    }
+  }
 
-      if (inode.getId() == mRoot.getId()) {
-        // The root cannot be deleted.
-        return false;
-      }
+  /**
+   * Deletes an inode and, if it is a folder, everything below it.
+   *
+   * @param inode The inode to delete, write locked together with its parent
+   * @param recursive True if the file and it's subdirectories should be deleted
+   * @param opTimeMs The time of the delete operation, in milliseconds
+   * @return true if the deletion succeeded and false otherwise.
+   * @throws TachyonException
+   */
+  private boolean deleteInode(Inode inode, boolean recursive, long opTimeMs)
+      throws TachyonException {
+    if (inode.isDirectory() && !recursive && ((InodeFolder) inode).getNumberOfChildren() > 0) {
+      // inode is nonempty, and we don't want to delete a nonempty directory unless recursive is
+      // true
+      return false;
+    }
 
-      List<Inode> delInodes = new ArrayList<Inode>();
-      delInodes.add(inode);
-      if (inode.isDirectory()) {
-        delInodes.addAll(getInodeChildrenRecursive((InodeFolder) inode));
-      }
+    if (inode.getId() == mRoot.getId()) {
+      // The root cannot be deleted.
+      return false;
+    }
+
+    // No new path can reach below the write locked inode, so the descendants collected here are
+    // all that need to be deleted.
+    List<Inode> delInodes = new ArrayList<Inode>();
+    delInodes.add(inode);
+    if (inode.isDirectory()) {
+      delInodes.addAll(getInodeChildrenRecursive((InodeFolder) inode));
+    }
 
-      // We go through each inode, removing it from it's parent set and from mDelInodes. If it's a
-      // file, we deal with the checkpoints and blocks as well.
-      for (int i = delInodes.size() - 1; i >= 0; i --) {
-        Inode delInode = delInodes.get(i);
+    // We go through each inode, removing it from it's parent set and from mDelInodes. If it's a
+    // file, we deal with the checkpoints and blocks as well. Each descendant is write locked with
+    // its parent while it is removed, since operations on a file id lock that inode only.
+    for (int i = delInodes.size() - 1; i >= 0; i --) {
+      Inode delInode = delInodes.get(i);
+      InodeFolder parent = (InodeFolder) mFileIdToInodes.get(delInode.getParentId());
+      if (parent == null) {
+        // Its parent, and so the inode itself, has been deleted on its own in the meantime.
+        continue;
+      }
+      parent.lockWrite();
+      delInode.lockWrite();
+      try {
+        if (delInode.getId() < 0) {
+          // It has been deleted on its own in the meantime.
+          continue;
+        }
 
         if (delInode.isFile()) {
           String checkpointPath = ((InodeFile) delInode).getUfsPath();
@@ -657,6 +793,11 @@ public class MasterInfo extends ImageWriter {
             }
           }
 
+          // The blocks leave mBlockIdToBlockInfo before their locations are collected, see
+          // workerHeartbeat.
+          for (long blockId : ((InodeFile) delInode).getBlockIds()) {
+            mBlockIdToBlockInfo.remove(blockId);
+          }
           List<Pair<Long, Long>> blockIdWorkerIdList =
               ((InodeFile) delInode).getBlockIdWorkerIdPairs();
           synchronized (mWorkers) {
@@ -668,10 +809,11 @@ public class MasterInfo extends ImageWriter {
             }
           }
 
-          mPinnedInodeFileIds.remove(delInode.getId());
+          synchronized (mPinnedInodeFileIds) {
+            mPinnedInodeFileIds.remove(delInode.getId());
+          }
         }
 
-        InodeFolder parent = (InodeFolder) mFileIdToInodes.get(delInode.getParentId());
         parent.removeChild(delInode);
         parent.setLastModificationTimeMs(opTimeMs);
 
@@ -681,11 +823,14 @@ public class MasterInfo extends ImageWriter {
 
         mFileIdToInodes.remove(delInode.getId());
         delInode.reverseId();
+      } finally {
+        delInode.unlockWrite();
+        parent.unlockWrite();
       }
-
-      mMasterSource.incFilesDeleted(delInodes.size());
-      return true;
     }
+
+    mMasterSource.incFilesDeleted(delInodes.size());
+    return true;
   }
 
   /**
@@ -723,7 +868,8 @@ public class MasterInfo extends ImageWriter {
    */
   List<TachyonURI> lsInternal(Inode inode, TachyonURI path, boolean recursive)
       throws InvalidPathException, FileDoesNotExistException {
-    synchronized (mRootLock) {
+    inode.lockRead();
+    try {
       List<TachyonURI> ret = new ArrayList<TachyonURI>();
       ret.add(path);
       if (inode.isDirectory()) {
@@ -737,6 +883,8 @@ public class MasterInfo extends ImageWriter {
         }
       }
       return ret;
+    } finally {
+      inode.unlockRead();
     }
   }
 
@@ -749,21 +897,28 @@ public class MasterInfo extends ImageWriter {
    * @param opTimeMs The time of set pinned, in milliseconds
    */
   void recomputePinnedFilesInternal(Inode inode, Optional<Boolean> setPinState, long opTimeMs) {
-    if (setPinState.isPresent()) {
-      inode.setPinned(setPinState.get());
-      inode.setLastModificationTimeMs(opTimeMs);
-    }
-
-    if (inode.isFile()) {
-      if (inode.isPinned()) {
-        mPinnedInodeFileIds.add(inode.getId());
-      } else {
-        mPinnedInodeFileIds.remove(inode.getId());
+    inode.lockWrite();
+    try {
+      if (setPinState.isPresent()) {
+        inode.setPinned(setPinState.get());
+        inode.setLastModificationTimeMs(opTimeMs);
       }
-    } else if (inode.isDirectory()) {
-      for (Inode child : ((InodeFolder) inode).getChildren()) {
-        recomputePinnedFilesInternal(child, setPinState, opTimeMs);
+
+      if (inode.isFile()) {
+        synchronized (mPinnedInodeFileIds) {
+          if (inode.isPinned()) {
+            mPinnedInodeFileIds.add(inode.getId());
+          } else {
+            mPinnedInodeFileIds.remove(inode.getId());
+          }
+        }
+      } else if (inode.isDirectory()) {
+        for (Inode child : ((InodeFolder) inode).getChildren()) {
+          recomputePinnedFilesInternal(child, setPinState, opTimeMs);
+        }
       }
+    } finally {
+      inode.unlockWrite();
     }
   }
 
@@ -779,91 +934,143 @@ public class MasterInfo extends ImageWriter {
    */
   boolean renameInternal(int fileId, TachyonURI dstPath, long opTimeMs)
       throws FileDoesNotExistException, InvalidPathException {
+    return renameInternal(fileId, dstPath, opTimeMs, false);
+  }
+
+  /**
+   * Same as {@link #renameInternal(int, TachyonURI, long)}, and additionally writes the operation
+   * to the edit log before releasing the locks if <code>needLog</code> is true.
+   */
+  private boolean renameInternal(int fileId, TachyonURI dstPath, long opTimeMs, boolean needLog)
+      throws FileDoesNotExistException, InvalidPathException {
     mMasterSource.incRenameOps();
-    synchronized (mRootLock) {
-      TachyonURI srcPath = getPath(fileId);
-      if (srcPath.equals(dstPath)) {
-        return true;
-      }
-      if (srcPath.isRoot() || dstPath.isRoot()) {
-        return false;
-      }
-      String[] srcComponents = PathUtils.getPathComponents(srcPath.toString());
-      String[] dstComponents = PathUtils.getPathComponents(dstPath.toString());
-      // We can't rename a path to one of its subpaths, so we check for that, by making sure
-      // srcComponents isn't a prefix of dstComponents.
-      if (srcComponents.length < dstComponents.length) {
-        boolean isPrefix = true;
-        for (int prefixInd = 0; prefixInd < srcComponents.length; prefixInd ++) {
-          if (!srcComponents[prefixInd].equals(dstComponents[prefixInd])) {
-            isPrefix = false;
-            break;
-          }
-        }
-        if (isPrefix) {
-          throw new InvalidPathException("Failed to rename: " + srcPath + " is a prefix of "
-              + dstPath);
+    synchronized (mRenameLock) {
+      InodeLockGroup lockGroup = new InodeLockGroup();
+      try {
+        boolean ret = renameInode(fileId, dstPath, opTimeMs, lockGroup);
+        if (needLog) {
+          mJournal.getEditLog().rename(fileId, dstPath, opTimeMs);
         }
+        return ret;
+      } finally {
+        lockGroup.unlockAll();
       }
+    }
+  }
 
-      TachyonURI srcParent = srcPath.getParent();
-      TachyonURI dstParent = dstPath.getParent();
-
-      // We traverse down to the source and destinations' parent paths
-      Inode srcParentInode = getInode(srcParent);
-      if (srcParentInode == null || !srcParentInode.isDirectory()) {
-        return false;
+  /**
+   * Moves an inode to the given path. The source and destination parent folders are write locked,
+   * and their ancestors read locked, through the given lock group.
+   *
+   * @param fileId The id of the file to rename
+   * @param dstPath The new path of the file
+   * @param opTimeMs The time of the rename operation, in milliseconds
+   * @param lockGroup The lock group to lock the inodes with
+   * @return true if the rename succeeded, false otherwise
+   * @throws FileDoesNotExistException If the id doesn't point to an inode
+   * @throws InvalidPathException if the source path is a prefix of the destination
+   */
+  private boolean renameInode(int fileId, TachyonURI dstPath, long opTimeMs,
+      InodeLockGroup lockGroup) throws FileDoesNotExistException, InvalidPathException {
+    TachyonURI srcPath = getPath(fileId);
+    if (srcPath.equals(dstPath)) {
+      return true;
+    }
+    if (srcPath.isRoot() || dstPath.isRoot()) {
+      return false;
+    }
+    String[] srcComponents = PathUtils.getPathComponents(srcPath.toString());
+    String[] dstComponents = PathUtils.getPathComponents(dstPath.toString());
+    // We can't rename a path to one of its subpaths, so we check for that, by making sure
+    // srcComponents isn't a prefix of dstComponents.
+    if (srcComponents.length < dstComponents.length) {
+      boolean isPrefix = true;
+      for (int prefixInd = 0; prefixInd < srcComponents.length; prefixInd ++) {
+        if (!srcComponents[prefixInd].equals(dstComponents[prefixInd])) {
+          isPrefix = false;
+          break;
+        }
       }
-
-      Inode dstParentInode = getInode(dstParent);
-      if (dstParentInode == null || !dstParentInode.isDirectory()) {
-        return false;
+      if (isPrefix) {
+        throw new InvalidPathException("Failed to rename: " + srcPath + " is a prefix of "
+            + dstPath);
       }
+    }
 
-      // We make sure that the source path exists and the destination path doesn't
-      Inode srcInode =
-          ((InodeFolder) srcParentInode).getChild(srcComponents[srcComponents.length - 1]);
-      if (srcInode == null) {
-        return false;
-      }
-      if (((InodeFolder) dstParentInode)
-          .getChild(dstComponents[dstComponents.length - 1]) != null) {
-        return false;
-      }
+    String[] srcParentComponents = Arrays.copyOf(srcComponents, srcComponents.length - 1);
+    String[] dstParentComponents = Arrays.copyOf(dstComponents, dstComponents.length - 1);
 
-      // Now we remove srcInode from it's parent and insert it into dstPath's parent
-      ((InodeFolder) srcParentInode).removeChild(srcInode);
-      srcParentInode.setLastModificationTimeMs(opTimeMs);
-      srcInode.setParentId(dstParentInode.getId());
-      srcInode.setName(dstComponents[dstComponents.length - 1]);
-      ((InodeFolder) dstParentInode).addChild(srcInode);
-      dstParentInode.setLastModificationTimeMs(opTimeMs);
-      mMasterSource.incFilesRenamed();
-      return true;
+    // We traverse down to the source and destinations' parent paths, in path order so that the
+    // locks are taken in the same order as batched lookups take them. If one parent is an ancestor
+    // of the other, it comes first and is write locked before the other traversal passes through
+    // it.
+    Inode srcParentInode;
+    Inode dstParentInode;
+    if (comparePathComponents(srcParentComponents, dstParentComponents) <= 0) {
+      srcParentInode = getInode(srcParentComponents, lockGroup, srcParentComponents.length - 1);
+      dstParentInode = getInode(dstParentComponents, lockGroup, dstParentComponents.length - 1);
+    } else {
+      dstParentInode = getInode(dstParentComponents, lockGroup, dstParentComponents.length - 1);
+      srcParentInode = getInode(srcParentComponents, lockGroup, srcParentComponents.length - 1);
+    }
+    if (srcParentInode == null || !srcParentInode.isDirectory()) {
+      return false;
     }
+    if (dstParentInode == null || !dstParentInode.isDirectory()) {
+      return false;
+    }
+
+    // We make sure that the source path exists and the destination path doesn't
+    Inode srcInode =
+        ((InodeFolder) srcParentInode).getChild(srcComponents[srcComponents.length - 1]);
+    if (srcInode == null) {
+      return false;
+    }
+    lockGroup.lockWrite(srcInode);
+    if (srcInode.getId() != fileId) {
+      // The file was deleted after its path was looked up, and another one took its place.
+      throw new FileDoesNotExistException("Failed to rename: " + fileId + " does not exist");
+    }
+    if (((InodeFolder) dstParentInode)
+        .getChild(dstComponents[dstComponents.length - 1]) != null) {
+      return false;
+    }
+
+    // Now we remove srcInode from it's parent and insert it into dstPath's parent
+    ((InodeFolder) srcParentInode).removeChild(srcInode);
+    srcParentInode.setLastModificationTimeMs(opTimeMs);
+    srcInode.setParentId(dstParentInode.getId());
+    srcInode.setName(dstComponents[dstComponents.length - 1]);
+    ((InodeFolder) dstParentInode).addChild(srcInode);
+    dstParentInode.setLastModificationTimeMs(opTimeMs);
+    mMasterSource.incFilesRenamed();
+    return true;
   }
 
   void setPinnedInternal(int fileId, boolean pinned, long opTimeMs)
       throws FileDoesNotExistException {
     LOG.info("setPinned(" + fileId + ", " + pinned + ")");
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, true);
 
       if (inode == null) {
         throw new FileDoesNotExistException("Failed to find inode" + fileId);
       }
 
       recomputePinnedFilesInternal(inode, Optional.of(pinned), opTimeMs);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
   private void addBlock(InodeFile tFile, BlockInfo blockInfo, long opTimeMs)
       throws BlockInfoException {
     tFile.addBlock(blockInfo);
+    mBlockIdToBlockInfo.put(blockInfo.mBlockId, blockInfo);
     tFile.setLastModificationTimeMs(opTimeMs);
     mJournal.getEditLog().addBlock(tFile.getId(), blockInfo.mBlockIndex, blockInfo.mLength,
         opTimeMs);
-    mJournal.getEditLog().flush();
   }
 
   /**
@@ -881,15 +1088,21 @@ public class MasterInfo extends ImageWriter {
   public boolean addCheckpoint(long workerId, int fileId, long length, TachyonURI checkpointPath)
       throws FileNotFoundException, SuspectedFileSizeException, BlockInfoException {
     long opTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
-      Pair<Boolean, Boolean> ret =
-          addCheckpointInternal(workerId, fileId, length, checkpointPath, opTimeMs);
+    Pair<Boolean, Boolean> ret;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      lockInode(fileId, lockGroup, true);
+      ret = addCheckpointInternal(workerId, fileId, length, checkpointPath, opTimeMs);
       if (ret.getSecond()) {
         mJournal.getEditLog().addCheckpoint(fileId, length, checkpointPath, opTimeMs);
-        mJournal.getEditLog().flush();
       }
-      return ret.getFirst();
+    } finally {
+      lockGroup.unlockAll();
+    }
+    if (ret.getSecond()) {
+      mJournal.getEditLog().flush();
     }
+    return ret.getFirst();
   }
 
   /**
@@ -899,12 +1112,8 @@ public class MasterInfo extends ImageWriter {
    */
   private void addFile(int fileId, int dependencyId) {
     synchronized (mFileIdToDependency) {
-      if (mLostFiles.contains(fileId)) {
-        mLostFiles.remove(fileId);
-      }
-      if (mBeingRecomputedFiles.contains(fileId)) {
-        mBeingRecomputedFiles.remove(fileId);
-      }
+      mLostFiles.remove(fileId);
+      mBeingRecomputedFiles.remove(fileId);
     }
   }
 
@@ -914,13 +1123,26 @@ public class MasterInfo extends ImageWriter {
    * @param inode The inode to add
    * @param map The map to add the inodes to
    */
-  private void addToInodeMap(Inode inode, Map<Integer, Inode> map) {
+  private void addToInodeMap(Inode inode, ConcurrentIntObjectMap<Inode> map) {
     map.put(inode.getId(), inode);
     if (inode.isDirectory()) {
       InodeFolder inodeFolder = (InodeFolder) inode;
       for (Inode child : inodeFolder.getChildren()) {
         addToInodeMap(child, map);
       }
+    } else {
+      addToBlockMap((InodeFile) inode);
+    }
+  }
+
+  /**
+   * Add all the blocks of the file to mBlockIdToBlockInfo.
+   *
+   * @param tFile The file whose blocks to add
+   */
+  private void addToBlockMap(InodeFile tFile) {
+    for (BlockInfo blockInfo : tFile.getBlockList()) {
+      mBlockIdToBlockInfo.put(blockInfo.mBlockId, blockInfo);
     }
   }
 
@@ -949,8 +1171,10 @@ public class MasterInfo extends ImageWriter {
 
     int fileId = BlockInfo.computeInodeId(blockId);
     int blockIndex = BlockInfo.computeBlockIndex(blockId);
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    boolean needFlush = false;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, true);
 
       if (inode == null) {
         throw new FileDoesNotExistException("File " + fileId + " does not exist.");
@@ -962,6 +1186,7 @@ public class MasterInfo extends ImageWriter {
       InodeFile tFile = (InodeFile) inode;
       if (tFile.getNumberOfBlocks() <= blockIndex) {
         addBlock(tFile, new BlockInfo(tFile, blockIndex, length), System.currentTimeMillis());
+        needFlush = true;
       }
 
       tFile.addLocation(blockIndex, workerId, tWorkerInfo.mWorkerAddress, storageDirId);
@@ -971,6 +1196,11 @@ public class MasterInfo extends ImageWriter {
       } else {
         return tFile.getDependencyId();
       }
+    } finally {
+      lockGroup.unlockAll();
+      if (needFlush) {
+        mJournal.getEditLog().flush();
+      }
     }
   }
 
@@ -982,9 +1212,38 @@ public class MasterInfo extends ImageWriter {
    */
   public void completeFile(int fileId) throws FileDoesNotExistException {
     long opTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      lockInode(fileId, lockGroup, true);
       completeFileInternal(fileId, opTimeMs);
       mJournal.getEditLog().completeFile(fileId, opTimeMs);
+    } finally {
+      lockGroup.unlockAll();
+    }
+    mJournal.getEditLog().flush();
+  }
+
+  /**
+   * Completes the checkpointing of many files. The files are locked one at a time, since they are
+   * not locked from their ancestors down, but the edit log is flushed once for the whole batch.
+   *
+   * @param fileIds The ids of the files
+   * @throws FileDoesNotExistException If a file does not exist. The files before it are completed.
+   */
+  public void completeFiles(List<Integer> fileIds) throws FileDoesNotExistException {
+    long opTimeMs = System.currentTimeMillis();
+    try {
+      for (int fileId : fileIds) {
+        InodeLockGroup lockGroup = new InodeLockGroup();
+        try {
+          lockInode(fileId, lockGroup, true);
+          completeFileInternal(fileId, opTimeMs);
+          mJournal.getEditLog().completeFile(fileId, opTimeMs);
+        } finally {
+          lockGroup.unlockAll();
+        }
+      }
+    } finally {
       mJournal.getEditLog().flush();
     }
   }
@@ -993,19 +1252,17 @@ public class MasterInfo extends ImageWriter {
       String commandPrefix, List<ByteBuffer> data, String comment, String framework,
       String frameworkVersion, DependencyType dependencyType) throws InvalidPathException,
       FileDoesNotExistException {
-    synchronized (mRootLock) {
-      LOG.info("ParentList: " + CommonUtils.listToString(parents));
-      List<Integer> parentsIdList = getFilesIds(parents);
-      List<Integer> childrenIdList = getFilesIds(children);
+    LOG.info("ParentList: " + CommonUtils.listToString(parents));
+    List<Integer> parentsIdList = getFilesIds(parents);
+    List<Integer> childrenIdList = getFilesIds(children);
 
-      int depId = mDependencyCounter.incrementAndGet();
-      long creationTimeMs = System.currentTimeMillis();
-      int ret =
-          createDependencyInternal(parentsIdList, childrenIdList, commandPrefix, data, comment,
-              framework, frameworkVersion, dependencyType, depId, creationTimeMs);
+    int depId = mDependencyCounter.incrementAndGet();
+    long creationTimeMs = System.currentTimeMillis();
+    int ret =
+        createDependencyInternal(parentsIdList, childrenIdList, commandPrefix, data, comment,
+            framework, frameworkVersion, dependencyType, depId, creationTimeMs);
 
-      return ret;
-    }
+    return ret;
   }
 
   /**
@@ -1019,12 +1276,9 @@ public class MasterInfo extends ImageWriter {
   public int createFile(boolean recursive, TachyonURI path, boolean directory, long blockSizeByte)
       throws FileAlreadyExistException, InvalidPathException, BlockInfoException, TachyonException {
     long creationTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
-      int ret = createFileInternal(recursive, path, directory, blockSizeByte, creationTimeMs);
-      mJournal.getEditLog().createFile(recursive, path, directory, blockSizeByte, creationTimeMs);
-      mJournal.getEditLog().flush();
-      return ret;
-    }
+    int ret = createFileInternal(recursive, path, directory, blockSizeByte, creationTimeMs, true);
+    mJournal.getEditLog().flush();
+    return ret;
   }
 
   public int createFile(TachyonURI path, long blockSizeByte) throws FileAlreadyExistException,
@@ -1037,6 +1291,34 @@ public class MasterInfo extends ImageWriter {
     return createFile(recursive, path, false, blockSizeByte);
   }
 
+  /**
+   * Create many files. Each file is created as by {@link #createFile(TachyonURI, long, boolean)},
+   * but the edit log is flushed once for the whole batch.
+   *
+   * @param paths The paths of the files
+   * @param blockSizeByte The block size of the files
+   * @param recursive If true, the missing parent folders of the files are created
+   * @return the ids of the files, in the order of the paths
+   * @throws FileAlreadyExistException
+   * @throws InvalidPathException
+   * @throws BlockInfoException
+   * @throws TachyonException
+   */
+  public List<Integer> createFiles(List<TachyonURI> paths, long blockSizeByte, boolean recursive)
+      throws FileAlreadyExistException, InvalidPathException, BlockInfoException, TachyonException {
+    long creationTimeMs = System.currentTimeMillis();
+    List<Integer> ret = new ArrayList<Integer>(paths.size());
+    try {
+      for (TachyonURI path : paths) {
+        ret.add(createFileInternal(recursive, path, false, blockSizeByte, creationTimeMs, true));
+      }
+    } finally {
+      // The files created before a failure are kept, so their entries are flushed as well.
+      mJournal.getEditLog().flush();
+    }
+    return ret;
+  }
+
   /**
    * Creates a new block for the given file.
    *
@@ -1045,8 +1327,9 @@ public class MasterInfo extends ImageWriter {
    * @throws FileDoesNotExistException
    */
   public long createNewBlock(int fileId) throws FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
 
       if (inode == null) {
         throw new FileDoesNotExistException("File " + fileId + " does not exit.");
@@ -1056,6 +1339,8 @@ public class MasterInfo extends ImageWriter {
       }
 
       return ((InodeFile) inode).getNewBlockId();
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1106,12 +1391,9 @@ public class MasterInfo extends ImageWriter {
    */
   public boolean delete(int fileId, boolean recursive) throws TachyonException {
     long opTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
-      boolean ret = deleteInternal(fileId, recursive, opTimeMs);
-      mJournal.getEditLog().delete(fileId, recursive, opTimeMs);
-      mJournal.getEditLog().flush();
-      return ret;
-    }
+    boolean ret = deleteInternal(fileId, recursive, opTimeMs, true);
+    mJournal.getEditLog().flush();
+    return ret;
   }
 
   /**
@@ -1124,23 +1406,33 @@ public class MasterInfo extends ImageWriter {
    */
   public boolean delete(TachyonURI path, boolean recursive) throws TachyonException {
     LOG.info("delete(" + path + ")");
-    synchronized (mRootLock) {
-      Inode inode = null;
-      try {
-        inode = getInode(path);
-      } catch (InvalidPathException e) {
-        return false;
-      }
+    mMasterSource.incDeleteFileOps();
+    long opTimeMs = System.currentTimeMillis();
+    boolean ret;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      String[] pathNames = PathUtils.getPathComponents(path.toString());
+      // Write lock the inode and its parent.
+      Inode inode = getInode(pathNames, lockGroup, pathNames.length - 2);
       if (inode == null) {
         return true;
       }
-      return delete(inode.getId(), recursive);
+      int fileId = inode.getId();
+      ret = deleteInode(inode, recursive, opTimeMs);
+      mJournal.getEditLog().delete(fileId, recursive, opTimeMs);
+    } catch (InvalidPathException e) {
+      return false;
+    } finally {
+      lockGroup.unlockAll();
     }
+    mJournal.getEditLog().flush();
+    return ret;
   }
 
   public long getBlockIdBasedOnOffset(int fileId, long offset) throws FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
       if (inode == null) {
         throw new FileDoesNotExistException("FileId " + fileId + " does not exist.");
       }
@@ -1149,6 +1441,8 @@ public class MasterInfo extends ImageWriter {
       }
 
       return ((InodeFile) inode).getBlockIdBasedOnOffset(offset);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1162,15 +1456,20 @@ public class MasterInfo extends ImageWriter {
    */
   public List<BlockInfo> getBlockList(TachyonURI path) throws InvalidPathException,
       FileDoesNotExistException {
-    Inode inode = getInode(path);
-    if (inode == null) {
-      throw new FileDoesNotExistException(path + " does not exist.");
-    }
-    if (!inode.isFile()) {
-      throw new FileDoesNotExistException(path + " is not a file.");
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
+      if (inode == null) {
+        throw new FileDoesNotExistException(path + " does not exist.");
+      }
+      if (!inode.isFile()) {
+        throw new FileDoesNotExistException(path + " is not a file.");
+      }
+      InodeFile inodeFile = (InodeFile) inode;
+      return inodeFile.getBlockList();
+    } finally {
+      lockGroup.unlockAll();
     }
-    InodeFile inodeFile = (InodeFile) inode;
-    return inodeFile.getBlockList();
   }
 
   /**
@@ -1199,8 +1498,9 @@ public class MasterInfo extends ImageWriter {
   public ClientBlockInfo getClientBlockInfo(long blockId) throws FileDoesNotExistException,
       BlockInfoException {
     int fileId = BlockInfo.computeInodeId(blockId);
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
       if (inode == null || inode.isDirectory()) {
         throw new FileDoesNotExistException("FileId " + fileId + " does not exist.");
       }
@@ -1209,6 +1509,8 @@ public class MasterInfo extends ImageWriter {
               .getClientBlockInfo(BlockInfo.computeBlockIndex(blockId), mTachyonConf);
       LOG.debug("getClientBlockInfo: {} : {}", blockId, ret);
       return ret;
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1239,15 +1541,20 @@ public class MasterInfo extends ImageWriter {
    */
   public ClientFileInfo getClientFileInfo(int fid) {
     mMasterSource.incGetFileStatusOps();
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fid);
-      if (inode == null) {
-        ClientFileInfo info = new ClientFileInfo();
-        info.id = -1;
-        return info;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fid, lockGroup, false);
+      if (inode != null) {
+        return inode.generateClientFileInfo(getPath(inode).toString());
       }
-      return inode.generateClientFileInfo(getPath(inode).toString());
+    } catch (FileDoesNotExistException e) {
+      // An ancestor is being deleted, and so is the file.
+    } finally {
+      lockGroup.unlockAll();
     }
+    ClientFileInfo info = new ClientFileInfo();
+    info.id = -1;
+    return info;
   }
 
   /**
@@ -1259,17 +1566,64 @@ public class MasterInfo extends ImageWriter {
    */
   public ClientFileInfo getClientFileInfo(TachyonURI path) throws InvalidPathException {
     mMasterSource.incGetFileStatusOps();
-    synchronized (mRootLock) {
-      Inode inode = getInode(path);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         ClientFileInfo info = new ClientFileInfo();
         info.id = -1;
         return info;
       }
       return inode.generateClientFileInfo(path.toString());
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
+  /**
+   * Get the file infos of the files at the given paths. The paths are locked together, in path
+   * order, so the inodes they share are locked once for the whole batch and the infos are taken
+   * from the same state of the namespace.
+   *
+   * @param paths The paths of the files
+   * @return the file infos, in the order of the paths. The info of a file which does not exist has
+   *         id -1.
+   * @throws InvalidPathException
+   */
+  public List<ClientFileInfo> getClientFileInfos(List<TachyonURI> paths)
+      throws InvalidPathException {
+    mMasterSource.incGetFileStatusOps(paths.size());
+    final String[][] pathNames = new String[paths.size()][];
+    Integer[] order = new Integer[paths.size()];
+    for (int k = 0; k < paths.size(); k ++) {
+      pathNames[k] = PathUtils.getPathComponents(paths.get(k).toString());
+      order[k] = k;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return comparePathComponents(pathNames[a], pathNames[b]);
+      }
+    });
+
+    ClientFileInfo[] ret = new ClientFileInfo[paths.size()];
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      for (int k : order) {
+        Inode inode = getInode(pathNames[k], lockGroup, pathNames[k].length);
+        if (inode == null) {
+          ret[k] = new ClientFileInfo();
+          ret[k].id = -1;
+        } else {
+          ret[k] = inode.generateClientFileInfo(paths.get(k).toString());
+        }
+      }
+    } finally {
+      lockGroup.unlockAll();
+    }
+    return Arrays.asList(ret);
+  }
+
   /**
    * Get the raw table info associated with the given id.
    *
@@ -1278,12 +1632,17 @@ public class MasterInfo extends ImageWriter {
    * @throws TableDoesNotExistException
    */
   public ClientRawTableInfo getClientRawTableInfo(int id) throws TableDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(id);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(id, lockGroup, false);
       if (inode == null || !inode.isDirectory()) {
         throw new TableDoesNotExistException("Table " + id + " does not exist.");
       }
       return getClientRawTableInfoInternal(getPath(inode), inode);
+    } catch (FileDoesNotExistException e) {
+      throw new TableDoesNotExistException("Table " + id + " does not exist.");
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1297,12 +1656,15 @@ public class MasterInfo extends ImageWriter {
    */
   public ClientRawTableInfo getClientRawTableInfo(TachyonURI path)
       throws TableDoesNotExistException, InvalidPathException {
-    synchronized (mRootLock) {
-      Inode inode = getInode(path);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         throw new TableDoesNotExistException("Table " + path + " does not exist.");
       }
       return getClientRawTableInfoInternal(path, inode);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1314,10 +1676,15 @@ public class MasterInfo extends ImageWriter {
    * @throws InvalidPathException
    */
   public int getFileId(TachyonURI path) throws InvalidPathException {
-    Inode inode = getInode(path);
     int ret = -1;
-    if (inode != null) {
-      ret = inode.getId();
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
+      if (inode != null) {
+        ret = inode.getId();
+      }
+    } finally {
+      lockGroup.unlockAll();
     }
     LOG.debug("getFileId({}): {}", path, ret);
     return ret;
@@ -1332,14 +1699,17 @@ public class MasterInfo extends ImageWriter {
    * @throws FileDoesNotExistException
    */
   public List<ClientBlockInfo> getFileBlocks(int fileId) throws FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
       if (inode == null || inode.isDirectory()) {
         throw new FileDoesNotExistException("FileId " + fileId + " does not exist.");
       }
       List<ClientBlockInfo> ret = ((InodeFile) inode).getClientBlockInfos(mTachyonConf);
       LOG.debug("getFileLocations: {} {}", fileId, ret);
       return ret;
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -1355,15 +1725,35 @@ public class MasterInfo extends ImageWriter {
   public List<ClientBlockInfo> getFileBlocks(TachyonURI path) throws FileDoesNotExistException,
       InvalidPathException {
     LOG.info("getFileLocations: " + path);
-    synchronized (mRootLock) {
-      Inode inode = getInode(path);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         throw new FileDoesNotExistException(path.toString());
       }
       return getFileBlocks(inode.getId());
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
+  /**
+   * Get the block infos of many files. The files are locked one at a time, since they are not
+   * locked from their ancestors down.
+   *
+   * @param fileIds The ids of the files to look up
+   * @return the block infos of the files, in the order of the ids
+   * @throws FileDoesNotExistException If an id does not name a file
+   */
+  public List<List<ClientBlockInfo>> getFileBlocks(List<Integer> fileIds)
+      throws FileDoesNotExistException {
+    List<List<ClientBlockInfo>> ret = new ArrayList<List<ClientBlockInfo>>(fileIds.size());
+    for (int fileId : fileIds) {
+      ret.add(getFileBlocks(fileId));
+    }
+    return ret;
+  }
+
   /**
    * Get the file id's of the given paths. It recursively scans directories for the file id's inside
    * of them.
@@ -1395,21 +1785,141 @@ public class MasterInfo extends ImageWriter {
       InvalidPathException {
     List<ClientFileInfo> ret = new ArrayList<ClientFileInfo>();
 
-    Inode inode = getInode(path);
-    if (inode == null) {
-      throw new FileDoesNotExistException(path.toString());
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
+      if (inode == null) {
+        throw new FileDoesNotExistException(path.toString());
+      }
+
+      if (inode.isDirectory()) {
+        for (Inode child : ((InodeFolder) inode).getChildren()) {
+          child.lockRead();
+          try {
+            ret.add(child.generateClientFileInfo(PathUtils.concatPath(path, child.getName())));
+          } finally {
+            child.unlockRead();
+          }
+        }
+      } else {
+        ret.add(inode.generateClientFileInfo(path.toString()));
+      }
+    } finally {
+      lockGroup.unlockAll();
     }
+    return ret;
+  }
 
-    if (inode.isDirectory()) {
-      for (Inode child : ((InodeFolder) inode).getChildren()) {
-        ret.add(child.generateClientFileInfo(PathUtils.concatPath(path, child.getName())));
+  /**
+   * Get a page of the entries of a directory, in depth-first order with the children of each
+   * directory sorted by name. The inodes are only locked while the page is built, so a listing of
+   * many pages does not hold the locks in between, and only holds one page in memory at a time.
+   *
+   * @param path the path of the directory. The only entry of a file is the file itself.
+   * @param startAfter the path of the entry to start after, e.g. the last entry of the previous
+   *        page, or null to start from the first entry. The entry may have been deleted since.
+   * @param limit the maximum number of entries to return
+   * @param recursive if true, the entries of each sub-directory are listed right after it
+   * @return the entries, at most limit of them. A page shorter than limit is the last one.
+   * @throws FileDoesNotExistException
+   * @throws InvalidPathException if startAfter is not an entry of the listing
+   */
+  public List<ClientFileInfo> listStatusPage(TachyonURI path, TachyonURI startAfter, int limit,
+      boolean recursive) throws FileDoesNotExistException, InvalidPathException {
+    Preconditions.checkArgument(limit > 0, "The limit of a page must be positive: " + limit);
+    String[] pathNames = PathUtils.getPathComponents(path.toString());
+    String[] startNames =
+        startAfter == null ? null : PathUtils.getPathComponents(startAfter.toString());
+
+    List<ClientFileInfo> ret = new ArrayList<ClientFileInfo>();
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(pathNames, lockGroup, pathNames.length);
+      if (inode == null) {
+        throw new FileDoesNotExistException(path.toString());
       }
-    } else {
-      ret.add(inode.generateClientFileInfo(path.toString()));
+      if (!inode.isDirectory()) {
+        if (startNames == null) {
+          ret.add(inode.generateClientFileInfo(path.toString()));
+        } else if (!Arrays.equals(pathNames, startNames)) {
+          throw new InvalidPathException(startAfter + " is not an entry of the listing of "
+              + path);
+        }
+        return ret;
+      }
+
+      String[] cursor = NO_CURSOR;
+      if (startNames != null) {
+        if (startNames.length <= pathNames.length
+            || (!recursive && startNames.length > pathNames.length + 1)
+            || !Arrays.equals(pathNames, Arrays.copyOf(startNames, pathNames.length))) {
+          throw new InvalidPathException(startAfter + " is not an entry of the listing of "
+              + path);
+        }
+        cursor = Arrays.copyOfRange(startNames, pathNames.length, startNames.length);
+      }
+      listPage((InodeFolder) inode, path.toString(), cursor, 0, limit, recursive, ret);
+    } finally {
+      lockGroup.unlockAll();
     }
     return ret;
   }
 
+  /**
+   * Add the entries of a read locked folder to a page of {@link #listStatusPage}, until the page
+   * is full.
+   *
+   * @param folder the folder to list
+   * @param folderPath the path of the folder
+   * @param cursor the path components of the entry to start after, relative to the listed
+   *        directory
+   * @param depth the depth of the folder below the listed directory, which is at depth 0. The
+   *        cursor only applies to the folder if it is on the path of the cursor.
+   * @param limit the size of a full page
+   * @param recursive if true, list the sub-directories too
+   * @param page the page to add the entries to
+   */
+  private void listPage(InodeFolder folder, String folderPath, String[] cursor, int depth,
+      int limit, boolean recursive, List<ClientFileInfo> page) {
+    String startAfter = depth < cursor.length ? cursor[depth] : null;
+    if (startAfter != null && recursive) {
+      // The rest of the entries of the cursor's sub-directory come right after the cursor.
+      Inode child = folder.getChild(startAfter);
+      if (child != null && child.isDirectory()) {
+        child.lockRead();
+        try {
+          listPage((InodeFolder) child, PathUtils.concatPath(folderPath, startAfter), cursor,
+              depth + 1, limit, true, page);
+        } finally {
+          child.unlockRead();
+        }
+      }
+    }
+
+    while (page.size() < limit) {
+      List<Inode> children = folder.getChildrenAfter(startAfter, limit - page.size());
+      if (children.isEmpty()) {
+        return;
+      }
+      for (Inode child : children) {
+        if (page.size() >= limit) {
+          return;
+        }
+        String childPath = PathUtils.concatPath(folderPath, child.getName());
+        child.lockRead();
+        try {
+          page.add(child.generateClientFileInfo(childPath));
+          if (recursive && child.isDirectory()) {
+            listPage((InodeFolder) child, childPath, NO_CURSOR, 0, limit, true, page);
+          }
+        } finally {
+          child.unlockRead();
+        }
+        startAfter = child.getName();
+      }
+    }
+  }
+
   /**
    * @return the total bytes on each storage tier.
    */
@@ -1450,15 +1960,17 @@ public class MasterInfo extends ImageWriter {
     LOG.info("getInMemoryFiles()");
     Queue<Pair<InodeFolder, TachyonURI>> nodesQueue =
         new LinkedList<Pair<InodeFolder, TachyonURI>>();
-    synchronized (mRootLock) {
-      // TODO: Verify we want to use absolute path.
-      nodesQueue
-          .add(new Pair<InodeFolder, TachyonURI>(mRoot, new TachyonURI(TachyonURI.SEPARATOR)));
-      while (!nodesQueue.isEmpty()) {
-        Pair<InodeFolder, TachyonURI> tPair = nodesQueue.poll();
-        InodeFolder tFolder = tPair.getFirst();
-        TachyonURI curUri = tPair.getSecond();
-
+    // TODO: Verify we want to use absolute path.
+    nodesQueue
+        .add(new Pair<InodeFolder, TachyonURI>(mRoot, new TachyonURI(TachyonURI.SEPARATOR)));
+    while (!nodesQueue.isEmpty()) {
+      Pair<InodeFolder, TachyonURI> tPair = nodesQueue.poll();
+      InodeFolder tFolder = tPair.getFirst();
+      TachyonURI curUri = tPair.getSecond();
+
+      // Only one folder is locked at a time, so the scan does not block a whole subtree.
+      tFolder.lockRead();
+      try {
         Set<Inode> children = tFolder.getChildren();
         for (Inode tInode : children) {
           TachyonURI newUri = curUri.join(tInode.getName());
@@ -1468,27 +1980,36 @@ public class MasterInfo extends ImageWriter {
             ret.add(newUri);
           }
         }
+      } finally {
+        tFolder.unlockRead();
       }
     }
     return ret;
   }
 
   /**
-   * Same as {@link #getInode(String[] pathNames)} except that it takes a path string.
+   * Same as {@link #getInode(String[], InodeLockGroup, int)} except that it takes a path string
+   * and only read locks the inodes on the path.
    */
-  private Inode getInode(TachyonURI path) throws InvalidPathException {
-    return getInode(PathUtils.getPathComponents(path.toString()));
+  private Inode getInode(TachyonURI path, InodeLockGroup lockGroup) throws InvalidPathException {
+    String[] pathNames = PathUtils.getPathComponents(path.toString());
+    return getInode(pathNames, lockGroup, pathNames.length);
   }
 
   /**
-   * Get the inode of the file at the given path.
+   * Get the inode of the file at the given path, locking every inode on the path. The caller must
+   * release the locks with {@link InodeLockGroup#unlockAll()}, even if the file does not exist.
    *
    * @param pathNames The path components of the path to search for
+   * @param lockGroup The lock group to add the locks to
+   * @param writeLockDepth The inodes at this depth or deeper are write locked, the others are read
+   *        locked. The root is at depth 0.
    * @return the inode of the file at the given path, or null if the file does not exist
    * @throws InvalidPathException
    */
-  private Inode getInode(String[] pathNames) throws InvalidPathException {
-    Pair<Inode, Integer> inodeTraversal = traverseToInode(pathNames);
+  private Inode getInode(String[] pathNames, InodeLockGroup lockGroup, int writeLockDepth)
+      throws InvalidPathException {
+    Pair<Inode, Integer> inodeTraversal = traverseToInode(pathNames, lockGroup, writeLockDepth);
     if (!traversalSucceeded(inodeTraversal)) {
       return null;
     }
@@ -1503,16 +2024,14 @@ public class MasterInfo extends ImageWriter {
    * @return a list of the children inodes.
    */
   private List<Inode> getInodeChildrenRecursive(InodeFolder inodeFolder) {
-    synchronized (mRootLock) {
-      List<Inode> ret = new ArrayList<Inode>();
-      for (Inode i : inodeFolder.getChildren()) {
-        ret.add(i);
-        if (i.isDirectory()) {
-          ret.addAll(getInodeChildrenRecursive((InodeFolder) i));
-        }
+    List<Inode> ret = new ArrayList<Inode>();
+    for (Inode i : inodeFolder.getChildren()) {
+      ret.add(i);
+      if (i.isDirectory()) {
+        ret.addAll(getInodeChildrenRecursive((InodeFolder) i));
       }
-      return ret;
     }
+    return ret;
   }
 
   /**
@@ -1562,14 +2081,19 @@ public class MasterInfo extends ImageWriter {
    */
   public int getNumberOfFiles(TachyonURI path) throws InvalidPathException,
       FileDoesNotExistException {
-    Inode inode = getInode(path);
-    if (inode == null) {
-      throw new FileDoesNotExistException(path.toString());
-    }
-    if (inode.isFile()) {
-      return 1;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
+      if (inode == null) {
+        throw new FileDoesNotExistException(path.toString());
+      }
+      if (inode.isFile()) {
+        return 1;
+      }
+      return ((InodeFolder) inode).getNumberOfChildren();
+    } finally {
+      lockGroup.unlockAll();
     }
-    return ((InodeFolder) inode).getNumberOfChildren();
   }
 
   /**
@@ -1578,9 +2102,7 @@ public class MasterInfo extends ImageWriter {
    * @return the number of files
    */
   public int getNumberOfFiles() {
-    synchronized (mRootLock) {
-      return mFileIdToInodes.size();
-    }
+    return mFileIdToInodes.size();
   }
 
   /**
@@ -1589,25 +2111,38 @@ public class MasterInfo extends ImageWriter {
    * @return the number of inodes
    */
   public int getNumberOfPinnedFiles() {
-    return mPinnedInodeFileIds.size();
+    synchronized (mPinnedInodeFileIds) {
+      return mPinnedInodeFileIds.size();
+    }
   }
 
   /**
-   * Get the path specified by a given inode.
+   * Get the path specified by a given inode. The ancestors of the inode are not locked, so the
+   * caller must lock the inode if it needs the path to stay valid.
    *
    * @param inode The inode
    * @return the path of the inode
+   * @throws FileDoesNotExistException if an ancestor of the inode has been deleted
    */
-  private TachyonURI getPath(Inode inode) {
-    synchronized (mRootLock) {
-      if (inode.getId() == 1) {
-        return new TachyonURI(TachyonURI.SEPARATOR);
-      }
-      if (inode.getParentId() == 1) {
-        return new TachyonURI(TachyonURI.SEPARATOR + inode.getName());
+  private TachyonURI getPath(Inode inode) throws FileDoesNotExistException {
+    if (inode.getId() == 1) {
+      return new TachyonURI(TachyonURI.SEPARATOR);
+    }
+    LinkedList<String> names = new LinkedList<String>();
+    Inode current = inode;
+    while (current.getId() != 1) {
+      names.addFirst(current.getName());
+      int parentId = current.getParentId();
+      current = mFileIdToInodes.get(parentId);
+      if (current == null) {
+        throw new FileDoesNotExistException("FileId " + parentId + " does not exist");
       }
-      return getPath(mFileIdToInodes.get(inode.getParentId())).join(inode.getName());
     }
+    StringBuilder path = new StringBuilder();
+    for (String name : names) {
+      path.append(TachyonURI.SEPARATOR).append(name);
+    }
+    return new TachyonURI(path.toString());
   }
 
   /**
@@ -1618,13 +2153,11 @@ public class MasterInfo extends ImageWriter {
    * @throws FileDoesNotExistException raise if the file does not exist.
    */
   public TachyonURI getPath(int fileId) throws FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
-      if (inode == null) {
-        throw new FileDoesNotExistException("FileId " + fileId + " does not exist");
-      }
-      return getPath(inode);
+    Inode inode = mFileIdToInodes.get(fileId);
+    if (inode == null) {
+      throw new FileDoesNotExistException("FileId " + fileId + " does not exist");
     }
+    return getPath(inode);
   }
 
   /**
@@ -1634,7 +2167,12 @@ public class MasterInfo extends ImageWriter {
    */
   public List<Integer> getPinIdList() {
     synchronized (mPinnedInodeFileIds) {
-      return Lists.newArrayList(mPinnedInodeFileIds);
+      int[] fileIds = mPinnedInodeFileIds.toArray();
+      List<Integer> ret = new ArrayList<Integer>(fileIds.length);
+      for (int fileId : fileIds) {
+        ret.add(fileId);
+      }
+      return ret;
     }
   }
 
@@ -1686,17 +2224,22 @@ public class MasterInfo extends ImageWriter {
    */
   public int getRawTableId(TachyonURI path) throws InvalidPathException,
       TableDoesNotExistException {
-    Inode inode = getInode(path);
-    if (inode == null) {
-      throw new TableDoesNotExistException(path.toString());
-    }
-    if (inode.isDirectory()) {
-      int id = inode.getId();
-      if (mRawTables.exist(id)) {
-        return id;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
+      if (inode == null) {
+        throw new TableDoesNotExistException(path.toString());
+      }
+      if (inode.isDirectory()) {
+        int id = inode.getId();
+        if (mRawTables.exist(id)) {
+          return id;
+        }
       }
+      return -1;
+    } finally {
+      lockGroup.unlockAll();
     }
-    return -1;
   }
 
   /**
@@ -1891,8 +2434,9 @@ public class MasterInfo extends ImageWriter {
   public List<Integer> listFiles(TachyonURI path, boolean recursive) throws InvalidPathException,
       FileDoesNotExistException {
     List<Integer> ret = new ArrayList<Integer>();
-    synchronized (mRootLock) {
-      Inode inode = getInode(path);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         throw new FileDoesNotExistException(path.toString());
       }
@@ -1916,33 +2460,28 @@ public class MasterInfo extends ImageWriter {
           ret.add(child.getId());
         }
       }
+    } finally {
+      lockGroup.unlockAll();
     }
 
     return ret;
   }
 
   /**
-   * Load the image from <code>parser</code>, which is created based on the <code>path</code>.
+   * Load the image from <code>reader</code>, which is created based on the <code>path</code>.
    * Assume this blocks the whole MasterInfo.
    *
-   * @param parser the JsonParser to load the image
+   * @param reader the JournalReader to load the image
    * @param path the file to load the image
    * @throws IOException
    */
-  public void loadImage(JsonParser parser, TachyonURI path) throws IOException {
+  void loadImage(JournalReader reader, TachyonURI path) throws IOException {
     while (true) {
-      ImageElement ele;
-      try {
-        ele = parser.readValueAs(ImageElement.class);
-        LOG.debug("Read Element: {}", ele);
-      } catch (IOException e) {
-        // Unfortunately brittle, but Jackson rethrows EOF with this message.
-        if (e.getMessage().contains("end-of-input")) {
-          break;
-        } else {
-          throw e;
-        }
+      ImageElement ele = reader.read(ImageElement.class);
+      if (ele == null) {
+        break;
       }
+      LOG.debug("Read Element: {}", ele);
 
       switch (ele.mType) {
         case Version: {
@@ -1975,13 +2514,11 @@ public class MasterInfo extends ImageWriter {
           throw new IOException("Invalid element type " + ele);
         }
         case InodeFolder: {
-          Inode inode = InodeFolder.loadImage(parser, ele);
-          addToInodeMap(inode, mFileIdToInodes);
-          recomputePinnedFiles(inode, Optional.<Boolean>absent());
-
+          Inode inode = InodeFolder.loadImage(reader, ele);
           if (inode.getId() != 1) {
             throw new IOException("Invalid element type " + ele);
           }
+          linkImageTree((InodeFolder) inode, Image.getLoaderThreads(this));
           mRoot = (InodeFolder) inode;
 
           break;
@@ -1996,6 +2533,68 @@ public class MasterInfo extends ImageWriter {
     }
   }
 
+  /**
+   * Add the inodes and blocks of a tree loaded from the image to the maps and the pinned files. The
+   * tree is split breadth first into sections, subtrees which are linked concurrently by the given
+   * number of threads; the folders above the sections are linked by the calling thread.
+   *
+   * @param root the root of the tree
+   * @param threads the number of threads linking the sections, 1 or less to link the whole tree in
+   *        the calling thread
+   * @throws IOException if a section can not be linked
+   */
+  private void linkImageTree(InodeFolder root, int threads) throws IOException {
+    if (threads <= 1) {
+      addToInodeMap(root, mFileIdToInodes);
+      recomputePinnedFiles(root, Optional.<Boolean>absent());
+      return;
+    }
+
+    List<Inode> sections = new ArrayList<Inode>();
+    sections.add(root);
+    boolean split = true;
+    while (split && sections.size() < threads * IMAGE_SECTIONS_PER_LOADER_THREAD) {
+      split = false;
+      List<Inode> next = new ArrayList<Inode>();
+      for (Inode inode : sections) {
+        if (inode.isDirectory() && !((InodeFolder) inode).getChildren().isEmpty()) {
+          // A folder holds no blocks and is not pinned itself, its children become sections
+          mFileIdToInodes.put(inode.getId(), inode);
+          next.addAll(((InodeFolder) inode).getChildren());
+          split = true;
+        } else {
+          next.add(inode);
+        }
+      }
+      sections = next;
+    }
+
+    ExecutorService linkers =
+        Executors.newFixedThreadPool(threads, ThreadFactoryUtils.build("image-linker-%d", true));
+    try {
+      List<Future<?>> linked = new ArrayList<Future<?>>(sections.size());
+      for (final Inode section : sections) {
+        linked.add(linkers.submit(new Runnable() {
+          @Override
+          public void run() {
+            addToInodeMap(section, mFileIdToInodes);
+            recomputePinnedFiles(section, Optional.<Boolean>absent());
+          }
+        }));
+      }
+      for (Future<?> future : linked) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while linking the image", ie);
+    } catch (ExecutionException ee) {
+      throw new IOException("Failed to link the image", ee.getCause());
+    } finally {
+      linkers.shutdownNow();
+    }
+  }
+
   /**
    * Get the names of the sub-directories at the given path.
    *
@@ -2007,12 +2606,15 @@ public class MasterInfo extends ImageWriter {
    */
   public List<TachyonURI> ls(TachyonURI path, boolean recursive) throws InvalidPathException,
       FileDoesNotExistException {
-    synchronized (mRootLock) {
-      Inode inode = getInode(path);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         throw new FileDoesNotExistException(path.toString());
       }
       return lsInternal(inode, path, recursive);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -2046,8 +2648,9 @@ public class MasterInfo extends ImageWriter {
    */
   void opAddBlock(int fileId, int blockIndex, long blockLength, long opTimeMs)
       throws FileDoesNotExistException, BlockInfoException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, true);
 
       if (inode == null) {
         throw new FileDoesNotExistException("File " + fileId + " does not exist.");
@@ -2058,6 +2661,8 @@ public class MasterInfo extends ImageWriter {
 
       addBlock((InodeFile) inode, new BlockInfo((InodeFile) inode, blockIndex, blockLength),
           opTimeMs);
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -2121,18 +2726,15 @@ public class MasterInfo extends ImageWriter {
       LOG.info("registerWorker(): " + tWorkerInfo);
     }
 
-    synchronized (mRootLock) {
-      for (Entry<Long, List<Long>> blockIds : currentBlockIds.entrySet()) {
-        long storageDirId = blockIds.getKey();
-        for (long blockId : blockIds.getValue()) {
-          int fileId = BlockInfo.computeInodeId(blockId);
-          int blockIndex = BlockInfo.computeBlockIndex(blockId);
-          Inode inode = mFileIdToInodes.get(fileId);
-          if (inode != null && inode.isFile()) {
-            ((InodeFile) inode).addLocation(blockIndex, id, workerAddress, storageDirId);
-          } else {
-            LOG.warn("registerWorker failed to add fileId " + fileId + " blockIndex " + blockIndex);
-          }
+    for (Entry<Long, List<Long>> blockIds : currentBlockIds.entrySet()) {
+      long storageDirId = blockIds.getKey();
+      for (long blockId : blockIds.getValue()) {
+        BlockInfo blockInfo = mBlockIdToBlockInfo.get(blockId);
+        if (blockInfo != null) {
+          blockInfo.addLocation(id, workerAddress, storageDirId);
+        } else {
+          LOG.warn("registerWorker failed to add fileId " + BlockInfo.computeInodeId(blockId)
+              + " blockIndex " + BlockInfo.computeBlockIndex(blockId));
         }
       }
     }
@@ -2152,12 +2754,9 @@ public class MasterInfo extends ImageWriter {
   public boolean rename(int fileId, TachyonURI dstPath) throws FileDoesNotExistException,
       InvalidPathException {
     long opTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
-      boolean ret = renameInternal(fileId, dstPath, opTimeMs);
-      mJournal.getEditLog().rename(fileId, dstPath, opTimeMs);
-      mJournal.getEditLog().flush();
-      return ret;
-    }
+    boolean ret = renameInternal(fileId, dstPath, opTimeMs, true);
+    mJournal.getEditLog().flush();
+    return ret;
   }
 
   /**
@@ -2171,14 +2770,19 @@ public class MasterInfo extends ImageWriter {
    */
   public boolean rename(TachyonURI srcPath, TachyonURI dstPath) throws FileDoesNotExistException,
       InvalidPathException {
-    synchronized (mRootLock) {
-      Inode inode = getInode(srcPath);
+    int fileId;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(srcPath, lockGroup);
       if (inode == null) {
         mMasterSource.incRenameOps();
         throw new FileDoesNotExistException("Failed to rename: " + srcPath + " does not exist");
       }
-      return rename(inode.getId(), dstPath);
+      fileId = inode.getId();
+    } finally {
+      lockGroup.unlockAll();
     }
+    return rename(fileId, dstPath);
   }
 
   /**
@@ -2187,8 +2791,9 @@ public class MasterInfo extends ImageWriter {
    * @param fileId The id of the file to be recovered
    */
   public void reportLostFile(int fileId) {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
       if (inode == null) {
         LOG.warn("Tachyon does not have file " + fileId);
       } else if (inode.isDirectory()) {
@@ -2209,6 +2814,8 @@ public class MasterInfo extends ImageWriter {
           }
         }
       }
+    } finally {
+      lockGroup.unlockAll();
     }
   }
 
@@ -2234,11 +2841,15 @@ public class MasterInfo extends ImageWriter {
   /** Sets the isPinned flag on the given inode and all of its children. */
   public void setPinned(int fileId, boolean pinned) throws FileDoesNotExistException {
     long opTimeMs = System.currentTimeMillis();
-    synchronized (mRootLock) {
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      lockInode(fileId, lockGroup, true);
       setPinnedInternal(fileId, pinned, opTimeMs);
       mJournal.getEditLog().setPinned(fileId, pinned, opTimeMs);
-      mJournal.getEditLog().flush();
+    } finally {
+      lockGroup.unlockAll();
     }
+    mJournal.getEditLog().flush();
   }
 
   /**
@@ -2251,8 +2862,9 @@ public class MasterInfo extends ImageWriter {
    */
   boolean freepath(int fileId, boolean recursive) throws TachyonException {
     LOG.info("free(" + fileId + ")");
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(fileId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(fileId, lockGroup, false);
       if (inode == null) {
         LOG.error("File " + fileId + " does not exist");
         return true;
@@ -2292,6 +2904,8 @@ public class MasterInfo extends ImageWriter {
           }
         }
       }
+    } finally {
+      lockGroup.unlockAll();
     }
     return true;
   }
@@ -2306,18 +2920,20 @@ public class MasterInfo extends ImageWriter {
    */
   public boolean freepath(TachyonURI path, boolean recursive) throws TachyonException {
     LOG.info("free(" + path + ")");
-    synchronized (mRootLock) {
-      Inode inode = null;
-      try {
-        inode = getInode(path);
-      } catch (InvalidPathException e) {
-        return false;
-      }
+    int fileId;
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = getInode(path, lockGroup);
       if (inode == null) {
         return true;
       }
-      return freepath(inode.getId(), recursive);
+      fileId = inode.getId();
+    } catch (InvalidPathException e) {
+      return false;
+    } finally {
+      lockGroup.unlockAll();
     }
+    return freepath(fileId, recursive);
   }
 
   /**
@@ -2332,6 +2948,73 @@ public class MasterInfo extends ImageWriter {
     }
   }
 
+  /**
+   * Lock the inode with the given id. The inode is looked up without holding the locks of its
+   * ancestors, so it is checked again once locked, in case it was deleted in between.
+   *
+   * @param fileId The id of the inode to lock
+   * @param lockGroup The lock group to add the lock to
+   * @param write If true, write lock the inode, otherwise read lock it
+   * @return the locked inode, or null if it does not exist
+   */
+  private Inode lockInode(int fileId, InodeLockGroup lockGroup, boolean write) {
+    Inode inode = mFileIdToInodes.get(fileId);
+    if (inode == null) {
+      return null;
+    }
+    if (write) {
+      lockGroup.lockWrite(inode);
+    } else {
+      lockGroup.lockRead(inode);
+    }
+    // A deleted inode has its id reversed while locked.
+    return inode.getId() == fileId ? inode : null;
+  }
+
+  /**
+   * Lock an inode found during a traversal, in the mode given by its depth.
+   */
+  private void lockInode(Inode inode, int depth, InodeLockGroup lockGroup, int writeLockDepth) {
+    if (depth >= writeLockDepth) {
+      lockGroup.lockWrite(inode);
+    } else {
+      lockGroup.lockRead(inode);
+    }
+  }
+
+  /**
+   * Write lock the inode with the given id and its parent, as needed to remove the inode from its
+   * parent. Retries if the inode is moved to another folder while the locks are taken.
+   *
+   * @param fileId The id of the inode to lock
+   * @param lockGroup The lock group to add the locks to
+   * @return the locked inode, or null if it does not exist
+   */
+  private Inode lockInodeAndParent(int fileId, InodeLockGroup lockGroup) {
+    while (true) {
+      Inode inode = mFileIdToInodes.get(fileId);
+      if (inode == null) {
+        return null;
+      }
+      int parentId = inode.getParentId();
+      Inode parent = mFileIdToInodes.get(parentId);
+      if (parent != null) {
+        lockGroup.lockWrite(parent);
+      } else if (inode != mRoot) {
+        // The parent has been deleted, so the inode is being deleted as well.
+        return null;
+      }
+      lockGroup.lockWrite(inode);
+      if (inode.getId() != fileId) {
+        return null;
+      }
+      if (inode.getParentId() == parentId) {
+        return inode;
+      }
+      lockGroup.unlockAll();
+    }
+  }
+
   /**
    * Returns whether the traversal was successful or not.
    *
@@ -2342,56 +3025,77 @@ public class MasterInfo extends ImageWriter {
   }
 
   /**
-   * Traverse to the inode at the given path.
+   * Compares two paths component by component, an ancestor coming before its descendants. Locking
+   * the inodes of several paths in this order, each path from the root down, takes every lock in
+   * the same order whatever the paths, so such operations cannot deadlock against each other.
+   *
+   * @param a The components of the first path
+   * @param b The components of the second path
+   * @return a negative number, zero or a positive number if a is before, equal to or after b
+   */
+  private static int comparePathComponents(String[] a, String[] b) {
+    for (int k = 0; k < a.length && k < b.length; k ++) {
+      int cmp = a[k].compareTo(b[k]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return a.length - b.length;
+  }
+
+  /**
+   * Traverse to the inode at the given path, locking the root and every inode found on the way
+   * before looking up its child. The locks are added to <code>lockGroup</code>, and are held on
+   * return even if the traversal failed.
    *
    * @param pathNames The path to search for, broken into components
+   * @param lockGroup The lock group to add the locks to
+   * @param writeLockDepth The inodes at this depth or deeper are write locked, the others are read
+   *        locked. The root is at depth 0.
    * @return the inode of the file at the given path. If it was not able to traverse down the entire
    *         path, it will set the second field to the first path component it didn't find. It never
    *         returns null.
    * @throws InvalidPathException
    */
-  private Pair<Inode, Integer> traverseToInode(String[] pathNames) throws InvalidPathException {
-    synchronized (mRootLock) {
-      if (pathNames == null || pathNames.length == 0) {
-        throw new InvalidPathException("passed-in pathNames is null or empty");
-      }
-      if (pathNames.length == 1) {
-        if (pathNames[0].equals("")) {
-          return new Pair<Inode, Integer>(mRoot, -1);
+  private Pair<Inode, Integer> traverseToInode(String[] pathNames, InodeLockGroup lockGroup,
+      int writeLockDepth) throws InvalidPathException {
+    if (pathNames == null || pathNames.length == 0) {
+      throw new InvalidPathException("passed-in pathNames is null or empty");
+    }
+    if (pathNames.length == 1 && !pathNames[0].equals("")) {
+      final String msg = "File name starts with " + pathNames[0];
+      LOG.info("InvalidPathException: " + msg);
+      throw new InvalidPathException(msg);
+    }
+
+    lockInode(mRoot, 0, lockGroup, writeLockDepth);
+    Pair<Inode, Integer> ret = new Pair<Inode, Integer>(mRoot, -1);
+
+    for (int k = 1; k < pathNames.length; k ++) {
+      Inode next = ((InodeFolder) ret.getFirst()).getChild(pathNames[k]);
+      if (next == null) {
+        // The user might want to create the nonexistent directories, so we leave ret.getFirst()
+        // as the last Inode taken. We set nonexistentInd to k, to indicate that the kth path
+        // component was the first one that couldn't be found.
+        ret.setSecond(k);
+        break;
+      }
+      lockInode(next, k, lockGroup, writeLockDepth);
+      ret.setFirst(next);
+      if (!ret.getFirst().isDirectory()) {
+        // The inode can't have any children. If this is the last path component, we're good.
+        // Otherwise, we can't traverse further, so we clean up and throw an exception.
+        if (k == pathNames.length - 1) {
+          break;
         } else {
-          final String msg = "File name starts with " + pathNames[0];
+          final String msg =
+              "Traversal failed. Component " + k + "(" + ret.getFirst().getName() + ") is a file";
           LOG.info("InvalidPathException: " + msg);
           throw new InvalidPathException(msg);
         }
       }
-
-      Pair<Inode, Integer> ret = new Pair<Inode, Integer>(mRoot, -1);
-
-      for (int k = 1; k < pathNames.length; k ++) {
-        Inode next = ((InodeFolder) ret.getFirst()).getChild(pathNames[k]);
-        if (next == null) {
-          // The user might want to create the nonexistent directories, so we leave ret.getFirst()
-          // as the last Inode taken. We set nonexistentInd to k, to indicate that the kth path
-          // component was the first one that couldn't be found.
-          ret.setSecond(k);
-          break;
-        }
-        ret.setFirst(next);
-        if (!ret.getFirst().isDirectory()) {
-          // The inode can't have any children. If this is the last path component, we're good.
-          // Otherwise, we can't traverse further, so we clean up and throw an exception.
-          if (k == pathNames.length - 1) {
-            break;
-          } else {
-            final String msg =
-                "Traversal failed. Component " + k + "(" + ret.getFirst().getName() + ") is a file";
-            LOG.info("InvalidPathException: " + msg);
-            throw new InvalidPathException(msg);
-          }
-        }
-      }
-      return ret;
     }
+    return ret;
   }
 
   /**
@@ -2404,8 +3108,9 @@ public class MasterInfo extends ImageWriter {
    */
   public void updateRawTableMetadata(int tableId, ByteBuffer metadata)
       throws TableDoesNotExistException, TachyonException {
-    synchronized (mRootLock) {
-      Inode inode = mFileIdToInodes.get(tableId);
+    InodeLockGroup lockGroup = new InodeLockGroup();
+    try {
+      Inode inode = lockInode(tableId, lockGroup, true);
 
       if (inode == null || !inode.isDirectory() || !mRawTables.exist(tableId)) {
         throw new TableDoesNotExistException("Table " + tableId + " does not exist.");
@@ -2414,8 +3119,10 @@ public class MasterInfo extends ImageWriter {
       mRawTables.updateMetadata(tableId, metadata);
 
       mJournal.getEditLog().updateRawTableMetadata(tableId, metadata);
-      mJournal.getEditLog().flush();
+    } finally {
+      lockGroup.unlockAll();
     }
+    mJournal.getEditLog().flush();
   }
 
   /**
@@ -2432,64 +3139,72 @@ public class MasterInfo extends ImageWriter {
   public Command workerHeartbeat(long workerId, List<Long> usedBytesOnTiers,
       List<Long> removedBlockIds, Map<Long, List<Long>> addedBlockIds) throws BlockInfoException {
     LOG.debug("WorkerId: {}", workerId);
-    synchronized (mRootLock) {
-      synchronized (mWorkers) {
-        MasterWorkerInfo tWorkerInfo = mWorkers.get(workerId);
+    NetAddress workerAddress;
+    List<Long> toRemovedBlocks;
+    synchronized (mWorkers) {
+      MasterWorkerInfo tWorkerInfo = mWorkers.get(workerId);
 
-        if (tWorkerInfo == null) {
-          LOG.info("worker_heartbeat(): Does not contain worker with ID " + workerId
-              + " . Send command to let it re-register.");
-          return new Command(CommandType.Register, new ArrayList<Long>());
-        }
+      if (tWorkerInfo == null) {
+        LOG.info("worker_heartbeat(): Does not contain worker with ID " + workerId
+            + " . Send command to let it re-register.");
+        return new Command(CommandType.Register, new ArrayList<Long>());
+      }
 
-        tWorkerInfo.updateUsedBytes(usedBytesOnTiers);
-        tWorkerInfo.updateBlocks(false, removedBlockIds);
-        tWorkerInfo.updateToRemovedBlocks(false, removedBlockIds);
-        tWorkerInfo.updateLastUpdatedTimeMs();
+      tWorkerInfo.updateUsedBytes(usedBytesOnTiers);
+      tWorkerInfo.updateBlocks(false, removedBlockIds);
+      tWorkerInfo.updateToRemovedBlocks(false, removedBlockIds);
+      tWorkerInfo.updateLastUpdatedTimeMs();
 
-        for (long blockId : removedBlockIds) {
+      workerAddress = tWorkerInfo.getAddress();
+      toRemovedBlocks = tWorkerInfo.getToRemovedBlocks();
+    }
+
+    // Block locations are guarded by BlockInfo, so they are updated through mBlockIdToBlockInfo
+    // without locking any inode.
+    for (long blockId : removedBlockIds) {
+      BlockInfo blockInfo = mBlockIdToBlockInfo.get(blockId);
+      if (blockInfo == null) {
+        LOG.error("File " + BlockInfo.computeInodeId(blockId) + " does not exist");
+      } else {
+        blockInfo.removeLocation(workerId);
+        LOG.debug("File {} with block {} was evicted from worker {} ",
+            BlockInfo.computeInodeId(blockId), blockInfo.mBlockIndex, workerId);
+      }
+    }
+
+    for (Entry<Long, List<Long>> addedBlocks : addedBlockIds.entrySet()) {
+      long storageDirId = addedBlocks.getKey();
+      for (long blockId : addedBlocks.getValue()) {
+        BlockInfo blockInfo = mBlockIdToBlockInfo.get(blockId);
+        if (blockInfo == null) {
           int fileId = BlockInfo.computeInodeId(blockId);
-          int blockIndex = BlockInfo.computeBlockIndex(blockId);
           Inode inode = mFileIdToInodes.get(fileId);
           if (inode == null) {
+            // The file had been deleted. Ask the worker to remove the block.
+            toRemovedBlocks.add(blockId);
             LOG.error("File " + fileId + " does not exist");
           } else if (inode.isFile()) {
-            ((InodeFile) inode).removeLocation(blockIndex, workerId);
-            LOG.debug("File {} with block {} was evicted from worker {} ", fileId, blockIndex,
-                workerId);
+            throw new BlockInfoException("BlockInfo not found! blockIndex:"
+                + BlockInfo.computeBlockIndex(blockId));
+          } else {
+            // A stale report, since blocks never belong to a folder.
+            LOG.warn("Worker " + workerId + " reported block " + blockId + " of folder " + fileId
+                + ", ignoring it.");
           }
-        }
-
-        List<Long> toRemovedBlocks = tWorkerInfo.getToRemovedBlocks();
-        for (Entry<Long, List<Long>> addedBlocks : addedBlockIds.entrySet()) {
-          long storageDirId = addedBlocks.getKey();
-          for (long blockId : addedBlocks.getValue()) {
-            int fileId = BlockInfo.computeInodeId(blockId);
-            int blockIndex = BlockInfo.computeBlockIndex(blockId);
-            Inode inode = mFileIdToInodes.get(fileId);
-            if (inode == null) {
-              // The file had been deleted. Ask the worker to remove the block.
-              toRemovedBlocks.add(blockId);
-              LOG.error("File " + fileId + " does not exist");
-            } else if (inode.isFile()) {
-              List<BlockInfo> blockInfoList = ((InodeFile) inode).getBlockList();
-              NetAddress workerAddress = mWorkers.get(workerId).getAddress();
-              if (blockInfoList.size() <= blockIndex) {
-                throw new BlockInfoException("BlockInfo not found! blockIndex:" + blockIndex);
-              } else {
-                BlockInfo blockInfo = blockInfoList.get(blockIndex);
-                blockInfo.addLocation(workerId, workerAddress, storageDirId);
-              }
-            }
+        } else {
+          blockInfo.addLocation(workerId, workerAddress, storageDirId);
+          if (mBlockIdToBlockInfo.get(blockId) != blockInfo) {
+            // The file was deleted concurrently, possibly before the new location could be seen.
+            toRemovedBlocks.add(blockId);
           }
         }
-
-        if (toRemovedBlocks.size() != 0) {
-          return new Command(CommandType.Free, toRemovedBlocks);
-        }
       }
     }
 
+    if (toRemovedBlocks.size() != 0) {
+      return new Command(CommandType.Free, toRemovedBlocks);
+    }
+
     return new Command(CommandType.Nothing, new ArrayList<Long>());
   }
 
@@ -2508,22 +3223,30 @@ public class MasterInfo extends ImageWriter {
 
     writeElement(objWriter, dos, ele);
 
-    synchronized (mRootLock) {
-      synchronized (mFileIdToDependency) {
-        for (Dependency dep : mFileIdToDependency.values()) {
-          dep.writeImage(objWriter, dos);
+    // Write locking the root stops all the path based operations, and holding mInodeIdLock stops
+    // files from being created, so the inode counter matches the written tree.
+    mRoot.lockWrite();
+    try {
+      synchronized (mInodeIdLock) {
+        synchronized (mFileIdToDependency) {
+          for (Dependency dep : mFileIdToDependency.values()) {
+            dep.writeImage(objWriter, dos);
+          }
         }
-      }
-      mRoot.writeImage(objWriter, dos);
-      mRawTables.writeImage(objWriter, dos);
+        mRoot.writeImage(objWriter, dos);
+        mRawTables.writeImage(objWriter, dos);
 
-      ele =
-          new ImageElement(ImageElementType.Checkpoint)
-              .withParameter("inodeCounter", mInodeCounter.get())
-              .withParameter("editTransactionCounter", mCheckpointInfo.getEditTransactionCounter())
-              .withParameter("dependencyCounter", mCheckpointInfo.getDependencyCounter());
+        ele =
+            new ImageElement(ImageElementType.Checkpoint)
+                .withParameter("inodeCounter", mInodeCounter.get())
+                .withParameter("editTransactionCounter",
+                    mCheckpointInfo.getEditTransactionCounter())
+                .withParameter("dependencyCounter", mCheckpointInfo.getDependencyCounter());
 
-      writeElement(objWriter, dos, ele);
+        writeElement(objWriter, dos, ele);
+      }
+    } finally {
+      mRoot.unlockWrite();
     }
   }
 
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+/**
+ * How the master serves the connections of its clients and workers. {@link #THREADED_SELECTOR} is
+ * the default since it does not hold a thread per connection, so the number of connections is not
+ * bounded by the number of threads.
+ */
+public enum MasterServerType {
+  /**
+   * Uses a {@link org.apache.thrift.server.TThreadPoolServer}, which serves each connection on its
+   * own thread of the pool for as long as the connection is open
+   */
+  THREAD_POOL,
+
+  /**
+   * Uses a {@link org.apache.thrift.server.TThreadedSelectorServer}, which reads and writes the
+   * connections on a few selector threads and only takes a worker thread to run a call
+   */
+  THREADED_SELECTOR
+}
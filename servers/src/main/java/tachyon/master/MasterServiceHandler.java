@@ -100,6 +100,12 @@ public class MasterServiceHandler implements MasterService.Iface {
     mMasterInfo.completeFile(fileId);
   }
 
+  @Override
+  public void user_completeFiles(List<Integer> fileIds) throws FileDoesNotExistException,
+      TException {
+    mMasterInfo.completeFiles(fileIds);
+  }
+
   @Override
   public int user_createDependency(List<String> parents, List<String> children,
       String commandPrefix, List<ByteBuffer> data, String comment, String framework,
@@ -145,6 +151,13 @@ public class MasterServiceHandler implements MasterService.Iface {
     return mMasterInfo.createFile(new TachyonURI(path), blockSizeByte, recursive);
   }
 
+  @Override
+  public List<Integer> user_createFiles(List<String> paths, long blockSizeByte, boolean recursive)
+      throws FileAlreadyExistException, InvalidPathException, BlockInfoException,
+      TachyonException, TException {
+    return mMasterInfo.createFiles(toTachyonURIs(paths), blockSizeByte, recursive);
+  }
+
   @Override
   public long user_createNewBlock(int fileId) throws FileDoesNotExistException, TException {
     return mMasterInfo.createNewBlock(fileId);
@@ -211,6 +224,18 @@ public class MasterServiceHandler implements MasterService.Iface {
     return ret;
   }
 
+  @Override
+  public List<ClientFileInfo> user_getFileStatuses(List<String> paths)
+      throws InvalidPathException, TException {
+    return mMasterInfo.getClientFileInfos(toTachyonURIs(paths));
+  }
+
+  @Override
+  public List<List<ClientBlockInfo>> user_getFilesBlocks(List<Integer> fileIds)
+      throws FileDoesNotExistException, TException {
+    return mMasterInfo.getFileBlocks(fileIds);
+  }
+
   @Override
   public int user_getRawTableId(String path) throws InvalidPathException, TException {
     return mMasterInfo.getRawTableId(new TachyonURI(path));
@@ -255,6 +280,14 @@ public class MasterServiceHandler implements MasterService.Iface {
     return;
   }
 
+  @Override
+  public List<ClientFileInfo> user_listStatusPage(String path, String startAfter, int limit,
+      boolean recursive) throws InvalidPathException, FileDoesNotExistException, TException {
+    TachyonURI startAfterUri =
+        (startAfter == null || startAfter.isEmpty()) ? null : new TachyonURI(startAfter);
+    return mMasterInfo.listStatusPage(new TachyonURI(path), startAfterUri, limit, recursive);
+  }
+
   @Override
   public boolean user_mkdirs(String path, boolean recursive) throws FileAlreadyExistException,
       InvalidPathException, TachyonException, TException {
@@ -336,4 +369,12 @@ public class MasterServiceHandler implements MasterService.Iface {
     return mMasterInfo.registerWorker(workerNetAddress, totalBytesOnTiers, usedBytesOnTiers,
         currentBlockIds);
   }
+
+  private static List<TachyonURI> toTachyonURIs(List<String> paths) {
+    List<TachyonURI> ret = new ArrayList<TachyonURI>(paths.size());
+    for (String path : paths) {
+      ret.add(new TachyonURI(path));
+    }
+    return ret;
+  }
 }
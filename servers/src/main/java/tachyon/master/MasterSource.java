@@ -182,6 +182,10 @@ public class MasterSource implements Source {
     mGetFileStatusOps.inc();
   }
 
+  public void incGetFileStatusOps(long n) {
+    mGetFileStatusOps.inc(n);
+  }
+
   public void incRenameOps() {
     mRenameOps.inc();
   }
@@ -17,11 +17,10 @@ package tachyon.master;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import tachyon.Constants;
+import tachyon.collections.LongHashSet;
 import tachyon.thrift.ClientWorkerInfo;
 import tachyon.thrift.NetAddress;
 import tachyon.util.CommonUtils;
@@ -43,9 +42,9 @@ public class MasterWorkerInfo {
   /** Worker's last updated time in ms **/
   private long mLastUpdatedTimeMs;
   /** IDs of blocks the worker contains **/
-  private Set<Long> mBlocks;
+  private final LongHashSet mBlocks = new LongHashSet();
   /** IDs of blocks the worker should remove **/
-  private Set<Long> mToRemoveBlocks;
+  private final LongHashSet mToRemoveBlocks = new LongHashSet();
   /** Total bytes on each storage tier **/
   private List<Long> mTotalBytesOnTiers;
   /** Used bytes on each storage tier **/
@@ -60,8 +59,6 @@ public class MasterWorkerInfo {
     mStartTimeMs = System.currentTimeMillis();
 
     mUsedBytes = 0;
-    mBlocks = new HashSet<Long>();
-    mToRemoveBlocks = new HashSet<Long>();
     mLastUpdatedTimeMs = System.currentTimeMillis();
   }
 
@@ -98,8 +95,8 @@ public class MasterWorkerInfo {
   /**
    * @return IDs of all blocks the worker contains.
    */
-  public synchronized Set<Long> getBlocks() {
-    return new HashSet<Long>(mBlocks);
+  public synchronized long[] getBlocks() {
+    return mBlocks.toArray();
   }
 
   /**
@@ -127,7 +124,12 @@ public class MasterWorkerInfo {
    * @return IDs of blocks the worker should remove
    */
   public synchronized List<Long> getToRemovedBlocks() {
-    return new ArrayList<Long>(mToRemoveBlocks);
+    long[] blockIds = mToRemoveBlocks.toArray();
+    List<Long> ret = new ArrayList<Long>(blockIds.length);
+    for (long blockId : blockIds) {
+      ret.add(blockId);
+    }
+    return ret;
   }
 
   /**
@@ -172,7 +174,7 @@ public class MasterWorkerInfo {
     sb.append(", mAvailableBytes: ").append(mCapacityBytes - mUsedBytes);
     sb.append(", mLastUpdatedTimeMs: ").append(mLastUpdatedTimeMs);
     sb.append(", mBlocks: [ ");
-    for (long blockId : mBlocks) {
+    for (long blockId : mBlocks.toArray()) {
       sb.append(blockId).append(", ");
     }
     sb.append("] )");
@@ -200,10 +202,8 @@ public class MasterWorkerInfo {
    * @param blockIds IDs of the blocks to be added or removed
    */
   public synchronized void updateBlocks(boolean add, Collection<Long> blockIds) {
-    if (add) {
-      mBlocks.addAll(blockIds);
-    } else {
-      mBlocks.removeAll(blockIds);
+    for (long blockId : blockIds) {
+      updateBlock(add, blockId);
     }
   }
 
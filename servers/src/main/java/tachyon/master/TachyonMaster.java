@@ -19,12 +19,18 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
 import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TServerTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,7 +78,7 @@ public class TachyonMaster {
   private MasterInfo mMasterInfo;
   private InetSocketAddress mMasterAddress;
   private UIWebServer mWebServer;
-  private TServerSocket mServerTServerSocket;
+  private TServerTransport mServerTransport;
   private TServer mMasterServiceServer;
   private MasterServiceHandler mMasterServiceHandler;
   private MetricsSystem mMasterMetricsSystem;
@@ -82,6 +88,8 @@ public class TachyonMaster {
 
   private int mMaxWorkerThreads;
   private int mMinWorkerThreads;
+  private final MasterServerType mServerType;
+  private final int mSelectorThreads;
   private boolean mZookeeperMode = false;
   private final ExecutorService mExecutorService = Executors.newFixedThreadPool(2,
       ThreadFactoryUtils.build("heartbeat-master-%d", true));
@@ -131,6 +139,11 @@ public class TachyonMaster {
     Preconditions.checkArgument(mMaxWorkerThreads >= mMinWorkerThreads,
         Constants.MASTER_MAX_WORKER_THREADS + " can not be less than "
             + Constants.MASTER_MIN_WORKER_THREADS);
+    mServerType =
+        mTachyonConf.getEnum(Constants.MASTER_SERVER_TYPE, MasterServerType.THREADED_SELECTOR);
+    mSelectorThreads = mTachyonConf.getInt(Constants.MASTER_SELECTOR_THREADS, 2);
+    Preconditions.checkArgument(mSelectorThreads > 0,
+        Constants.MASTER_SELECTOR_THREADS + " must be positive");
 
     try {
       // Extract the port from the generated socket.
@@ -138,8 +151,15 @@ public class TachyonMaster {
       // use (any random free port).
       // In a production or any real deployment setup, port '0' should not be used as it will make
       // deployment more complicated.
-      mServerTServerSocket = new TServerSocket(addressListening);
-      mPort = NetworkAddressUtils.getPort(mServerTServerSocket);
+      if (mServerType == MasterServerType.THREADED_SELECTOR) {
+        TNonblockingServerSocket socket = new TNonblockingServerSocket(addressListening);
+        mPort = NetworkAddressUtils.getPort(socket);
+        mServerTransport = socket;
+      } else {
+        TServerSocket socket = new TServerSocket(addressListening);
+        mPort = NetworkAddressUtils.getPort(socket);
+        mServerTransport = socket;
+      }
 
       String tachyonHome = mTachyonConf.get(Constants.TACHYON_HOME, Constants.DEFAULT_HOME);
       String journalFolder =
@@ -261,11 +281,27 @@ public class TachyonMaster {
     MasterService.Processor<MasterServiceHandler> masterServiceProcessor =
         new MasterService.Processor<MasterServiceHandler>(mMasterServiceHandler);
 
-    mMasterServiceServer =
-        new TThreadPoolServer(new TThreadPoolServer.Args(mServerTServerSocket)
-            .maxWorkerThreads(mMaxWorkerThreads).minWorkerThreads(mMinWorkerThreads)
-            .processor(masterServiceProcessor).transportFactory(new TFramedTransport.Factory())
-            .protocolFactory(new TBinaryProtocol.Factory(true, true)));
+    if (mServerType == MasterServerType.THREADED_SELECTOR) {
+      // The selector threads only read and write the connections, so a connection holds a worker
+      // thread only while one of its calls runs. Calls beyond the maximum number of workers wait
+      // in the queue instead of being rejected, and idle workers time out down to zero.
+      ThreadPoolExecutor workers =
+          new ThreadPoolExecutor(mMaxWorkerThreads, mMaxWorkerThreads, 60, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              ThreadFactoryUtils.build("master-rpc-worker-%d", true));
+      workers.allowCoreThreadTimeOut(true);
+      mMasterServiceServer =
+          new TThreadedSelectorServer(new TThreadedSelectorServer.Args(
+              (TNonblockingServerSocket) mServerTransport).selectorThreads(mSelectorThreads)
+              .executorService(workers).processor(masterServiceProcessor)
+              .protocolFactory(new TBinaryProtocol.Factory(true, true)));
+    } else {
+      mMasterServiceServer =
+          new TThreadPoolServer(new TThreadPoolServer.Args(mServerTransport)
+              .maxWorkerThreads(mMaxWorkerThreads).minWorkerThreads(mMinWorkerThreads)
+              .processor(masterServiceProcessor).transportFactory(new TFramedTransport.Factory())
+              .protocolFactory(new TBinaryProtocol.Factory(true, true)));
+    }
 
     mIsStarted = true;
   }
@@ -347,7 +383,7 @@ public class TachyonMaster {
       mJournal.close();
       mMasterMetricsSystem.stop();
       mMasterServiceServer.stop();
-      mServerTServerSocket.close();
+      mServerTransport.close();
       mExecutorService.shutdown();
       mIsStarted = false;
     }
@@ -38,6 +38,8 @@ public class WorkerSource implements Source {
       mMetricRegistry.counter(MetricRegistry.name("BlocksEvicted"));
   private final Counter mBlocksPromoted =
       mMetricRegistry.counter(MetricRegistry.name("BlocksPromoted"));
+  private final Counter mCheckpointsFailed =
+      mMetricRegistry.counter(MetricRegistry.name("CheckpointsFailed"));
 
   // metrics from client
   private final Counter mBlocksReadLocal = mMetricRegistry.counter(MetricRegistry
@@ -91,6 +93,10 @@ public class WorkerSource implements Source {
     mBlocksPromoted.inc();
   }
 
+  public void incCheckpointsFailed() {
+    mCheckpointsFailed.inc();
+  }
+
   public void incBlocksReadLocal(long n) {
     mBlocksReadLocal.inc(n);
   }
@@ -0,0 +1,402 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closer;
+
+import tachyon.Constants;
+import tachyon.Users;
+import tachyon.conf.TachyonConf;
+import tachyon.exception.InvalidStateException;
+import tachyon.exception.NotFoundException;
+import tachyon.master.MasterClient;
+import tachyon.thrift.ClientFileInfo;
+import tachyon.underfs.UnderFileSystem;
+import tachyon.util.CommonUtils;
+import tachyon.util.ThreadFactoryUtils;
+import tachyon.util.io.PathUtils;
+import tachyon.worker.WorkerSource;
+import tachyon.worker.block.io.BlockReader;
+
+/**
+ * AsyncCheckpointer persists the files written with {@link tachyon.client.WriteType#ASYNC_THROUGH}
+ * to the under file system in the background, so that clients write at the speed of the worker
+ * storage and the files become durable shortly after.
+ * <p>
+ * Once a client completes such a file, the file is queued here, and a bounded pool of uploader
+ * threads copies the committed blocks of the file from the block store to the under file system,
+ * then adds the checkpoint to the master. A failed checkpoint is queued again after an exponential
+ * backoff, capped at a maximum interval, up to a number of attempts; uploaders do not wait for the
+ * retries. When the queue is full, the thread submitting a file waits for room in the queue up to a
+ * timeout, which slows down the writing clients until the uploaders catch up, and the file is
+ * rejected if there is still no room.
+ * <p>
+ * From its submission until its checkpoint is added to the master, the blocks of a file are kept
+ * in the block store like the blocks of pinned files, so that they are not evicted before being
+ * persisted. Once all the attempts failed, the blocks are no longer protected, the loss is logged
+ * and counted in the CheckpointsFailed metric of the worker, and the file is lost if its blocks are
+ * evicted.
+ * <p>
+ * The queue, the pending retries and the protection of the blocks are only kept in memory: the
+ * files not checkpointed yet when the worker stops are neither checkpointed nor protected by it
+ * afterwards.
+ * <p>
+ * All blocks of the file must be stored in this worker. This class is thread-safe.
+ */
+public class AsyncCheckpointer {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The size of the chunks the blocks are copied in */
+  private static final int CHUNK_BYTES = 4 * Constants.MB;
+
+  /** The block store the blocks are read from */
+  private final BlockStore mBlockStore;
+  /** The client to get the files from and add the checkpoints to the master */
+  private final MasterClient mMasterClient;
+  /** The under file system the files are persisted to */
+  private final UnderFileSystem mUfs;
+  /** WorkerSource for collecting the bytes written to the under file system */
+  private final WorkerSource mWorkerSource;
+  /** The folder of the under file system the files are persisted to */
+  private final String mUfsDataFolder;
+  /** Number of attempts to checkpoint a file before giving up */
+  private final int mMaxAttempts;
+  /** Milliseconds to wait before the first retry, doubled for each further retry */
+  private final long mRetryIntervalMs;
+  /** Milliseconds to wait before a retry at most */
+  private final long mMaxRetryIntervalMs;
+  /** Bytes each uploader copies per second at most */
+  private final long mCapBytesPerSec;
+  /** The uploader threads, with a bounded queue of the files to checkpoint */
+  private final ThreadPoolExecutor mUploaderPool;
+  /** The timer queueing the failed checkpoints again once their backoff is over */
+  private final ScheduledExecutorService mRetryTimer;
+  /** Ids of the files queued or being checkpointed, to ignore duplicate requests */
+  private final Set<Integer> mPendingFiles =
+      Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+  /** Id of this worker */
+  private volatile long mWorkerId;
+
+  /**
+   * @param blockStore the block store the blocks are read from
+   * @param masterClient the client to get the files from and add the checkpoints to the master
+   * @param ufs the under file system the files are persisted to
+   * @param workerSource object for collecting the worker metrics
+   * @param tachyonConf the configuration values to be used
+   */
+  public AsyncCheckpointer(BlockStore blockStore, MasterClient masterClient, UnderFileSystem ufs,
+      WorkerSource workerSource, TachyonConf tachyonConf) {
+    mBlockStore = Preconditions.checkNotNull(blockStore);
+    mMasterClient = Preconditions.checkNotNull(masterClient);
+    mUfs = Preconditions.checkNotNull(ufs);
+    mWorkerSource = Preconditions.checkNotNull(workerSource);
+    mUfsDataFolder =
+        tachyonConf.get(Constants.UNDERFS_DATA_FOLDER, Constants.DEFAULT_DATA_FOLDER);
+    mMaxAttempts = tachyonConf.getInt(Constants.WORKER_CHECKPOINT_MAX_ATTEMPTS, 10);
+    mRetryIntervalMs =
+        tachyonConf.getLong(Constants.WORKER_CHECKPOINT_RETRY_INTERVAL_MS, Constants.SECOND_MS);
+    mMaxRetryIntervalMs = Math.max(mRetryIntervalMs, tachyonConf.getLong(
+        Constants.WORKER_CHECKPOINT_MAX_RETRY_INTERVAL_MS, Constants.MINUTE_MS));
+    mCapBytesPerSec = (long) Constants.MB * tachyonConf.getInt(
+        Constants.WORKER_PER_THREAD_CHECKPOINT_CAP_MB_SEC, Constants.DEFAULT_CHECKPOINT_CAP_MB_SEC);
+    int threads = tachyonConf.getInt(Constants.WORKER_CHECKPOINT_THREADS, 1);
+    int queueSize = tachyonConf.getInt(Constants.WORKER_CHECKPOINT_QUEUE_SIZE, 256);
+    long queueTimeoutMs =
+        tachyonConf.getLong(Constants.WORKER_CHECKPOINT_QUEUE_TIMEOUT_MS, Constants.SECOND_MS);
+    Preconditions.checkArgument(mMaxAttempts > 0, "Checkpoint attempts must be positive");
+    Preconditions.checkArgument(mCapBytesPerSec > 0, "Checkpoint cap must be positive");
+    Preconditions.checkArgument(threads > 0, "Checkpoint threads must be positive");
+    Preconditions.checkArgument(queueSize > 0, "Checkpoint queue size must be positive");
+
+    mUploaderPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize),
+        ThreadFactoryUtils.build("worker-checkpoint-%d", true),
+        new WaitForRoomPolicy(queueTimeoutMs));
+    mRetryTimer = new ScheduledThreadPoolExecutor(1,
+        ThreadFactoryUtils.build("worker-checkpoint-retry-%d", true));
+  }
+
+  /**
+   * Queues a completed file to be checkpointed, and protects its blocks from eviction until then.
+   * If the queue is full, waits for room in the queue up to a timeout.
+   *
+   * @param fileId the id of the file
+   * @return true if the file is going to be checkpointed, false if the checkpointer is stopped or
+   *         the queue stays full
+   */
+  public boolean submit(int fileId) {
+    if (mUploaderPool.isShutdown()) {
+      return false;
+    }
+    if (mPendingFiles.add(fileId)) {
+      mBlockStore.addUnpersistedInode(fileId);
+      try {
+        mUploaderPool.execute(new CheckpointTask(fileId, 0, mRetryIntervalMs));
+      } catch (RejectedExecutionException ree) {
+        LOG.warn("Failed to queue file " + fileId + " to be checkpointed: " + ree.getMessage());
+        mBlockStore.removeUnpersistedInode(fileId);
+        mPendingFiles.remove(fileId);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sets the id of this worker, which the checkpoints are added to the master with.
+   *
+   * @param workerId the id of this worker
+   */
+  public void setWorkerId(long workerId) {
+    mWorkerId = workerId;
+  }
+
+  /**
+   * Stops the uploaders, the files queued or being checkpointed are not checkpointed. Once this
+   * method is called, the object should be discarded.
+   */
+  public void stop() {
+    mRetryTimer.shutdownNow();
+    mUploaderPool.shutdownNow();
+  }
+
+  /**
+   * Copies the blocks of a file to the under file system, then adds the checkpoint to the master.
+   * A file which no longer exists, or is already checkpointed, is skipped.
+   *
+   * @param fileId the id of the file
+   * @throws IOException if the file is not complete, a block can not be read from this worker, or
+   *         the file can not be written to the under file system or added to the master
+   */
+  void checkpoint(int fileId) throws IOException {
+    ClientFileInfo fileInfo = mMasterClient.getFileStatus(fileId, "");
+    if (fileInfo == null) {
+      throw new IOException("Failed to get the status of file " + fileId);
+    }
+    if (fileInfo.getId() == -1) {
+      LOG.info("File " + fileId + " was deleted before being checkpointed");
+      return;
+    }
+    if (!fileInfo.getUfsPath().isEmpty()) {
+      return;
+    }
+    if (!fileInfo.isIsComplete()) {
+      throw new IOException("File " + fileId + " is not complete");
+    }
+
+    String dstPath = PathUtils.concatPath(mUfsDataFolder, fileId);
+    long copiedBytes = 0;
+    try {
+      Closer closer = Closer.create();
+      try {
+        OutputStream os = closer.register(mUfs.create(dstPath));
+        byte[] buf = new byte[(int) Math.min(CHUNK_BYTES, fileInfo.getBlockSizeByte())];
+        long startMs = System.currentTimeMillis();
+        for (long blockId : fileInfo.getBlockIds()) {
+          copiedBytes = copyBlock(blockId, os, buf, copiedBytes, startMs);
+        }
+      } catch (Throwable t) {
+        throw closer.rethrow(t);
+      } finally {
+        closer.close();
+      }
+      if (copiedBytes != fileInfo.getLength()) {
+        throw new IOException("Copied " + copiedBytes + " bytes of file " + fileId
+            + ", expected " + fileInfo.getLength());
+      }
+    } catch (IOException ioe) {
+      mUfs.delete(dstPath, false);
+      throw ioe;
+    }
+    mWorkerSource.incBytesWrittenUfs(copiedBytes);
+
+    if (!mMasterClient.addCheckpoint(mWorkerId, fileId, copiedBytes, dstPath)) {
+      throw new IOException("Failed to add the checkpoint of file " + fileId + " to the master");
+    }
+  }
+
+  /**
+   * Copies a block to the stream, at most at the capped rate.
+   *
+   * @param blockId the id of the block
+   * @param os the stream to copy the block to
+   * @param buf the buffer to copy the block through
+   * @param copiedBytes the bytes of the file copied before the block
+   * @param startMs the time the copy of the file started, in milliseconds
+   * @return the bytes of the file copied after the block
+   * @throws IOException if the block is not stored in this worker or can not be copied
+   */
+  private long copyBlock(long blockId, OutputStream os, byte[] buf, long copiedBytes,
+      long startMs) throws IOException {
+    long lockId;
+    try {
+      lockId = mBlockStore.lockBlock(Users.CHECKPOINT_USER_ID, blockId);
+    } catch (NotFoundException nfe) {
+      throw new IOException("Block " + blockId + " is not stored in this worker", nfe);
+    }
+    try {
+      BlockReader reader = mBlockStore.getBlockReader(Users.CHECKPOINT_USER_ID, blockId, lockId);
+      try {
+        long length = reader.getLength();
+        for (long offset = 0; offset < length; offset += buf.length) {
+          int chunkBytes = (int) Math.min(buf.length, length - offset);
+          reader.read(offset, chunkBytes).get(buf, 0, chunkBytes);
+          os.write(buf, 0, chunkBytes);
+          copiedBytes += chunkBytes;
+          // Wait until the copy is back under the cap, if it is ahead
+          long aheadMs =
+              copiedBytes * Constants.SECOND_MS / mCapBytesPerSec
+                  - (System.currentTimeMillis() - startMs);
+          if (aheadMs > 0) {
+            CommonUtils.sleepMs(LOG, aheadMs, true);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (NotFoundException nfe) {
+      throw new IOException(nfe);
+    } catch (InvalidStateException ise) {
+      throw new IOException(ise);
+    } finally {
+      try {
+        mBlockStore.unlockBlock(lockId);
+      } catch (NotFoundException nfe) {
+        LOG.error("Failed to unlock block " + blockId, nfe);
+      }
+    }
+    return copiedBytes;
+  }
+
+  /**
+   * Waits for room in the queue of a full pool up to a timeout, then rejects the task. Unlike
+   * {@link ThreadPoolExecutor.CallerRunsPolicy}, the submitting thread never runs a checkpoint.
+   */
+  private static final class WaitForRoomPolicy implements RejectedExecutionHandler {
+    private final long mTimeoutMs;
+
+    WaitForRoomPolicy(long timeoutMs) {
+      mTimeoutMs = timeoutMs;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("The checkpointer is stopped");
+      }
+      try {
+        if (!executor.getQueue().offer(task, mTimeoutMs, TimeUnit.MILLISECONDS)) {
+          throw new RejectedExecutionException("The checkpoint queue is still full after "
+              + mTimeoutMs + " ms");
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException(ie);
+      }
+    }
+  }
+
+  /**
+   * Queues a failed checkpoint again once its backoff is over. The checkpoint is dropped if the
+   * checkpointer is stopped meanwhile.
+   *
+   * @param task the next attempt of the checkpoint
+   * @param delayMs the time to wait before queueing it, in milliseconds
+   */
+  private void scheduleRetry(final CheckpointTask task, long delayMs) {
+    try {
+      mRetryTimer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            mUploaderPool.execute(task);
+          } catch (RejectedExecutionException ree) {
+            if (mUploaderPool.isShutdown()) {
+              mPendingFiles.remove(task.mFileId);
+              return;
+            }
+            // The queue stays full, this does not count as an attempt
+            scheduleRetry(task, task.mRetryIntervalMs);
+          }
+        }
+      }, delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ree) {
+      mPendingFiles.remove(task.mFileId);
+    }
+  }
+
+  /**
+   * Checkpoints a file once. On failure, the file is queued again after a backoff, or given up on
+   * once it is out of attempts.
+   */
+  private final class CheckpointTask implements Runnable {
+    private final int mFileId;
+    /** The number of failed attempts before this one */
+    private final int mFailedAttempts;
+    /** Milliseconds to wait before the next attempt, if this one fails */
+    private final long mRetryIntervalMs;
+
+    CheckpointTask(int fileId, int failedAttempts, long retryIntervalMs) {
+      mFileId = fileId;
+      mFailedAttempts = failedAttempts;
+      mRetryIntervalMs = retryIntervalMs;
+    }
+
+    @Override
+    public void run() {
+      boolean retrying = false;
+      try {
+        checkpoint(mFileId);
+        mBlockStore.removeUnpersistedInode(mFileId);
+      } catch (IOException ioe) {
+        int attempts = mFailedAttempts + 1;
+        if (attempts >= mMaxAttempts) {
+          mBlockStore.removeUnpersistedInode(mFileId);
+          mWorkerSource.incCheckpointsFailed();
+          LOG.error("Failed to checkpoint file " + mFileId + " after " + attempts + " attempts,"
+              + " its blocks are no longer kept and the file is lost if they are evicted", ioe);
+        } else if (!mUploaderPool.isShutdown()) {
+          LOG.warn("Failed to checkpoint file " + mFileId + ", retrying in " + mRetryIntervalMs
+              + " ms: " + ioe.getMessage());
+          scheduleRetry(new CheckpointTask(mFileId, attempts,
+              Math.min(mRetryIntervalMs * 2, mMaxRetryIntervalMs)), mRetryIntervalMs);
+          retrying = true;
+        }
+      } finally {
+        if (!retrying) {
+          mPendingFiles.remove(mFileId);
+        }
+      }
+    }
+  }
+}
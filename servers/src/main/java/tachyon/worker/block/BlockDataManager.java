@@ -65,6 +65,10 @@ public class BlockDataManager {
   private final WorkerSource mWorkerSource;
   /** Metrics reporter that listens on block events and increases metrics counters*/
   private final BlockMetricsReporter mMetricsReporter;
+  /** Moves blocks between tiers in the background, listens on block accesses */
+  private final StorageTierManager mStorageTierManager;
+  /** Persists the files written with ASYNC_THROUGH to the under filesystem in the background */
+  private final AsyncCheckpointer mAsyncCheckpointer;
 
   // TODO: See if this can be removed from the class
   /** MasterClient, only used to inform the master of a new block in commitBlock */
@@ -90,6 +94,7 @@ public class BlockDataManager {
     mTachyonConf = tachyonConf;
     mWorkerSource = workerSource;
     mMetricsReporter = new BlockMetricsReporter(mWorkerSource);
+    mStorageTierManager = new StorageTierManager(mBlockStore, mTachyonConf);
 
     mMasterClientExecutorService =
         Executors.newFixedThreadPool(1,
@@ -107,10 +112,20 @@ public class BlockDataManager {
     // Connect to UFS to handle UFS security
     InetSocketAddress workerAddress = NetworkAddressUtils.getLocalWorkerAddress(mTachyonConf);
     mUfs.connectFromWorker(mTachyonConf, NetworkAddressUtils.getFqdnHost(workerAddress));
+    mAsyncCheckpointer =
+        new AsyncCheckpointer(mBlockStore, mMasterClient, mUfs, mWorkerSource, mTachyonConf);
 
     // Register the heartbeat reporter so it can record block store changes
     mBlockStore.registerBlockStoreEventListener(mHeartbeatReporter);
     mBlockStore.registerBlockStoreEventListener(mMetricsReporter);
+    mBlockStore.registerBlockStoreEventListener(mStorageTierManager);
+  }
+
+  /**
+   * @return the manager moving blocks between tiers, to be run by the worker
+   */
+  StorageTierManager getStorageTierManager() {
+    return mStorageTierManager;
   }
 
   /**
@@ -175,6 +190,18 @@ public class BlockDataManager {
     mMasterClient.addCheckpoint(mWorkerId, fileId, fileSize, dstPath);
   }
 
+  /**
+   * Queues a file written with {@link tachyon.client.WriteType#ASYNC_THROUGH} to be persisted to
+   * the under filesystem in the background. The file must be complete, and its blocks stored in
+   * this worker. The master is informed of the checkpoint once it is written.
+   *
+   * @param fileId The id of the file
+   * @return true if the file is going to be checkpointed, false otherwise
+   */
+  public boolean asyncCheckpoint(int fileId) {
+    return mAsyncCheckpointer.submit(fileId);
+  }
+
   /**
    * Cleans up after users, to prevent zombie users. This method is called periodically
    * by UserCleaner thread.
@@ -477,12 +504,14 @@ public class BlockDataManager {
    */
   public void setWorkerId(long workerId) {
     mWorkerId = workerId;
+    mAsyncCheckpointer.setWorkerId(workerId);
   }
 
   /**
    * Stop the block data manager. This method should only be called when terminating the worker.
    */
   public void stop() {
+    mAsyncCheckpointer.stop();
     mMasterClient.close();
     mMasterClientExecutorService.shutdown();
   }
@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
@@ -33,38 +34,66 @@ import com.google.common.hash.Hashing;
 import tachyon.Constants;
 import tachyon.exception.InvalidStateException;
 import tachyon.exception.NotFoundException;
+import tachyon.worker.block.meta.StorageDir;
 
 /**
  * Handle all block locks.
  * <p>
+ * The lock records are kept in a concurrent map by lock id, and the lock ids of each user in
+ * stripes of users, each guarded by its own monitor. Locking or unlocking a block only contends
+ * with the users of the same stripe.
+ * <p>
  * This class is thread-safe.
  */
 public class BlockLockManager {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
-  /** The number of locks, larger value leads to finer locking granularity, but more space. */
-  // TODO: Make this configurable
-  private static final int NUM_LOCKS = 1000;
+  /** The default number of block locks */
+  private static final int DEFAULT_NUM_LOCKS = 1000;
+  /** The default number of stripes of the lock records of users */
+  private static final int DEFAULT_NUM_USER_STRIPES = 64;
   /** The unique id of each lock */
   private static final AtomicLong LOCK_ID_GEN = new AtomicLong(0);
 
   /** The object that serves all metadata requests for the block store */
   private final BlockMetadataManager mMetaManager;
-  /** A map from a block ID to its lock */
-  private final ClientRWLock[] mLockArray = new ClientRWLock[NUM_LOCKS];
-  /** A map from a user ID to all the locks hold by this user */
-  private final Map<Long, Set<Long>> mUserIdToLockIdsMap = new HashMap<Long, Set<Long>>();
+  /**
+   * A map from a block ID to its lock. The number of locks decides the locking granularity, a
+   * larger value leads to finer granularity but more space.
+   */
+  private final ClientRWLock[] mLockArray;
+  /**
+   * Maps from a user ID to all the locks hold by this user, each guarded by itself. A user maps to
+   * one of them by its ID.
+   */
+  private final Map<Long, Set<Long>>[] mUserIdToLockIdsMaps;
   /** A map from a lock ID to the lock record of it */
-  private final Map<Long, LockRecord> mLockIdToRecordMap = new HashMap<Long, LockRecord>();
-  /** To guard access on mLockIdToRecordMap and mUserIdToLockIdsMap */
-  private final Object mSharedMapsLock = new Object();
+  private final ConcurrentHashMap<Long, LockRecord> mLockIdToRecordMap =
+      new ConcurrentHashMap<Long, LockRecord>();
   /** A hashing function to map blockId to one of the locks */
   private final HashFunction mHashFunc = Hashing.murmur3_32();
 
   public BlockLockManager(BlockMetadataManager metaManager) {
+    this(metaManager, DEFAULT_NUM_LOCKS, DEFAULT_NUM_USER_STRIPES);
+  }
+
+  /**
+   * @param metaManager the metadata manager of the blocks
+   * @param numLocks the number of block locks, at least 1
+   * @param numUserStripes the number of stripes of the lock records of users, at least 1
+   */
+  @SuppressWarnings("unchecked")
+  public BlockLockManager(BlockMetadataManager metaManager, int numLocks, int numUserStripes) {
+    Preconditions.checkArgument(numLocks > 0, "The number of block locks must be positive");
+    Preconditions.checkArgument(numUserStripes > 0, "The number of user stripes must be positive");
     mMetaManager = Preconditions.checkNotNull(metaManager);
-    for (int i = 0; i < NUM_LOCKS; i ++) {
+    mLockArray = new ClientRWLock[numLocks];
+    for (int i = 0; i < numLocks; i ++) {
       mLockArray[i] = new ClientRWLock();
     }
+    mUserIdToLockIdsMaps = new Map[numUserStripes];
+    for (int i = 0; i < numUserStripes; i ++) {
+      mUserIdToLockIdsMaps[i] = new HashMap<Long, Set<Long>>();
+    }
   }
 
   /**
@@ -78,31 +107,27 @@ public class BlockLockManager {
    */
   public long lockBlock(long userId, long blockId, BlockLockType blockLockType)
       throws NotFoundException {
-    // hashing blockId into the range of [0, NUM_LOCKS-1]
-    int hashValue = Math.abs(mHashFunc.hashLong(blockId).asInt()) % NUM_LOCKS;
-    ClientRWLock blockLock = mLockArray[hashValue];
-    Lock lock;
-    if (blockLockType == BlockLockType.READ) {
-      lock = blockLock.readLock();
-    } else { // blockLockType == BlockLockType.WRITE
-      lock = blockLock.writeLock();
-    }
+    Lock lock = getLock(blockId, blockLockType);
     lock.lock();
-    if (!mMetaManager.hasBlockMeta(blockId)) {
-      lock.unlock();
-      throw new NotFoundException("Failed to lockBlock: no blockId " + blockId + " found");
-    }
-    long lockId = LOCK_ID_GEN.getAndIncrement();
-    synchronized (mSharedMapsLock) {
-      mLockIdToRecordMap.put(lockId, new LockRecord(userId, blockId, lock));
-      Set<Long> userLockIds = mUserIdToLockIdsMap.get(userId);
-      if (null == userLockIds) {
-        mUserIdToLockIdsMap.put(userId, Sets.newHashSet(lockId));
-      } else {
-        userLockIds.add(lockId);
-      }
+    return addLockRecord(userId, blockId, lock, blockLockType);
+  }
+
+  /**
+   * Locks a block if it exists and its lock is free, without waiting for the lock.
+   *
+   * @param userId the ID of user
+   * @param blockId the ID of block
+   * @param blockLockType READ or WRITE
+   * @return lock id if the block exists and is locked, -1 if the lock is held by others
+   * @throws NotFoundException when blockId can not be found
+   */
+  public long tryLockBlock(long userId, long blockId, BlockLockType blockLockType)
+      throws NotFoundException {
+    Lock lock = getLock(blockId, blockLockType);
+    if (!lock.tryLock()) {
+      return -1;
     }
-    return lockId;
+    return addLockRecord(userId, blockId, lock, blockLockType);
   }
 
   /**
@@ -112,49 +137,58 @@ public class BlockLockManager {
    * @throws NotFoundException if no lock is associated with this lock id
    */
   public void unlockBlock(long lockId) throws NotFoundException {
-    Lock lock;
-    synchronized (mSharedMapsLock) {
-      LockRecord record = mLockIdToRecordMap.get(lockId);
-      if (null == record) {
-        throw new NotFoundException("Failed to unlockBlock: lockId " + lockId
-            + " has no lock record");
-      }
-      long userId = record.userId();
-      lock = record.lock();
-      mLockIdToRecordMap.remove(lockId);
-      Set<Long> userLockIds = mUserIdToLockIdsMap.get(userId);
-      userLockIds.remove(lockId);
-      if (userLockIds.isEmpty()) {
-        mUserIdToLockIdsMap.remove(userId);
+    // Whoever removes the record releases the lock, so that a lock is released once even if the
+    // user is cleaned up at the same time.
+    LockRecord record = mLockIdToRecordMap.remove(lockId);
+    if (null == record) {
+      throw new NotFoundException("Failed to unlockBlock: lockId " + lockId
+          + " has no lock record");
+    }
+    long userId = record.userId();
+    Map<Long, Set<Long>> userIdToLockIds = getUserIdToLockIdsMap(userId);
+    synchronized (userIdToLockIds) {
+      Set<Long> userLockIds = userIdToLockIds.get(userId);
+      if (userLockIds != null) {
+        userLockIds.remove(lockId);
+        if (userLockIds.isEmpty()) {
+          userIdToLockIds.remove(userId);
+        }
       }
     }
-    lock.unlock();
+    releaseLock(record);
   }
 
   // TODO: temporary, remove me later.
   public void unlockBlock(long userId, long blockId) throws NotFoundException {
-    synchronized (mSharedMapsLock) {
-      Set<Long> userLockIds = mUserIdToLockIdsMap.get(userId);
+    Map<Long, Set<Long>> userIdToLockIds = getUserIdToLockIdsMap(userId);
+    LockRecord record = null;
+    synchronized (userIdToLockIds) {
+      Set<Long> userLockIds = userIdToLockIds.get(userId);
+      if (null == userLockIds) {
+        throw new NotFoundException("Failed to unlock blockId " + blockId + " for userId "
+            + userId + ": no lock is found for userId " + userId);
+      }
       for (long lockId : userLockIds) {
-        LockRecord record = mLockIdToRecordMap.get(lockId);
-        if (null == record) {
-          throw new NotFoundException("Failed to unlockBlock: lockId " + lockId
-              + " has no lock record");
+        LockRecord userRecord = mLockIdToRecordMap.get(lockId);
+        if (null == userRecord) {
+          // The lock is being released by unlockBlock(lockId), which removes its id next
+          continue;
         }
-        if (blockId == record.blockId()) {
-          mLockIdToRecordMap.remove(lockId);
+        if (blockId == userRecord.blockId() && mLockIdToRecordMap.remove(lockId) != null) {
+          record = userRecord;
           userLockIds.remove(lockId);
           if (userLockIds.isEmpty()) {
-            mUserIdToLockIdsMap.remove(userId);
+            userIdToLockIds.remove(userId);
           }
-          Lock lock = record.lock();
-          lock.unlock();
-          return;
+          break;
         }
       }
+    }
+    if (null == record) {
       throw new NotFoundException("Failed to unlock blockId " + blockId + " for userId " + userId
           + ": no lock is found for userId " + userId);
     }
+    releaseLock(record);
   }
 
   /**
@@ -169,20 +203,18 @@ public class BlockLockManager {
    */
   public void validateLock(long userId, long blockId, long lockId) throws NotFoundException,
       InvalidStateException {
-    synchronized (mSharedMapsLock) {
-      LockRecord record = mLockIdToRecordMap.get(lockId);
-      if (null == record) {
-        throw new NotFoundException("Failed to validateLock: lockId " + lockId
-            + " has no lock record");
-      }
-      if (userId != record.userId()) {
-        throw new InvalidStateException("Failed to validateLock: lockId " + lockId
-            + " is owned by userId " + record.userId() + ", not " + userId);
-      }
-      if (blockId != record.blockId()) {
-        throw new InvalidStateException("Failed to validateLock: lockId " + lockId
-            + " is for blockId " + record.blockId() + ", not " + blockId);
-      }
+    LockRecord record = mLockIdToRecordMap.get(lockId);
+    if (null == record) {
+      throw new NotFoundException("Failed to validateLock: lockId " + lockId
+          + " has no lock record");
+    }
+    if (userId != record.userId()) {
+      throw new InvalidStateException("Failed to validateLock: lockId " + lockId
+          + " is owned by userId " + record.userId() + ", not " + userId);
+    }
+    if (blockId != record.blockId()) {
+      throw new InvalidStateException("Failed to validateLock: lockId " + lockId
+          + " is for blockId " + record.blockId() + ", not " + blockId);
     }
   }
 
@@ -192,22 +224,22 @@ public class BlockLockManager {
    * @param userId the ID of the user to cleanup
    */
   public void cleanupUser(long userId) {
-    synchronized (mSharedMapsLock) {
-      Set<Long> userLockIds = mUserIdToLockIdsMap.get(userId);
-      if (null == userLockIds) {
-        return;
-      }
-      for (long lockId : userLockIds) {
-        LockRecord record = mLockIdToRecordMap.get(lockId);
-        if (null == record) {
-          LOG.error("Failed to cleanup userId {}: no lock record for lockId {}", userId, lockId);
-          continue;
-        }
-        Lock lock = record.lock();
-        lock.unlock();
-        mLockIdToRecordMap.remove(lockId);
+    Map<Long, Set<Long>> userIdToLockIds = getUserIdToLockIdsMap(userId);
+    Set<Long> userLockIds;
+    synchronized (userIdToLockIds) {
+      userLockIds = userIdToLockIds.remove(userId);
+    }
+    if (null == userLockIds) {
+      return;
+    }
+    for (long lockId : userLockIds) {
+      LockRecord record = mLockIdToRecordMap.remove(lockId);
+      if (null == record) {
+        // The lock was released by unlockBlock in the meantime.
+        LOG.debug("Skip cleanup of userId {}: no lock record for lockId {}", userId, lockId);
+        continue;
       }
-      mUserIdToLockIdsMap.remove(userId);
+      releaseLock(record);
     }
   }
 
@@ -217,13 +249,74 @@ public class BlockLockManager {
    * @return a set of locked blocks
    */
   public Set<Long> getLockedBlocks() {
-    synchronized (mSharedMapsLock) {
-      Set<Long> set = new HashSet<Long>();
-      for (LockRecord lockRecord : mLockIdToRecordMap.values()) {
-        set.add(lockRecord.blockId());
+    Set<Long> set = new HashSet<Long>();
+    for (LockRecord lockRecord : mLockIdToRecordMap.values()) {
+      set.add(lockRecord.blockId());
+    }
+    return set;
+  }
+
+  /**
+   * Releases the lock of a record removed from mLockIdToRecordMap, and its reader on the dir of
+   * the block.
+   */
+  private void releaseLock(LockRecord record) {
+    if (record.readDir() != null) {
+      record.readDir().removeReader();
+    }
+    record.lock().unlock();
+  }
+
+  private Lock getLock(long blockId, BlockLockType blockLockType) {
+    // hashing blockId into the range of [0, mLockArray.length-1]
+    int hashValue = Math.abs(mHashFunc.hashLong(blockId).asInt() % mLockArray.length);
+    ClientRWLock blockLock = mLockArray[hashValue];
+    if (blockLockType == BlockLockType.READ) {
+      return blockLock.readLock();
+    }
+    return blockLock.writeLock();
+  }
+
+  /**
+   * Records a lock just acquired on a block, or releases it and throws NotFoundException if the
+   * block does not exist.
+   */
+  private long addLockRecord(long userId, long blockId, Lock lock, BlockLockType blockLockType)
+      throws NotFoundException {
+    if (!mMetaManager.hasBlockMeta(blockId)) {
+      lock.unlock();
+      throw new NotFoundException("Failed to lockBlock: no blockId " + blockId + " found");
+    }
+    // Count the reader on the dir of the block, the block can not be moved while read locked
+    StorageDir readDir = null;
+    if (blockLockType == BlockLockType.READ) {
+      try {
+        readDir = mMetaManager.getBlockMeta(blockId).getParentDir();
+      } catch (NotFoundException nfe) {
+        lock.unlock();
+        throw nfe;
       }
-      return set;
+      readDir.addReader();
     }
+    long lockId = LOCK_ID_GEN.getAndIncrement();
+    Map<Long, Set<Long>> userIdToLockIds = getUserIdToLockIdsMap(userId);
+    // The id joins the user's locks before the record is published, under the stripe monitor, so
+    // that a concurrent cleanupUser either sees the id or runs before the lock exists.
+    synchronized (userIdToLockIds) {
+      Set<Long> userLockIds = userIdToLockIds.get(userId);
+      if (null == userLockIds) {
+        userIdToLockIds.put(userId, Sets.newHashSet(lockId));
+      } else {
+        userLockIds.add(lockId);
+      }
+      mLockIdToRecordMap.put(lockId, new LockRecord(userId, blockId, lock, readDir));
+    }
+    return lockId;
+  }
+
+  private Map<Long, Set<Long>> getUserIdToLockIdsMap(long userId) {
+    return mUserIdToLockIdsMaps[(int) ((userId ^ (userId >>> 32)) & 0x7fffffff)
+        % mUserIdToLockIdsMaps.length];
   }
 
   /**
@@ -233,11 +326,14 @@ public class BlockLockManager {
     private final long mUserId;
     private final long mBlockId;
     private final Lock mLock;
+    /** The dir counting this lock as a reader, null for a write lock */
+    private final StorageDir mReadDir;
 
-    LockRecord(long userId, long blockId, Lock lock) {
+    LockRecord(long userId, long blockId, Lock lock, StorageDir readDir) {
       mUserId = userId;
       mBlockId = blockId;
       mLock = lock;
+      mReadDir = readDir;
     }
 
     long userId() {
@@ -251,5 +347,9 @@ public class BlockLockManager {
     Lock lock() {
       return mLock;
     }
+
+    StorageDir readDir() {
+      return mReadDir;
+    }
   }
 }
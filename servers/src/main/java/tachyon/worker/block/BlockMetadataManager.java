@@ -17,9 +17,11 @@ package tachyon.worker.block;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +45,9 @@ import tachyon.worker.block.meta.TempBlockMeta;
  * TieredBlockStore, Allocator and Evictor.
  * <p>
  * This class is thread-safe and all operations on block metadata such as StorageTier, StorageDir
- * should go through this class.
+ * should go through this class. It holds no lock of its own: the tiers and dirs are fixed once it
+ * is created, each {@link StorageDir} guards its own blocks, and blocks are found through an index
+ * from block id to dir, so that lookups do not lock and updates of different dirs run in parallel.
  */
 // TODO: consider how to better expose information to Evictor and Allocator.
 public class BlockMetadataManager {
@@ -53,6 +57,19 @@ public class BlockMetadataManager {
   private List<StorageTier> mTiers;
   /** A map from tier alias to StorageTier */
   private Map<Integer, StorageTier> mAliasToTiers;
+  /**
+   * A map from block ID to the dir of the block. Entries are hints, checked against the dir when
+   * used: a block missing from the index is looked for in all the dirs, and then indexed.
+   */
+  private final ConcurrentHashMap<Long, StorageDir> mBlockIdToDirMap =
+      new ConcurrentHashMap<Long, StorageDir>();
+  /**
+   * A map from temp block ID to the dir of the temp block. Unlike mBlockIdToDirMap it has every
+   * temp block: an entry is put before the temp block is added to its dir, which makes the entry
+   * the claim on the block id, and removed after the temp block leaves the dir.
+   */
+  private final ConcurrentHashMap<Long, StorageDir> mTempBlockIdToDirMap =
+      new ConcurrentHashMap<Long, StorageDir>();
 
   private BlockMetadataManager() {}
 
@@ -91,10 +108,11 @@ public class BlockMetadataManager {
    * @param tempBlockMeta the meta data of the temp block to add
    * @throws NotFoundException when block can not be found
    */
-  public synchronized void abortTempBlockMeta(TempBlockMeta tempBlockMeta)
+  public void abortTempBlockMeta(TempBlockMeta tempBlockMeta)
       throws NotFoundException {
     StorageDir dir = tempBlockMeta.getParentDir();
     dir.removeTempBlockMeta(tempBlockMeta);
+    mTempBlockIdToDirMap.remove(tempBlockMeta.getBlockId(), dir);
   }
 
   /**
@@ -104,26 +122,50 @@ public class BlockMetadataManager {
    * @throws OutOfSpaceException when no more space left to hold the block
    * @throws AlreadyExistsException when the block already exists
    */
-  public synchronized void addTempBlockMeta(TempBlockMeta tempBlockMeta)
+  public void addTempBlockMeta(TempBlockMeta tempBlockMeta)
       throws OutOfSpaceException, AlreadyExistsException {
     StorageDir dir = tempBlockMeta.getParentDir();
-    dir.addTempBlockMeta(tempBlockMeta);
+    long blockId = tempBlockMeta.getBlockId();
+    // Writers create temp blocks concurrently, so the temp block id is claimed in the index first:
+    // only one writer of an id gets to add its temp block to a dir.
+    if (mTempBlockIdToDirMap.putIfAbsent(blockId, dir) != null) {
+      throw new AlreadyExistsException("Failed to add TempBlockMeta: blockId " + blockId
+          + " exists");
+    }
+    try {
+      dir.addTempBlockMeta(tempBlockMeta);
+    } catch (OutOfSpaceException oose) {
+      mTempBlockIdToDirMap.remove(blockId, dir);
+      throw oose;
+    } catch (AlreadyExistsException aee) {
+      mTempBlockIdToDirMap.remove(blockId, dir);
+      throw aee;
+    }
   }
 
   /**
-   * Commits a temp block.
+   * Commits a temp block. The temp block leaves its dir just before the block is added, so a
+   * concurrent {@link #hasBlockMeta(long)} or {@link #hasTempBlockMeta(long)}, which do not lock,
+   * may briefly find neither of them. The temp block must give its space to the block in the
+   * meantime, so the block can not be added first.
    *
    * @param tempBlockMeta the meta data of the temp block to commit
    * @throws OutOfSpaceException when no more space left to hold the block
    * @throws AlreadyExistsException when the block already exists in committed blocks
    * @throws NotFoundException when temp block can not be found
    */
-  public synchronized void commitTempBlockMeta(TempBlockMeta tempBlockMeta)
+  public void commitTempBlockMeta(TempBlockMeta tempBlockMeta)
       throws OutOfSpaceException, AlreadyExistsException, NotFoundException {
     BlockMeta block = new BlockMeta(Preconditions.checkNotNull(tempBlockMeta));
     StorageDir dir = tempBlockMeta.getParentDir();
-    dir.removeTempBlockMeta(tempBlockMeta);
-    dir.addBlockMeta(block);
+    // The temp block gives its space to the block, so that the commit can not run out of space
+    // because of another update of the dir in between.
+    synchronized (dir) {
+      dir.removeTempBlockMeta(tempBlockMeta);
+      dir.addBlockMeta(block);
+    }
+    mBlockIdToDirMap.put(block.getBlockId(), dir);
+    mTempBlockIdToDirMap.remove(block.getBlockId(), dir);
   }
 
   /**
@@ -133,12 +175,26 @@ public class BlockMetadataManager {
    * @param tempBlockIds the list of temporary block ids to be cleaned up, non temporary block
    *                     ids will be ignored.
    */
-  public synchronized void cleanupUserTempBlocks(long userId, List<Long> tempBlockIds) {
+  public void cleanupUserTempBlocks(long userId, List<Long> tempBlockIds) {
+    // Only the claims of temp blocks which are in their dirs are released after the cleanup, not
+    // those of temp blocks being added.
+    Map<Long, StorageDir> cleanedDirs = new HashMap<Long, StorageDir>();
+    for (long tempBlockId : tempBlockIds) {
+      StorageDir dir = mTempBlockIdToDirMap.get(tempBlockId);
+      if (dir != null && dir.hasTempBlockMeta(tempBlockId)) {
+        cleanedDirs.put(tempBlockId, dir);
+      }
+    }
     for (StorageTier tier : mTiers) {
       for (StorageDir dir : tier.getStorageDirs()) {
         dir.cleanupUserTempBlocks(userId, tempBlockIds);
       }
     }
+    for (Map.Entry<Long, StorageDir> entry : cleanedDirs.entrySet()) {
+      if (!entry.getValue().hasTempBlockMeta(entry.getKey())) {
+        mTempBlockIdToDirMap.remove(entry.getKey(), entry.getValue());
+      }
+    }
   }
 
   /**
@@ -150,7 +206,7 @@ public class BlockMetadataManager {
    * @return available bytes
    * @throws IllegalArgumentException when location does not belong to tiered storage
    */
-  public synchronized long getAvailableBytes(BlockStoreLocation location) {
+  public long getAvailableBytes(BlockStoreLocation location) {
     long spaceAvailable = 0;
 
     if (location.equals(BlockStoreLocation.anyTier())) {
@@ -179,12 +235,14 @@ public class BlockMetadataManager {
    * @return metadata of the block
    * @throws NotFoundException if no BlockMeta for this blockId is found
    */
-  public synchronized BlockMeta getBlockMeta(long blockId) throws NotFoundException {
-    for (StorageTier tier : mTiers) {
-      for (StorageDir dir : tier.getStorageDirs()) {
-        if (dir.hasBlockMeta(blockId)) {
-          return dir.getBlockMeta(blockId);
-        }
+  public BlockMeta getBlockMeta(long blockId) throws NotFoundException {
+    StorageDir dir = getBlockDir(blockId);
+    while (dir != null) {
+      try {
+        return dir.getBlockMeta(blockId);
+      } catch (NotFoundException nfe) {
+        // The block left the dir since it was found there, e.g. it was moved to another dir.
+        dir = getBlockDir(blockId);
       }
     }
     throw new NotFoundException("Failed to get BlockMeta: blockId " + blockId + " not found");
@@ -199,7 +257,7 @@ public class BlockMetadataManager {
    * @return the path of this block in this location
    * @throws IllegalArgumentException if location is not a specific StorageDir
    */
-  public synchronized String getBlockPath(long blockId, BlockStoreLocation location) {
+  public String getBlockPath(long blockId, BlockStoreLocation location) {
     return BlockMetaBase.commitPath(getDir(location), blockId);
   }
 
@@ -208,7 +266,7 @@ public class BlockMetadataManager {
    *
    * @return the metadata of this block store
    */
-  public synchronized BlockStoreMeta getBlockStoreMeta() {
+  public BlockStoreMeta getBlockStoreMeta() {
     return new BlockStoreMeta(this);
   }
 
@@ -220,7 +278,7 @@ public class BlockMetadataManager {
    * @return the StorageDir object
    * @throws IllegalArgumentException if location is not a specific dir or the location is invalid
    */
-  public synchronized StorageDir getDir(BlockStoreLocation location) {
+  public StorageDir getDir(BlockStoreLocation location) {
     if (location.equals(BlockStoreLocation.anyTier())
         || location.equals(BlockStoreLocation.anyDirInTier(location.tierAlias()))) {
       throw new IllegalArgumentException("Failed to get block path: " + location
@@ -236,12 +294,14 @@ public class BlockMetadataManager {
    * @return metadata of the block or null
    * @throws NotFoundException when blockId can not be found
    */
-  public synchronized TempBlockMeta getTempBlockMeta(long blockId) throws NotFoundException {
-    for (StorageTier tier : mTiers) {
-      for (StorageDir dir : tier.getStorageDirs()) {
-        if (dir.hasTempBlockMeta(blockId)) {
-          return dir.getTempBlockMeta(blockId);
-        }
+  public TempBlockMeta getTempBlockMeta(long blockId) throws NotFoundException {
+    StorageDir dir = getTempBlockDir(blockId);
+    while (dir != null) {
+      try {
+        return dir.getTempBlockMeta(blockId);
+      } catch (NotFoundException nfe) {
+        // The temp block left the dir since it was found there, e.g. it was committed.
+        dir = getTempBlockDir(blockId);
       }
     }
     throw new NotFoundException("Failed to get TempBlockMeta: temp blockId " + blockId
@@ -255,7 +315,7 @@ public class BlockMetadataManager {
    * @return the StorageTier object associated with the alias
    * @throws IllegalArgumentException if tierAlias is not found
    */
-  public synchronized StorageTier getTier(int tierAlias) {
+  public StorageTier getTier(int tierAlias) {
     StorageTier tier = mAliasToTiers.get(tierAlias);
     if (tier == null) {
       throw new IllegalArgumentException("Cannot find tier with alias " + tierAlias);
@@ -268,7 +328,7 @@ public class BlockMetadataManager {
    *
    * @return the list of StorageTiers
    */
-  public synchronized List<StorageTier> getTiers() {
+  public List<StorageTier> getTiers() {
     return mTiers;
   }
 
@@ -279,7 +339,7 @@ public class BlockMetadataManager {
    * @return the list of StorageTier
    * @throws IllegalArgumentException if tierAlias is not found
    */
-  public synchronized List<StorageTier> getTiersBelow(int tierAlias) {
+  public List<StorageTier> getTiersBelow(int tierAlias) {
     int level = getTier(tierAlias).getTierLevel();
     return mTiers.subList(level + 1, mTiers.size());
   }
@@ -291,7 +351,7 @@ public class BlockMetadataManager {
    * @param userId the ID of the user
    * @return A list of temp blocks associated with the user
    */
-  public synchronized List<TempBlockMeta> getUserTempBlocks(long userId) {
+  public List<TempBlockMeta> getUserTempBlocks(long userId) {
     List<TempBlockMeta> userTempBlocks = new ArrayList<TempBlockMeta>();
     for (StorageTier tier : mTiers) {
       for (StorageDir dir : tier.getStorageDirs()) {
@@ -307,15 +367,8 @@ public class BlockMetadataManager {
    * @param blockId the block ID
    * @return true if the block is contained, false otherwise
    */
-  public synchronized boolean hasBlockMeta(long blockId) {
-    for (StorageTier tier : mTiers) {
-      for (StorageDir dir : tier.getStorageDirs()) {
-        if (dir.hasBlockMeta(blockId)) {
-          return true;
-        }
-      }
-    }
-    return false;
+  public boolean hasBlockMeta(long blockId) {
+    return getBlockDir(blockId) != null;
   }
 
   /**
@@ -324,15 +377,8 @@ public class BlockMetadataManager {
    * @param blockId the temp block ID
    * @return true if the block is contained, false otherwise
    */
-  public synchronized boolean hasTempBlockMeta(long blockId) {
-    for (StorageTier tier : mTiers) {
-      for (StorageDir dir : tier.getStorageDirs()) {
-        if (dir.hasTempBlockMeta(blockId)) {
-          return true;
-        }
-      }
-    }
-    return false;
+  public boolean hasTempBlockMeta(long blockId) {
+    return getTempBlockDir(blockId) != null;
   }
 
   /**
@@ -346,7 +392,7 @@ public class BlockMetadataManager {
    * @throws AlreadyExistsException when the block to move already exists in the destination
    * @throws OutOfSpaceException when destination have no extra space to hold the block to move
    */
-  public synchronized BlockMeta moveBlockMeta(BlockMeta blockMeta, BlockStoreLocation newLocation)
+  public BlockMeta moveBlockMeta(BlockMeta blockMeta, BlockStoreLocation newLocation)
       throws NotFoundException, AlreadyExistsException, OutOfSpaceException {
     // If existing location belongs to the target location, simply return the current block meta.
     BlockStoreLocation oldLocation = blockMeta.getBlockLocation();
@@ -355,34 +401,43 @@ public class BlockMetadataManager {
       return blockMeta;
     }
 
+    long blockId = blockMeta.getBlockId();
     long blockSize = blockMeta.getBlockSize();
     int newTierAlias = newLocation.tierAlias();
     StorageTier newTier = getTier(newTierAlias);
-    StorageDir newDir = null;
+    List<StorageDir> candidateDirs;
     if (newLocation.equals(BlockStoreLocation.anyDirInTier(newTierAlias))) {
-      for (StorageDir dir : newTier.getStorageDirs()) {
-        if (dir.getAvailableBytes() >= blockSize) {
-          newDir = dir;
-          break;
-        }
-      }
+      candidateDirs = newTier.getStorageDirs();
     } else {
-      StorageDir dir = newTier.getDir(newLocation.dir());
-      if (dir.getAvailableBytes() >= blockSize) {
-        newDir = dir;
-      }
+      candidateDirs = Collections.singletonList(newTier.getDir(newLocation.dir()));
     }
 
-    if (newDir == null) {
-      throw new OutOfSpaceException("Failed to move BlockMeta: newLocation " + newLocation
-          + " does not have enough space for " + blockSize + " bytes");
-    }
+    // The block is added to its new dir before it leaves the old one, so that it can be found in
+    // one of them all along. The space of a dir may be taken by another update between the check
+    // and the add, in which case the next dir is tried.
     StorageDir oldDir = blockMeta.getParentDir();
-    oldDir.removeBlockMeta(blockMeta);
-    BlockMeta newBlockMeta =
-        new BlockMeta(blockMeta.getBlockId(), blockSize, newDir);
-    newDir.addBlockMeta(newBlockMeta);
-    return newBlockMeta;
+    for (StorageDir newDir : candidateDirs) {
+      if (newDir.getAvailableBytes() < blockSize) {
+        continue;
+      }
+      BlockMeta newBlockMeta = new BlockMeta(blockId, blockSize, newDir);
+      try {
+        newDir.addBlockMeta(newBlockMeta);
+      } catch (OutOfSpaceException oose) {
+        continue;
+      }
+      mBlockIdToDirMap.put(blockId, newDir);
+      try {
+        oldDir.removeBlockMeta(blockMeta);
+      } catch (NotFoundException nfe) {
+        newDir.removeBlockMeta(newBlockMeta);
+        mBlockIdToDirMap.remove(blockId, newDir);
+        throw nfe;
+      }
+      return newBlockMeta;
+    }
+    throw new OutOfSpaceException("Failed to move BlockMeta: newLocation " + newLocation
+        + " does not have enough space for " + blockSize + " bytes");
   }
 
   /**
@@ -391,9 +446,10 @@ public class BlockMetadataManager {
    * @param block the meta data of the block to remove
    * @throws NotFoundException when block is not found
    */
-  public synchronized void removeBlockMeta(BlockMeta block) throws NotFoundException {
+  public void removeBlockMeta(BlockMeta block) throws NotFoundException {
     StorageDir dir = block.getParentDir();
     dir.removeBlockMeta(block);
+    mBlockIdToDirMap.remove(block.getBlockId(), dir);
   }
 
   /**
@@ -402,11 +458,47 @@ public class BlockMetadataManager {
    * @param tempBlockMeta the temp block to modify
    * @param newSize new size in bytes
    * @throws InvalidStateException when newSize is smaller than current size
+   * @throws OutOfSpaceException when the dir of the temp block does not have the additional bytes
    */
-  public synchronized void resizeTempBlockMeta(TempBlockMeta tempBlockMeta, long newSize)
-      throws InvalidStateException {
+  public void resizeTempBlockMeta(TempBlockMeta tempBlockMeta, long newSize)
+      throws InvalidStateException, OutOfSpaceException {
     StorageDir dir = tempBlockMeta.getParentDir();
     dir.resizeTempBlockMeta(tempBlockMeta, newSize);
   }
 
+  /**
+   * @param blockId the ID of the block
+   * @return the dir which has the block, or null if no dir has it
+   */
+  private StorageDir getBlockDir(long blockId) {
+    StorageDir dir = mBlockIdToDirMap.get(blockId);
+    if (dir != null) {
+      if (dir.hasBlockMeta(blockId)) {
+        return dir;
+      }
+      mBlockIdToDirMap.remove(blockId, dir);
+    }
+    for (StorageTier tier : mTiers) {
+      for (StorageDir tierDir : tier.getStorageDirs()) {
+        if (tierDir.hasBlockMeta(blockId)) {
+          mBlockIdToDirMap.put(blockId, tierDir);
+          return tierDir;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param blockId the ID of the temp block
+   * @return the dir which has the temp block, or null if no dir has it
+   */
+  private StorageDir getTempBlockDir(long blockId) {
+    StorageDir dir = mTempBlockIdToDirMap.get(blockId);
+    // The entry of a temp block being added is there before the temp block is in its dir
+    if (dir != null && dir.hasTempBlockMeta(blockId)) {
+      return dir;
+    }
+    return null;
+  }
 }
@@ -79,9 +79,17 @@ public class BlockServiceHandler implements WorkerService.Iface {
     }
   }
 
-  // TODO: Make this supported again
+  /**
+   * This should be called after completing a file written via an ASYNC_THROUGH type write. The
+   * worker persists the blocks of the file to the under storage system in the background, and
+   * then updates the master with the checkpoint of the file.
+   *
+   * @param fileId the id of the file to checkpoint
+   * @return true if the file is going to be checkpointed, false otherwise
+   * @throws TException
+   */
   public boolean asyncCheckpoint(int fileId) throws TException {
-    return false;
+    return mWorker.asyncCheckpoint(fileId);
   }
 
   /**
@@ -286,6 +286,33 @@ interface BlockStore {
       throws OutOfSpaceException, NotFoundException, IOException, AlreadyExistsException,
       InvalidStateException;
 
+  /**
+   * Tries to free space to make a specific amount of bytes available in the location by moving
+   * blocks to other tiers, without stopping other operations of the store. Unlike
+   * {@link #freeSpace}, no block is ever removed: if the space can not be freed without removing
+   * blocks, nothing is done. Blocks are moved one at a time, and blocks which are meanwhile used,
+   * moved or removed by others are skipped, so the space is not guaranteed to be available
+   * afterwards.
+   *
+   * @param userId the user ID
+   * @param availableBytes the amount of free space in bytes
+   * @param location the location to free space
+   * @return true if all the blocks planned to be moved were, false otherwise
+   */
+  boolean tryFreeSpace(long userId, long availableBytes, BlockStoreLocation location);
+
+  /**
+   * Tries to move an existing block to a new location without evicting any block. Unlike
+   * {@link #moveBlock}, the block is left where it is if the new location does not have enough
+   * space for it, or if it is meanwhile used or removed by others.
+   *
+   * @param userId the user ID
+   * @param blockId the ID of an existing block
+   * @param newLocation the location of the destination
+   * @return true if the block is moved, false otherwise
+   */
+  boolean tryMoveBlock(long userId, long blockId, BlockStoreLocation newLocation);
+
   /**
    * Registers a {@link BlockStoreEventListener} to this block store.
    *
@@ -299,4 +326,20 @@ interface BlockStore {
    * @param inodes, a set of inodes that are currently pinned.
    */
   void updatePinnedInodes(Set<Integer> inodes);
+
+  /**
+   * Protects the blocks of an inode from being evicted or moved by the worker, like the blocks of
+   * pinned inodes, until {@link #removeUnpersistedInode} is called. This is used to keep the blocks
+   * of a file which is not persisted yet.
+   *
+   * @param inodeId the id of the inode
+   */
+  void addUnpersistedInode(int inodeId);
+
+  /**
+   * Stops protecting the blocks of an inode protected by {@link #addUnpersistedInode}.
+   *
+   * @param inodeId the id of the inode
+   */
+  void removeUnpersistedInode(int inodeId);
 }
@@ -132,10 +132,10 @@ public class BlockWorker {
             mStartTimeMs, mTachyonConf);
 
     // Setup Worker to Master Syncer
-    // We create three threads for two syncers and one cleaner: mBlockMasterSync,
-    // mPinListSync and mUserCleanerThread
+    // We create four threads for two syncers, one cleaner and one tier manager: mBlockMasterSync,
+    // mPinListSync, mUserCleanerThread and mStorageTierManager
     mSyncExecutorService =
-        Executors.newFixedThreadPool(3, ThreadFactoryUtils.build("worker-heartbeat-%d", true));
+        Executors.newFixedThreadPool(4, ThreadFactoryUtils.build("worker-heartbeat-%d", true));
     mBlockMasterSync = new BlockMasterSync(mBlockDataManager, mTachyonConf, mWorkerNetAddress);
     mBlockMasterSync.registerWithMaster();
 
@@ -189,6 +189,9 @@ public class BlockWorker {
     // Start the user cleanup checker to perform the periodical checking
     mSyncExecutorService.submit(mUserCleanerThread);
 
+    // Start the tier manager to move blocks between tiers in the background
+    mSyncExecutorService.submit(mBlockDataManager.getStorageTierManager());
+
     mWebServer.startWebServer();
     mThriftServer.serve();
   }
@@ -205,6 +208,7 @@ public class BlockWorker {
     mBlockMasterSync.stop();
     mPinListSync.stop();
     mUserCleanerThread.stop();
+    mBlockDataManager.getStorageTierManager().stop();
     mSyncExecutorService.shutdown();
     try {
       mWebServer.shutdownWebServer();
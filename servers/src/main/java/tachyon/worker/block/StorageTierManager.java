@@ -0,0 +1,233 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import tachyon.Constants;
+import tachyon.StorageDirId;
+import tachyon.Users;
+import tachyon.conf.TachyonConf;
+import tachyon.exception.NotFoundException;
+import tachyon.util.CommonUtils;
+import tachyon.worker.block.meta.BlockMeta;
+
+/**
+ * StorageTierManager periodically moves blocks between tiers in the background, so that writers
+ * seldom have to wait for eviction:
+ * <ul>
+ * <li>When the used space of a dir exceeds the high watermark of its tier, its cold blocks are
+ * demoted to lower tiers, until the used space is down to the low watermark. Dirs of the bottom
+ * tier are left to eviction on demand, as their blocks have nowhere to be demoted to.</li>
+ * <li>Blocks of lower tiers read at least a number of times since the last check are promoted to
+ * the top tier, as long as this keeps the top tier under its high watermark.</li>
+ * </ul>
+ * Blocks are moved one at a time by {@link BlockStore#tryFreeSpace} and
+ * {@link BlockStore#tryMoveBlock}, without stopping other operations of the store. Neither ever
+ * evicts a block: blocks which do not fit where they would go are left where they are.
+ */
+public class StorageTierManager extends BlockStoreEventListenerBase implements Runnable {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  private static final double DEFAULT_HIGH_WATERMARK = 0.95;
+  private static final double DEFAULT_LOW_WATERMARK = 0.7;
+
+  /** The block store whose blocks are moved */
+  private final BlockStore mBlockStore;
+  /** Milliseconds between each check */
+  private final int mCheckIntervalMs;
+  /** Number of reads since the last check for a block to be promoted, 0 to disable promotion */
+  private final int mPromoteAccesses;
+  /** High and low watermarks of each tier level, in ratio of the capacity of a dir */
+  private final double[] mHighWatermarks;
+  private final double[] mLowWatermarks;
+  /** Number of reads of each block since the last check */
+  private final ConcurrentHashMap<Long, AtomicInteger> mAccesses =
+      new ConcurrentHashMap<Long, AtomicInteger>();
+
+  /** Flag to indicate if the checking should continue */
+  private volatile boolean mRunning;
+
+  /**
+   * @param blockStore the block store whose blocks are moved
+   * @param tachyonConf the configuration values to be used
+   */
+  public StorageTierManager(BlockStore blockStore, TachyonConf tachyonConf) {
+    mBlockStore = Preconditions.checkNotNull(blockStore);
+    mCheckIntervalMs =
+        tachyonConf.getInt(Constants.WORKER_TIERED_STORE_MANAGER_INTERVAL_MS, Constants.SECOND_MS);
+    mPromoteAccesses = tachyonConf.getInt(Constants.WORKER_TIERED_STORE_PROMOTE_ACCESSES, 3);
+    int levels = tachyonConf.getInt(Constants.WORKER_MAX_TIERED_STORAGE_LEVEL, 1);
+    mHighWatermarks = new double[levels];
+    mLowWatermarks = new double[levels];
+    for (int level = 0; level < levels; level ++) {
+      mHighWatermarks[level] = tachyonConf.getDouble(
+          String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_HIGH_WATERMARK_FORMAT, level),
+          DEFAULT_HIGH_WATERMARK);
+      mLowWatermarks[level] = tachyonConf.getDouble(
+          String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_LOW_WATERMARK_FORMAT, level),
+          DEFAULT_LOW_WATERMARK);
+      Preconditions.checkArgument(mLowWatermarks[level] >= 0
+          && mLowWatermarks[level] <= mHighWatermarks[level] && mHighWatermarks[level] <= 1,
+          "Watermarks of tier level %s should satisfy 0 <= low <= high <= 1", level);
+    }
+
+    mRunning = true;
+  }
+
+  /**
+   * Main loop of the manager, continuously demote and promote blocks
+   */
+  @Override
+  public void run() {
+    long lastCheckMs = System.currentTimeMillis();
+    while (mRunning) {
+      // Check the time since last check, and wait until it is within check interval
+      long lastIntervalMs = System.currentTimeMillis() - lastCheckMs;
+      long toSleepMs = mCheckIntervalMs - lastIntervalMs;
+      if (toSleepMs > 0) {
+        CommonUtils.sleepMs(LOG, toSleepMs);
+      } else {
+        LOG.warn("Tier management took: " + lastIntervalMs + ", expected: " + mCheckIntervalMs);
+      }
+
+      manageTiers();
+      lastCheckMs = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Demotes blocks of dirs over their high watermark, then promotes blocks read often.
+   */
+  public void manageTiers() {
+    demoteBlocks();
+    promoteBlocks();
+  }
+
+  /**
+   * Stops the checking, once this method is called, the object should be discarded
+   */
+  public void stop() {
+    mRunning = false;
+  }
+
+  @Override
+  public void onAccessBlock(long userId, long blockId) {
+    if (mPromoteAccesses <= 0) {
+      return;
+    }
+    AtomicInteger accesses = mAccesses.get(blockId);
+    if (accesses == null) {
+      accesses = new AtomicInteger();
+      AtomicInteger existing = mAccesses.putIfAbsent(blockId, accesses);
+      if (existing != null) {
+        accesses = existing;
+      }
+    }
+    accesses.incrementAndGet();
+  }
+
+  private void demoteBlocks() {
+    BlockStoreMeta storeMeta = mBlockStore.getBlockStoreMeta();
+    int bottomLevel = storeMeta.getCapacityBytesOnTiers().size() - 1;
+    for (Map.Entry<Long, Long> entry : storeMeta.getCapacityBytesOnDirs().entrySet()) {
+      long dirId = entry.getKey();
+      int level = StorageDirId.getStorageLevel(dirId);
+      if (level >= bottomLevel || level >= mHighWatermarks.length) {
+        continue;
+      }
+      long capacityBytes = entry.getValue();
+      long usedBytes = storeMeta.getUsedBytesOnDirs().get(dirId);
+      if (usedBytes <= capacityBytes * mHighWatermarks[level]) {
+        continue;
+      }
+      long bytesToBeAvailable = capacityBytes - (long) (capacityBytes * mLowWatermarks[level]);
+      BlockStoreLocation location =
+          new BlockStoreLocation(StorageDirId.getStorageLevelAliasValue(dirId), level,
+              StorageDirId.getStorageDirIndex(dirId));
+      LOG.debug("Demoting blocks of {} to make {} bytes available", location, bytesToBeAvailable);
+      if (!mBlockStore.tryFreeSpace(Users.MIGRATE_DATA_USER_ID, bytesToBeAvailable, location)) {
+        LOG.info("Failed to demote enough blocks of {}, will retry in {} ms", location,
+            mCheckIntervalMs);
+      }
+    }
+  }
+
+  private void promoteBlocks() {
+    if (mPromoteAccesses <= 0 || mAccesses.isEmpty()) {
+      return;
+    }
+    // Take the reads since the last check, hottest blocks first
+    final Map<Long, Integer> accesses = new HashMap<Long, Integer>();
+    for (Long blockId : mAccesses.keySet()) {
+      AtomicInteger count = mAccesses.remove(blockId);
+      if (count != null && count.get() >= mPromoteAccesses) {
+        accesses.put(blockId, count.get());
+      }
+    }
+    List<Long> blockIds = new ArrayList<Long>(accesses.keySet());
+    Collections.sort(blockIds, new Comparator<Long>() {
+      @Override
+      public int compare(Long blockId1, Long blockId2) {
+        return accesses.get(blockId2).compareTo(accesses.get(blockId1));
+      }
+    });
+
+    BlockStoreMeta storeMeta = mBlockStore.getBlockStoreMeta();
+    int topAlias = -1;
+    for (long dirId : storeMeta.getCapacityBytesOnDirs().keySet()) {
+      if (StorageDirId.getStorageLevel(dirId) == 0) {
+        topAlias = StorageDirId.getStorageLevelAliasValue(dirId);
+        break;
+      }
+    }
+    // Room the top tier has below its high watermark
+    long roomBytes = (long) (storeMeta.getCapacityBytesOnTiers().get(0) * mHighWatermarks[0])
+        - storeMeta.getUsedBytesOnTiers().get(0);
+    for (long blockId : blockIds) {
+      BlockMeta blockMeta;
+      try {
+        blockMeta = mBlockStore.getVolatileBlockMeta(blockId);
+      } catch (NotFoundException nfe) {
+        continue;
+      }
+      if (blockMeta.getBlockLocation().tierAlias() == topAlias) {
+        continue;
+      }
+      long blockSize = blockMeta.getBlockSize();
+      if (blockSize > roomBytes) {
+        continue;
+      }
+      if (mBlockStore.tryMoveBlock(Users.MIGRATE_DATA_USER_ID, blockId,
+          BlockStoreLocation.anyDirInTier(topAlias))) {
+        roomBytes -= blockSize;
+      } else {
+        LOG.debug("Failed to promote blockId {}, will retry once read again", blockId);
+      }
+    }
+  }
+}
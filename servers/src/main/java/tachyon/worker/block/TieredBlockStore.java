@@ -24,6 +24,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
@@ -59,37 +63,63 @@ import tachyon.worker.block.meta.TempBlockMeta;
  * a BlockMetadataManager to maintain the status of the tiered storage, and a LockManager to
  * coordinate read/write on the same block.
  * <p>
- * This class is thread-safe.
+ * This class is thread-safe. Space is reserved per StorageDir, so allocations, resizes and moves
+ * that fit in their dirs run concurrently. An eviction locks only the dirs it removes blocks from
+ * or moves blocks into, and skips the blocks in use instead of waiting for them. An operation
+ * whose freed space keeps being taken by others evicts once more with all other operations of
+ * the store stopped, before it runs out of space.
  */
-// TODO: This atomicity comes with cost of heavy locking, improve locking by not guard eviction
-// (and its IO performance) with heavy write lock (TACHYON-584)
 // TODO: If a method requires certain locks being hold, validate it.
 public class TieredBlockStore implements BlockStore {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The number of times an operation evicts and retries before it runs out of space */
+  private static final int MAX_EVICTION_ATTEMPTS = 3;
 
   private final TachyonConf mTachyonConf;
   private final BlockMetadataManager mMetaManager;
   private final BlockLockManager mLockManager;
   private final Allocator mAllocator;
   private final Evictor mEvictor;
+  /**
+   * The listeners, notified without locking since events of all reads go through them. Listeners
+   * are registered once at startup, so copying the list on registration costs nothing.
+   */
   private final List<BlockStoreEventListener> mBlockStoreEventListeners =
-      new ArrayList<BlockStoreEventListener>();
+      new CopyOnWriteArrayList<BlockStoreEventListener>();
   /** A set of pinned inodes fetched from the master */
   private final Set<Integer> mPinnedInodes = new HashSet<Integer>();
+  /** A set of inodes not persisted yet, whose blocks are kept like the ones of pinned inodes */
+  private final Set<Integer> mUnpersistedInodes = new HashSet<Integer>();
+
+  /**
+   * The eviction locks of the dirs, by StorageDir id. An eviction holds the locks of the dirs its
+   * plan touches, acquired in the order of the ids, and carries out only a plan computed while
+   * holding them, so that concurrent evictions of the same dirs do not plan to free the same
+   * space twice. Other operations do not take these locks.
+   */
+  private final Map<Long, Lock> mDirEvictionLocks = new HashMap<Long, Lock>();
 
   /**
-   * A read/write lock to ensure eviction is atomic w.r.t. other operations. An eviction may trigger
-   * a sequence of block remove and move and we want eviction to be atomic so no remove or move
-   * interleaves during eviction is working. The current workaround is to wrap single block
-   * operations like remove and move by read lock and wrap eviction operations by write lock that
-   * can wait for previous operations and block following operations.
+   * A read/write lock to stop the store for the last eviction of an operation. Evictions and the
+   * short sections reserving space in a dir hold the read lock, so they do not wait for each
+   * other. An operation which evicted {@link #MAX_EVICTION_ATTEMPTS} times and still has no space
+   * evicts and reserves its space once more holding the write lock, so that no other operation
+   * can take the space it frees. This lock is taken before the dir locks and never waited for
+   * while holding a dir lock; block locks are only tried while holding it.
    */
   private final ReentrantReadWriteLock mEvictionLock = new ReentrantReadWriteLock();
 
   public TieredBlockStore(TachyonConf tachyonConf) {
     mTachyonConf = Preconditions.checkNotNull(tachyonConf);
     mMetaManager = BlockMetadataManager.newBlockMetadataManager(mTachyonConf);
-    mLockManager = new BlockLockManager(mMetaManager);
+    mLockManager =
+        new BlockLockManager(mMetaManager, mTachyonConf.getInt(Constants.WORKER_BLOCK_LOCKS, 1000),
+            mTachyonConf.getInt(Constants.WORKER_BLOCK_LOCK_USER_STRIPES, 64));
+    for (StorageTier tier : mMetaManager.getTiers()) {
+      for (StorageDir dir : tier.getStorageDirs()) {
+        mDirEvictionLocks.put(dir.getStorageDirId(), new ReentrantLock());
+      }
+    }
 
     BlockMetadataManagerView initManagerView =
         new BlockMetadataManagerView(mMetaManager, Collections.<Integer>emptySet(),
@@ -142,9 +172,24 @@ public class TieredBlockStore implements BlockStore {
   public TempBlockMeta createBlockMeta(long userId, long blockId, BlockStoreLocation location,
       long initialBlockSize) throws AlreadyExistsException, OutOfSpaceException, NotFoundException,
       IOException, InvalidStateException {
+    for (int attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; attempt ++) {
+      TempBlockMeta tempBlock = tryCreateBlockMeta(userId, blockId, location, initialBlockSize);
+      if (tempBlock != null) {
+        return tempBlock;
+      }
+      // No dir has enough space for the block, evict and retry
+      freeSpaceInternal(userId, initialBlockSize, location, true);
+    }
+    // Others keep taking the space freed for the block, evict with the store stopped
     mEvictionLock.writeLock().lock();
     try {
-      return createBlockMetaNoLock(userId, blockId, location, initialBlockSize);
+      freeSpaceInternal(userId, initialBlockSize, location, true);
+      TempBlockMeta tempBlock = tryCreateBlockMeta(userId, blockId, location, initialBlockSize);
+      if (tempBlock == null) {
+        throw new OutOfSpaceException("Failed to create blockId " + blockId + ": no space for "
+            + initialBlockSize + " bytes in " + location);
+      }
+      return tempBlock;
     } finally {
       mEvictionLock.writeLock().unlock();
     }
@@ -165,34 +210,19 @@ public class TieredBlockStore implements BlockStore {
   @Override
   public void commitBlock(long userId, long blockId) throws AlreadyExistsException,
       InvalidStateException, NotFoundException, IOException, OutOfSpaceException {
-    mEvictionLock.readLock().lock();
-    try {
-      TempBlockMeta tempBlockMeta = mMetaManager.getTempBlockMeta(blockId);
-      commitBlockNoLock(userId, blockId, tempBlockMeta);
-      // TODO: move listeners outside of the lock.
-      synchronized (mBlockStoreEventListeners) {
-        for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-          listener.onCommitBlock(userId, blockId, tempBlockMeta.getBlockLocation());
-        }
-      }
-    } finally {
-      mEvictionLock.readLock().unlock();
+    TempBlockMeta tempBlockMeta = mMetaManager.getTempBlockMeta(blockId);
+    commitBlockNoLock(userId, blockId, tempBlockMeta);
+    for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+      listener.onCommitBlock(userId, blockId, tempBlockMeta.getBlockLocation());
     }
   }
 
   @Override
   public void abortBlock(long userId, long blockId) throws AlreadyExistsException,
       NotFoundException, InvalidStateException, IOException {
-    mEvictionLock.readLock().lock();
-    try {
-      abortBlockNoLock(userId, blockId);
-      synchronized (mBlockStoreEventListeners) {
-        for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-          listener.onAbortBlock(userId, blockId);
-        }
-      }
-    } finally {
-      mEvictionLock.readLock().unlock();
+    abortBlockNoLock(userId, blockId);
+    for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+      listener.onAbortBlock(userId, blockId);
     }
   }
 
@@ -200,12 +230,24 @@ public class TieredBlockStore implements BlockStore {
   public void requestSpace(long userId, long blockId, long additionalBytes)
       throws NotFoundException, OutOfSpaceException, IOException, AlreadyExistsException,
       InvalidStateException {
-    // TODO: Change the lock to read lock and only upgrade to write lock if necessary
+    TempBlockMeta tempBlockMeta = mMetaManager.getTempBlockMeta(blockId);
+    for (int attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; attempt ++) {
+      mEvictionLock.readLock().lock();
+      try {
+        mMetaManager.resizeTempBlockMeta(tempBlockMeta, tempBlockMeta.getBlockSize()
+            + additionalBytes);
+        return;
+      } catch (OutOfSpaceException ooe) {
+        LOG.debug("Not enough space in the dir of blockId {}, evicting", blockId);
+      } finally {
+        mEvictionLock.readLock().unlock();
+      }
+      freeSpaceInternal(userId, additionalBytes, tempBlockMeta.getBlockLocation(), true);
+    }
+    // Others keep taking the space freed for the block, evict with the store stopped
     mEvictionLock.writeLock().lock();
     try {
-      TempBlockMeta tempBlockMeta = mMetaManager.getTempBlockMeta(blockId);
-      freeSpaceInternal(userId, additionalBytes, tempBlockMeta.getBlockLocation());
-      // Increase the size of this temp block
+      freeSpaceInternal(userId, additionalBytes, tempBlockMeta.getBlockLocation(), true);
       mMetaManager.resizeTempBlockMeta(tempBlockMeta, tempBlockMeta.getBlockSize()
           + additionalBytes);
     } finally {
@@ -217,59 +259,59 @@ public class TieredBlockStore implements BlockStore {
   public void moveBlock(long userId, long blockId, BlockStoreLocation newLocation)
       throws NotFoundException, AlreadyExistsException, InvalidStateException, OutOfSpaceException,
       IOException {
-    mEvictionLock.writeLock().lock();
+    long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
     try {
-      long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
-      try {
-        BlockMeta blockMeta = mMetaManager.getBlockMeta(blockId);
-        BlockStoreLocation oldLocation = blockMeta.getBlockLocation();
-        // freeSpaceInternal ensures newLocation has enough space
-        freeSpaceInternal(userId, blockMeta.getBlockSize(), newLocation);
-        moveBlockNoLock(blockId, newLocation);
-        blockMeta = mMetaManager.getBlockMeta(blockId);
-        BlockStoreLocation actualNewLocation = blockMeta.getBlockLocation();
-        synchronized (mBlockStoreEventListeners) {
-          for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-            listener.onMoveBlockByClient(userId, blockId, oldLocation, actualNewLocation);
-          }
+      BlockMeta blockMeta = mMetaManager.getBlockMeta(blockId);
+      BlockStoreLocation oldLocation = blockMeta.getBlockLocation();
+      boolean moved = false;
+      for (int attempt = 0; !moved && attempt < MAX_EVICTION_ATTEMPTS; attempt ++) {
+        try {
+          moveBlockNoLock(blockId, newLocation);
+          moved = true;
+        } catch (OutOfSpaceException ooe) {
+          LOG.debug("Not enough space in {} to move blockId {}, evicting", newLocation, blockId);
+          // The block stays locked, so the eviction does not choose it
+          freeSpaceInternal(userId, blockMeta.getBlockSize(), newLocation, true);
+        }
+      }
+      if (!moved) {
+        // Others keep taking the space freed for the block, evict with the store stopped
+        mEvictionLock.writeLock().lock();
+        try {
+          freeSpaceInternal(userId, blockMeta.getBlockSize(), newLocation, true);
+          moveBlockNoLock(blockId, newLocation);
+        } finally {
+          mEvictionLock.writeLock().unlock();
         }
-      } finally {
-        mLockManager.unlockBlock(lockId);
+      }
+      BlockStoreLocation actualNewLocation =
+          mMetaManager.getBlockMeta(blockId).getBlockLocation();
+      for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+        listener.onMoveBlockByClient(userId, blockId, oldLocation, actualNewLocation);
       }
     } finally {
-      // If we fail to lock, the block is no longer in tiered store
-      mEvictionLock.writeLock().unlock();
+      mLockManager.unlockBlock(lockId);
     }
   }
 
   @Override
   public void removeBlock(long userId, long blockId) throws InvalidStateException,
       NotFoundException, IOException {
-    mEvictionLock.readLock().lock();
+    long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
     try {
-      long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
-      try {
-        removeBlockNoLock(userId, blockId);
-        synchronized (mBlockStoreEventListeners) {
-          for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-            listener.onRemoveBlockByClient(userId, blockId);
-          }
-        }
-      } finally {
-        mLockManager.unlockBlock(lockId);
+      removeBlockNoLock(userId, blockId);
+      for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+        listener.onRemoveBlockByClient(userId, blockId);
       }
     } finally {
-      // If we fail to lock, the block is no longer in tiered store
-      mEvictionLock.readLock().unlock();
+      mLockManager.unlockBlock(lockId);
     }
   }
 
   @Override
   public void accessBlock(long userId, long blockId) throws NotFoundException {
-    synchronized (mBlockStoreEventListeners) {
-      for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-        listener.onAccessBlock(userId, blockId);
-      }
+    for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+      listener.onAccessBlock(userId, blockId);
     }
   }
 
@@ -277,12 +319,36 @@ public class TieredBlockStore implements BlockStore {
   public void freeSpace(long userId, long availableBytes, BlockStoreLocation location)
       throws NotFoundException, OutOfSpaceException, IOException, AlreadyExistsException,
       InvalidStateException {
+    for (int attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; attempt ++) {
+      if (freeSpaceInternal(userId, availableBytes, location, true)) {
+        return;
+      }
+    }
     mEvictionLock.writeLock().lock();
     try {
-      freeSpaceInternal(userId, availableBytes, location);
+      if (freeSpaceInternal(userId, availableBytes, location, true)) {
+        return;
+      }
     } finally {
       mEvictionLock.writeLock().unlock();
     }
+    throw new OutOfSpaceException("Failed to free " + availableBytes + " bytes in " + location
+        + ": blocks to evict are in use");
+  }
+
+  @Override
+  public boolean tryFreeSpace(long userId, long availableBytes, BlockStoreLocation location) {
+    try {
+      // Lower tiers which can not take the blocks leave them to eviction on demand
+      return freeSpaceInternal(userId, availableBytes, location, false);
+    } catch (OutOfSpaceException ooe) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean tryMoveBlock(long userId, long blockId, BlockStoreLocation newLocation) {
+    return tryMoveBlockByWorker(userId, blockId, newLocation);
   }
 
   @Override
@@ -319,9 +385,7 @@ public class TieredBlockStore implements BlockStore {
     mLockManager.cleanupUser(userId);
 
     // Delete the temporary metadata for the user.
-    mEvictionLock.readLock().lock();
     mMetaManager.cleanupUserTempBlocks(userId, removedTempBlocks);
-    mEvictionLock.readLock().unlock();
   }
 
   @Override
@@ -336,9 +400,7 @@ public class TieredBlockStore implements BlockStore {
 
   @Override
   public void registerBlockStoreEventListener(BlockStoreEventListener listener) {
-    synchronized (mBlockStoreEventListeners) {
-      mBlockStoreEventListeners.add(listener);
-    }
+    mBlockStoreEventListeners.add(listener);
   }
 
   /**
@@ -369,7 +431,7 @@ public class TieredBlockStore implements BlockStore {
     return tempBlockMeta;
   }
 
-  // Abort a temp block. This method requires eviction lock in READ mode.
+  // Abort a temp block.
   private void abortBlockNoLock(long userId, long blockId) throws NotFoundException,
       AlreadyExistsException, InvalidStateException, IOException {
     TempBlockMeta tempBlockMeta = validateUserTempBlock(userId, blockId);
@@ -380,7 +442,7 @@ public class TieredBlockStore implements BlockStore {
     mMetaManager.abortTempBlockMeta(tempBlockMeta);
   }
 
-  // Commit a temp block. This method requires eviction lock in READ mode.
+  // Commit a temp block.
   private void commitBlockNoLock(long userId, long blockId, TempBlockMeta tempBlockMeta)
       throws AlreadyExistsException, InvalidStateException, NotFoundException, IOException,
       OutOfSpaceException {
@@ -391,10 +453,34 @@ public class TieredBlockStore implements BlockStore {
     mMetaManager.commitTempBlockMeta(tempBlockMeta);
   }
 
-  // Create a temp block meta. This method requires eviction lock in READ mode.
-  private TempBlockMeta createBlockMetaNoLock(long userId, long blockId,
-      BlockStoreLocation location, long initialBlockSize) throws AlreadyExistsException,
-      OutOfSpaceException, NotFoundException, IOException, InvalidStateException {
+  // Create a temp block meta without eviction, return null if no dir has enough space.
+  private TempBlockMeta tryCreateBlockMeta(long userId, long blockId,
+      BlockStoreLocation location, long initialBlockSize) throws AlreadyExistsException {
+    mEvictionLock.readLock().lock();
+    try {
+      return tryCreateBlockMetaNoLock(userId, blockId, location, initialBlockSize);
+    } finally {
+      mEvictionLock.readLock().unlock();
+    }
+  }
+
+  private TempBlockMeta tryCreateBlockMetaNoLock(long userId, long blockId,
+      BlockStoreLocation location, long initialBlockSize) throws AlreadyExistsException {
+    checkBlockAbsent(blockId);
+    TempBlockMeta tempBlock = allocateBlock(userId, blockId, initialBlockSize, location);
+    if (tempBlock == null) {
+      return null;
+    }
+    try {
+      mMetaManager.addTempBlockMeta(tempBlock);
+    } catch (OutOfSpaceException ooe) {
+      // Another operation took the space of the dir after allocation
+      return null;
+    }
+    return tempBlock;
+  }
+
+  private void checkBlockAbsent(long blockId) throws AlreadyExistsException {
     if (mMetaManager.hasTempBlockMeta(blockId)) {
       throw new AlreadyExistsException("Failed to create TempBlockMeta: blockId " + blockId
           + " exists");
@@ -403,79 +489,233 @@ public class TieredBlockStore implements BlockStore {
       throw new AlreadyExistsException("Failed to create TempBlockMeta: blockId " + blockId
           + " committed");
     }
-    TempBlockMeta tempBlock =
-        mAllocator.allocateBlockWithView(userId, blockId, initialBlockSize, location,
-            getUpdatedView());
-    if (tempBlock == null) {
-      // Failed to allocate a temp block, let Evictor kick in to ensure sufficient space available.
-      freeSpaceInternal(userId, initialBlockSize, location);
-      tempBlock =
-          mAllocator.allocateBlockWithView(userId, blockId, initialBlockSize, location,
-              getUpdatedView());
-      Preconditions.checkNotNull(tempBlock, "Cannot allocate block %s:", blockId);
-    }
-    // Add allocated temp block to metadata manager
-    mMetaManager.addTempBlockMeta(tempBlock);
-    return tempBlock;
   }
 
-  /** This method must be guarded by WRITE lock of mEvictionLock */
-  private void freeSpaceInternal(long userId, long availableBytes, BlockStoreLocation location)
-      throws OutOfSpaceException, IOException, NotFoundException, AlreadyExistsException,
-      InvalidStateException {
-    EvictionPlan plan = mEvictor.freeSpaceWithView(availableBytes, location, getUpdatedView());
+  // Allocators keep state across calls, so allocations of concurrent creations are serialized.
+  private TempBlockMeta allocateBlock(long userId, long blockId, long blockSize,
+      BlockStoreLocation location) {
+    synchronized (mAllocator) {
+      return mAllocator.allocateBlockWithView(userId, blockId, blockSize, location,
+          getUpdatedView());
+    }
+  }
+
+  /**
+   * Frees space in a location by carrying out a plan of the evictor. The plan is computed again
+   * once the dirs of the first plan are locked, and carried out only if it touches no other dir.
+   * Blocks which are in use, or moved or removed by others in the meantime, are skipped, so the
+   * space is not guaranteed to be available afterwards and callers retry their operations.
+   *
+   * @param allowRemoval whether blocks may be removed, or only moved to lower tiers
+   * @return true if all the blocks of the plan were evicted or moved, false otherwise
+   * @throws OutOfSpaceException if the evictor has no plan to free the space
+   */
+  private boolean freeSpaceInternal(long userId, long availableBytes,
+      BlockStoreLocation location, boolean allowRemoval) throws OutOfSpaceException {
+    mEvictionLock.readLock().lock();
+    try {
+      EvictionPlan plan = planEviction(availableBytes, location);
+      for (int attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; attempt ++) {
+        Set<Long> dirIds = getPlanDirIds(plan);
+        List<Lock> dirLocks = lockDirs(dirIds);
+        try {
+          // No other eviction changes the locked dirs, plan again for the space they have now
+          plan = planEviction(availableBytes, location);
+          if (dirIds.containsAll(getPlanDirIds(plan))) {
+            if (!allowRemoval && !plan.toEvict().isEmpty()) {
+              LOG.debug("Not freeing space in {}: {} blocks would be evicted", location,
+                  plan.toEvict().size());
+              return false;
+            }
+            return executePlan(userId, plan);
+          }
+        } finally {
+          for (int i = dirLocks.size() - 1; i >= 0; i --) {
+            dirLocks.get(i).unlock();
+          }
+        }
+        LOG.debug("Eviction plan for {} changed dirs, locking again", location);
+      }
+      return false;
+    } finally {
+      mEvictionLock.readLock().unlock();
+    }
+  }
+
+  private EvictionPlan planEviction(long availableBytes, BlockStoreLocation location)
+      throws OutOfSpaceException {
+    EvictionPlan plan;
+    synchronized (mEvictor) {
+      plan = mEvictor.freeSpaceWithView(availableBytes, location, getUpdatedView());
+    }
     // Absent plan means failed to evict enough space.
     if (null == plan) {
       throw new OutOfSpaceException("Failed to free space: no eviction plan by evictor");
     }
+    return plan;
+  }
+
+  /**
+   * Carries out an eviction plan. The eviction locks of the dirs it touches must be held. Blocks
+   * are removed first, then moved in the order of their destination tiers. A block is only locked
+   * if its lock is free, so that an eviction never waits for a user of a block while it holds
+   * dirs.
+   *
+   * @return true if all the blocks of the plan were evicted or moved, false otherwise
+   */
+  private boolean executePlan(long userId, EvictionPlan plan) {
+    boolean done = true;
     // 1. remove blocks to make room.
     for (long blockId : plan.toEvict()) {
-      long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
-      try {
-        removeBlockNoLock(userId, blockId);
-        synchronized (mBlockStoreEventListeners) {
-          for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-            listener.onRemoveBlockByWorker(userId, blockId);
+      done &= tryRemoveBlockByWorker(userId, blockId);
+    }
+    // 2. transfer blocks among tiers, in the order of their dest tiers.
+    for (Pair<Long, BlockStoreLocation> entry : sortByDestTier(plan.toMove())) {
+      done &= tryMoveBlockByWorker(userId, entry.getFirst(), entry.getSecond());
+    }
+    return done;
+  }
+
+  /**
+   * Gets the StorageDir ids of the dirs which an eviction plan removes blocks from, moves blocks
+   * from or moves blocks into, in ascending order.
+   */
+  private Set<Long> getPlanDirIds(EvictionPlan plan) {
+    Set<Long> dirIds = new TreeSet<Long>();
+    for (long blockId : plan.toEvict()) {
+      addBlockDirId(dirIds, blockId);
+    }
+    for (Pair<Long, BlockStoreLocation> entry : plan.toMove()) {
+      addBlockDirId(dirIds, entry.getFirst());
+      for (StorageTier tier : mMetaManager.getTiers()) {
+        for (StorageDir dir : tier.getStorageDirs()) {
+          if (dir.toBlockStoreLocation().belongTo(entry.getSecond())) {
+            dirIds.add(dir.getStorageDirId());
           }
         }
-      } finally {
-        mLockManager.unlockBlock(lockId);
       }
     }
-    // 2. transfer blocks among tiers.
-    // 2.1. group blocks move plan by the destination tier.
+    return dirIds;
+  }
+
+  /**
+   * Acquires the eviction locks of dirs in the order of their ids.
+   *
+   * @param dirIds the StorageDir ids, in ascending order
+   * @return the acquired locks, in the order they were acquired
+   */
+  private List<Lock> lockDirs(Set<Long> dirIds) {
+    List<Lock> locks = new ArrayList<Lock>(dirIds.size());
+    for (long dirId : dirIds) {
+      Lock lock = mDirEvictionLocks.get(dirId);
+      lock.lock();
+      locks.add(lock);
+    }
+    return locks;
+  }
+
+  private void addBlockDirId(Set<Long> dirIds, long blockId) {
+    try {
+      dirIds.add(mMetaManager.getBlockMeta(blockId).getParentDir().getStorageDirId());
+    } catch (NotFoundException nfe) {
+      // The block is gone, it is skipped when the plan is carried out
+    }
+  }
+
+  /**
+   * Orders the moves of an eviction plan by their destination tiers, bottom tier first and top
+   * tier last, so that blocks moved down make room before blocks are moved into their tier.
+   *
+   * @param toMove the moves of an eviction plan
+   * @return the moves in the order to carry them out
+   */
+  private List<Pair<Long, BlockStoreLocation>> sortByDestTier(
+      List<Pair<Long, BlockStoreLocation>> toMove) {
+    // group blocks move plan by the destination tier.
     Map<Integer, Set<Pair<Long, BlockStoreLocation>>> blocksGroupedByDestTier =
         new HashMap<Integer, Set<Pair<Long, BlockStoreLocation>>>();
-    for (Pair<Long, BlockStoreLocation> entry : plan.toMove()) {
+    for (Pair<Long, BlockStoreLocation> entry : toMove) {
       int alias = entry.getSecond().tierAlias();
       if (!blocksGroupedByDestTier.containsKey(alias)) {
         blocksGroupedByDestTier.put(alias, new HashSet<Pair<Long, BlockStoreLocation>>());
       }
       blocksGroupedByDestTier.get(alias).add(entry);
     }
-    // 2.2. sort tiers according in reversed order: bottom tier first and top tier last.
+    // sort tiers according in reversed order: bottom tier first and top tier last.
     List<Integer> destTierAlias = new ArrayList<Integer>(blocksGroupedByDestTier.keySet());
     Collections.sort(destTierAlias, Collections.reverseOrder());
-    // 2.3. move blocks in the order of their dest tiers.
+    List<Pair<Long, BlockStoreLocation>> sorted =
+        new ArrayList<Pair<Long, BlockStoreLocation>>(toMove.size());
     for (int alias : destTierAlias) {
-      Set<Pair<Long, BlockStoreLocation>> toMove = blocksGroupedByDestTier.get(alias);
-      for (Pair<Long, BlockStoreLocation> entry : toMove) {
-        long blockId = entry.getFirst();
-        BlockStoreLocation newLocation = entry.getSecond();
-        BlockMeta blockMeta = mMetaManager.getBlockMeta(blockId);
-        BlockStoreLocation oldLocation = blockMeta.getBlockLocation();
-        long lockId = mLockManager.lockBlock(userId, blockId, BlockLockType.WRITE);
-        try {
-          moveBlockNoLock(blockId, newLocation);
-          synchronized (mBlockStoreEventListeners) {
-            for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
-              listener.onMoveBlockByWorker(userId, blockId, oldLocation, newLocation);
-            }
-          }
-        } finally {
-          mLockManager.unlockBlock(lockId);
+      sorted.addAll(blocksGroupedByDestTier.get(alias));
+    }
+    return sorted;
+  }
+
+  /**
+   * Moves a block without evicting. The block is not moved if it is in use or if its new location
+   * has no room for it.
+   *
+   * @return true if the block is moved, false otherwise
+   */
+  private boolean tryMoveBlockByWorker(long userId, long blockId, BlockStoreLocation newLocation) {
+    try {
+      long lockId = mLockManager.tryLockBlock(userId, blockId, BlockLockType.WRITE);
+      if (lockId == -1) {
+        LOG.debug("Not moving blockId {} to {}: block in use", blockId, newLocation);
+        return false;
+      }
+      try {
+        BlockStoreLocation oldLocation = mMetaManager.getBlockMeta(blockId).getBlockLocation();
+        moveBlockNoLock(blockId, newLocation);
+        BlockStoreLocation actualNewLocation =
+            mMetaManager.getBlockMeta(blockId).getBlockLocation();
+        for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+          listener.onMoveBlockByWorker(userId, blockId, oldLocation, actualNewLocation);
         }
+      } finally {
+        mLockManager.unlockBlock(lockId);
       }
+      return true;
+    } catch (OutOfSpaceException ooe) {
+      LOG.debug("Not enough space in {} to move blockId {}", newLocation, blockId);
+      return false;
+    } catch (NotFoundException nfe) {
+      LOG.debug("Not moving blockId {} to {}: block not found", blockId, newLocation);
+      return false;
+    } catch (Exception e) {
+      LOG.warn("Failed to move block " + blockId + " to " + newLocation, e);
+      return false;
+    }
+  }
+
+  /**
+   * Removes a block to free space. The block is not removed if it is in use.
+   *
+   * @return true if the block is removed, false otherwise
+   */
+  private boolean tryRemoveBlockByWorker(long userId, long blockId) {
+    try {
+      long lockId = mLockManager.tryLockBlock(userId, blockId, BlockLockType.WRITE);
+      if (lockId == -1) {
+        LOG.debug("Not evicting blockId {}: block in use", blockId);
+        return false;
+      }
+      try {
+        removeBlockNoLock(userId, blockId);
+        for (BlockStoreEventListener listener : mBlockStoreEventListeners) {
+          listener.onRemoveBlockByWorker(userId, blockId);
+        }
+      } finally {
+        mLockManager.unlockBlock(lockId);
+      }
+      return true;
+    } catch (NotFoundException nfe) {
+      LOG.debug("Not evicting blockId {}: block not found", blockId);
+      return false;
+    } catch (Exception e) {
+      LOG.warn("Failed to evict block " + blockId, e);
+      return false;
     }
   }
 
@@ -487,13 +727,18 @@ public class TieredBlockStore implements BlockStore {
    */
   private BlockMetadataManagerView getUpdatedView() {
     // TODO: update the view object instead of creating new one every time
+    Set<Integer> pinnedInodes;
     synchronized (mPinnedInodes) {
-      return new BlockMetadataManagerView(mMetaManager, mPinnedInodes,
-          mLockManager.getLockedBlocks());
+      pinnedInodes = new HashSet<Integer>(mPinnedInodes);
     }
+    synchronized (mUnpersistedInodes) {
+      pinnedInodes.addAll(mUnpersistedInodes);
+    }
+    return new BlockMetadataManagerView(mMetaManager, pinnedInodes,
+        mLockManager.getLockedBlocks());
   }
 
-  /** Move a block. This method requires block lock in WRITE mode and eviction lock in READ mode */
+  /** Move a block. This method requires block lock in WRITE mode */
   private void moveBlockNoLock(long blockId, BlockStoreLocation newLocation)
       throws NotFoundException, AlreadyExistsException, InvalidStateException, OutOfSpaceException,
       IOException {
@@ -501,16 +746,24 @@ public class TieredBlockStore implements BlockStore {
       throw new InvalidStateException("Failed to move block " + blockId + ": block is uncommited");
     }
     BlockMeta blockMeta = mMetaManager.getBlockMeta(blockId);
-    // NOTE: since WRITE Eviction lock is acquired, we move metadata first before moving raw data.
-    mMetaManager.moveBlockMeta(blockMeta, newLocation);
+    // NOTE: since WRITE block lock is acquired, we move metadata first before moving raw data. The
+    // metadata is left unchanged if the new location has no space.
+    mEvictionLock.readLock().lock();
+    try {
+      mMetaManager.moveBlockMeta(blockMeta, newLocation);
+    } finally {
+      mEvictionLock.readLock().unlock();
+    }
     BlockMeta newBlockMeta = mMetaManager.getBlockMeta(blockId);
     String srcFilePath = blockMeta.getPath();
     String dstFilePath = newBlockMeta.getPath();
     FileUtils.move(new File(srcFilePath), new File(dstFilePath));
+    blockMeta.getParentDir().addTransferredBytes(blockMeta.getBlockSize());
+    newBlockMeta.getParentDir().addTransferredBytes(newBlockMeta.getBlockSize());
   }
 
   /**
-   * Remove a block. This method requires block lock in WRITE mode and eviction lock in READ mode.
+   * Remove a block. This method requires block lock in WRITE mode.
    */
   private void removeBlockNoLock(long userId, long blockId) throws InvalidStateException,
       NotFoundException, IOException {
@@ -539,4 +792,18 @@ public class TieredBlockStore implements BlockStore {
       mPinnedInodes.addAll(Preconditions.checkNotNull(inodes));
     }
   }
+
+  @Override
+  public void addUnpersistedInode(int inodeId) {
+    synchronized (mUnpersistedInodes) {
+      mUnpersistedInodes.add(inodeId);
+    }
+  }
+
+  @Override
+  public void removeUnpersistedInode(int inodeId) {
+    synchronized (mUnpersistedInodes) {
+      mUnpersistedInodes.remove(inodeId);
+    }
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Records block accesses of concurrent threads without a shared lock, so that an evictor does not
+ * make every reader contend on its recency structure. Each thread appends accesses to one of
+ * several ring buffers picked by its thread id, and the evictor applies the buffered accesses in
+ * batches by {@link #drainTo(Consumer)} while holding its own lock.
+ * <p>
+ * Accesses are dropped when a ring buffer is full or another thread is appending to the same slot,
+ * and buffers are drained one after another, so the order of accesses seen by the evictor is only
+ * approximate. Accesses of the same thread are seen in order. This is acceptable for recency and
+ * frequency estimates, and keeps recording an access to a few atomic operations.
+ */
+final class BlockAccessBuffer {
+  /** Receives the accesses drained from the buffers */
+  interface Consumer {
+    void onAccess(long blockId);
+  }
+
+  private static final int BUFFER_SIZE = 128;
+  private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+  private static final int MAX_STRIPES = 64;
+
+  private final Stripe[] mStripes;
+  private final int mStripeMask;
+
+  private static final class Stripe {
+    private final AtomicReferenceArray<Long> mBlockIds =
+        new AtomicReferenceArray<Long>(BUFFER_SIZE);
+    private final AtomicLong mWriteCount = new AtomicLong();
+    /** Written only by the draining thread, which holds the lock of the evictor */
+    private volatile long mReadCount = 0;
+  }
+
+  /**
+   * Creates a buffer with a number of stripes fitting the number of processors.
+   */
+  BlockAccessBuffer() {
+    this(4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param stripes the minimum number of ring buffers, rounded up to a power of two and at most 64
+   */
+  BlockAccessBuffer(int stripes) {
+    Preconditions.checkArgument(stripes > 0, "stripes must be positive");
+    int size = 1;
+    while (size < stripes && size < MAX_STRIPES) {
+      size <<= 1;
+    }
+    mStripes = new Stripe[size];
+    for (int i = 0; i < size; i ++) {
+      mStripes[i] = new Stripe();
+    }
+    mStripeMask = size - 1;
+  }
+
+  /**
+   * Records an access of the calling thread.
+   *
+   * @param blockId the id of the accessed block
+   * @return true if the buffer of the calling thread is full and should be drained
+   */
+  boolean record(long blockId) {
+    long threadId = Thread.currentThread().getId();
+    Stripe stripe = mStripes[(int) ((threadId * 0x9E3779B97F4A7C15L) >>> 40) & mStripeMask];
+    long readCount = stripe.mReadCount;
+    long writeCount = stripe.mWriteCount.get();
+    if (writeCount - readCount >= BUFFER_SIZE) {
+      return true;
+    }
+    if (stripe.mWriteCount.compareAndSet(writeCount, writeCount + 1)) {
+      stripe.mBlockIds.lazySet((int) (writeCount & BUFFER_MASK), blockId);
+      return writeCount + 1 - readCount >= BUFFER_SIZE;
+    }
+    return false;
+  }
+
+  /**
+   * Hands all the buffered accesses to the consumer. Must be called by one thread at a time.
+   *
+   * @param consumer the consumer of the accesses
+   */
+  void drainTo(Consumer consumer) {
+    for (Stripe stripe : mStripes) {
+      long readCount = stripe.mReadCount;
+      long writeCount = stripe.mWriteCount.get();
+      for (; readCount < writeCount; readCount ++) {
+        int index = (int) (readCount & BUFFER_MASK);
+        Long blockId = stripe.mBlockIds.get(index);
+        if (blockId == null) {
+          // The slot is taken but its access is not published yet, drain it next time
+          break;
+        }
+        stripe.mBlockIds.lazySet(index, null);
+        consumer.onAccess(blockId);
+      }
+      stripe.mReadCount = readCount;
+    }
+  }
+}
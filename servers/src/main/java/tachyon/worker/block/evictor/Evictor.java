@@ -30,8 +30,11 @@ public interface Evictor {
 
   class Factory {
     /**
+     * Creates the {@link Evictor} configured by {@link Constants#WORKER_EVICT_STRATEGY_CLASS},
+     * which must have a constructor taking a {@link BlockMetadataManagerView} and a
+     * {@link TachyonConf}.
      *
-     * @param conf TachyonConf to determine the evictor type
+     * @param conf TachyonConf to determine the evictor type, passed to the evictor
      * @param view BlockMetadataManagerView to pass to Evictor
      * @return the generated Evictor
      */
@@ -39,8 +42,8 @@ public interface Evictor {
       try {
         return CommonUtils.createNewClassInstance(
             conf.getClass(Constants.WORKER_EVICT_STRATEGY_CLASS, LRUEvictor.class),
-            new Class[]{BlockMetadataManagerView.class},
-            new Object[]{view});
+            new Class[]{BlockMetadataManagerView.class, TachyonConf.class},
+            new Object[]{view, conf});
       } catch (Exception e) {
         throw Throwables.propagate(e);
       }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tachyon.Constants;
+import tachyon.Pair;
+import tachyon.exception.NotFoundException;
+import tachyon.worker.block.BlockMetadataManagerView;
+import tachyon.worker.block.BlockStoreEventListenerBase;
+import tachyon.worker.block.BlockStoreLocation;
+import tachyon.worker.block.meta.BlockMeta;
+import tachyon.worker.block.meta.StorageDirView;
+import tachyon.worker.block.meta.StorageTierView;
+
+/**
+ * Provides the cascading eviction shared by evictors that rank blocks, such as {@link LRUEvictor}
+ * and {@link LRFUEvictor}. Subclasses only decide the order in which blocks are considered for
+ * eviction, by {@link #getBlockIterator()}.
+ */
+public abstract class EvictorBase extends BlockStoreEventListenerBase implements Evictor {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+
+  protected BlockMetadataManagerView mManagerView;
+
+  public EvictorBase(BlockMetadataManagerView view) {
+    mManagerView = view;
+  }
+
+  /**
+   * @return a StorageDirView in the range of location that already has availableBytes larger than
+   *         bytesToBeAvailable, the least loaded one of its tier if several, otherwise null
+   */
+  private StorageDirView selectDirWithRequestedSpace(long bytesToBeAvailable,
+      BlockStoreLocation location) {
+    if (location.equals(BlockStoreLocation.anyTier())) {
+      for (StorageTierView tierView : mManagerView.getTierViews()) {
+        StorageDirView dirView = selectLeastLoadedDir(bytesToBeAvailable, tierView);
+        if (dirView != null) {
+          return dirView;
+        }
+      }
+      return null;
+    }
+
+    int tierAlias = location.tierAlias();
+    StorageTierView tierView = mManagerView.getTierView(tierAlias);
+    if (location.equals(BlockStoreLocation.anyDirInTier(tierAlias))) {
+      return selectLeastLoadedDir(bytesToBeAvailable, tierView);
+    }
+
+    StorageDirView dirView = tierView.getDirView(location.dir());
+    return (dirView.getAvailableBytes() >= bytesToBeAvailable) ? dirView : null;
+  }
+
+  /**
+   * Selects the dir of a tier to move blocks to, so that blocks moved by evictions spread over the
+   * devices of the tier. Of dirs equally loaded, the first one is selected.
+   *
+   * @return the least loaded StorageDirView of the tier that already has availableBytes larger
+   *         than bytesToBeAvailable, null if none
+   */
+  private StorageDirView selectLeastLoadedDir(long bytesToBeAvailable, StorageTierView tierView) {
+    StorageDirView candidateDirView = null;
+    for (StorageDirView dirView : tierView.getDirViews()) {
+      if (dirView.getAvailableBytes() >= bytesToBeAvailable && (candidateDirView == null
+          || StorageDirView.LOAD_COMPARATOR.compare(dirView, candidateDirView) < 0)) {
+        candidateDirView = dirView;
+      }
+    }
+    return candidateDirView;
+  }
+
+  /**
+   * A recursive implementation of cascading eviction.
+   *
+   * It will try to free space in next tier view to transfer blocks there, if the next tier view
+   * does not have enough free space to hold the blocks, the next next tier view will be tried and
+   * so on until the bottom tier is reached, if blocks can not even be transferred to the bottom
+   * tier, they will be evicted, otherwise, only blocks to be freed in the bottom tier will be
+   * evicted.
+   *
+   * this method is only used in {@link #freeSpaceWithView}
+   *
+   * @param bytesToBeAvailable bytes to be available after eviction
+   * @param location target location to evict blocks from
+   * @param plan the plan to be recursively updated, is empty when first called in
+   *        {@link #freeSpaceWithView}
+   * @return the first StorageDirView in the range of location to evict/move bytes from, or null if
+   *         there is no plan
+   */
+  protected StorageDirView cascadingEvict(long bytesToBeAvailable, BlockStoreLocation location,
+      EvictionPlan plan) {
+
+    // 1. if bytesToBeAvailable can already be satisfied without eviction, return emtpy plan
+    StorageDirView candidateDirView = selectDirWithRequestedSpace(bytesToBeAvailable, location);
+    if (candidateDirView != null) {
+      return candidateDirView;
+    }
+
+    // 2. iterate over blocks in order until we find a dir view that is in the range of
+    // location and can satisfy bytesToBeAvailable after evicting its blocks iterated so far
+    EvictionDirCandidates dirCandidates = new EvictionDirCandidates();
+    Iterator<Long> it = getBlockIterator();
+    while (it.hasNext() && dirCandidates.candidateSize() < bytesToBeAvailable) {
+      long blockId = it.next();
+      try {
+        BlockMeta block = mManagerView.getBlockMeta(blockId);
+        if (null != block) { // might not present in this view
+          if (block.getBlockLocation().belongTo(location)) {
+            int tierAlias = block.getParentDir().getParentTier().getTierAlias();
+            int dirIndex = block.getParentDir().getDirIndex();
+            dirCandidates.add(mManagerView.getTierView(tierAlias).getDirView(dirIndex), blockId,
+                block.getBlockSize());
+          }
+        }
+      } catch (NotFoundException nfe) {
+        LOG.warn("Remove block {} from evictor cache because {}", blockId, nfe);
+        it.remove();
+      }
+    }
+
+    // 3. have no eviction plan
+    if (dirCandidates.candidateSize() < bytesToBeAvailable) {
+      return null;
+    }
+
+    // 4. cascading eviction: try to free space in next tier to move candidate blocks there, evict
+    // blocks only when it can not be moved to next tiers
+    candidateDirView = dirCandidates.candidateDir();
+    List<Long> candidateBlocks = dirCandidates.candidateBlocks();
+    List<StorageTierView> tierViewsBelow =
+        mManagerView.getTierViewsBelow(candidateDirView.getParentTierView().getTierViewAlias());
+    // find a dir in below tiers to transfer blocks there, from top tier to bottom tier
+    StorageDirView candidateNextDir = null;
+    for (StorageTierView tierView : tierViewsBelow) {
+      candidateNextDir =
+          cascadingEvict(dirCandidates.candidateSize(),
+              BlockStoreLocation.anyDirInTier(tierView.getTierViewAlias()), plan);
+      if (candidateNextDir != null) {
+        break;
+      }
+    }
+    if (candidateNextDir == null) {
+      // nowhere to transfer blocks to, so evict them
+      plan.toEvict().addAll(candidateBlocks);
+    } else {
+      BlockStoreLocation dest = candidateNextDir.toBlockStoreLocation();
+      for (long block : candidateBlocks) {
+        plan.toMove().add(new Pair<Long, BlockStoreLocation>(block, dest));
+      }
+    }
+    return candidateDirView;
+  }
+
+  @Override
+  public EvictionPlan freeSpaceWithView(long bytesToBeAvailable, BlockStoreLocation location,
+      BlockMetadataManagerView view) {
+    mManagerView = view;
+
+    List<Pair<Long, BlockStoreLocation>> toMove = new ArrayList<Pair<Long, BlockStoreLocation>>();
+    List<Long> toEvict = new ArrayList<Long>();
+    EvictionPlan plan = new EvictionPlan(toMove, toEvict);
+    StorageDirView candidateDir = cascadingEvict(bytesToBeAvailable, location, plan);
+
+    if (candidateDir == null) {
+      return null;
+    }
+
+    return plan;
+  }
+
+  /**
+   * Returns an iterator over the blocks known to the evictor, the block to evict first comes
+   * first. Removing a block through the iterator makes the evictor forget the block, which is done
+   * for blocks no longer in the block store.
+   *
+   * @return an iterator over the ids of the blocks in eviction order
+   */
+  protected abstract Iterator<Long> getBlockIterator();
+}
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import tachyon.Constants;
 import tachyon.Pair;
+import tachyon.conf.TachyonConf;
 import tachyon.worker.block.BlockMetadataManagerView;
 import tachyon.worker.block.BlockStoreLocation;
 import tachyon.worker.block.meta.BlockMeta;
@@ -39,9 +40,9 @@ public class GreedyEvictor implements Evictor {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
 
   /**
-   * GreedyEvictor does not need BlockMetadataManagerView
+   * GreedyEvictor does not need BlockMetadataManagerView nor TachyonConf
    */
-  public GreedyEvictor(BlockMetadataManagerView view) {}
+  public GreedyEvictor(BlockMetadataManagerView view, TachyonConf tachyonConf) {}
 
   @Override
   public EvictionPlan freeSpaceWithView(long availableBytes, BlockStoreLocation location,
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Preconditions;
+
+import tachyon.Constants;
+import tachyon.conf.TachyonConf;
+import tachyon.worker.block.BlockMetadataManagerView;
+import tachyon.worker.block.BlockStoreLocation;
+import tachyon.worker.block.meta.BlockMeta;
+import tachyon.worker.block.meta.StorageDirView;
+import tachyon.worker.block.meta.StorageTierView;
+
+/**
+ * Evicts the blocks with the least Combined Recency and Frequency (CRF), as in the LRFU policy.
+ * Every access of a block adds a weight of 1 to its CRF, and weights decay with the number of
+ * accesses to any block since, by F(x) = attenuationFactor ^ (-stepFactor * x). With a step factor
+ * close to 0, blocks accessed often keep a high CRF through a scan of blocks accessed once, which
+ * are evicted first; with a step factor of 1, LRFU behaves like LRU.
+ * <p>
+ * Since all CRFs decay by the same factor as time passes, their order does not change between
+ * accesses. Blocks are kept sorted by the logarithm of their CRF brought back to time 0, which is
+ * only updated for the accessed block, so an eviction walks the blocks in order without computing
+ * or sorting any CRF.
+ * <p>
+ * As in {@link LRUEvictor}, accesses are buffered in a {@link BlockAccessBuffer} and applied in
+ * batches, so readers do not contend on the CRF table.
+ */
+public class LRFUEvictor extends EvictorBase {
+  private static final double DEFAULT_STEP_FACTOR = 0.001;
+  private static final double DEFAULT_ATTENUATION_FACTOR = 2.0;
+  /** Orders blocks by CRF, then the least recently used first, then by block id */
+  private static final Comparator<BlockCRF> CRF_COMPARATOR = new Comparator<BlockCRF>() {
+    @Override
+    public int compare(BlockCRF crf1, BlockCRF crf2) {
+      int result = Double.compare(crf1.mOrderKey, crf2.mOrderKey);
+      if (result != 0) {
+        return result;
+      }
+      if (crf1.mLastUpdateTime != crf2.mLastUpdateTime) {
+        return crf1.mLastUpdateTime < crf2.mLastUpdateTime ? -1 : 1;
+      }
+      return crf1.mBlockId < crf2.mBlockId ? -1 : (crf1.mBlockId == crf2.mBlockId ? 0 : 1);
+    }
+  };
+
+  private final double mStepFactor;
+  private final double mAttenuationFactor;
+  /** The natural logarithm of the decay of a CRF for each access, stepFactor * ln(attenuation) */
+  private final double mLogDecayPerAccess;
+  /** Map from block id to its CRF as of its last update, guarded by {@link #mCRFLock} */
+  private final Map<Long, BlockCRF> mBlockIdToCRF = new HashMap<Long, BlockCRF>();
+  /** The CRFs of {@link #mBlockIdToCRF} in eviction order, guarded by {@link #mCRFLock} */
+  private final TreeSet<BlockCRF> mSortedCRFs = new TreeSet<BlockCRF>(CRF_COMPARATOR);
+  /** The number of accesses and commits seen so far, guarded by {@link #mCRFLock} */
+  private long mLogicalTime = 0;
+  private final Lock mCRFLock = new ReentrantLock();
+  private final BlockAccessBuffer mAccessBuffer = new BlockAccessBuffer();
+  /** Updates the CRF of accessed blocks, without adding blocks it does not have */
+  private final BlockAccessBuffer.Consumer mAccessConsumer = new BlockAccessBuffer.Consumer() {
+    @Override
+    public void onAccess(long blockId) {
+      BlockCRF crf = mBlockIdToCRF.get(blockId);
+      if (crf != null) {
+        mLogicalTime ++;
+        accessBlockCRF(crf);
+      }
+    }
+  };
+
+  /** The CRF of a block as of its last update, which must not change while in the sorted set */
+  private final class BlockCRF {
+    private final long mBlockId;
+    private double mValue;
+    private long mLastUpdateTime;
+    /** The natural logarithm of the CRF at time 0, which orders CRFs at any common time */
+    private double mOrderKey;
+
+    private BlockCRF(long blockId, long time) {
+      mBlockId = blockId;
+      mValue = 1.0;
+      mLastUpdateTime = time;
+      mOrderKey = orderKey();
+    }
+
+    private void access(long time) {
+      mValue = 1.0 + mValue * weight(time - mLastUpdateTime);
+      mLastUpdateTime = time;
+      mOrderKey = orderKey();
+    }
+
+    private double orderKey() {
+      return Math.log(mValue) + mLogDecayPerAccess * mLastUpdateTime;
+    }
+  }
+
+  /**
+   * @param view the initial view of the block store
+   * @param tachyonConf the configuration of the step and attenuation factors
+   */
+  public LRFUEvictor(BlockMetadataManagerView view, TachyonConf tachyonConf) {
+    super(view);
+    mStepFactor = tachyonConf.getDouble(Constants.WORKER_EVICT_STRATEGY_LRFU_STEP_FACTOR,
+        DEFAULT_STEP_FACTOR);
+    mAttenuationFactor =
+        tachyonConf.getDouble(Constants.WORKER_EVICT_STRATEGY_LRFU_ATTENUATION_FACTOR,
+            DEFAULT_ATTENUATION_FACTOR);
+    Preconditions.checkArgument(mStepFactor >= 0.0 && mStepFactor <= 1.0,
+        "Step factor should be in the range of [0.0, 1.0]");
+    Preconditions.checkArgument(mAttenuationFactor >= 2.0,
+        "Attenuation factor should be no less than 2.0");
+    mLogDecayPerAccess = mStepFactor * Math.log(mAttenuationFactor);
+
+    // preload existing blocks loaded by StorageDir to Evictor
+    for (StorageTierView tierView : mManagerView.getTierViews()) {
+      for (StorageDirView dirView : tierView.getDirViews()) {
+        for (BlockMeta blockMeta : dirView.getEvictableBlocks()) { // all blocks with initial view
+          addBlockCRF(new BlockCRF(blockMeta.getBlockId(), mLogicalTime));
+        }
+      }
+    }
+  }
+
+  /**
+   * @param interval the number of accesses since an access
+   * @return the weight of the access
+   */
+  private double weight(long interval) {
+    return Math.exp(-mLogDecayPerAccess * interval);
+  }
+
+  private void addBlockCRF(BlockCRF crf) {
+    mBlockIdToCRF.put(crf.mBlockId, crf);
+    mSortedCRFs.add(crf);
+  }
+
+  /** Updates the CRF for an access at the current logical time, keeping its place in order */
+  private void accessBlockCRF(BlockCRF crf) {
+    mSortedCRFs.remove(crf);
+    crf.access(mLogicalTime);
+    mSortedCRFs.add(crf);
+  }
+
+  @Override
+  public EvictionPlan freeSpaceWithView(long bytesToBeAvailable, BlockStoreLocation location,
+      BlockMetadataManagerView view) {
+    mCRFLock.lock();
+    try {
+      mAccessBuffer.drainTo(mAccessConsumer);
+      return super.freeSpaceWithView(bytesToBeAvailable, location, view);
+    } finally {
+      mCRFLock.unlock();
+    }
+  }
+
+  @Override
+  protected Iterator<Long> getBlockIterator() {
+    final Iterator<BlockCRF> it = mSortedCRFs.iterator();
+    return new Iterator<Long>() {
+      private long mBlockId;
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Long next() {
+        mBlockId = it.next().mBlockId;
+        return mBlockId;
+      }
+
+      @Override
+      public void remove() {
+        it.remove();
+        mBlockIdToCRF.remove(mBlockId);
+      }
+    };
+  }
+
+  @Override
+  public void onAccessBlock(long userId, long blockId) {
+    // Only drain when the buffer is full and no other thread is draining or evicting
+    if (mAccessBuffer.record(blockId) && mCRFLock.tryLock()) {
+      try {
+        mAccessBuffer.drainTo(mAccessConsumer);
+      } finally {
+        mCRFLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public void onCommitBlock(long userId, long blockId, BlockStoreLocation location) {
+    // Since the temp block has been committed, update Evictor about the new added blocks
+    mCRFLock.lock();
+    try {
+      mLogicalTime ++;
+      BlockCRF crf = mBlockIdToCRF.get(blockId);
+      if (crf == null) {
+        addBlockCRF(new BlockCRF(blockId, mLogicalTime));
+      } else {
+        accessBlockCRF(crf);
+      }
+    } finally {
+      mCRFLock.unlock();
+    }
+  }
+
+  @Override
+  public void onRemoveBlockByClient(long userId, long blockId) {
+    removeBlockCRF(blockId);
+  }
+
+  @Override
+  public void onRemoveBlockByWorker(long userId, long blockId) {
+    removeBlockCRF(blockId);
+  }
+
+  private void removeBlockCRF(long blockId) {
+    mCRFLock.lock();
+    try {
+      BlockCRF crf = mBlockIdToCRF.remove(blockId);
+      if (crf != null) {
+        mSortedCRFs.remove(crf);
+      }
+    } finally {
+      mCRFLock.unlock();
+    }
+  }
+}
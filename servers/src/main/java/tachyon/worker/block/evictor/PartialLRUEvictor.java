@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import com.google.common.base.Preconditions;
 
@@ -28,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import tachyon.Constants;
 import tachyon.Pair;
+import tachyon.conf.TachyonConf;
 import tachyon.exception.NotFoundException;
 import tachyon.worker.block.BlockMetadataManagerView;
 import tachyon.worker.block.BlockStoreLocation;
@@ -44,12 +44,10 @@ import tachyon.worker.block.meta.StorageTierView;
  * with maximum free space first and evict old blocks in the selected StorageDir by LRU
  */
 public class PartialLRUEvictor extends LRUEvictor {
-  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE); 
-  private BlockMetadataManagerView mManagerView;
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
 
-  public PartialLRUEvictor(BlockMetadataManagerView view) {
-    super(view);
-    mManagerView = view;
+  public PartialLRUEvictor(BlockMetadataManagerView view, TachyonConf tachyonConf) {
+    super(view, tachyonConf);
   }
 
   @Override
@@ -67,9 +65,9 @@ public class PartialLRUEvictor extends LRUEvictor {
     // bytesToBeAvailable after evicting its blocks iterated so far
     List<Long> candidateBlocks = new ArrayList<Long>();
     long freedBytes = 0;
-    Iterator<Map.Entry<Long, Boolean>> it = mLRUCache.entrySet().iterator();
+    Iterator<Long> it = getBlockIterator();
     while (it.hasNext() && candidateDirView.getAvailableBytes() + freedBytes < bytesToBeAvailable) {
-      long blockId = it.next().getKey();
+      long blockId = it.next();
       try {
         BlockMeta block = mManagerView.getBlockMeta(blockId);
         if (null != block) { // might not present in this view
@@ -29,6 +29,7 @@ import com.google.common.io.Closer;
 
 import tachyon.Constants;
 import tachyon.worker.block.meta.BlockMeta;
+import tachyon.worker.block.meta.StorageDir;
 
 /**
  * This class provides read access to a block data file locally stored in managed storage.
@@ -42,6 +43,8 @@ public class LocalFileBlockReader implements BlockReader {
   private final FileChannel mLocalFileChannel;
   private final Closer mCloser = Closer.create();
   private final long mFileSize;
+  /** The dir of the block, whose throughput counts the bytes read, or null if unknown */
+  private final StorageDir mDir;
 
   /**
    * Construct a Block reader given the metadata of this block
@@ -50,7 +53,7 @@ public class LocalFileBlockReader implements BlockReader {
    * @throws IOException if its file can not be open with "r" mode
    */
   public LocalFileBlockReader(BlockMeta blockMeta) throws IOException {
-    this(Preconditions.checkNotNull(blockMeta).getPath());
+    this(Preconditions.checkNotNull(blockMeta).getPath(), blockMeta.getParentDir());
   }
 
   /**
@@ -60,7 +63,12 @@ public class LocalFileBlockReader implements BlockReader {
    * @throws IOException if its file can not be open with "r" mode
    */
   public LocalFileBlockReader(String path) throws IOException {
+    this(path, null);
+  }
+
+  private LocalFileBlockReader(String path, StorageDir dir) throws IOException {
     mFilePath = Preconditions.checkNotNull(path);
+    mDir = dir;
     mLocalFile = mCloser.register(new RandomAccessFile(mFilePath, "r"));
     mLocalFileChannel = mCloser.register(mLocalFile.getChannel());
     mFileSize = mLocalFile.length();
@@ -84,7 +92,12 @@ public class LocalFileBlockReader implements BlockReader {
     if (length == -1L) {
       length = mFileSize - offset;
     }
-    return mLocalFileChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    ByteBuffer buf = mLocalFileChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    if (mDir != null) {
+      // Bytes transferred from the channel returned by getChannel() are not counted
+      mDir.addTransferredBytes(length);
+    }
+    return buf;
   }
 
   @Override
@@ -29,6 +29,7 @@ import com.google.common.io.Closer;
 
 import tachyon.Constants;
 import tachyon.util.io.BufferUtils;
+import tachyon.worker.block.meta.StorageDir;
 import tachyon.worker.block.meta.TempBlockMeta;
 
 /**
@@ -42,6 +43,8 @@ public class LocalFileBlockWriter implements BlockWriter {
   private final RandomAccessFile mLocalFile;
   private final FileChannel mLocalFileChannel;
   private final Closer mCloser = Closer.create();
+  /** The dir of the temp block, whose throughput counts the bytes written, or null if unknown */
+  private final StorageDir mDir;
 
   /**
    * Construct a Block writer given the metadata of a temp block
@@ -50,7 +53,7 @@ public class LocalFileBlockWriter implements BlockWriter {
    * @throws IOException if its file can not be open with "rw" mode
    */
   public LocalFileBlockWriter(TempBlockMeta tempBlockMeta) throws IOException {
-    this(Preconditions.checkNotNull(tempBlockMeta).getPath());
+    this(Preconditions.checkNotNull(tempBlockMeta).getPath(), tempBlockMeta.getParentDir());
   }
 
   /**
@@ -60,7 +63,12 @@ public class LocalFileBlockWriter implements BlockWriter {
    * @throws IOException if its file can not be open with "rw" mode
    */
   public LocalFileBlockWriter(String path) throws IOException {
+    this(path, null);
+  }
+
+  private LocalFileBlockWriter(String path, StorageDir dir) throws IOException {
     mFilePath = Preconditions.checkNotNull(path);
+    mDir = dir;
     mLocalFile = mCloser.register(new RandomAccessFile(mFilePath, "rw"));
     mLocalFileChannel = mCloser.register(mLocalFile.getChannel());
   }
@@ -89,6 +97,9 @@ public class LocalFileBlockWriter implements BlockWriter {
         mLocalFileChannel.map(FileChannel.MapMode.READ_WRITE, offset, inputBufLength);
     outputBuf.put(inputBuf);
     BufferUtils.cleanDirectBuffer(outputBuf);
+    if (mDir != null) {
+      mDir.addTransferredBytes(inputBufLength);
+    }
     return outputBuf.limit();
   }
 
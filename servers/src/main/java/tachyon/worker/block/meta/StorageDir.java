@@ -23,6 +23,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -44,19 +46,32 @@ import tachyon.worker.block.BlockStoreLocation;
  * Represents a directory in a storage tier. It has a fixed capacity allocated to it on
  * instantiation. It contains the set of blocks currently in the storage directory
  * <p>
- * This class does not guarantee thread safety.
+ * This class is thread-safe. Lookups of blocks and of the space of the dir do not lock, while
+ * updates hold the monitor of the dir, so that updates of different dirs run in parallel.
  */
 public class StorageDir {
   private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  /** The length of the window over which the recent throughput of the dir is measured */
+  private static final long THROUGHPUT_WINDOW_MS = Constants.SECOND_MS;
   private final long mCapacityBytes;
   /** A map from block ID to block meta data */
-  private Map<Long, BlockMeta> mBlockIdToBlockMap;
+  private final Map<Long, BlockMeta> mBlockIdToBlockMap;
   /** A map from block ID to temp block meta data */
-  private Map<Long, TempBlockMeta> mBlockIdToTempBlockMap;
-  /** A map from user ID to the set of temp blocks created by this user */
-  private Map<Long, Set<Long>> mUserIdToTempBlockIdsMap;
-  private AtomicLong mAvailableBytes;
-  private AtomicLong mCommittedBytes;
+  private final Map<Long, TempBlockMeta> mBlockIdToTempBlockMap;
+  /** A map from user ID to the set of temp blocks created by this user, guarded by this */
+  private final Map<Long, Set<Long>> mUserIdToTempBlockIdsMap;
+  private final AtomicLong mAvailableBytes;
+  private final AtomicLong mCommittedBytes;
+  /** The number of read locks held on blocks of this dir */
+  private final AtomicInteger mReaderCount = new AtomicInteger(0);
+  /** Guards the throughput window below */
+  private final Object mThroughputLock = new Object();
+  /** The start of the current throughput window */
+  private long mThroughputWindowStartMs = System.currentTimeMillis();
+  /** The number of bytes read from and written to this dir in the current window */
+  private long mThroughputWindowBytes = 0;
+  /** The throughput of the windows before the current one, in bytes per second */
+  private long mThroughputBytesPerSec = 0;
   private String mDirPath;
   private int mDirIndex;
   private StorageTier mTier;
@@ -68,8 +83,8 @@ public class StorageDir {
     mAvailableBytes = new AtomicLong(capacityBytes);
     mCommittedBytes = new AtomicLong(0);
     mDirPath = dirPath;
-    mBlockIdToBlockMap = new HashMap<Long, BlockMeta>(200);
-    mBlockIdToTempBlockMap = new HashMap<Long, TempBlockMeta>(200);
+    mBlockIdToBlockMap = new ConcurrentHashMap<Long, BlockMeta>(200);
+    mBlockIdToTempBlockMap = new ConcurrentHashMap<Long, TempBlockMeta>(200);
     mUserIdToTempBlockIdsMap = new HashMap<Long, Set<Long>>(200);
   }
 
@@ -178,6 +193,91 @@ public class StorageDir {
     return mCommittedBytes.get();
   }
 
+  /**
+   * Gets the number of outstanding readers of this dir, i.e. the read locks held on its blocks.
+   *
+   * @return the number of readers
+   */
+  public int getReaderCount() {
+    return mReaderCount.get();
+  }
+
+  /**
+   * Gets the number of outstanding writers of this dir, i.e. its temp blocks.
+   *
+   * @return the number of writers
+   */
+  public int getWriterCount() {
+    return mBlockIdToTempBlockMap.size();
+  }
+
+  /**
+   * Counts a new reader of this dir, which should call {@link #removeReader()} when done.
+   */
+  public void addReader() {
+    mReaderCount.incrementAndGet();
+  }
+
+  /**
+   * Counts a reader of this dir as done.
+   */
+  public void removeReader() {
+    mReaderCount.decrementAndGet();
+  }
+
+  /**
+   * Records bytes actually read from or written to this dir by a block reader or writer, for the
+   * recent throughput of the dir. This is the only place the throughput window advances.
+   *
+   * @param bytes the number of bytes
+   */
+  public void addTransferredBytes(long bytes) {
+    long nowMs = System.currentTimeMillis();
+    synchronized (mThroughputLock) {
+      long windows = (nowMs - mThroughputWindowStartMs) / THROUGHPUT_WINDOW_MS;
+      if (windows > 0) {
+        mThroughputBytesPerSec = pastThroughput(windows);
+        mThroughputWindowStartMs += windows * THROUGHPUT_WINDOW_MS;
+        mThroughputWindowBytes = 0;
+      }
+      mThroughputWindowBytes += bytes;
+    }
+  }
+
+  /**
+   * Gets the recent throughput of this dir. The throughput of the last window of one second is
+   * averaged with that of earlier windows, each window weighing half of the next one. The bytes
+   * of the current window count as soon as they are transferred. This does not modify the dir.
+   *
+   * @return the recent throughput in bytes per second
+   */
+  public long getRecentThroughput() {
+    long nowMs = System.currentTimeMillis();
+    synchronized (mThroughputLock) {
+      long windows = (nowMs - mThroughputWindowStartMs) / THROUGHPUT_WINDOW_MS;
+      if (windows > 0) {
+        return pastThroughput(windows);
+      }
+      return Math.max(mThroughputBytesPerSec,
+          mThroughputWindowBytes * Constants.SECOND_MS / THROUGHPUT_WINDOW_MS);
+    }
+  }
+
+  /**
+   * Computes the throughput of the windows before the current one once the given number of
+   * windows have ended since the current one started, the windows after it being idle. Must be
+   * called holding mThroughputLock.
+   *
+   * @param windows the number of windows ended, at least one
+   * @return the throughput in bytes per second
+   */
+  private long pastThroughput(long windows) {
+    long bytesPerSec = (mThroughputBytesPerSec
+        + mThroughputWindowBytes * Constants.SECOND_MS / THROUGHPUT_WINDOW_MS) / 2;
+    // Each idle window halves the throughput, so a long idle dir reaches zero
+    return windows > Long.SIZE ? 0 : bytesPerSec >> (windows - 1);
+  }
+
   public String getDirPath() {
     return mDirPath;
   }
@@ -284,7 +384,8 @@ public class StorageDir {
    * @throws AlreadyExistsException if blockId already exists
    * @throws OutOfSpaceException when not enough space to hold block
    */
-  public void addBlockMeta(BlockMeta blockMeta) throws OutOfSpaceException, AlreadyExistsException {
+  public synchronized void addBlockMeta(BlockMeta blockMeta) throws OutOfSpaceException,
+      AlreadyExistsException {
     Preconditions.checkNotNull(blockMeta);
     long blockId = blockMeta.getBlockId();
     long blockSize = blockMeta.getBlockSize();
@@ -307,8 +408,8 @@ public class StorageDir {
    * @throws AlreadyExistsException if blockId already exists
    * @throws OutOfSpaceException when not enough space to hold block
    */
-  public void addTempBlockMeta(TempBlockMeta tempBlockMeta) throws OutOfSpaceException,
-      AlreadyExistsException {
+  public synchronized void addTempBlockMeta(TempBlockMeta tempBlockMeta)
+      throws OutOfSpaceException, AlreadyExistsException {
     Preconditions.checkNotNull(tempBlockMeta);
     long userId = tempBlockMeta.getUserId();
     long blockId = tempBlockMeta.getBlockId();
@@ -339,7 +440,7 @@ public class StorageDir {
    * @param blockMeta the meta data of the block
    * @throws NotFoundException if no block is found
    */
-  public void removeBlockMeta(BlockMeta blockMeta) throws NotFoundException {
+  public synchronized void removeBlockMeta(BlockMeta blockMeta) throws NotFoundException {
     Preconditions.checkNotNull(blockMeta);
     long blockId = blockMeta.getBlockId();
     BlockMeta deletedBlockMeta = mBlockIdToBlockMap.remove(blockId);
@@ -355,7 +456,8 @@ public class StorageDir {
    * @param tempBlockMeta the meta data of the temp block to remove
    * @throws NotFoundException if no temp block is found
    */
-  public void removeTempBlockMeta(TempBlockMeta tempBlockMeta) throws NotFoundException {
+  public synchronized void removeTempBlockMeta(TempBlockMeta tempBlockMeta)
+      throws NotFoundException {
     Preconditions.checkNotNull(tempBlockMeta);
     final long blockId = tempBlockMeta.getBlockId();
     final long userId = tempBlockMeta.getUserId();
@@ -386,15 +488,22 @@ public class StorageDir {
    * @param tempBlockMeta the meta data of the temp block to resize
    * @param newSize the new size after change in bytes
    * @throws InvalidStateException when newSize is smaller than oldSize
+   * @throws OutOfSpaceException when not enough space to hold the additional bytes
    */
-  public void resizeTempBlockMeta(TempBlockMeta tempBlockMeta, long newSize)
-      throws InvalidStateException {
+  public synchronized void resizeTempBlockMeta(TempBlockMeta tempBlockMeta, long newSize)
+      throws InvalidStateException, OutOfSpaceException {
     long oldSize = tempBlockMeta.getBlockSize();
+    if (newSize < oldSize) {
+      throw new InvalidStateException("Shrinking block, not supported!");
+    }
+    if (newSize - oldSize > getAvailableBytes()) {
+      throw new OutOfSpaceException("Failed to resize TempBlockMeta: blockId "
+          + tempBlockMeta.getBlockId() + " needs " + (newSize - oldSize) + " more bytes, but only "
+          + getAvailableBytes() + " bytes available");
+    }
     tempBlockMeta.setBlockSize(newSize);
     if (newSize > oldSize) {
       reserveSpace(newSize - oldSize, false);
-    } else if (newSize < oldSize) {
-      throw new InvalidStateException("Shrinking block, not supported!");
     }
   }
 
@@ -423,7 +532,7 @@ public class StorageDir {
    * @param tempBlockIds the list of temporary blocks to clean up, non temporary blocks or
    *        nonexistent blocks will be ignored
    */
-  public void cleanupUserTempBlocks(long userId, List<Long> tempBlockIds) {
+  public synchronized void cleanupUserTempBlocks(long userId, List<Long> tempBlockIds) {
     Set<Long> userTempBlocks = mUserIdToTempBlockIdsMap.get(userId);
     // The user's temporary blocks have already been removed.
     if (userTempBlocks == null) {
@@ -459,7 +568,7 @@ public class StorageDir {
    * @param userId the ID of the user
    * @return A list of temporary blocks the user is associated with in this StorageDir
    */
-  public List<TempBlockMeta> getUserTempBlocks(long userId) {
+  public synchronized List<TempBlockMeta> getUserTempBlocks(long userId) {
     Set<Long> userTempBlockIds = mUserIdToTempBlockIdsMap.get(userId);
 
     if (userTempBlockIds == null || userTempBlockIds.isEmpty()) {
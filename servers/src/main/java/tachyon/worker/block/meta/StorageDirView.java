@@ -16,6 +16,7 @@
 package tachyon.worker.block.meta;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
@@ -28,6 +29,24 @@ import tachyon.worker.block.BlockStoreLocation;
  * and a filtered list of blocks.
  */
 public class StorageDirView {
+  /**
+   * Orders dir views from the least to the most loaded: by the number of outstanding readers and
+   * writers, then by recent throughput.
+   */
+  public static final Comparator<StorageDirView> LOAD_COMPARATOR =
+      new Comparator<StorageDirView>() {
+        @Override
+        public int compare(StorageDirView dirView1, StorageDirView dirView2) {
+          int ops1 = dirView1.getReaderCount() + dirView1.getWriterCount();
+          int ops2 = dirView2.getReaderCount() + dirView2.getWriterCount();
+          if (ops1 != ops2) {
+            return ops1 < ops2 ? -1 : 1;
+          }
+          long throughput1 = dirView1.getRecentThroughput();
+          long throughput2 = dirView2.getRecentThroughput();
+          return throughput1 < throughput2 ? -1 : (throughput1 == throughput2 ? 0 : 1);
+        }
+      };
 
   /** the StorageDir this view is derived from */
   private final StorageDir mDir;
@@ -122,6 +141,33 @@ public class StorageDirView {
     return bytes;
   }
 
+  /**
+   * Get the number of outstanding readers of this dir
+   *
+   * @return the number of readers
+   */
+  public int getReaderCount() {
+    return mDir.getReaderCount();
+  }
+
+  /**
+   * Get the number of outstanding writers of this dir
+   *
+   * @return the number of writers
+   */
+  public int getWriterCount() {
+    return mDir.getWriterCount();
+  }
+
+  /**
+   * Get the recent throughput of this dir
+   *
+   * @return the recent throughput in bytes per second
+   */
+  public long getRecentThroughput() {
+    return mDir.getRecentThroughput();
+  }
+
   /**
    * Create a TempBlockMeta given userId, blockId, and initialBlockSize.
    *
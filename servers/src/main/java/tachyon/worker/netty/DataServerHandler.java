@@ -25,7 +25,6 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
 
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -53,7 +52,9 @@ import tachyon.worker.block.io.BlockWriter;
 
 /**
  * This class has the main logic of the read path to process {@link RPCRequest} messages and return
- * {@link RPCResponse} messages.
+ * {@link RPCResponse} messages. Connections are kept open after a response, so a client can send
+ * any number of requests on one connection. They are only closed by the server when a request
+ * cannot be processed at all.
  */
 @ChannelHandler.Sharable
 public final class DataServerHandler extends SimpleChannelInboundHandler<RPCMessage> {
@@ -106,8 +107,7 @@ public final class DataServerHandler extends SimpleChannelInboundHandler<RPCMess
       LOG.error("Failed to lock block: " + blockId, ioe);
       RPCBlockReadResponse resp =
           RPCBlockReadResponse.createErrorResponse(req, RPCResponse.Status.BLOCK_LOCK_ERROR);
-      ChannelFuture future = ctx.writeAndFlush(resp);
-      future.addListener(ChannelFutureListener.CLOSE);
+      ctx.writeAndFlush(resp);
       return;
     }
 
@@ -125,9 +125,8 @@ public final class DataServerHandler extends SimpleChannelInboundHandler<RPCMess
       validateBounds(req, fileLength);
       final long readLength = returnLength(offset, len, fileLength);
       RPCBlockReadResponse resp = new RPCBlockReadResponse(blockId, offset, readLength,
-          getDataBuffer(req, reader, readLength), RPCResponse.Status.SUCCESS);
+          req.getRequestId(), getDataBuffer(req, reader, readLength), RPCResponse.Status.SUCCESS);
       ChannelFuture future = ctx.writeAndFlush(resp);
-      future.addListener(ChannelFutureListener.CLOSE);
       future.addListener(new ClosableResourceChannelListener(reader));
       mDataManager.accessBlock(Users.DATASERVER_USER_ID, blockId);
       LOG.info("Preparation for responding to remote block request for: " + blockId + " done.");
@@ -135,8 +134,7 @@ public final class DataServerHandler extends SimpleChannelInboundHandler<RPCMess
       LOG.error("The file is not here : " + e.getMessage(), e);
       RPCBlockReadResponse resp =
           RPCBlockReadResponse.createErrorResponse(req, RPCResponse.Status.FILE_DNE);
-      ChannelFuture future = ctx.writeAndFlush(resp);
-      future.addListener(ChannelFutureListener.CLOSE);
+      ctx.writeAndFlush(resp);
       if (reader != null) {
         reader.close();
       }
@@ -183,14 +181,12 @@ public final class DataServerHandler extends SimpleChannelInboundHandler<RPCMess
       RPCBlockWriteResponse resp = new RPCBlockWriteResponse(userId, blockId, offset, length,
           RPCResponse.Status.SUCCESS);
       ChannelFuture future = ctx.writeAndFlush(resp);
-      future.addListener(ChannelFutureListener.CLOSE);
       future.addListener(new ClosableResourceChannelListener(writer));
     } catch (Exception e) {
       LOG.error("Error writing remote block : " + e.getMessage(), e);
       RPCBlockWriteResponse resp =
           RPCBlockWriteResponse.createErrorResponse(req, RPCResponse.Status.WRITE_ERROR);
-      ChannelFuture future = ctx.writeAndFlush(resp);
-      future.addListener(ChannelFutureListener.CLOSE);
+      ctx.writeAndFlush(resp);
       if (writer != null) {
         writer.close();
       }
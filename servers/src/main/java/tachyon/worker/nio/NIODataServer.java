@@ -235,7 +235,7 @@ public class NIODataServer implements Runnable, DataServer {
       }
       DataServerMessage tResponseMessage =
           DataServerMessage.createBlockResponseMessage(true, blockId, tMessage.getOffset(),
-              dataLen, data);
+              dataLen, tMessage.getRequestId(), data);
       tResponseMessage.setLockId(lockId);
       mSendingData.put(socketChannel, tResponseMessage);
     }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tachyon.TachyonURI;
+import tachyon.conf.TachyonConf;
+
+/**
+ * Unit tests for tachyon.master.EditLog
+ */
+public class EditLogTest {
+  private EditLog mEditLog;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  /**
+   * A stream which accepts a number of bytes, then fails every write.
+   */
+  private static final class FailingOutputStream extends ByteArrayOutputStream {
+    private final int mBytesBeforeFailure;
+
+    FailingOutputStream(int bytesBeforeFailure) {
+      mBytesBeforeFailure = bytesBeforeFailure;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      if (size() + len > mBytesBeforeFailure) {
+        super.write(b, off, mBytesBeforeFailure - size());
+        throw new RuntimeException(new IOException("Injected failure"));
+      }
+      super.write(b, off, len);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+  }
+
+  @Before
+  public void before() throws IOException {
+    String path = mFolder.newFolder("journal").getAbsolutePath() + "/log.data";
+    mEditLog = new EditLog(path, false, 0, new TachyonConf());
+  }
+
+  @Test
+  public void flushTest() {
+    mEditLog.createFile(false, new TachyonURI("/a"), false, 10, 0);
+    mEditLog.createFile(false, new TachyonURI("/b"), false, 10, 0);
+    mEditLog.flush();
+    Assert.assertEquals(2L, mEditLog.getTransactionIds().getSecond().longValue());
+    mEditLog.close();
+  }
+
+  @Test
+  public void failedFlushTest() {
+    mEditLog.createFile(false, new TachyonURI("/a"), false, 10, 0);
+    mEditLog.flush();
+    mEditLog.setOutputStream(new FailingOutputStream(5));
+    mEditLog.createFile(false, new TachyonURI("/b"), false, 10, 0);
+    mEditLog.createFile(false, new TachyonURI("/c"), false, 10, 0);
+    try {
+      mEditLog.flush();
+      Assert.fail("flush should fail when the output stream fails");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    // The failed transactions are not reported as flushed.
+    Assert.assertEquals(1L, mEditLog.getTransactionIds().getSecond().longValue());
+
+    // Later appends and flushes fail instead of syncing past the lost transactions.
+    mEditLog.setOutputStream(new ByteArrayOutputStream());
+    try {
+      mEditLog.createFile(false, new TachyonURI("/d"), false, 10, 0);
+      Assert.fail("appending to a failed edit log should fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // The failed append does not take a transaction id.
+    Assert.assertEquals(3L, mEditLog.getTransactionIds().getFirst().longValue());
+    try {
+      mEditLog.flush();
+      Assert.fail("flushing a failed edit log should fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    Assert.assertEquals(1L, mEditLog.getTransactionIds().getSecond().longValue());
+    mEditLog.close();
+  }
+}
@@ -15,13 +15,13 @@
 
 package tachyon.master;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.junit.Assert;
 import org.junit.Before;
@@ -248,15 +248,15 @@ public class InodeFileTest {
     InodeFile inode1 = new InodeFile("test1", 1, 0, 1000, creationTime);
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dos = new DataOutputStream(os);
-    ObjectMapper mapper = JsonObject.createObjectMapper();
-    ObjectWriter writer = mapper.writer();
+    ObjectWriter writer = JournalFormat.createObjectWriter();
 
     // write the image
+    JournalFormat.writeHeader(dos);
     inode1.writeImage(writer, dos);
 
     // decode the element
-    ImageElement decoded = null;
-    decoded = mapper.readValue(os.toByteArray(), ImageElement.class);
+    ImageElement decoded =
+        JournalReader.open(new ByteArrayInputStream(os.toByteArray())).read(ImageElement.class);
 
     // test the decoded image element
     Assert.assertEquals(creationTime, decoded.getLong("creationTimeMs").longValue());
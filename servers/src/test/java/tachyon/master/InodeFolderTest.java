@@ -15,6 +15,7 @@
 
 package tachyon.master;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -27,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
 import tachyon.Constants;
@@ -168,14 +168,15 @@ public class InodeFolderTest {
     InodeFolder inode1 = new InodeFolder("test1", 1, 0, creationTime);
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dos = new DataOutputStream(os);
-    ObjectMapper mapper = JsonObject.createObjectMapper();
-    ObjectWriter writer = mapper.writer();
+    ObjectWriter writer = JournalFormat.createObjectWriter();
 
     // write the image
+    JournalFormat.writeHeader(dos);
     inode1.writeImage(writer, dos);
 
     // decode the written bytes
-    ImageElement decoded = mapper.readValue(os.toByteArray(), ImageElement.class);
+    ImageElement decoded =
+        JournalReader.open(new ByteArrayInputStream(os.toByteArray())).read(ImageElement.class);
 
     // test the decoded ImageElement
     Assert.assertEquals(creationTime, decoded.getLong("creationTimeMs").longValue());
@@ -187,6 +188,31 @@ public class InodeFolderTest {
     Assert.assertEquals(creationTime, decoded.getLong("lastModificationTimeMs").longValue());
   }
 
+  @Test
+  public void getChildrenAfterTest() {
+    InodeFolder inodeFolder = new InodeFolder("testFolder1", 1, 0, System.currentTimeMillis());
+    inodeFolder.addChild(new InodeFile("c", 2, 1, 1000, System.currentTimeMillis()));
+    inodeFolder.addChild(new InodeFile("a", 3, 1, 1000, System.currentTimeMillis()));
+    inodeFolder.addChild(new InodeFolder("b", 4, 1, System.currentTimeMillis()));
+
+    List<Inode> children = inodeFolder.getChildrenAfter(null, 10);
+    Assert.assertEquals(3, children.size());
+    Assert.assertEquals("a", children.get(0).getName());
+    Assert.assertEquals("b", children.get(1).getName());
+    Assert.assertEquals("c", children.get(2).getName());
+    children = inodeFolder.getChildrenAfter(null, 2);
+    Assert.assertEquals(2, children.size());
+    Assert.assertEquals("b", children.get(1).getName());
+    children = inodeFolder.getChildrenAfter("a", 10);
+    Assert.assertEquals(2, children.size());
+    Assert.assertEquals("b", children.get(0).getName());
+    // The name to start after does not need to be a child
+    children = inodeFolder.getChildrenAfter("bb", 10);
+    Assert.assertEquals(1, children.size());
+    Assert.assertEquals("c", children.get(0).getName());
+    Assert.assertTrue(inodeFolder.getChildrenAfter("c", 10).isEmpty());
+  }
+
   @Test
   public void getChildTest() {
     // large number of small files
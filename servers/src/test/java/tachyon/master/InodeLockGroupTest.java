@@ -0,0 +1,48 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for tachyon.master.InodeLockGroup
+ */
+public class InodeLockGroupTest {
+  @Test
+  public void relockTest() {
+    InodeFile inode = new InodeFile("testFile1", 2, 1, 1000, System.currentTimeMillis());
+    InodeLockGroup group = new InodeLockGroup();
+    group.lockWrite(inode);
+    group.lockWrite(inode);
+    group.lockRead(inode);
+    Assert.assertTrue(group.contains(inode));
+    group.unlockAll();
+    Assert.assertFalse(group.contains(inode));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void writeAfterReadTest() {
+    InodeFile inode = new InodeFile("testFile1", 2, 1, 1000, System.currentTimeMillis());
+    InodeLockGroup group = new InodeLockGroup();
+    group.lockRead(inode);
+    try {
+      group.lockWrite(inode);
+    } finally {
+      group.unlockAll();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.master;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for tachyon.master.JournalReader
+ */
+public class JournalReaderTest {
+  private static final ImageElement VERSION =
+      new ImageElement(ImageElementType.Version).withParameter("version", 3);
+  private static final ImageElement CHECKPOINT = new ImageElement(ImageElementType.Checkpoint)
+      .withParameter("inodeCounter", 7).withParameter("editTransactionCounter", 1L << 40);
+
+  private void checkElements(JournalReader reader) throws IOException {
+    ImageElement ele = reader.read(ImageElement.class);
+    Assert.assertEquals(ImageElementType.Version, ele.mType);
+    Assert.assertEquals(3, ele.getInt("version").intValue());
+    ele = reader.read(ImageElement.class);
+    Assert.assertEquals(ImageElementType.Checkpoint, ele.mType);
+    Assert.assertEquals(7, ele.getInt("inodeCounter").intValue());
+    Assert.assertEquals(1L << 40, ele.getLong("editTransactionCounter").longValue());
+    Assert.assertNull(reader.read(ImageElement.class));
+  }
+
+  @Test
+  public void binaryFormatTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    ObjectWriter writer = JournalFormat.createObjectWriter();
+    JournalFormat.writeHeader(dos);
+    JournalFormat.writeRecord(writer, dos, VERSION);
+    JournalFormat.writeRecord(writer, dos, CHECKPOINT);
+
+    checkElements(JournalReader.open(new ByteArrayInputStream(os.toByteArray())));
+  }
+
+  @Test
+  public void parallelDecodeTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    ObjectWriter writer = JournalFormat.createObjectWriter();
+    JournalFormat.writeHeader(dos);
+    int records = JournalReader.DECODE_BATCH_SIZE * (JournalReader.DECODE_BATCHES_AHEAD + 3) + 5;
+    for (int k = 0; k < records; k ++) {
+      JournalFormat.writeRecord(writer, dos,
+          new ImageElement(ImageElementType.Checkpoint).withParameter("inodeCounter", k));
+    }
+
+    JournalReader reader = JournalReader.open(new ByteArrayInputStream(os.toByteArray()), 4);
+    for (int k = 0; k < records; k ++) {
+      Assert.assertEquals(k, reader.read(ImageElement.class).getInt("inodeCounter").intValue());
+    }
+    Assert.assertNull(reader.read(ImageElement.class));
+    reader.close();
+  }
+
+  @Test
+  public void parallelIncompleteRecordTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    ObjectWriter writer = JournalFormat.createObjectWriter();
+    JournalFormat.writeHeader(dos);
+    JournalFormat.writeRecord(writer, dos, VERSION);
+    JournalFormat.writeRecord(writer, dos, CHECKPOINT);
+    byte[] bytes = os.toByteArray();
+
+    JournalReader reader =
+        JournalReader.open(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)), 2);
+    Assert.assertEquals(ImageElementType.Version, reader.read(ImageElement.class).mType);
+    Assert.assertNull(reader.read(ImageElement.class));
+    reader.close();
+  }
+
+  @Test
+  public void jsonFormatTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ObjectWriter writer = JsonObject.createObjectMapper().writer();
+    writer.writeValue(os, VERSION);
+    os.write('\n');
+    writer.writeValue(os, CHECKPOINT);
+    os.write('\n');
+
+    checkElements(JournalReader.open(new ByteArrayInputStream(os.toByteArray())));
+  }
+
+  @Test
+  public void emptyFileTest() throws IOException {
+    JournalReader reader = JournalReader.open(new ByteArrayInputStream(new byte[0]));
+    Assert.assertNull(reader.read(ImageElement.class));
+  }
+
+  @Test
+  public void incompleteRecordTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    ObjectWriter writer = JournalFormat.createObjectWriter();
+    JournalFormat.writeHeader(dos);
+    JournalFormat.writeRecord(writer, dos, VERSION);
+    JournalFormat.writeRecord(writer, dos, CHECKPOINT);
+    byte[] bytes = os.toByteArray();
+
+    JournalReader reader =
+        JournalReader.open(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+    Assert.assertEquals(ImageElementType.Version, reader.read(ImageElement.class).mType);
+    Assert.assertNull(reader.read(ImageElement.class));
+  }
+
+  @Test
+  public void corruptLengthTest() throws IOException {
+    int[] lengths = {-1, Integer.MIN_VALUE, Integer.MAX_VALUE, JournalFormat.MAX_RECORD_BYTES + 1};
+    for (int length : lengths) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(os);
+      ObjectWriter writer = JournalFormat.createObjectWriter();
+      JournalFormat.writeHeader(dos);
+      JournalFormat.writeRecord(writer, dos, VERSION);
+      dos.writeInt(length);
+      JournalFormat.writeRecord(writer, dos, CHECKPOINT);
+
+      JournalReader reader = JournalReader.open(new ByteArrayInputStream(os.toByteArray()));
+      Assert.assertEquals(ImageElementType.Version, reader.read(ImageElement.class).mType);
+      try {
+        reader.read(ImageElement.class);
+        Assert.fail("A corrupt length followed by records should not be read as the end of file");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void corruptLengthAtEndTest() throws IOException {
+    int[] lengths = {-1, Integer.MIN_VALUE, Integer.MAX_VALUE, JournalFormat.MAX_RECORD_BYTES + 1};
+    for (int length : lengths) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(os);
+      ObjectWriter writer = JournalFormat.createObjectWriter();
+      JournalFormat.writeHeader(dos);
+      JournalFormat.writeRecord(writer, dos, VERSION);
+      dos.writeInt(length);
+
+      JournalReader reader = JournalReader.open(new ByteArrayInputStream(os.toByteArray()));
+      Assert.assertEquals(ImageElementType.Version, reader.read(ImageElement.class).mType);
+      Assert.assertNull(reader.read(ImageElement.class));
+      Assert.assertNull(reader.read(ImageElement.class));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void unknownVersionTest() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.write(JournalFormat.MAGIC);
+    dos.writeInt(JournalFormat.VERSION + 1);
+
+    JournalReader.open(new ByteArrayInputStream(os.toByteArray()));
+  }
+}
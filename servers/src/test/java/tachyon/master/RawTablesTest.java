@@ -15,6 +15,7 @@
 
 package tachyon.master;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -23,7 +24,6 @@ import java.util.Arrays;
 import java.util.List;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.junit.Assert;
 import org.junit.Test;
@@ -45,8 +45,7 @@ public class RawTablesTest {
 
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dos = new DataOutputStream(os);
-    ObjectMapper mapper = JsonObject.createObjectMapper();
-    ObjectWriter writer = mapper.writer();
+    ObjectWriter writer = JournalFormat.createObjectWriter();
 
     // add elements to the RawTables
     rt.addRawTable(0, 1, bb1);
@@ -54,6 +53,7 @@ public class RawTablesTest {
     rt.addRawTable(2, 1, bb3);
 
     // write the image
+    JournalFormat.writeHeader(dos);
     rt.writeImage(writer, dos);
 
     List<Integer> ids = Arrays.asList(0, 1, 2);
@@ -61,7 +61,8 @@ public class RawTablesTest {
     List<ByteBuffer> data = Arrays.asList(bb1, bb2, bb3);
 
     // decode the written bytes
-    ImageElement decoded = mapper.readValue(os.toByteArray(), ImageElement.class);
+    ImageElement decoded =
+        JournalReader.open(new ByteArrayInputStream(os.toByteArray())).read(ImageElement.class);
 
     // test the decoded ImageElement
     Assert.assertEquals(ids, decoded.get("ids", new TypeReference<List<Integer>>() {}));
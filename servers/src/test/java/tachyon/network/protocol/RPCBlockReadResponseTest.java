@@ -34,6 +34,7 @@ public class RPCBlockReadResponseTest {
   // The RPCMessageEncoder sends the payload separately from the message, so these unit tests only
   // test the message encoding part. Therefore, the 'length' should be 0.
   private static final long LENGTH = 0;
+  private static final long REQUEST_ID = 3;
   private static final RPCResponse.Status STATUS = RPCResponse.Status.SUCCESS;
 
   @Rule
@@ -41,12 +42,13 @@ public class RPCBlockReadResponseTest {
 
   private ByteBuf mBuffer = null;
 
-  private void assertValid(long blockId, long offset, long length, RPCResponse.Status status,
-      RPCBlockReadResponse resp) {
+  private void assertValid(long blockId, long offset, long length, long requestId,
+      RPCResponse.Status status, RPCBlockReadResponse resp) {
     Assert.assertEquals(RPCMessage.Type.RPC_BLOCK_READ_RESPONSE, resp.getType());
     Assert.assertEquals(blockId, resp.getBlockId());
     Assert.assertEquals(offset, resp.getOffset());
     Assert.assertEquals(length, resp.getLength());
+    Assert.assertEquals(requestId, resp.getRequestId());
     Assert.assertEquals(status, resp.getStatus());
   }
 
@@ -65,7 +67,8 @@ public class RPCBlockReadResponseTest {
 
   @Test
   public void encodedLengthTest() {
-    RPCBlockReadResponse resp = new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, null, STATUS);
+    RPCBlockReadResponse resp =
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, null, STATUS);
     int encodedLength = resp.getEncodedLength();
     resp.encode(mBuffer);
     Assert.assertEquals(encodedLength, mBuffer.readableBytes());
@@ -73,16 +76,18 @@ public class RPCBlockReadResponseTest {
 
   @Test
   public void encodeDecodeTest() {
-    RPCBlockReadResponse resp = new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, null, STATUS);
+    RPCBlockReadResponse resp =
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, null, STATUS);
     resp.encode(mBuffer);
     RPCBlockReadResponse resp2 = RPCBlockReadResponse.decode(mBuffer);
-    assertValid(BLOCK_ID, OFFSET, LENGTH, STATUS, resp);
-    assertValid(BLOCK_ID, OFFSET, LENGTH, STATUS, resp2);
+    assertValid(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, STATUS, resp);
+    assertValid(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, STATUS, resp2);
   }
 
   @Test
   public void validateTest() {
-    RPCBlockReadResponse resp = new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, null, STATUS);
+    RPCBlockReadResponse resp =
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, null, STATUS);
     assertValid(resp);
   }
 
@@ -90,14 +95,15 @@ public class RPCBlockReadResponseTest {
   public void getPayloadDataBufferTest() {
     int length = 10;
     DataByteBuffer payload = new DataByteBuffer(ByteBuffer.allocate(length), length);
-    RPCBlockReadResponse resp = new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, payload, STATUS);
+    RPCBlockReadResponse resp =
+        new RPCBlockReadResponse(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID, payload, STATUS);
     assertValid(resp);
     Assert.assertEquals(payload, resp.getPayloadDataBuffer());
   }
 
   @Test
   public void createErrorResponseTest() {
-    RPCBlockReadRequest req = new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH);
+    RPCBlockReadRequest req = new RPCBlockReadRequest(BLOCK_ID, OFFSET, LENGTH, REQUEST_ID);
 
     for (RPCResponse.Status status : RPCResponse.Status.values()) {
       if (status == RPCResponse.Status.SUCCESS) {
@@ -106,7 +112,7 @@ public class RPCBlockReadResponseTest {
         RPCBlockReadResponse.createErrorResponse(req, status);
       } else {
         RPCBlockReadResponse resp = RPCBlockReadResponse.createErrorResponse(req, status);
-        assertValid(BLOCK_ID, OFFSET, 0, status, resp);
+        assertValid(BLOCK_ID, OFFSET, 0, REQUEST_ID, status, resp);
       }
     }
   }
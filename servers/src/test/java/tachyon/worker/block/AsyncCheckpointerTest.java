@@ -0,0 +1,261 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import tachyon.Constants;
+import tachyon.Users;
+import tachyon.conf.TachyonConf;
+import tachyon.exception.NotFoundException;
+import tachyon.master.MasterClient;
+import tachyon.thrift.ClientFileInfo;
+import tachyon.underfs.UnderFileSystem;
+import tachyon.util.io.BufferUtils;
+import tachyon.util.io.PathUtils;
+import tachyon.worker.WorkerSource;
+import tachyon.worker.block.io.BlockReader;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(MasterClient.class)
+public class AsyncCheckpointerTest {
+  private static final long WORKER_ID = 1;
+  private static final int FILE_ID = 2;
+  private static final long BLOCK_ID1 = 10;
+  private static final long BLOCK_ID2 = 11;
+  private static final int BLOCK_SIZE = 100;
+  private static final int BLOCK2_LENGTH = 50;
+  private static final long LOCK_ID1 = 20;
+  private static final long LOCK_ID2 = 21;
+  private static final String DATA_FOLDER = "/data";
+  private static final String CHECKPOINT_PATH = PathUtils.concatPath(DATA_FOLDER, FILE_ID);
+
+  private BlockStore mBlockStore;
+  private MasterClient mMasterClient;
+  private UnderFileSystem mUfs;
+  private ByteArrayOutputStream mUfsFile;
+  private WorkerSource mWorkerSource;
+  private AsyncCheckpointer mCheckpointer;
+
+  @Rule
+  public ExpectedException mThrown = ExpectedException.none();
+
+  @Before
+  public void before() throws Exception {
+    mBlockStore = Mockito.mock(BlockStore.class);
+    mMasterClient = PowerMockito.mock(MasterClient.class);
+    mUfs = Mockito.mock(UnderFileSystem.class);
+    mUfsFile = new ByteArrayOutputStream();
+    Mockito.when(mUfs.create(CHECKPOINT_PATH)).thenReturn(mUfsFile);
+    Mockito.when(mMasterClient.addCheckpoint(WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH,
+        CHECKPOINT_PATH)).thenReturn(true);
+    // The two blocks of the file hold increasing bytes
+    mockBlock(BLOCK_ID1, LOCK_ID1, 0, BLOCK_SIZE);
+    mockBlock(BLOCK_ID2, LOCK_ID2, BLOCK_SIZE, BLOCK2_LENGTH);
+
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.UNDERFS_DATA_FOLDER, DATA_FOLDER);
+    conf.set(Constants.WORKER_CHECKPOINT_MAX_ATTEMPTS, "3");
+    conf.set(Constants.WORKER_CHECKPOINT_RETRY_INTERVAL_MS, "1");
+    conf.set(Constants.WORKER_CHECKPOINT_MAX_RETRY_INTERVAL_MS, "2");
+    mWorkerSource = Mockito.mock(WorkerSource.class);
+    mCheckpointer = new AsyncCheckpointer(mBlockStore, mMasterClient, mUfs, mWorkerSource, conf);
+    mCheckpointer.setWorkerId(WORKER_ID);
+  }
+
+  @After
+  public void after() {
+    mCheckpointer.stop();
+  }
+
+  private void mockBlock(long blockId, long lockId, int start, int length) throws Exception {
+    BlockReader reader = Mockito.mock(BlockReader.class);
+    Mockito.when(reader.getLength()).thenReturn((long) length);
+    Mockito.when(reader.read(0, length))
+        .thenReturn(BufferUtils.getIncreasingByteBuffer(start, length));
+    Mockito.when(mBlockStore.lockBlock(Users.CHECKPOINT_USER_ID, blockId)).thenReturn(lockId);
+    Mockito.when(mBlockStore.getBlockReader(Users.CHECKPOINT_USER_ID, blockId, lockId))
+        .thenReturn(reader);
+  }
+
+  private ClientFileInfo createFileInfo(boolean complete) {
+    ClientFileInfo fileInfo = new ClientFileInfo();
+    fileInfo.setId(FILE_ID);
+    fileInfo.setUfsPath("");
+    fileInfo.setIsComplete(complete);
+    fileInfo.setLength(BLOCK_SIZE + BLOCK2_LENGTH);
+    fileInfo.setBlockSizeByte(BLOCK_SIZE);
+    fileInfo.setBlockIds(Arrays.asList(BLOCK_ID1, BLOCK_ID2));
+    return fileInfo;
+  }
+
+  @Test
+  public void checkpointTest() throws Exception {
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(true));
+
+    mCheckpointer.checkpoint(FILE_ID);
+    Assert.assertTrue(BufferUtils.equalIncreasingByteArray(BLOCK_SIZE + BLOCK2_LENGTH,
+        mUfsFile.toByteArray()));
+    Mockito.verify(mBlockStore).unlockBlock(LOCK_ID1);
+    Mockito.verify(mBlockStore).unlockBlock(LOCK_ID2);
+    Mockito.verify(mMasterClient).addCheckpoint(WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH,
+        CHECKPOINT_PATH);
+  }
+
+  @Test
+  public void checkpointCheckpointedFileTest() throws Exception {
+    ClientFileInfo fileInfo = createFileInfo(true);
+    fileInfo.setUfsPath(CHECKPOINT_PATH);
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(fileInfo);
+
+    // A file already checkpointed is skipped
+    mCheckpointer.checkpoint(FILE_ID);
+    Mockito.verify(mUfs, Mockito.never()).create(CHECKPOINT_PATH);
+  }
+
+  @Test
+  public void checkpointIncompleteFileTest() throws Exception {
+    mThrown.expect(IOException.class);
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(false));
+
+    mCheckpointer.checkpoint(FILE_ID);
+  }
+
+  @Test
+  public void checkpointMissingBlockTest() throws Exception {
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(true));
+    Mockito.when(mBlockStore.lockBlock(Users.CHECKPOINT_USER_ID, BLOCK_ID2))
+        .thenThrow(new NotFoundException("Block not found"));
+
+    try {
+      mCheckpointer.checkpoint(FILE_ID);
+      Assert.fail("Checkpoint of a file with a missing block should fail");
+    } catch (IOException ioe) {
+      // expected
+    }
+    // The partial checkpoint is deleted, and the master is not told about it
+    Mockito.verify(mBlockStore).unlockBlock(LOCK_ID1);
+    Mockito.verify(mUfs).delete(CHECKPOINT_PATH, false);
+    Mockito.verify(mMasterClient, Mockito.never()).addCheckpoint(Mockito.anyLong(),
+        Mockito.anyInt(), Mockito.anyLong(), Mockito.anyString());
+  }
+
+  @Test
+  public void submitRetryTest() throws Exception {
+    // The file is incomplete at the first attempt, and complete at the second
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(false),
+        createFileInfo(true));
+
+    Assert.assertTrue(mCheckpointer.submit(FILE_ID));
+    Mockito.verify(mMasterClient, Mockito.timeout(10 * Constants.SECOND_MS)).addCheckpoint(
+        WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH, CHECKPOINT_PATH);
+  }
+
+  @Test
+  public void submitProtectsBlocksTest() throws Exception {
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(true));
+
+    Assert.assertTrue(mCheckpointer.submit(FILE_ID));
+    Mockito.verify(mBlockStore).addUnpersistedInode(FILE_ID);
+    // The blocks are no longer protected once the checkpoint is added to the master
+    Mockito.verify(mBlockStore, Mockito.timeout(10 * Constants.SECOND_MS))
+        .removeUnpersistedInode(FILE_ID);
+    Mockito.verify(mMasterClient).addCheckpoint(WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH,
+        CHECKPOINT_PATH);
+  }
+
+  @Test
+  public void failedCheckpointReleasesBlocksTest() throws Exception {
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(false));
+
+    Assert.assertTrue(mCheckpointer.submit(FILE_ID));
+    // Once out of attempts, the blocks are no longer kept and the loss is counted
+    Mockito.verify(mBlockStore, Mockito.timeout(10 * Constants.SECOND_MS))
+        .removeUnpersistedInode(FILE_ID);
+    Mockito.verify(mMasterClient, Mockito.times(3)).getFileStatus(FILE_ID, "");
+    Mockito.verify(mWorkerSource).incCheckpointsFailed();
+    Mockito.verify(mMasterClient, Mockito.after(100).times(3)).getFileStatus(FILE_ID, "");
+
+    // The file is no longer pending, so it can be submitted again
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenReturn(createFileInfo(true));
+    Assert.assertTrue(mCheckpointer.submit(FILE_ID));
+    Mockito.verify(mMasterClient, Mockito.timeout(10 * Constants.SECOND_MS)).addCheckpoint(
+        WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH, CHECKPOINT_PATH);
+  }
+
+  @Test
+  public void submitFullQueueTest() throws Exception {
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.UNDERFS_DATA_FOLDER, DATA_FOLDER);
+    conf.set(Constants.WORKER_CHECKPOINT_THREADS, "1");
+    conf.set(Constants.WORKER_CHECKPOINT_QUEUE_SIZE, "1");
+    conf.set(Constants.WORKER_CHECKPOINT_QUEUE_TIMEOUT_MS, "10");
+    AsyncCheckpointer checkpointer = new AsyncCheckpointer(mBlockStore, mMasterClient, mUfs,
+        Mockito.mock(WorkerSource.class), conf);
+    checkpointer.setWorkerId(WORKER_ID);
+    // The first file keeps the only uploader busy
+    final CountDownLatch uploading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Mockito.when(mMasterClient.getFileStatus(FILE_ID, "")).thenAnswer(
+        new Answer<ClientFileInfo>() {
+          @Override
+          public ClientFileInfo answer(InvocationOnMock invocation) throws Throwable {
+            uploading.countDown();
+            release.await();
+            return createFileInfo(true);
+          }
+        });
+    try {
+      Assert.assertTrue(checkpointer.submit(FILE_ID));
+      uploading.await();
+      Assert.assertTrue(checkpointer.submit(FILE_ID + 1));
+      // The queue is full, the file is rejected instead of checkpointed by the caller
+      Assert.assertFalse(checkpointer.submit(FILE_ID + 2));
+      Mockito.verify(mBlockStore).removeUnpersistedInode(FILE_ID + 2);
+      Mockito.verify(mMasterClient, Mockito.never()).getFileStatus(FILE_ID + 2, "");
+
+      release.countDown();
+      Mockito.verify(mMasterClient, Mockito.timeout(10 * Constants.SECOND_MS)).addCheckpoint(
+          WORKER_ID, FILE_ID, BLOCK_SIZE + BLOCK2_LENGTH, CHECKPOINT_PATH);
+    } finally {
+      release.countDown();
+      checkpointer.stop();
+    }
+  }
+
+  @Test
+  public void submitAfterStopTest() throws Exception {
+    mCheckpointer.stop();
+    Assert.assertFalse(mCheckpointer.submit(FILE_ID));
+  }
+}
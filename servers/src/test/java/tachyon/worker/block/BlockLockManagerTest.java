@@ -15,6 +15,9 @@
 
 package tachyon.worker.block;
 
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -25,11 +28,15 @@ import org.mockito.Mockito;
 
 import tachyon.exception.InvalidStateException;
 import tachyon.exception.NotFoundException;
+import tachyon.worker.block.meta.BlockMeta;
+import tachyon.worker.block.meta.StorageDir;
 
 public class BlockLockManagerTest {
   private static final long TEST_USER_ID = 2;
   private static final long TEST_BLOCK_ID = 9;
 
+  private BlockMetadataManager mMetaManager;
+  private StorageDir mDir;
   private BlockLockManager mLockManager;
 
   @Rule
@@ -40,9 +47,13 @@ public class BlockLockManagerTest {
 
   @Before
   public void before() throws Exception {
-    BlockMetadataManager mockMetaManager = Mockito.mock(BlockMetadataManager.class);
-    Mockito.when(mockMetaManager.hasBlockMeta(TEST_BLOCK_ID)).thenReturn(true);
-    mLockManager = new BlockLockManager(mockMetaManager);
+    mMetaManager = Mockito.mock(BlockMetadataManager.class);
+    Mockito.when(mMetaManager.hasBlockMeta(TEST_BLOCK_ID)).thenReturn(true);
+    mDir = Mockito.mock(StorageDir.class);
+    BlockMeta blockMeta = Mockito.mock(BlockMeta.class);
+    Mockito.when(blockMeta.getParentDir()).thenReturn(mDir);
+    Mockito.when(mMetaManager.getBlockMeta(TEST_BLOCK_ID)).thenReturn(blockMeta);
+    mLockManager = new BlockLockManager(mMetaManager);
   }
 
   @Test
@@ -115,4 +126,131 @@ public class BlockLockManagerTest {
     // Because userId2 has been cleaned up, expect validating userId2 to throw IOException
     mLockManager.validateLock(userId2, TEST_BLOCK_ID, lockId2);
   }
+
+  @Test
+  public void cleanupUserReleasesLocksTest() throws Exception {
+    // A single lock and stripe, so that all the blocks and users share them
+    BlockLockManager lockManager = new BlockLockManager(mMetaManager, 1, 1);
+    lockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.READ);
+    long lockId = lockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.READ);
+    lockManager.unlockBlock(lockId);
+    lockManager.cleanupUser(TEST_USER_ID);
+    Assert.assertTrue(lockManager.getLockedBlocks().isEmpty());
+    // The write lock would wait forever if a read lock of the user was still held
+    lockId = lockManager.lockBlock(TEST_USER_ID + 1, TEST_BLOCK_ID, BlockLockType.WRITE);
+    lockManager.unlockBlock(TEST_USER_ID + 1, TEST_BLOCK_ID);
+    mThrown.expect(NotFoundException.class);
+    mThrown.expectMessage("Failed to unlockBlock: lockId " + lockId + " has no lock record");
+    lockManager.unlockBlock(lockId);
+  }
+
+  @Test
+  public void readLockCountsReaderTest() throws Exception {
+    long lockId1 = mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.READ);
+    mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.READ);
+    Mockito.verify(mDir, Mockito.times(2)).addReader();
+    mLockManager.unlockBlock(lockId1);
+    Mockito.verify(mDir, Mockito.times(1)).removeReader();
+    mLockManager.cleanupUser(TEST_USER_ID);
+    Mockito.verify(mDir, Mockito.times(2)).removeReader();
+
+    // A write lock is not a reader
+    long lockId = mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.WRITE);
+    mLockManager.unlockBlock(lockId);
+    Mockito.verify(mDir, Mockito.times(2)).addReader();
+    Mockito.verify(mDir, Mockito.times(2)).removeReader();
+  }
+
+  @Test
+  public void tryLockBlockTest() throws Exception {
+    long lockId = mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID, BlockLockType.READ);
+    // A write lock is not granted while the block is read locked
+    Assert.assertEquals(-1,
+        mLockManager.tryLockBlock(TEST_USER_ID + 1, TEST_BLOCK_ID, BlockLockType.WRITE));
+    // but a read lock is
+    long readLockId =
+        mLockManager.tryLockBlock(TEST_USER_ID + 1, TEST_BLOCK_ID, BlockLockType.READ);
+    Assert.assertNotEquals(-1, readLockId);
+    mLockManager.unlockBlock(readLockId);
+    mLockManager.unlockBlock(lockId);
+
+    long writeLockId =
+        mLockManager.tryLockBlock(TEST_USER_ID + 1, TEST_BLOCK_ID, BlockLockType.WRITE);
+    Assert.assertNotEquals(-1, writeLockId);
+    mLockManager.validateLock(TEST_USER_ID + 1, TEST_BLOCK_ID, writeLockId);
+    mLockManager.unlockBlock(writeLockId);
+  }
+
+  @Test
+  public void concurrentUnlockTest() throws Exception {
+    final int numLocks = 1000;
+    BlockMeta blockMeta = Mockito.mock(BlockMeta.class);
+    Mockito.when(blockMeta.getParentDir()).thenReturn(mDir);
+    Mockito.when(mMetaManager.hasBlockMeta(Mockito.anyLong())).thenReturn(true);
+    Mockito.when(mMetaManager.getBlockMeta(Mockito.anyLong())).thenReturn(blockMeta);
+    final long[] lockIds = new long[numLocks];
+    for (int i = 0; i < numLocks; i ++) {
+      lockIds[i] = mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID + i, BlockLockType.READ);
+    }
+    final long otherBlockId = TEST_BLOCK_ID + numLocks;
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    // One thread releases locks by their ids while the other looks up the user's locks by block
+    Thread unlockById = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          barrier.await();
+          for (long lockId : lockIds) {
+            mLockManager.unlockBlock(lockId);
+          }
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    });
+    unlockById.start();
+    barrier.await();
+    while (unlockById.isAlive()) {
+      mLockManager.lockBlock(TEST_USER_ID, otherBlockId, BlockLockType.READ);
+      mLockManager.unlockBlock(TEST_USER_ID, otherBlockId);
+    }
+    unlockById.join();
+    Assert.assertNull(error.get());
+    Assert.assertTrue(mLockManager.getLockedBlocks().isEmpty());
+  }
+
+  @Test
+  public void concurrentCleanupUserTest() throws Exception {
+    final int numLocks = 1000;
+    BlockMeta blockMeta = Mockito.mock(BlockMeta.class);
+    Mockito.when(blockMeta.getParentDir()).thenReturn(mDir);
+    Mockito.when(mMetaManager.hasBlockMeta(Mockito.anyLong())).thenReturn(true);
+    Mockito.when(mMetaManager.getBlockMeta(Mockito.anyLong())).thenReturn(blockMeta);
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    // One thread takes locks for the user while the other cleans the user up
+    Thread locker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          barrier.await();
+          for (int i = 0; i < numLocks; i ++) {
+            mLockManager.lockBlock(TEST_USER_ID, TEST_BLOCK_ID + i, BlockLockType.READ);
+          }
+        } catch (Throwable t) {
+          error.set(t);
+        }
+      }
+    });
+    locker.start();
+    barrier.await();
+    while (locker.isAlive()) {
+      mLockManager.cleanupUser(TEST_USER_ID);
+    }
+    locker.join();
+    Assert.assertNull(error.get());
+    mLockManager.cleanupUser(TEST_USER_ID);
+    Assert.assertTrue(mLockManager.getLockedBlocks().isEmpty());
+  }
 }
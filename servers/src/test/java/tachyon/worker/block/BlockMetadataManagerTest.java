@@ -16,6 +16,7 @@
 package tachyon.worker.block;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -30,6 +31,7 @@ import com.google.common.collect.Sets;
 
 import tachyon.Constants;
 import tachyon.conf.TachyonConf;
+import tachyon.exception.AlreadyExistsException;
 import tachyon.exception.NotFoundException;
 import tachyon.exception.OutOfSpaceException;
 import tachyon.worker.block.meta.BlockMeta;
@@ -233,6 +235,31 @@ public class BlockMetadataManagerTest {
     Assert.assertEquals(TEST_BLOCK_SIZE + 1, tempBlockMeta.getBlockSize());
   }
 
+  @Test
+  public void resizeTempBlockMetaExceedCapacity() throws Exception {
+    StorageDir dir = mMetaManager.getTier(1).getDir(0);
+    TempBlockMeta tempBlockMeta =
+        new TempBlockMeta(TEST_USER_ID, TEST_TEMP_BLOCK_ID, TEST_BLOCK_SIZE, dir);
+    mMetaManager.addTempBlockMeta(tempBlockMeta);
+
+    mThrown.expect(OutOfSpaceException.class);
+    mThrown.expectMessage("Failed to resize TempBlockMeta: blockId " + TEST_TEMP_BLOCK_ID);
+    mMetaManager.resizeTempBlockMeta(tempBlockMeta, 2000);
+  }
+
+  @Test
+  public void addTempBlockMetaInOtherDirTest() throws Exception {
+    StorageDir dir1 = mMetaManager.getTier(3).getDir(0);
+    StorageDir dir2 = mMetaManager.getTier(3).getDir(1);
+    mMetaManager.addTempBlockMeta(
+        new TempBlockMeta(TEST_USER_ID, TEST_TEMP_BLOCK_ID, TEST_BLOCK_SIZE, dir1));
+
+    mThrown.expect(AlreadyExistsException.class);
+    mThrown.expectMessage("Failed to add TempBlockMeta: blockId " + TEST_TEMP_BLOCK_ID + " exists");
+    mMetaManager.addTempBlockMeta(
+        new TempBlockMeta(TEST_USER_ID, TEST_TEMP_BLOCK_ID, TEST_BLOCK_SIZE, dir2));
+  }
+
   @Test
   public void cleanupUserTest() throws Exception {
     StorageDir dir = mMetaManager.getTier(1).getDir(0);
@@ -300,6 +327,92 @@ public class BlockMetadataManagerTest {
     Assert.assertTrue(dir.hasBlockMeta(TEST_BLOCK_ID));
   }
 
+  @Test
+  public void concurrentCommitTest() throws Exception {
+    final int blocksPerDir = 500;
+    final List<StorageDir> dirs = new ArrayList<StorageDir>();
+    for (StorageTier tier : mMetaManager.getTiers()) {
+      dirs.addAll(tier.getStorageDirs());
+    }
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int d = 0; d < dirs.size(); d ++) {
+      final StorageDir dir = dirs.get(d);
+      final long firstBlockId = d * blocksPerDir;
+      // Each thread commits blocks to its own dir, and removes every other one
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (long blockId = firstBlockId; blockId < firstBlockId + blocksPerDir; blockId ++) {
+              TempBlockMeta tempBlockMeta = new TempBlockMeta(TEST_USER_ID, blockId, 1, dir);
+              mMetaManager.addTempBlockMeta(tempBlockMeta);
+              mMetaManager.commitTempBlockMeta(tempBlockMeta);
+              if (blockId % 2 == 0) {
+                mMetaManager.removeBlockMeta(mMetaManager.getBlockMeta(blockId));
+              }
+            }
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue(errors.toString(), errors.isEmpty());
+    for (int d = 0; d < dirs.size(); d ++) {
+      for (long blockId = d * blocksPerDir; blockId < (d + 1) * blocksPerDir; blockId ++) {
+        Assert.assertEquals(blockId % 2 == 1, mMetaManager.hasBlockMeta(blockId));
+        Assert.assertFalse(mMetaManager.hasTempBlockMeta(blockId));
+      }
+    }
+  }
+
+  @Test
+  public void getBlockMetaWhileMovingTest() throws Exception {
+    StorageDir dir = mMetaManager.getTier(1).getDir(0);
+    TempBlockMeta tempBlockMeta =
+        new TempBlockMeta(TEST_USER_ID, TEST_TEMP_BLOCK_ID, TEST_BLOCK_SIZE, dir);
+    mMetaManager.addTempBlockMeta(tempBlockMeta);
+    mMetaManager.commitTempBlockMeta(tempBlockMeta);
+    final BlockMeta blockMeta = mMetaManager.getBlockMeta(TEST_TEMP_BLOCK_ID);
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    // The block moves back and forth between the tiers, and must be found all along
+    Thread mover = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          BlockMeta movedBlockMeta = blockMeta;
+          for (int k = 0; k < 1000; k ++) {
+            movedBlockMeta = mMetaManager.moveBlockMeta(movedBlockMeta,
+                BlockStoreLocation.anyDirInTier(k % 2 == 0 ? 3 : 1));
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }
+    });
+    mover.start();
+    while (mover.isAlive()) {
+      Assert.assertEquals(TEST_TEMP_BLOCK_ID,
+          mMetaManager.getBlockMeta(TEST_TEMP_BLOCK_ID).getBlockId());
+    }
+    mover.join();
+    Assert.assertTrue(errors.toString(), errors.isEmpty());
+    Assert.assertEquals(1, mMetaManager.getBlockMeta(TEST_TEMP_BLOCK_ID).getBlockLocation()
+        .tierAlias());
+    Assert.assertTrue(mMetaManager.getTier(1).getDir(0).hasBlockMeta(TEST_TEMP_BLOCK_ID));
+    for (StorageDir hddDir : mMetaManager.getTier(3).getStorageDirs()) {
+      Assert.assertFalse(hddDir.hasBlockMeta(TEST_TEMP_BLOCK_ID));
+    }
+  }
+
   @Test
   public void getBlockStoreMetaTest() throws Exception {
     Assert.assertNotNull(mMetaManager.getBlockStoreMeta());
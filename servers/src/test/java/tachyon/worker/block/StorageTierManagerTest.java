@@ -0,0 +1,151 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+
+import tachyon.Constants;
+import tachyon.StorageDirId;
+import tachyon.StorageLevelAlias;
+import tachyon.Users;
+import tachyon.conf.TachyonConf;
+import tachyon.worker.block.meta.BlockMeta;
+
+/**
+ * Unit tests for {@link StorageTierManager}, against a mocked block store of a MEM tier and a SSD
+ * tier with one dir of 100 bytes each.
+ */
+public class StorageTierManagerTest {
+  private static final long USER_ID = 2;
+  private static final long CAPACITY_BYTES = 100;
+  private static final long BLOCK_SIZE = 5;
+  private static final int MEM = StorageLevelAlias.MEM.getValue();
+  private static final int SSD = StorageLevelAlias.SSD.getValue();
+  private static final long MEM_DIR_ID = StorageDirId.getStorageDirId(0, MEM, 0);
+  private static final long SSD_DIR_ID = StorageDirId.getStorageDirId(1, SSD, 0);
+
+  private BlockStore mBlockStore;
+  private StorageTierManager mManager;
+
+  @Before
+  public void before() {
+    mBlockStore = Mockito.mock(BlockStore.class);
+    Mockito.when(mBlockStore.tryMoveBlock(Mockito.anyLong(), Mockito.anyLong(),
+        Mockito.any(BlockStoreLocation.class))).thenReturn(true);
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.WORKER_MAX_TIERED_STORAGE_LEVEL, "2");
+    conf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_HIGH_WATERMARK_FORMAT, 0), "0.95");
+    conf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_LOW_WATERMARK_FORMAT, 0), "0.7");
+    conf.set(Constants.WORKER_TIERED_STORE_PROMOTE_ACCESSES, "3");
+    mManager = new StorageTierManager(mBlockStore, conf);
+  }
+
+  private void setUsedBytes(long memUsedBytes, long ssdUsedBytes) {
+    BlockStoreMeta storeMeta = Mockito.mock(BlockStoreMeta.class);
+    Map<Long, Long> capacityBytesOnDirs = new HashMap<Long, Long>();
+    capacityBytesOnDirs.put(MEM_DIR_ID, CAPACITY_BYTES);
+    capacityBytesOnDirs.put(SSD_DIR_ID, CAPACITY_BYTES);
+    Map<Long, Long> usedBytesOnDirs = new HashMap<Long, Long>();
+    usedBytesOnDirs.put(MEM_DIR_ID, memUsedBytes);
+    usedBytesOnDirs.put(SSD_DIR_ID, ssdUsedBytes);
+    Mockito.when(storeMeta.getCapacityBytesOnDirs()).thenReturn(capacityBytesOnDirs);
+    Mockito.when(storeMeta.getUsedBytesOnDirs()).thenReturn(usedBytesOnDirs);
+    Mockito.when(storeMeta.getCapacityBytesOnTiers())
+        .thenReturn(Lists.newArrayList(CAPACITY_BYTES, CAPACITY_BYTES));
+    Mockito.when(storeMeta.getUsedBytesOnTiers())
+        .thenReturn(Lists.newArrayList(memUsedBytes, ssdUsedBytes));
+    Mockito.when(mBlockStore.getBlockStoreMeta()).thenReturn(storeMeta);
+  }
+
+  private void addBlock(long blockId, BlockStoreLocation location) throws Exception {
+    BlockMeta blockMeta = Mockito.mock(BlockMeta.class);
+    Mockito.when(blockMeta.getBlockLocation()).thenReturn(location);
+    Mockito.when(blockMeta.getBlockSize()).thenReturn(BLOCK_SIZE);
+    Mockito.when(mBlockStore.getVolatileBlockMeta(blockId)).thenReturn(blockMeta);
+  }
+
+  private void accessBlock(long blockId, int times) {
+    for (int i = 0; i < times; i ++) {
+      mManager.onAccessBlock(USER_ID, blockId);
+    }
+  }
+
+  @Test
+  public void demoteOverHighWatermarkTest() {
+    setUsedBytes(96, CAPACITY_BYTES);
+    mManager.manageTiers();
+    // MEM is freed down to its low watermark, the full bottom tier is left to eviction on demand
+    Mockito.verify(mBlockStore).tryFreeSpace(Users.MIGRATE_DATA_USER_ID, 30,
+        new BlockStoreLocation(MEM, 0, 0));
+    Mockito.verify(mBlockStore, Mockito.never()).tryFreeSpace(Mockito.anyLong(),
+        Mockito.anyLong(), Mockito.eq(new BlockStoreLocation(SSD, 1, 0)));
+  }
+
+  @Test
+  public void noDemotionUnderHighWatermarkTest() {
+    setUsedBytes(95, 0);
+    mManager.manageTiers();
+    Mockito.verify(mBlockStore, Mockito.never()).tryFreeSpace(Mockito.anyLong(),
+        Mockito.anyLong(), Mockito.any(BlockStoreLocation.class));
+  }
+
+  @Test
+  public void promoteHotBlocksTest() throws Exception {
+    setUsedBytes(50, 50);
+    addBlock(10, new BlockStoreLocation(SSD, 1, 0));
+    addBlock(11, new BlockStoreLocation(SSD, 1, 0));
+    addBlock(12, new BlockStoreLocation(MEM, 0, 0));
+    accessBlock(10, 3);
+    accessBlock(11, 2);
+    accessBlock(12, 3);
+    mManager.manageTiers();
+    // Only the block of SSD read often enough is promoted
+    Mockito.verify(mBlockStore).tryMoveBlock(Users.MIGRATE_DATA_USER_ID, 10,
+        BlockStoreLocation.anyDirInTier(MEM));
+    Mockito.verify(mBlockStore, Mockito.never()).tryMoveBlock(Mockito.anyLong(), Mockito.eq(11L),
+        Mockito.any(BlockStoreLocation.class));
+    Mockito.verify(mBlockStore, Mockito.never()).tryMoveBlock(Mockito.anyLong(), Mockito.eq(12L),
+        Mockito.any(BlockStoreLocation.class));
+
+    // Reads are counted again from the last check
+    accessBlock(11, 1);
+    mManager.manageTiers();
+    Mockito.verify(mBlockStore, Mockito.never()).tryMoveBlock(Mockito.anyLong(), Mockito.eq(11L),
+        Mockito.any(BlockStoreLocation.class));
+  }
+
+  @Test
+  public void noPromotionOverHighWatermarkTest() throws Exception {
+    setUsedBytes(89, 50);
+    addBlock(10, new BlockStoreLocation(SSD, 1, 0));
+    addBlock(11, new BlockStoreLocation(SSD, 1, 0));
+    accessBlock(10, 4);
+    accessBlock(11, 3);
+    mManager.manageTiers();
+    // The hottest block fits under the high watermark of MEM, the next one does not
+    Mockito.verify(mBlockStore).tryMoveBlock(Users.MIGRATE_DATA_USER_ID, 10,
+        BlockStoreLocation.anyDirInTier(MEM));
+    Mockito.verify(mBlockStore, Mockito.never()).tryMoveBlock(Mockito.anyLong(), Mockito.eq(11L),
+        Mockito.any(BlockStoreLocation.class));
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tachyon.Constants;
+import tachyon.StorageLevelAlias;
+import tachyon.conf.TachyonConf;
+import tachyon.exception.OutOfSpaceException;
+import tachyon.master.BlockInfo;
+import tachyon.worker.block.io.BlockWriter;
+import tachyon.worker.block.meta.TempBlockMeta;
+
+/**
+ * Unit tests for {@link TieredBlockStore}, on a MEM tier and a HDD tier with one dir of 100 bytes
+ * each.
+ */
+public class TieredBlockStoreTest {
+  private static final long USER_ID = 2;
+  private static final long BLOCK_SIZE = 50;
+  private static final int MEM = StorageLevelAlias.MEM.getValue();
+  private static final int HDD = StorageLevelAlias.HDD.getValue();
+  private static final BlockStoreLocation MEM_DIR = new BlockStoreLocation(MEM, 0, 0);
+  private static final BlockStoreLocation HDD_DIR = new BlockStoreLocation(HDD, 1, 0);
+
+  private TieredBlockStore mBlockStore;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public void before() throws Exception {
+    String tachyonHome = mFolder.newFolder().getAbsolutePath();
+    TachyonConf tachyonConf = new TachyonConf();
+    tachyonConf.set(Constants.TACHYON_HOME, tachyonHome);
+    tachyonConf.set(Constants.WORKER_MAX_TIERED_STORAGE_LEVEL, "2");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_ALIAS_FORMAT, 0), "MEM");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_DIRS_PATH_FORMAT, 0),
+        tachyonHome + "/ramdisk");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_DIRS_QUOTA_FORMAT, 0),
+        "100");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_ALIAS_FORMAT, 1), "HDD");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_DIRS_PATH_FORMAT, 1),
+        tachyonHome + "/disk");
+    tachyonConf.set(String.format(Constants.WORKER_TIERED_STORAGE_LEVEL_DIRS_QUOTA_FORMAT, 1),
+        "100");
+    mBlockStore = new TieredBlockStore(tachyonConf);
+  }
+
+  private void cacheBlock(long blockId, BlockStoreLocation location) throws Exception {
+    TempBlockMeta tempBlock =
+        mBlockStore.createBlockMeta(USER_ID, blockId, location, BLOCK_SIZE);
+    new File(tempBlock.getPath()).getParentFile().mkdirs();
+    BlockWriter writer = mBlockStore.getBlockWriter(USER_ID, blockId);
+    writer.append(ByteBuffer.allocate((int) BLOCK_SIZE));
+    writer.close();
+    mBlockStore.commitBlock(USER_ID, blockId);
+  }
+
+  private int getTierAlias(long blockId) throws Exception {
+    return mBlockStore.getVolatileBlockMeta(blockId).getBlockLocation().tierAlias();
+  }
+
+  @Test
+  public void createBlockMetaEvictsTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, MEM_DIR);
+    cacheBlock(13, HDD_DIR);
+    cacheBlock(14, HDD_DIR);
+
+    // A block of MEM is moved down to HDD, which evicts a block of its own
+    cacheBlock(15, MEM_DIR);
+    Assert.assertEquals(MEM, getTierAlias(15));
+    int remaining = 0;
+    for (long blockId = 11; blockId <= 14; blockId ++) {
+      if (mBlockStore.hasBlockMeta(blockId)) {
+        remaining ++;
+      }
+    }
+    Assert.assertEquals(3, remaining);
+  }
+
+  @Test
+  public void requestSpaceEvictsTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    TempBlockMeta tempBlock = mBlockStore.createBlockMeta(USER_ID, 12, MEM_DIR, BLOCK_SIZE);
+
+    mBlockStore.requestSpace(USER_ID, 12, BLOCK_SIZE);
+    Assert.assertEquals(2 * BLOCK_SIZE, tempBlock.getBlockSize());
+    Assert.assertEquals(HDD, getTierAlias(11));
+  }
+
+  @Test
+  public void evictionSkipsBlocksInUseTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, MEM_DIR);
+    cacheBlock(13, HDD_DIR);
+    cacheBlock(14, HDD_DIR);
+
+    long lockId11 = mBlockStore.lockBlock(USER_ID + 1, 11);
+    long lockId12 = mBlockStore.lockBlock(USER_ID + 1, 12);
+    try {
+      mBlockStore.freeSpace(USER_ID, BLOCK_SIZE, MEM_DIR);
+      Assert.fail("blocks in use should not be evicted");
+    } catch (OutOfSpaceException ooe) {
+      // expected
+    }
+    Assert.assertEquals(MEM, getTierAlias(11));
+    Assert.assertEquals(MEM, getTierAlias(12));
+
+    mBlockStore.unlockBlock(lockId12);
+    mBlockStore.freeSpace(USER_ID, BLOCK_SIZE, MEM_DIR);
+    Assert.assertEquals(MEM, getTierAlias(11));
+    Assert.assertEquals(HDD, getTierAlias(12));
+    mBlockStore.unlockBlock(lockId11);
+  }
+
+  @Test
+  public void tryFreeSpaceMovesBlocksTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, MEM_DIR);
+
+    Assert.assertTrue(mBlockStore.tryFreeSpace(USER_ID, BLOCK_SIZE, MEM_DIR));
+    Assert.assertTrue(mBlockStore.hasBlockMeta(11));
+    Assert.assertTrue(mBlockStore.hasBlockMeta(12));
+    Assert.assertEquals(MEM + HDD, getTierAlias(11) + getTierAlias(12));
+  }
+
+  @Test
+  public void tryFreeSpaceNeverEvictsTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, MEM_DIR);
+    cacheBlock(13, HDD_DIR);
+    cacheBlock(14, HDD_DIR);
+
+    // The HDD tier can only make room by evicting, so nothing is done
+    Assert.assertFalse(mBlockStore.tryFreeSpace(USER_ID, BLOCK_SIZE, MEM_DIR));
+    for (long blockId = 11; blockId <= 14; blockId ++) {
+      Assert.assertTrue(mBlockStore.hasBlockMeta(blockId));
+    }
+    Assert.assertEquals(MEM, getTierAlias(11));
+    Assert.assertEquals(MEM, getTierAlias(12));
+  }
+
+  @Test
+  public void tryMoveBlockTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, HDD_DIR);
+
+    Assert.assertTrue(mBlockStore.tryMoveBlock(USER_ID, 12, BlockStoreLocation.anyDirInTier(MEM)));
+    Assert.assertEquals(MEM, getTierAlias(12));
+  }
+
+  @Test
+  public void tryMoveBlockNeverEvictsTest() throws Exception {
+    cacheBlock(11, MEM_DIR);
+    cacheBlock(12, MEM_DIR);
+    cacheBlock(13, HDD_DIR);
+
+    Assert.assertFalse(mBlockStore.tryMoveBlock(USER_ID, 13, BlockStoreLocation.anyDirInTier(MEM)));
+    Assert.assertEquals(MEM, getTierAlias(11));
+    Assert.assertEquals(MEM, getTierAlias(12));
+    Assert.assertEquals(HDD, getTierAlias(13));
+  }
+
+  @Test
+  public void unpersistedBlocksNotEvictedTest() throws Exception {
+    int inodeId = 5;
+    long blockId1 = BlockInfo.computeBlockId(inodeId, 0);
+    long blockId2 = BlockInfo.computeBlockId(inodeId, 1);
+    cacheBlock(blockId1, MEM_DIR);
+    cacheBlock(blockId2, MEM_DIR);
+    cacheBlock(13, HDD_DIR);
+    cacheBlock(14, HDD_DIR);
+
+    mBlockStore.addUnpersistedInode(inodeId);
+    try {
+      mBlockStore.freeSpace(USER_ID, BLOCK_SIZE, MEM_DIR);
+      Assert.fail("blocks of an unpersisted inode should not be evicted");
+    } catch (OutOfSpaceException ooe) {
+      // expected
+    }
+    Assert.assertEquals(MEM, getTierAlias(blockId1));
+    Assert.assertEquals(MEM, getTierAlias(blockId2));
+
+    mBlockStore.removeUnpersistedInode(inodeId);
+    mBlockStore.freeSpace(USER_ID, BLOCK_SIZE, MEM_DIR);
+    Assert.assertTrue(getTierAlias(blockId1) == HDD || getTierAlias(blockId2) == HDD);
+  }
+}
@@ -72,6 +72,13 @@ public class AllocatorFactoryTest {
     Assert.assertTrue(allocator instanceof RoundRobinAllocator);
   }
 
+  @Test
+  public void createLoadAwareAllocatorTest() {
+    mTachyonConf.set(Constants.WORKER_ALLOCATE_STRATEGY_CLASS, LoadAwareAllocator.class.getName());
+    Allocator allocator = Allocator.Factory.createAllocator(mTachyonConf, mManagerView);
+    Assert.assertTrue(allocator instanceof LoadAwareAllocator);
+  }
+
   @Test
   public void createDefaultAllocatorTest() {
     /*
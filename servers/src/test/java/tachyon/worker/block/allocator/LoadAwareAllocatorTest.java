@@ -0,0 +1,80 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.allocator;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import tachyon.Constants;
+import tachyon.conf.TachyonConf;
+import tachyon.worker.block.BlockMetadataManager;
+import tachyon.worker.block.BlockMetadataManagerView;
+import tachyon.worker.block.meta.StorageDir;
+import tachyon.worker.block.meta.StorageTier;
+import tachyon.worker.block.meta.TempBlockMeta;
+
+public class LoadAwareAllocatorTest extends BaseAllocatorTest {
+  @Test
+  public void allocateBlockTest() throws Exception {
+    BlockMetadataManager metaManager =
+        BlockMetadataManager.newBlockMetadataManager(createTestTachyonConf());
+    mManagerView = new BlockMetadataManagerView(metaManager, new HashSet<Integer>(),
+        new HashSet<Long>());
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.WORKER_ALLOCATE_STRATEGY_CLASS, LoadAwareAllocator.class.getName());
+    mAllocator = Allocator.Factory.createAllocator(conf, mManagerView);
+    StorageTier hddTier = metaManager.getTier(3);
+    StorageDir hdd0 = hddTier.getDir(0);
+    StorageDir hdd1 = hddTier.getDir(1);
+    //
+    // idx | tier3 | readers | writers
+    //  0    3000      0         0
+    //  1    3000      0         0
+    //  2    3000      0         0
+    //
+    // All dirs are idle, the first dir of most free space is chosen
+    assertTempBlockMeta(mAllocator, mAnyDirInTierLoc3, 300, true, 3, 0);
+    //
+    // idx | tier3 | readers | writers
+    //  0    2700      0         1
+    //  1    3000      1         0
+    //  2    3000      0         0
+    //
+    TempBlockMeta tempBlockMeta = new TempBlockMeta(USER_ID, 100, 0, hdd0);
+    hdd0.addTempBlockMeta(tempBlockMeta);
+    hdd1.addReader();
+    assertTempBlockMeta(mAllocator, mAnyDirInTierLoc3, 300, true, 3, 2);
+    //
+    // idx | tier3 | readers | writers | throughput
+    //  0    2700      0         0         0
+    //  1    3000      0         0         > 0
+    //  2    2700      0         0         0
+    //
+    hdd0.removeTempBlockMeta(tempBlockMeta);
+    hdd1.removeReader();
+    hdd1.addTransferredBytes(Constants.MB);
+    assertTempBlockMeta(mAllocator, mAnyDirInTierLoc3, 300, true, 3, 0);
+    //
+    // idx | tier3 | readers | writers | throughput
+    //  0    2400      0         0         0
+    //  1    3000      0         0         > 0
+    //  2    2700      0         0         0
+    //
+    // Only the busy dir has enough space
+    assertTempBlockMeta(mAllocator, mAnyDirInTierLoc3, 2900, true, 3, 1);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BlockAccessBuffer}.
+ */
+public class BlockAccessBufferTest {
+  private static final int BUFFER_SIZE = 128;
+
+  private static final class ListConsumer implements BlockAccessBuffer.Consumer {
+    private final List<Long> mBlockIds = new ArrayList<Long>();
+
+    @Override
+    public void onAccess(long blockId) {
+      mBlockIds.add(blockId);
+    }
+  }
+
+  @Test
+  public void drainInOrderTest() {
+    BlockAccessBuffer buffer = new BlockAccessBuffer(4);
+    List<Long> expected = new ArrayList<Long>();
+    for (long blockId = 0; blockId < 10; blockId ++) {
+      Assert.assertFalse(buffer.record(blockId));
+      expected.add(blockId);
+    }
+    ListConsumer consumer = new ListConsumer();
+    buffer.drainTo(consumer);
+    Assert.assertEquals(expected, consumer.mBlockIds);
+
+    // Drained accesses are not seen again
+    consumer = new ListConsumer();
+    buffer.drainTo(consumer);
+    Assert.assertTrue(consumer.mBlockIds.isEmpty());
+  }
+
+  @Test
+  public void fullBufferTest() {
+    BlockAccessBuffer buffer = new BlockAccessBuffer(1);
+    for (long blockId = 0; blockId < BUFFER_SIZE - 1; blockId ++) {
+      Assert.assertFalse(buffer.record(blockId));
+    }
+    // The last slot fills the buffer, later accesses are dropped until it is drained
+    Assert.assertTrue(buffer.record(BUFFER_SIZE - 1));
+    Assert.assertTrue(buffer.record(BUFFER_SIZE));
+    ListConsumer consumer = new ListConsumer();
+    buffer.drainTo(consumer);
+    Assert.assertEquals(BUFFER_SIZE, consumer.mBlockIds.size());
+    Assert.assertEquals(BUFFER_SIZE - 1, (long) consumer.mBlockIds.get(BUFFER_SIZE - 1));
+
+    Assert.assertFalse(buffer.record(BUFFER_SIZE + 1));
+    consumer = new ListConsumer();
+    buffer.drainTo(consumer);
+    Assert.assertEquals(1, consumer.mBlockIds.size());
+    Assert.assertEquals(BUFFER_SIZE + 1, (long) consumer.mBlockIds.get(0));
+  }
+
+  @Test
+  public void concurrentRecordTest() throws Exception {
+    final BlockAccessBuffer buffer = new BlockAccessBuffer(2);
+    final int threads = 8;
+    final int accessesPerThread = 10000;
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    final ListConsumer consumer = new ListConsumer();
+    List<Thread> workers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t ++) {
+      final long firstBlockId = (long) t * accessesPerThread;
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int k = 0; k < accessesPerThread; k ++) {
+            if (buffer.record(firstBlockId + k)) {
+              synchronized (consumer) {
+                buffer.drainTo(consumer);
+              }
+            }
+          }
+        }
+      });
+      worker.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread thread, Throwable e) {
+          failed.set(true);
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    buffer.drainTo(consumer);
+    Assert.assertFalse(failed.get());
+    // Accesses may be dropped, but each recorded access is drained exactly once and accesses of
+    // the same thread are drained in order
+    long[] lastBlockIds = new long[threads];
+    for (int t = 0; t < threads; t ++) {
+      lastBlockIds[t] = -1;
+    }
+    for (long blockId : consumer.mBlockIds) {
+      int thread = (int) (blockId / accessesPerThread);
+      Assert.assertTrue(blockId > lastBlockIds[thread]);
+      lastBlockIds[thread] = blockId;
+    }
+    Assert.assertFalse(consumer.mBlockIds.isEmpty());
+  }
+}
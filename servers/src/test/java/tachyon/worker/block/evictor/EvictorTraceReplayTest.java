@@ -0,0 +1,146 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tachyon.Constants;
+import tachyon.conf.TachyonConf;
+import tachyon.util.io.PathUtils;
+import tachyon.worker.block.BlockMetadataManager;
+import tachyon.worker.block.BlockMetadataManagerView;
+import tachyon.worker.block.BlockStoreEventListener;
+import tachyon.worker.block.BlockStoreLocation;
+import tachyon.worker.block.meta.BlockMeta;
+import tachyon.worker.block.meta.StorageDir;
+
+/**
+ * Replays traces of block accesses against a single-dir block store with each evictor, and
+ * compares their hit ratios. A block missing from the store is cached after asking the evictor to
+ * free space for it, as a worker does when a block is read from the under file system. The hit
+ * ratios are logged.
+ */
+public class EvictorTraceReplayTest {
+  private static final Logger LOG = LoggerFactory.getLogger(Constants.LOGGER_TYPE);
+  private static final long USER_ID = 2;
+  /** Block ids start above the user id, so that block files and the user folder do not clash */
+  private static final long FIRST_BLOCK_ID = 100;
+  private static final long BLOCK_SIZE = 1;
+  private static final int CAPACITY_BLOCKS = 40;
+  private static final String[] EVICTORS = {GreedyEvictor.class.getName(),
+      LRUEvictor.class.getName(), PartialLRUEvictor.class.getName(),
+      LRFUEvictor.class.getName()};
+
+  @Rule
+  public TemporaryFolder mTestFolder = new TemporaryFolder();
+
+  /**
+   * A working set of 20 blocks, half of the capacity, is read at random and interrupted by scans of
+   * 100 blocks read once. Only a scan-resistant evictor keeps the working set through the scans.
+   */
+  @Test
+  public void scanTraceTest() throws Exception {
+    final int hotBlocks = 20;
+    final int rounds = 20;
+    final int hotAccessesPerRound = 200;
+    final int scanBlocksPerRound = 100;
+    long[] trace = new long[rounds * (hotAccessesPerRound + scanBlocksPerRound)];
+    Random random = new Random(0);
+    long scanBlockId = FIRST_BLOCK_ID + hotBlocks;
+    int k = 0;
+    for (int round = 0; round < rounds; round ++) {
+      for (int i = 0; i < hotAccessesPerRound; i ++) {
+        trace[k ++] = FIRST_BLOCK_ID + random.nextInt(hotBlocks);
+      }
+      for (int i = 0; i < scanBlocksPerRound; i ++) {
+        trace[k ++] = scanBlockId ++;
+      }
+    }
+
+    double lruHitRatio = 0;
+    double lrfuHitRatio = 0;
+    for (String evictor : EVICTORS) {
+      double hitRatio = replay(evictor, trace);
+      LOG.info(String.format("scan trace: %s hit ratio %.3f", evictor, hitRatio));
+      if (evictor.equals(LRUEvictor.class.getName())) {
+        lruHitRatio = hitRatio;
+      } else if (evictor.equals(LRFUEvictor.class.getName())) {
+        lrfuHitRatio = hitRatio;
+      }
+    }
+    Assert.assertTrue(lrfuHitRatio > lruHitRatio);
+  }
+
+  /**
+   * Replays the trace with a new block store and evictor.
+   *
+   * @param evictorClassName the class name of the evictor
+   * @param trace the ids of the accessed blocks, in order
+   * @return the ratio of accesses finding their block in the store
+   * @throws Exception when the store fails to cache or evict a block
+   */
+  private double replay(String evictorClassName, long[] trace) throws Exception {
+    String dirPath = PathUtils.concatPath(mTestFolder.newFolder().getAbsolutePath(), "mem");
+    FileUtils.forceMkdir(new File(dirPath));
+    BlockMetadataManager metaManager =
+        EvictorTestUtils.newMetadataManager(new int[] {0}, new String[] {"MEM"},
+            new String[][] {{dirPath}}, new long[][] {{CAPACITY_BLOCKS * BLOCK_SIZE}});
+    BlockMetadataManagerView view =
+        new BlockMetadataManagerView(metaManager, Collections.<Integer>emptySet(),
+            Collections.<Long>emptySet());
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.WORKER_EVICT_STRATEGY_CLASS, evictorClassName);
+    Evictor evictor = Evictor.Factory.createEvictor(conf, view);
+    StorageDir dir = metaManager.getTiers().get(0).getDir(0);
+
+    int hits = 0;
+    for (long blockId : trace) {
+      if (metaManager.hasBlockMeta(blockId)) {
+        hits ++;
+        if (evictor instanceof BlockStoreEventListener) {
+          ((BlockStoreEventListener) evictor).onAccessBlock(USER_ID, blockId);
+        }
+        continue;
+      }
+      EvictionPlan plan =
+          evictor.freeSpaceWithView(BLOCK_SIZE, BlockStoreLocation.anyTier(), view);
+      Assert.assertNotNull(plan);
+      Assert.assertTrue(plan.toMove().isEmpty());
+      for (long evictedBlockId : plan.toEvict()) {
+        BlockMeta blockMeta = metaManager.getBlockMeta(evictedBlockId);
+        Assert.assertTrue(new File(blockMeta.getPath()).delete());
+        metaManager.removeBlockMeta(blockMeta);
+        if (evictor instanceof BlockStoreEventListener) {
+          ((BlockStoreEventListener) evictor).onRemoveBlockByWorker(USER_ID, evictedBlockId);
+        }
+      }
+      EvictorTestUtils.cache(USER_ID, blockId, BLOCK_SIZE, dir, metaManager, evictor);
+      // the user folder of the temp block is left empty by the commit
+      Assert.assertTrue(new File(PathUtils.concatPath(dir.getDirPath(), USER_ID)).delete());
+    }
+    return (double) hits / trace.length;
+  }
+}
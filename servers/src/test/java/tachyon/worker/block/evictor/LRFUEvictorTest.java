@@ -0,0 +1,154 @@
+/*
+ * Licensed to the University of California, Berkeley under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package tachyon.worker.block.evictor;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tachyon.Constants;
+import tachyon.conf.TachyonConf;
+import tachyon.worker.block.BlockMetadataManager;
+import tachyon.worker.block.BlockMetadataManagerView;
+import tachyon.worker.block.BlockStoreEventListener;
+import tachyon.worker.block.BlockStoreLocation;
+import tachyon.worker.block.meta.StorageDir;
+
+/**
+ * Sanity check on specific behavior of LRFUEvictor such as evicting blocks with the least combined
+ * recency and frequency first.
+ */
+public class LRFUEvictorTest {
+  private static final long USER_ID = 2;
+  private static final long BLOCK_ID = 10;
+
+  private BlockMetadataManager mMetaManager;
+  private BlockMetadataManagerView mManagerView;
+  private Evictor mEvictor;
+
+  @Rule
+  public TemporaryFolder mTestFolder = new TemporaryFolder();
+
+  @Before
+  public final void before() throws Exception {
+    File tempFolder = mTestFolder.newFolder();
+    mMetaManager = EvictorTestUtils.defaultMetadataManager(tempFolder.getAbsolutePath());
+    mManagerView =
+        new BlockMetadataManagerView(mMetaManager, Collections.<Integer>emptySet(),
+            Collections.<Long>emptySet());
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.WORKER_EVICT_STRATEGY_CLASS, LRFUEvictor.class.getName());
+    mEvictor = Evictor.Factory.createEvictor(conf, mManagerView);
+  }
+
+  private void cache(long userId, long blockId, long bytes, int tierLevel, int dirIdx)
+      throws Exception {
+    StorageDir dir = mMetaManager.getTiers().get(tierLevel).getDir(dirIdx);
+    EvictorTestUtils.cache(userId, blockId, bytes, dir, mMetaManager, mEvictor);
+  }
+
+  // access the block to update evictor
+  private void access(long blockId) {
+    ((BlockStoreEventListener) mEvictor).onAccessBlock(USER_ID, blockId);
+  }
+
+  @Test
+  public void evictInBottomTierTest() throws Exception {
+    int bottomTierLevel = EvictorTestUtils.TIER_LEVEL[EvictorTestUtils.TIER_LEVEL.length - 1];
+    // capacity increases with index
+    long[] bottomTierDirCapacity = EvictorTestUtils.TIER_CAPACITY[bottomTierLevel];
+    int nDir = bottomTierDirCapacity.length;
+    // fill in dirs from larger to smaller capacity with blockId equal to BLOCK_ID plus dir index
+    for (int i = nDir - 1; i >= 0; i --) {
+      cache(USER_ID, BLOCK_ID + i, bottomTierDirCapacity[i], bottomTierLevel, i);
+    }
+    BlockStoreLocation anyDirInBottomTier = BlockStoreLocation.anyDirInTier(bottomTierLevel + 1);
+    // request smallest capacity and update access time on the evicted block for nDir times, the dir
+    // to evict blocks from should be in the same order as caching
+    for (int i = nDir - 1; i >= 0; i --) {
+      EvictionPlan plan =
+          mEvictor.freeSpaceWithView(bottomTierDirCapacity[0], anyDirInBottomTier, mManagerView);
+      Assert.assertNotNull(plan);
+      Assert.assertTrue(plan.toMove().isEmpty());
+      Assert.assertEquals(1, plan.toEvict().size());
+      long toEvictBlockId = plan.toEvict().get(0);
+      Assert.assertEquals(BLOCK_ID + i, toEvictBlockId);
+
+      access(toEvictBlockId);
+    }
+  }
+
+  @Test
+  public void frequencyOverRecencyTest() throws Exception {
+    int bottomTierLevel = EvictorTestUtils.TIER_LEVEL[EvictorTestUtils.TIER_LEVEL.length - 1];
+    long[] bottomTierDirCapacity = EvictorTestUtils.TIER_CAPACITY[bottomTierLevel];
+    int nDir = bottomTierDirCapacity.length;
+    for (int i = 0; i < nDir; i ++) {
+      cache(USER_ID, BLOCK_ID + i, bottomTierDirCapacity[i], bottomTierLevel, i);
+    }
+    // the first block is accessed most often but least recently, the second block is accessed as
+    // often as the last block but less recently, so it should be evicted before the other two
+    for (int k = 0; k < 5; k ++) {
+      access(BLOCK_ID);
+    }
+    for (int i = 1; i < nDir; i ++) {
+      access(BLOCK_ID + i);
+    }
+
+    BlockStoreLocation anyDirInBottomTier = BlockStoreLocation.anyDirInTier(bottomTierLevel + 1);
+    EvictionPlan plan =
+        mEvictor.freeSpaceWithView(bottomTierDirCapacity[0], anyDirInBottomTier, mManagerView);
+    Assert.assertNotNull(plan);
+    Assert.assertTrue(plan.toMove().isEmpty());
+    Assert.assertEquals(1, plan.toEvict().size());
+    Assert.assertEquals(BLOCK_ID + 1, (long) plan.toEvict().get(0));
+  }
+
+  @Test
+  public void stepFactorFromConfTest() throws Exception {
+    // with a step factor of 1, recency wins over frequency as in LRU
+    TachyonConf conf = new TachyonConf();
+    conf.set(Constants.WORKER_EVICT_STRATEGY_CLASS, LRFUEvictor.class.getName());
+    conf.set(Constants.WORKER_EVICT_STRATEGY_LRFU_STEP_FACTOR, "1.0");
+    mEvictor = Evictor.Factory.createEvictor(conf, mManagerView);
+
+    int bottomTierLevel = EvictorTestUtils.TIER_LEVEL[EvictorTestUtils.TIER_LEVEL.length - 1];
+    long[] bottomTierDirCapacity = EvictorTestUtils.TIER_CAPACITY[bottomTierLevel];
+    int nDir = bottomTierDirCapacity.length;
+    for (int i = 0; i < nDir; i ++) {
+      cache(USER_ID, BLOCK_ID + i, bottomTierDirCapacity[i], bottomTierLevel, i);
+    }
+    for (int k = 0; k < 5; k ++) {
+      access(BLOCK_ID);
+    }
+    for (int i = 1; i < nDir; i ++) {
+      access(BLOCK_ID + i);
+    }
+
+    BlockStoreLocation anyDirInBottomTier = BlockStoreLocation.anyDirInTier(bottomTierLevel + 1);
+    EvictionPlan plan =
+        mEvictor.freeSpaceWithView(bottomTierDirCapacity[0], anyDirInBottomTier, mManagerView);
+    Assert.assertNotNull(plan);
+    Assert.assertTrue(plan.toMove().isEmpty());
+    Assert.assertEquals(1, plan.toEvict().size());
+    Assert.assertEquals(BLOCK_ID, (long) plan.toEvict().get(0));
+  }
+}
@@ -16,7 +16,9 @@
 package tachyon.worker.block.evictor;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -159,4 +161,42 @@ public class LRUEvictorTest {
       access(blockIdEvictedInSecondTier);
     }
   }
+
+  @Test
+  public void concurrentAccessTest() throws Exception {
+    int bottomTierLevel = EvictorTestUtils.TIER_LEVEL[EvictorTestUtils.TIER_LEVEL.length - 1];
+    long[] bottomTierDirCapacity = EvictorTestUtils.TIER_CAPACITY[bottomTierLevel];
+    int nDir = bottomTierDirCapacity.length;
+    for (int i = 0; i < nDir; i ++) {
+      cache(USER_ID, BLOCK_ID + i, bottomTierDirCapacity[i], bottomTierLevel, i);
+    }
+    // the least recently cached block is accessed by many threads, more times than the access
+    // buffers hold, so the next least recently used block should be evicted
+    final int threads = 8;
+    final int accessesPerThread = 1000;
+    List<Thread> readers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t ++) {
+      Thread reader = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int k = 0; k < accessesPerThread; k ++) {
+            access(BLOCK_ID);
+          }
+        }
+      });
+      readers.add(reader);
+      reader.start();
+    }
+    for (Thread reader : readers) {
+      reader.join();
+    }
+
+    BlockStoreLocation anyDirInBottomTier = BlockStoreLocation.anyDirInTier(bottomTierLevel + 1);
+    EvictionPlan plan =
+        mEvictor.freeSpaceWithView(bottomTierDirCapacity[0], anyDirInBottomTier, mManagerView);
+    Assert.assertNotNull(plan);
+    Assert.assertTrue(plan.toMove().isEmpty());
+    Assert.assertEquals(1, plan.toEvict().size());
+    Assert.assertEquals(BLOCK_ID + 1, (long) plan.toEvict().get(0));
+  }
 }
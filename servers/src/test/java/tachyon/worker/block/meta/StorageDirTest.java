@@ -211,6 +211,25 @@ public class StorageDirTest {
     Assert.assertEquals(TEST_DIR_INDEX, mDir.getDirIndex());
   }
 
+  @Test
+  public void getLoadTest() throws Exception {
+    Assert.assertEquals(0, mDir.getReaderCount());
+    Assert.assertEquals(0, mDir.getWriterCount());
+    Assert.assertEquals(0, mDir.getRecentThroughput());
+
+    mDir.addReader();
+    mDir.addTempBlockMeta(mTempBlockMeta);
+    mDir.addTransferredBytes(TEST_TEMP_BLOCK_SIZE);
+    Assert.assertEquals(1, mDir.getReaderCount());
+    Assert.assertEquals(1, mDir.getWriterCount());
+    Assert.assertTrue(mDir.getRecentThroughput() > 0);
+
+    mDir.removeReader();
+    mDir.removeTempBlockMeta(mTempBlockMeta);
+    Assert.assertEquals(0, mDir.getReaderCount());
+    Assert.assertEquals(0, mDir.getWriterCount());
+  }
+
   @Test
   public void getBlockIdsTest() throws Exception {
     long blockId1 = TEST_BLOCK_ID + 1;
@@ -361,6 +380,22 @@ public class StorageDirTest {
     Assert.assertEquals(TEST_DIR_CAPACITY - newSize, mDir.getAvailableBytes());
   }
 
+  @Test
+  public void resizeTempBlockMetaExceedCapacityTest() throws Exception {
+    mDir.addTempBlockMeta(mTempBlockMeta);
+    final long newSize = TEST_DIR_CAPACITY + 1;
+
+    mThrown.expect(OutOfSpaceException.class);
+    mThrown.expectMessage("Failed to resize TempBlockMeta: blockId " + TEST_TEMP_BLOCK_ID
+        + " needs " + (newSize - TEST_TEMP_BLOCK_SIZE) + " more bytes");
+    try {
+      mDir.resizeTempBlockMeta(mTempBlockMeta, newSize);
+    } finally {
+      Assert.assertEquals(TEST_TEMP_BLOCK_SIZE, mTempBlockMeta.getBlockSize());
+      Assert.assertEquals(TEST_DIR_CAPACITY - TEST_TEMP_BLOCK_SIZE, mDir.getAvailableBytes());
+    }
+  }
+
   // TODO: also test claimed space
   @Test
   public void cleanupUserTest() throws Exception {